@@ -1,21 +1,61 @@
 package com.hercules.playground.flowable;
 
+import java.nio.file.Paths;
+
 import org.flowable.engine.ProcessEngine;
 import org.flowable.engine.ProcessEngineConfiguration;
 import org.flowable.engine.impl.cfg.StandaloneProcessEngineConfiguration;
 
+import com.hercules.playground.flowable.executor.AsyncExecutionProfile;
+import com.hercules.playground.flowable.expression.ExpressionCache;
+import com.hercules.playground.flowable.id.StripedIdGenerator;
+import com.hercules.playground.flowable.inmemory.TransientExecution;
+import com.hercules.playground.flowable.metrics.EngineMetrics;
+import com.hercules.playground.flowable.snapshot.EngineSnapshot;
+
 /**
  * Hello world!
  *
  */
 public class App {
+
+	public static final String JDBC_URL = "jdbc:h2:mem:flowable;DB_CLOSE_DELAY=-1";
+
 	public static void main(String[] args) {
-		ProcessEngineConfiguration cfg = new StandaloneProcessEngineConfiguration()
-				.setJdbcUrl("jdbc:h2:mem:flowable;DB_CLOSE_DELAY=-1").setJdbcUsername("sa").setJdbcPassword("")
+		ProcessEngineConfiguration configuration = createConfiguration(JDBC_URL);
+		// -Dflowable.async=true runs signal started subprocesses on the async executor, see AsyncExecutionProfile
+		if (Boolean.getBoolean("flowable.async")) {
+			AsyncExecutionProfile.fromSystemProperties().install(configuration);
+		}
+		// -Dflowable.stripedIds=true draws ids from striped, prefetched id blocks, see StripedIdGenerator
+		if (Boolean.getBoolean("flowable.stripedIds")) {
+			new StripedIdGenerator().install(configuration);
+		}
+		// simple conditions evaluated by lambdas, -Dflowable.compileExpressions=false interprets them, see ExpressionCache
+		new ExpressionCache(4096,
+				Boolean.parseBoolean(System.getProperty("flowable.compileExpressions", "true"))).install(configuration);
+		// only main is metered, the benchmarks build from createConfiguration and measure the engine without them
+		EngineMetrics.install(configuration);
+		// processes marked transient run in memory when started through TransientExecution, installed after the metrics
+		// so the execution queries it answers from memory are not counted as sent
+		TransientExecution.install(configuration);
+		// -Dflowable.snapshot=<directory> restores the schema from an image instead of creating it, see EngineSnapshot
+		String snapshot = System.getProperty("flowable.snapshot");
+		ProcessEngine processEngine = snapshot != null
+				? EngineSnapshot.of(Paths.get(snapshot)).buildProcessEngine(configuration)
+				: configuration.buildProcessEngine();
+
+	}
+
+	/**
+	 * The engine configuration main runs with, pointed at the given H2 url
+	 * <br>
+	 * Benchmarks and tooling build their engines from here so they measure the same engine main builds
+	 */
+	public static ProcessEngineConfiguration createConfiguration(String jdbcUrl) {
+		return new StandaloneProcessEngineConfiguration()
+				.setJdbcUrl(jdbcUrl).setJdbcUsername("sa").setJdbcPassword("")
 				.setJdbcDriver("org.h2.Driver")
 				.setDatabaseSchemaUpdate(ProcessEngineConfiguration.DB_SCHEMA_UPDATE_TRUE);
-
-		ProcessEngine processEngine = cfg.buildProcessEngine();
-		
 	}
 }
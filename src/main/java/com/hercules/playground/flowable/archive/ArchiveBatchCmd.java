@@ -0,0 +1,170 @@
+package com.hercules.playground.flowable.archive;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.common.engine.impl.context.Context;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.util.CommandContextUtil;
+
+/**
+ * Writes the history of a batch of ended process instances to a segment and deletes it from the tables, in one transaction
+ * <br>
+ * The segment is written under a temporary name first and gets its own name while the transaction commits, after the deletes
+ * went through and before they are committed. A segment already under that name is never replaced, the batch rolls back. A failing commit removes it again. A process dying between the two leaves the
+ * instances in a segment and in the tables, they are archived a second time, they never end up in neither.
+ * <br>
+ * Sub process instances started by call activities go with their parent. Identity links, details, the task log and entity links
+ * are deleted without being archived, comments and attachments are left in the tables.
+ */
+class ArchiveBatchCmd implements Command<Integer> {
+
+	private final String tablePrefix;
+	private final List<String> processInstanceIds;
+	private final Path segment;
+	private boolean published;
+
+	ArchiveBatchCmd(String tablePrefix, List<String> processInstanceIds, Path segment) {
+		this.tablePrefix = tablePrefix;
+		this.processInstanceIds = processInstanceIds;
+		this.segment = segment;
+	}
+
+	@Override
+	public Integer execute(CommandContext commandContext) {
+		Connection connection = CommandContextUtil.getDbSqlSession(commandContext).getSqlSession().getConnection();
+		Path written = this.segment.resolveSibling(this.segment.getFileName() + ".tmp");
+		try {
+			Set<String> ids = withSubProcessInstances(connection);
+			String in = placeholders(ids.size());
+
+			SegmentWriter writer = new SegmentWriter();
+			for (ArchiveTable table : ArchiveTable.values()) {
+				try (PreparedStatement statement = prepare(connection, table.select(this.tablePrefix, in), ids);
+						ResultSet resultSet = statement.executeQuery()) {
+					writer.add(table, resultSet);
+				}
+			}
+			writer.write(written);
+			Context.getTransactionContext().addTransactionListener(TransactionState.COMMITTING, context -> publish(written));
+			Context.getTransactionContext().addTransactionListener(TransactionState.ROLLED_BACK, context -> discard(written));
+			// the deletes go around mybatis, which only rolls back a session it has written through itself
+			Context.getTransactionContext().addTransactionListener(TransactionState.ROLLINGBACK,
+					context -> CommandContextUtil.getDbSqlSession(context).getSqlSession().rollback(true));
+
+			Set<String> byteArrayIds = new LinkedHashSet<>();
+			byteArrayIds.addAll(select(connection, "select BYTEARRAY_ID_ from " + table("ACT_HI_VARINST")
+					+ " where BYTEARRAY_ID_ is not null and PROC_INST_ID_ in " + in, ids));
+			byteArrayIds.addAll(select(connection, "select BYTEARRAY_ID_ from " + table("ACT_HI_DETAIL")
+					+ " where BYTEARRAY_ID_ is not null and PROC_INST_ID_ in " + in, ids));
+
+			update(connection, "delete from " + table("ACT_HI_DETAIL") + " where PROC_INST_ID_ in " + in, ids);
+			update(connection, "delete from " + table("ACT_HI_VARINST") + " where PROC_INST_ID_ in " + in, ids);
+			update(connection, "delete from " + table("ACT_HI_IDENTITYLINK") + " where TASK_ID_ in (select ID_ from "
+					+ table("ACT_HI_TASKINST") + " where PROC_INST_ID_ in " + in + ")", ids);
+			update(connection, "delete from " + table("ACT_HI_IDENTITYLINK") + " where PROC_INST_ID_ in " + in, ids);
+			update(connection, "delete from " + table("ACT_HI_TSK_LOG") + " where PROC_INST_ID_ in " + in, ids);
+			update(connection, "delete from " + table("ACT_HI_ENTITYLINK") + " where SCOPE_TYPE_ = 'bpmn' and SCOPE_ID_ in "
+					+ in, ids);
+			update(connection, "delete from " + table("ACT_HI_TASKINST") + " where PROC_INST_ID_ in " + in, ids);
+			update(connection, "delete from " + table("ACT_HI_ACTINST") + " where PROC_INST_ID_ in " + in, ids);
+			update(connection, "delete from " + table("ACT_HI_PROCINST") + " where ID_ in " + in, ids);
+			if (!byteArrayIds.isEmpty()) {
+				update(connection, "delete from " + table("ACT_GE_BYTEARRAY") + " where ID_ in "
+						+ placeholders(byteArrayIds.size()), byteArrayIds);
+			}
+			return writer.rows(ArchiveTable.PROCESS_INSTANCES);
+		} catch (SQLException e) {
+			discard(written);
+			throw new FlowableException("Could not archive process instances " + this.processInstanceIds, e);
+		} catch (IOException e) {
+			discard(written);
+			throw new FlowableException("Could not write " + written, e);
+		}
+	}
+
+	private void publish(Path written) {
+		try {
+			// a link, unlike a rename, fails on a segment already there instead of replacing it
+			Files.createLink(this.segment, written);
+			this.published = true;
+			Files.delete(written);
+		} catch (IOException e) {
+			throw new FlowableException("Could not publish " + this.segment, e);
+		}
+	}
+
+	private void discard(Path written) {
+		try {
+			Files.deleteIfExists(written);
+			if (this.published) {
+				Files.delete(this.segment);
+				this.published = false;
+			}
+		} catch (IOException e) {
+			throw new FlowableException("Could not remove " + written, e);
+		}
+	}
+
+	private Set<String> withSubProcessInstances(Connection connection) throws SQLException {
+		Set<String> ids = new LinkedHashSet<>(this.processInstanceIds);
+		Collection<String> parents = this.processInstanceIds;
+		while (!parents.isEmpty()) {
+			List<String> children = select(connection, "select ID_ from " + table("ACT_HI_PROCINST")
+					+ " where SUPER_PROCESS_INSTANCE_ID_ in " + placeholders(parents.size()), parents);
+			children.removeAll(ids);
+			ids.addAll(children);
+			parents = children;
+		}
+		return ids;
+	}
+
+	private String table(String name) {
+		return this.tablePrefix + name;
+	}
+
+	private static String placeholders(int count) {
+		return "(" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+	}
+
+	private static int update(Connection connection, String sql, Collection<String> ids) throws SQLException {
+		try (PreparedStatement statement = prepare(connection, sql, ids)) {
+			return statement.executeUpdate();
+		}
+	}
+
+	private static List<String> select(Connection connection, String sql, Collection<String> ids) throws SQLException {
+		List<String> values = new ArrayList<>();
+		try (PreparedStatement statement = prepare(connection, sql, ids); ResultSet resultSet = statement.executeQuery()) {
+			while (resultSet.next()) {
+				values.add(resultSet.getString(1));
+			}
+		}
+		return values;
+	}
+
+	private static PreparedStatement prepare(Connection connection, String sql, Collection<String> ids)
+			throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(sql);
+		int index = 1;
+		for (String id : ids) {
+			statement.setString(index++, id);
+		}
+		return statement;
+	}
+
+}
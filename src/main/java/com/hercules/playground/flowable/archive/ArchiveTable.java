@@ -0,0 +1,112 @@
+package com.hercules.playground.flowable.archive;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The history tables a segment keeps, and the columns kept of each
+ * <br>
+ * Revisions and the scope columns of cmmn are left out, they say nothing about an instance that ended.
+ * Variables keep the bytes of serialized values, joined in from ACT_GE_BYTEARRAY.
+ */
+public enum ArchiveTable {
+
+	PROCESS_INSTANCES("ACT_HI_PROCINST", "T.ID_", "T.START_TIME_",
+			string("ID_"), string("PROC_DEF_ID_"), string("BUSINESS_KEY_"), string("NAME_"), time("START_TIME_"),
+			time("END_TIME_"), number("DURATION_"), string("START_USER_ID_"), string("START_ACT_ID_"), string("END_ACT_ID_"),
+			string("SUPER_PROCESS_INSTANCE_ID_"), string("DELETE_REASON_"), string("TENANT_ID_")),
+
+	ACTIVITY_INSTANCES("ACT_HI_ACTINST", "T.PROC_INST_ID_", "T.START_TIME_",
+			string("ID_"), string("PROC_DEF_ID_"), string("PROC_INST_ID_"), string("EXECUTION_ID_"), string("ACT_ID_"),
+			string("ACT_NAME_"), string("ACT_TYPE_"), string("TASK_ID_"), string("CALL_PROC_INST_ID_"), string("ASSIGNEE_"),
+			time("START_TIME_"), time("END_TIME_"), number("DURATION_"), string("DELETE_REASON_"), string("TENANT_ID_")),
+
+	TASK_INSTANCES("ACT_HI_TASKINST", "T.PROC_INST_ID_", "T.START_TIME_",
+			string("ID_"), string("PROC_DEF_ID_"), string("PROC_INST_ID_"), string("EXECUTION_ID_"), string("TASK_DEF_KEY_"),
+			string("NAME_"), string("OWNER_"), string("ASSIGNEE_"), number("PRIORITY_"), time("START_TIME_"),
+			time("CLAIM_TIME_"), time("END_TIME_"), number("DURATION_"), time("DUE_DATE_"), string("FORM_KEY_"),
+			string("CATEGORY_"), string("DELETE_REASON_"), string("TENANT_ID_")),
+
+	VARIABLE_INSTANCES("ACT_HI_VARINST", "T.PROC_INST_ID_", "T.CREATE_TIME_",
+			string("ID_"), string("PROC_INST_ID_"), string("EXECUTION_ID_"), string("TASK_ID_"), string("NAME_"),
+			string("VAR_TYPE_"), string("TEXT_"), string("TEXT2_"), number("LONG_"), string("DOUBLE_"), time("CREATE_TIME_"),
+			time("LAST_UPDATED_TIME_"), new Column("BYTES_", ColumnType.BYTES, "B.BYTES_"));
+
+	private final String table;
+	private final String processInstanceColumn;
+	private final String orderBy;
+	private final List<Column> columns;
+
+	ArchiveTable(String table, String processInstanceColumn, String orderBy, Column... columns) {
+		this.table = table;
+		this.processInstanceColumn = processInstanceColumn;
+		this.orderBy = orderBy;
+		this.columns = Arrays.asList(columns);
+	}
+
+	public String getTable() {
+		return this.table;
+	}
+
+	public List<Column> getColumns() {
+		return this.columns;
+	}
+
+	/**
+	 * The rows of the process instances bound to the placeholders, in the order they are written,
+	 * rows of one instance and of instances started close together next to each other
+	 */
+	String select(String tablePrefix, String placeholders) {
+		String from = tablePrefix + this.table + " T";
+		if (this == VARIABLE_INSTANCES) {
+			from += " left join " + tablePrefix + "ACT_GE_BYTEARRAY B on B.ID_ = T.BYTEARRAY_ID_";
+		}
+		return "select " + this.columns.stream().map(column -> column.expression).collect(Collectors.joining(", "))
+				+ " from " + from + " where " + this.processInstanceColumn + " in " + placeholders + " order by "
+				+ this.orderBy + ", T.ID_";
+	}
+
+	private static Column string(String name) {
+		return new Column(name, ColumnType.STRING, "T." + name);
+	}
+
+	private static Column time(String name) {
+		return new Column(name, ColumnType.TIME, "T." + name);
+	}
+
+	private static Column number(String name) {
+		return new Column(name, ColumnType.LONG, "T." + name);
+	}
+
+	public enum ColumnType {
+		STRING, LONG,
+		/**
+		 * A timestamp in epoch milliseconds, read back like a LONG
+		 */
+		TIME, BYTES
+	}
+
+	public static final class Column {
+
+		private final String name;
+		private final ColumnType type;
+		private final String expression;
+
+		Column(String name, ColumnType type, String expression) {
+			this.name = name;
+			this.type = type;
+			this.expression = expression;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public ColumnType getType() {
+			return this.type;
+		}
+
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.hercules.playground.flowable.archive;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.util.CommandContextUtil;
+
+/**
+ * Ids of up to limit historic process instances that ended before a time and were not started by a call activity, the earliest first
+ */
+class FindArchivableInstancesCmd implements Command<List<String>> {
+
+	private final String tablePrefix;
+	private final Date endedBefore;
+	private final int limit;
+
+	FindArchivableInstancesCmd(String tablePrefix, Date endedBefore, int limit) {
+		this.tablePrefix = tablePrefix;
+		this.endedBefore = endedBefore;
+		this.limit = limit;
+	}
+
+	@Override
+	public List<String> execute(CommandContext commandContext) {
+		String sql = "select P.ID_ from " + this.tablePrefix + "ACT_HI_PROCINST P"
+				+ " where P.END_TIME_ < ? and P.SUPER_PROCESS_INSTANCE_ID_ is null order by P.END_TIME_, P.ID_";
+		Connection connection = CommandContextUtil.getDbSqlSession(commandContext).getSqlSession().getConnection();
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setTimestamp(1, new Timestamp(this.endedBefore.getTime()));
+			statement.setMaxRows(this.limit);
+			List<String> ids = new ArrayList<>();
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					ids.add(resultSet.getString(1));
+				}
+			}
+			return ids;
+		} catch (SQLException e) {
+			throw new FlowableException("Could not select process instances to archive", e);
+		}
+	}
+
+}
@@ -0,0 +1,182 @@
+package com.hercules.playground.flowable.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+
+import com.hercules.playground.flowable.archive.Segment.LongColumn;
+import com.hercules.playground.flowable.archive.Segment.StringColumn;
+
+/**
+ * Moves the history of ended process instances out of the database into compressed columnar segment files, and scans them
+ * <br>
+ * Instances that ended before a given time are archived in batches, each batch one segment written and its rows deleted in
+ * one transaction, see ArchiveBatchCmd. Segments are never changed once written, every run adds new ones to the directory.
+ * <br>
+ * The scans map the segments into memory and decode only the columns they aggregate. A STRING column comes back as its dictionary
+ * and a code per row, counting per process definition or grouping durations per activity works on the codes and looks the
+ * strings up once per segment. Mapped segments are kept for the next scan, new ones are picked up as they appear.
+ */
+public class HistoryArchive {
+
+	private static final String SUFFIX = ".segment";
+
+	private final ManagementService managementService;
+	private final String tablePrefix;
+	private final Path directory;
+	private final int batchSize;
+	private final Map<Path, Segment> segments = new ConcurrentHashMap<>();
+
+	public HistoryArchive(ProcessEngine processEngine, Path directory) {
+		this(processEngine, directory, 500);
+	}
+
+	public HistoryArchive(ProcessEngine processEngine, Path directory, int batchSize) {
+		this.managementService = processEngine.getManagementService();
+		this.tablePrefix = processEngine.getProcessEngineConfiguration().getDatabaseTablePrefix();
+		this.directory = directory;
+		this.batchSize = batchSize;
+		try {
+			Files.createDirectories(directory);
+		} catch (IOException e) {
+			throw new FlowableException("Could not create " + directory, e);
+		}
+	}
+
+	/**
+	 * Archives every process instance that ended before the time, with the sub process instances it started
+	 *
+	 * @return the process instances archived
+	 */
+	public synchronized int archiveEndedBefore(Date endedBefore) {
+		int archived = 0;
+		List<String> batch;
+		while (!(batch = this.managementService.executeCommand(
+				new FindArchivableInstancesCmd(this.tablePrefix, endedBefore, this.batchSize))).isEmpty()) {
+			// the first instance of a batch is archived once, its segment name is taken by no other
+			Path segment = this.directory
+					.resolve(String.format("history-%013d-%s%s", System.currentTimeMillis(), batch.get(0), SUFFIX));
+			archived += this.managementService.executeCommand(new ArchiveBatchCmd(this.tablePrefix, batch, segment));
+		}
+		return archived;
+	}
+
+	/**
+	 * Process definition id -> archived process instances
+	 */
+	public Map<String, Long> countInstancesPerProcessDefinition() {
+		Map<String, Long> counts = new HashMap<>();
+		for (Segment segment : segments()) {
+			StringColumn definitions = segment.strings(ArchiveTable.PROCESS_INSTANCES, "PROC_DEF_ID_");
+			long[] perCode = new long[definitions.dictionary.length];
+			for (int code : definitions.codes) {
+				perCode[code]++;
+			}
+			for (int code = 0; code < perCode.length; code++) {
+				counts.merge(definitions.dictionary[code], perCode[code], Long::sum);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Activity id -> durations in milliseconds of the archived activity instances that ended
+	 */
+	public Map<String, LongSummaryStatistics> durationsPerActivity() {
+		return durationsPerActivity(null);
+	}
+
+	/**
+	 * Activity id -> durations in milliseconds of the archived activity instances of the process definition that ended,
+	 * of every process definition when it is null
+	 */
+	public Map<String, LongSummaryStatistics> durationsPerActivity(String processDefinitionId) {
+		Map<String, LongSummaryStatistics> durations = new HashMap<>();
+		for (Segment segment : segments()) {
+			int definition = -1;
+			int[] definitionCodes = null;
+			if (processDefinitionId != null) {
+				StringColumn definitions = segment.strings(ArchiveTable.ACTIVITY_INSTANCES, "PROC_DEF_ID_");
+				definition = Arrays.asList(definitions.dictionary).indexOf(processDefinitionId);
+				if (definition < 0) {
+					continue;
+				}
+				definitionCodes = definitions.codes;
+			}
+			StringColumn activities = segment.strings(ArchiveTable.ACTIVITY_INSTANCES, "ACT_ID_");
+			LongColumn duration = segment.longs(ArchiveTable.ACTIVITY_INSTANCES, "DURATION_");
+			LongSummaryStatistics[] perCode = new LongSummaryStatistics[activities.dictionary.length];
+			for (int row = 0; row < activities.codes.length; row++) {
+				if (duration.isNull(row) || (definitionCodes != null && definitionCodes[row] != definition)) {
+					continue;
+				}
+				int code = activities.codes[row];
+				if (perCode[code] == null) {
+					perCode[code] = new LongSummaryStatistics();
+				}
+				perCode[code].accept(duration.values[row]);
+			}
+			for (int code = 0; code < perCode.length; code++) {
+				if (perCode[code] != null) {
+					durations.computeIfAbsent(activities.dictionary[code], key -> new LongSummaryStatistics())
+							.combine(perCode[code]);
+				}
+			}
+		}
+		return durations;
+	}
+
+	/**
+	 * Process instances in the segments, read from their directories without decoding a column
+	 */
+	public long getArchivedInstances() {
+		return segments().stream().mapToLong(segment -> segment.rows(ArchiveTable.PROCESS_INSTANCES)).sum();
+	}
+
+	/**
+	 * Rows of the table in the segments
+	 */
+	public long getArchivedRows(ArchiveTable table) {
+		return segments().stream().mapToLong(segment -> segment.rows(table)).sum();
+	}
+
+	public int getSegmentCount() {
+		return segments().size();
+	}
+
+	public long getSizeOnDisk() {
+		return segments().stream().mapToLong(Segment::size).sum();
+	}
+
+	private List<Segment> segments() {
+		try (Stream<Path> files = Files.list(this.directory)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted()
+					.map(file -> this.segments.computeIfAbsent(file, HistoryArchive::open)).collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new FlowableException("Could not list the segments in " + this.directory, e);
+		}
+	}
+
+	private static Segment open(Path file) {
+		try {
+			return Segment.open(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not map " + file, e);
+		}
+	}
+
+}
@@ -0,0 +1,222 @@
+package com.hercules.playground.flowable.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.flowable.common.engine.api.FlowableException;
+
+/**
+ * A segment file mapped into memory, its columns inflated and decoded one at a time as a scan asks for them
+ * <br>
+ * Opening a segment reads the directory of its tables and columns, the column bytes are only touched by the scans
+ * that need them, a scan of the activity durations never pages in the names, assignees or variables.
+ */
+final class Segment {
+
+	private final Path file;
+	private final MappedByteBuffer buffer;
+	private final Map<ArchiveTable, Integer> rows = new EnumMap<>(ArchiveTable.class);
+	private final Map<ArchiveTable, Map<String, ColumnRef>> columns = new EnumMap<>(ArchiveTable.class);
+
+	private Segment(Path file, MappedByteBuffer buffer) {
+		this.file = file;
+		this.buffer = buffer;
+	}
+
+	static Segment open(Path file) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// the mapping outlives the channel
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		Segment segment = new Segment(file, buffer);
+		segment.readDirectory();
+		return segment;
+	}
+
+	Path getFile() {
+		return this.file;
+	}
+
+	long size() {
+		return this.buffer.capacity();
+	}
+
+	int rows(ArchiveTable table) {
+		return this.rows.getOrDefault(table, 0);
+	}
+
+	StringColumn strings(ArchiveTable table, String column) {
+		ByteReader reader = inflate(table, column);
+		String[] dictionary = new String[(int) reader.readVarint()];
+		for (int i = 0; i < dictionary.length; i++) {
+			int length = (int) reader.readVarint();
+			dictionary[i] = new String(reader.bytes, reader.position, length, StandardCharsets.UTF_8);
+			reader.position += length;
+		}
+		int[] codes = new int[rows(table)];
+		for (int row = 0; row < codes.length; row++) {
+			codes[row] = (int) reader.readVarint() - 1;
+		}
+		return new StringColumn(dictionary, codes);
+	}
+
+	LongColumn longs(ArchiveTable table, String column) {
+		ByteReader reader = inflate(table, column);
+		int rowCount = rows(table);
+		byte[] nulls = new byte[(rowCount + 7) / 8];
+		System.arraycopy(reader.bytes, 0, nulls, 0, nulls.length);
+		reader.position = nulls.length;
+		long[] values = new long[rowCount];
+		long previous = 0;
+		for (int row = 0; row < rowCount; row++) {
+			if ((nulls[row >>> 3] & (1 << (row & 7))) == 0) {
+				long zigzag = reader.readVarint();
+				previous += (zigzag >>> 1) ^ -(zigzag & 1);
+				values[row] = previous;
+			}
+		}
+		return new LongColumn(values, nulls);
+	}
+
+	byte[][] bytes(ArchiveTable table, String column) {
+		ByteReader reader = inflate(table, column);
+		byte[][] values = new byte[rows(table)][];
+		for (int row = 0; row < values.length; row++) {
+			int length = (int) reader.readVarint() - 1;
+			if (length >= 0) {
+				values[row] = new byte[length];
+				System.arraycopy(reader.bytes, reader.position, values[row], 0, length);
+				reader.position += length;
+			}
+		}
+		return values;
+	}
+
+	private void readDirectory() {
+		ByteBuffer directory = this.buffer.duplicate();
+		if (directory.getInt() != SegmentWriter.MAGIC) {
+			throw new FlowableException(this.file + " is not a history segment");
+		}
+		int tables = directory.getInt();
+		for (int t = 0; t < tables; t++) {
+			ArchiveTable table = ArchiveTable.valueOf(readName(directory));
+			this.rows.put(table, directory.getInt());
+			int columnCount = directory.getInt();
+			Map<String, ColumnRef> refs = new HashMap<>();
+			for (int c = 0; c < columnCount; c++) {
+				String name = readName(directory);
+				directory.get(); // the type, the table says how to read the column
+				int rawLength = directory.getInt();
+				int deflatedLength = directory.getInt();
+				refs.put(name, new ColumnRef(directory.position(), rawLength, deflatedLength));
+				directory.position(directory.position() + deflatedLength);
+			}
+			this.columns.put(table, refs);
+		}
+	}
+
+	private ByteReader inflate(ArchiveTable table, String column) {
+		ColumnRef ref = this.columns.getOrDefault(table, Map.of()).get(column);
+		if (ref == null) {
+			throw new FlowableException(this.file + " has no column " + table + "." + column);
+		}
+		ByteBuffer deflated = this.buffer.duplicate();
+		deflated.position(ref.offset).limit(ref.offset + ref.deflatedLength);
+		byte[] raw = new byte[ref.rawLength];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(deflated);
+			int length = 0;
+			while (length < raw.length && !inflater.finished()) {
+				length += inflater.inflate(raw, length, raw.length - length);
+			}
+			return new ByteReader(raw);
+		} catch (DataFormatException e) {
+			throw new FlowableException("Column " + table + "." + column + " of " + this.file + " is corrupt", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static String readName(ByteBuffer buffer) {
+		// DataOutputStream.writeUTF, the names are ascii
+		byte[] name = new byte[buffer.getShort() & 0xffff];
+		buffer.get(name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	private static final class ColumnRef {
+		final int offset;
+		final int rawLength;
+		final int deflatedLength;
+
+		ColumnRef(int offset, int rawLength, int deflatedLength) {
+			this.offset = offset;
+			this.rawLength = rawLength;
+			this.deflatedLength = deflatedLength;
+		}
+	}
+
+	private static final class ByteReader {
+		final byte[] bytes;
+		int position;
+
+		ByteReader(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		long readVarint() {
+			long value = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = this.bytes[this.position++];
+				value |= (long) (b & 0x7f) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A dictionary coded column, -1 for null
+	 */
+	static final class StringColumn {
+		final String[] dictionary;
+		final int[] codes;
+
+		StringColumn(String[] dictionary, int[] codes) {
+			this.dictionary = dictionary;
+			this.codes = codes;
+		}
+
+		String get(int row) {
+			return this.codes[row] < 0 ? null : this.dictionary[this.codes[row]];
+		}
+	}
+
+	static final class LongColumn {
+		final long[] values;
+		private final byte[] nulls;
+
+		LongColumn(long[] values, byte[] nulls) {
+			this.values = values;
+			this.nulls = nulls;
+		}
+
+		boolean isNull(int row) {
+			return (this.nulls[row >>> 3] & (1 << (row & 7))) != 0;
+		}
+	}
+
+}
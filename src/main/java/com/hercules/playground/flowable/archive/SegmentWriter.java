@@ -0,0 +1,257 @@
+package com.hercules.playground.flowable.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import com.hercules.playground.flowable.archive.ArchiveTable.Column;
+
+/**
+ * Collects the rows of a batch column by column and writes them as one segment file
+ * <br>
+ * A segment starts with its magic and the number of tables, each table with its name, rows and columns,
+ * each column with its name, type, length before and after deflating and the deflated bytes.
+ * Before deflating a STRING column is a dictionary of its distinct values followed by a varint per row, 0 for null and
+ * the dictionary position plus one otherwise. A LONG or TIME column is a bitmap of its nulls followed by the zigzag varint
+ * deltas of the values, a BYTES column a varint length plus one per row, 0 for null, followed by the bytes.
+ * Activity ids, types and definitions repeat on every row and shrink to a byte each, start times of rows written next to
+ * each other to a byte or two, before the deflater sees them.
+ */
+final class SegmentWriter {
+
+	static final int MAGIC = 0x46484131; // FHA1
+
+	private final Map<ArchiveTable, List<Encoder>> tables = new EnumMap<>(ArchiveTable.class);
+	private final Map<ArchiveTable, Integer> rows = new EnumMap<>(ArchiveTable.class);
+
+	/**
+	 * Appends the rows of the result set, its columns in the order of the table's
+	 */
+	void add(ArchiveTable table, ResultSet resultSet) throws SQLException {
+		List<Encoder> encoders = this.tables.computeIfAbsent(table, key -> {
+			List<Encoder> created = new ArrayList<>();
+			for (Column column : key.getColumns()) {
+				created.add(Encoder.of(column));
+			}
+			return created;
+		});
+		int count = this.rows.getOrDefault(table, 0);
+		while (resultSet.next()) {
+			for (int i = 0; i < encoders.size(); i++) {
+				encoders.get(i).add(resultSet, i + 1);
+			}
+			count++;
+		}
+		this.rows.put(table, count);
+	}
+
+	int rows(ArchiveTable table) {
+		return this.rows.getOrDefault(table, 0);
+	}
+
+	/**
+	 * Writes the segment and forces it to the disk
+	 *
+	 * @return the bytes written
+	 */
+	long write(Path file) throws IOException {
+		try (FileOutputStream stream = new FileOutputStream(file.toFile());
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024))) {
+			out.writeInt(MAGIC);
+			out.writeInt(this.tables.size());
+			Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+			try {
+				for (Map.Entry<ArchiveTable, List<Encoder>> table : this.tables.entrySet()) {
+					out.writeUTF(table.getKey().name());
+					out.writeInt(this.rows.get(table.getKey()));
+					out.writeInt(table.getValue().size());
+					for (Encoder encoder : table.getValue()) {
+						byte[] raw = encoder.finish(this.rows.get(table.getKey()));
+						byte[] deflated = deflate(deflater, raw);
+						out.writeUTF(encoder.column.getName());
+						out.writeByte(encoder.column.getType().ordinal());
+						out.writeInt(raw.length);
+						out.writeInt(deflated.length);
+						out.write(deflated);
+					}
+				}
+			} finally {
+				deflater.end();
+			}
+			out.flush();
+			stream.getFD().sync();
+			return out.size();
+		}
+	}
+
+	private static byte[] deflate(Deflater deflater, byte[] raw) {
+		deflater.reset();
+		deflater.setInput(raw);
+		deflater.finish();
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+		byte[] chunk = new byte[8192];
+		while (!deflater.finished()) {
+			deflated.write(chunk, 0, deflater.deflate(chunk));
+		}
+		return deflated.toByteArray();
+	}
+
+	/**
+	 * The bytes of one column before deflating
+	 */
+	private abstract static class Encoder {
+
+		final Column column;
+		final VarintBuffer values = new VarintBuffer();
+
+		Encoder(Column column) {
+			this.column = column;
+		}
+
+		static Encoder of(Column column) {
+			switch (column.getType()) {
+			case STRING:
+				return new StringEncoder(column);
+			case BYTES:
+				return new BytesEncoder(column);
+			default:
+				return new LongEncoder(column);
+			}
+		}
+
+		abstract void add(ResultSet resultSet, int index) throws SQLException;
+
+		abstract byte[] finish(int rows);
+	}
+
+	private static final class StringEncoder extends Encoder {
+
+		final Map<String, Integer> dictionary = new HashMap<>();
+		final VarintBuffer entries = new VarintBuffer();
+
+		StringEncoder(Column column) {
+			super(column);
+		}
+
+		@Override
+		void add(ResultSet resultSet, int index) throws SQLException {
+			String value = resultSet.getString(index);
+			if (value == null) {
+				this.values.writeVarint(0);
+				return;
+			}
+			Integer code = this.dictionary.get(value);
+			if (code == null) {
+				code = this.dictionary.size();
+				this.dictionary.put(value, code);
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				this.entries.writeVarint(bytes.length);
+				this.entries.write(bytes, 0, bytes.length);
+			}
+			this.values.writeVarint(code + 1);
+		}
+
+		@Override
+		byte[] finish(int rows) {
+			VarintBuffer raw = new VarintBuffer();
+			raw.writeVarint(this.dictionary.size());
+			this.entries.writeTo(raw);
+			this.values.writeTo(raw);
+			return raw.toByteArray();
+		}
+	}
+
+	private static final class LongEncoder extends Encoder {
+
+		final List<Integer> nulls = new ArrayList<>();
+		int row;
+		long previous;
+
+		LongEncoder(Column column) {
+			super(column);
+		}
+
+		@Override
+		void add(ResultSet resultSet, int index) throws SQLException {
+			long value;
+			if (this.column.getType() == ArchiveTable.ColumnType.TIME) {
+				Timestamp timestamp = resultSet.getTimestamp(index);
+				value = timestamp != null ? timestamp.getTime() : 0;
+			} else {
+				value = resultSet.getLong(index);
+			}
+			if (resultSet.wasNull()) {
+				this.nulls.add(this.row);
+			} else {
+				long delta = value - this.previous;
+				this.values.writeVarint((delta << 1) ^ (delta >> 63));
+				this.previous = value;
+			}
+			this.row++;
+		}
+
+		@Override
+		byte[] finish(int rows) {
+			byte[] bitmap = new byte[(rows + 7) / 8];
+			for (int row : this.nulls) {
+				bitmap[row >>> 3] |= 1 << (row & 7);
+			}
+			VarintBuffer raw = new VarintBuffer();
+			raw.write(bitmap, 0, bitmap.length);
+			this.values.writeTo(raw);
+			return raw.toByteArray();
+		}
+	}
+
+	private static final class BytesEncoder extends Encoder {
+
+		BytesEncoder(Column column) {
+			super(column);
+		}
+
+		@Override
+		void add(ResultSet resultSet, int index) throws SQLException {
+			byte[] value = resultSet.getBytes(index);
+			if (value == null) {
+				this.values.writeVarint(0);
+			} else {
+				this.values.writeVarint(value.length + 1L);
+				this.values.write(value, 0, value.length);
+			}
+		}
+
+		@Override
+		byte[] finish(int rows) {
+			return this.values.toByteArray();
+		}
+	}
+
+	private static final class VarintBuffer extends ByteArrayOutputStream {
+
+		void writeVarint(long value) {
+			while ((value & ~0x7fL) != 0) {
+				write((int) ((value & 0x7f) | 0x80));
+				value >>>= 7;
+			}
+			write((int) value);
+		}
+
+		void writeTo(VarintBuffer other) {
+			other.write(this.buf, 0, this.count);
+		}
+	}
+
+}
@@ -0,0 +1,208 @@
+package com.hercules.playground.flowable.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.impl.cmd.CompleteTaskCmd;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Groups setVariable, setVariableLocal and complete calls from many threads into shared transactions
+ * <br>
+ * A call blocks its thread until it has committed, like the runtime and task service do. The first call to arrive opens
+ * a window of windowMicros, every call that arrives before it closes, or until maxBatchSize calls are in, goes into the
+ * same transaction, run by a single batching thread through a CommandBatch. Under load a thread waits for the window and
+ * a shared commit instead of a commit of its own, a lone caller pays the window on top of its call.
+ * <br>
+ * A batch that fails is rolled back and its calls are run again one by one, so a call only fails for its own reasons
+ * and not because another thread's call in the same batch did.
+ */
+public class AutoBatcher implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AutoBatcher.class);
+
+	// queued by close, the batching thread stops once it reaches it
+	private static final Call CLOSE = new Call(null);
+
+	private final ManagementService managementService;
+	private final long windowNanos;
+	private final int maxBatchSize;
+	private final LinkedBlockingQueue<Call> calls = new LinkedBlockingQueue<>();
+	private final Thread batcher;
+	private volatile boolean closed;
+
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder batched = new LongAdder();
+	private final LongAdder retried = new LongAdder();
+
+	public AutoBatcher(ProcessEngine processEngine) {
+		this(processEngine, 200, 64);
+	}
+
+	/**
+	 * @param windowMicros how long the first call of a batch waits for others to join it
+	 * @param maxBatchSize the most calls in one transaction, a full batch does not wait for the window to close
+	 */
+	public AutoBatcher(ProcessEngine processEngine, long windowMicros, int maxBatchSize) {
+		this.managementService = processEngine.getManagementService();
+		this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+		this.maxBatchSize = maxBatchSize;
+		this.batcher = new Thread(this::batchLoop, "command-batcher");
+		this.batcher.setDaemon(true);
+		this.batcher.start();
+	}
+
+	public void setVariable(String executionId, String variableName, Object value) {
+		call(CommandBatch.setVariableCmd(executionId, variableName, value, false));
+	}
+
+	public void setVariableLocal(String executionId, String variableName, Object value) {
+		call(CommandBatch.setVariableCmd(executionId, variableName, value, true));
+	}
+
+	public void complete(String taskId) {
+		call(new CompleteTaskCmd(taskId, null));
+	}
+
+	public void complete(String taskId, Map<String, Object> variables) {
+		call(new CompleteTaskCmd(taskId, variables));
+	}
+
+	/**
+	 * Batches run, one run again call by call counts once
+	 */
+	public long getBatches() {
+		return this.batches.sum();
+	}
+
+	/**
+	 * Calls taken into a batch
+	 */
+	public long getBatched() {
+		return this.batched.sum();
+	}
+
+	/**
+	 * Calls run again on their own after their batch failed
+	 */
+	public long getRetried() {
+		return this.retried.sum();
+	}
+
+	/**
+	 * Stops the batching thread once the calls already taken are run, calls still queued fail
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.calls.add(CLOSE);
+		try {
+			this.batcher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		Call call;
+		while ((call = this.calls.poll()) != null) {
+			call.done.completeExceptionally(new FlowableException("The AutoBatcher is closed"));
+		}
+	}
+
+	private void call(Command<?> command) {
+		if (this.closed) {
+			throw new FlowableException("The AutoBatcher is closed");
+		}
+		Call call = new Call(command);
+		this.calls.add(call);
+		// closed while it was added, after the queue was drained
+		if (this.closed && this.calls.remove(call)) {
+			throw new FlowableException("The AutoBatcher is closed");
+		}
+		try {
+			call.done.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private void batchLoop() {
+		List<Call> batch = new ArrayList<>(this.maxBatchSize);
+		boolean stopping = false;
+		while (!stopping) {
+			try {
+				Call call = this.calls.take();
+				long windowEnd = System.nanoTime() + this.windowNanos;
+				while (call != null && call != CLOSE) {
+					batch.add(call);
+					if (batch.size() == this.maxBatchSize) {
+						break;
+					}
+					call = this.calls.poll(windowEnd - System.nanoTime(), TimeUnit.NANOSECONDS);
+				}
+				stopping = call == CLOSE;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				stopping = true;
+			}
+			if (!batch.isEmpty()) {
+				run(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	private void run(List<Call> batch) {
+		List<Command<?>> commands = new ArrayList<>(batch.size());
+		for (Call call : batch) {
+			commands.add(call.command);
+		}
+		this.batches.increment();
+		this.batched.add(batch.size());
+		try {
+			this.managementService.executeCommand(new RunBatchCmd(commands));
+			batch.forEach((call) -> call.done.complete(null));
+		} catch (Throwable batchFailure) {
+			// an Error as well, or it would end the batching thread and leave every caller waiting on its call for good
+			if (batch.size() == 1) {
+				batch.get(0).done.completeExceptionally(batchFailure);
+				return;
+			}
+			LOGGER.debug("A batch of {} calls failed, running them one by one", batch.size(), batchFailure);
+			this.retried.add(batch.size());
+			for (Call call : batch) {
+				try {
+					this.managementService.executeCommand(new RunBatchCmd(List.of(call.command)));
+					call.done.complete(null);
+				} catch (Throwable e) {
+					call.done.completeExceptionally(e);
+				}
+			}
+		}
+	}
+
+	private static class Call {
+		final Command<?> command;
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+
+		Call(Command<?> command) {
+			this.command = command;
+		}
+	}
+
+}
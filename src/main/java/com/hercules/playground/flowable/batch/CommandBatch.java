@@ -0,0 +1,87 @@
+package com.hercules.playground.flowable.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.impl.cmd.CompleteTaskCmd;
+import org.flowable.engine.impl.cmd.SetExecutionVariablesCmd;
+
+/**
+ * Collects setVariable, setVariableLocal and complete calls and runs them as one command, one transaction and one flush
+ * <br>
+ * GatewayTests.whatHappensToProcessVariablesWhenTokensMerge sets eight variables through runtimeService.setVariable
+ * and completes four tasks, twelve commands that each open a transaction, flush and commit. Written through a batch,
+ * the calls before Step 1 is completed and the ones for the three branches are two.
+ * <br>
+ * The calls run in the order they were made, with the engine's own commands, and each one sees what the ones before it did:
+ * a variable set after a complete in the same batch can go to an execution the complete created.
+ * A call that fails rolls the whole batch back. Nothing reaches the engine before flush, or close,
+ * and a batch is meant for one thread, see AutoBatcher for calls coming from many.
+ */
+public class CommandBatch implements AutoCloseable {
+
+	private final ManagementService managementService;
+	private final List<Command<?>> commands = new ArrayList<>();
+
+	public CommandBatch(ProcessEngine processEngine) {
+		this.managementService = processEngine.getManagementService();
+	}
+
+	public CommandBatch setVariable(String executionId, String variableName, Object value) {
+		return add(setVariableCmd(executionId, variableName, value, false));
+	}
+
+	public CommandBatch setVariableLocal(String executionId, String variableName, Object value) {
+		return add(setVariableCmd(executionId, variableName, value, true));
+	}
+
+	public CommandBatch complete(String taskId) {
+		return add(new CompleteTaskCmd(taskId, null));
+	}
+
+	public CommandBatch complete(String taskId, Map<String, Object> variables) {
+		return add(new CompleteTaskCmd(taskId, variables));
+	}
+
+	/**
+	 * Calls collected since the last flush
+	 */
+	public int size() {
+		return this.commands.size();
+	}
+
+	/**
+	 * Runs the collected calls in one transaction, the batch is empty afterwards whether they committed or not
+	 *
+	 * @return the number of calls run
+	 */
+	public int flush() {
+		if (this.commands.isEmpty()) {
+			return 0;
+		}
+		List<Command<?>> batch = new ArrayList<>(this.commands);
+		this.commands.clear();
+		return this.managementService.executeCommand(new RunBatchCmd(batch));
+	}
+
+	@Override
+	public void close() {
+		flush();
+	}
+
+	private CommandBatch add(Command<?> command) {
+		this.commands.add(command);
+		return this;
+	}
+
+	static Command<?> setVariableCmd(String executionId, String variableName, Object value, boolean local) {
+		// a null value is a valid variable, Map.of does not take one
+		return new SetExecutionVariablesCmd(executionId, Collections.singletonMap(variableName, value), local);
+	}
+
+}
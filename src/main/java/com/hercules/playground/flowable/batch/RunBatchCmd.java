@@ -0,0 +1,34 @@
+package com.hercules.playground.flowable.batch;
+
+import java.util.List;
+
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.common.engine.impl.interceptor.CommandExecutor;
+import org.flowable.engine.impl.util.CommandContextUtil;
+
+/**
+ * Runs the commands one after the other in this command's context, one transaction and one flush for all of them
+ * <br>
+ * Each command goes through the command executor, which reuses the context and runs the operations it plans
+ * before it returns, so a command sees the process where the one before it left it.
+ */
+class RunBatchCmd implements Command<Integer> {
+
+	private final List<Command<?>> commands;
+
+	RunBatchCmd(List<Command<?>> commands) {
+		this.commands = commands;
+	}
+
+	@Override
+	public Integer execute(CommandContext commandContext) {
+		CommandExecutor commandExecutor = CommandContextUtil.getProcessEngineConfiguration(commandContext)
+				.getCommandExecutor();
+		for (Command<?> command : this.commands) {
+			commandExecutor.execute(command);
+		}
+		return this.commands.size();
+	}
+
+}
@@ -0,0 +1,256 @@
+package com.hercules.playground.flowable.completion;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.common.engine.api.FlowableOptimisticLockingException;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.TaskService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hercules.playground.flowable.metrics.LatencyHistogram;
+
+/**
+ * Completes user tasks concurrently, in place of list().parallelStream().forEach(task -> taskService.complete(task.getId()))
+ * <br>
+ * The notes complete tasks on the common ForkJoinPool, which is sized for cpu work, not for threads blocked on jdbc,
+ * and a FlowableOptimisticLockingException from two branches arriving at a join at once simply fails the stream.
+ * Here completions run on their own executor: a bounded pool of platform threads, or a virtual thread per completion
+ * when the jvm has them (21 and later), with at most concurrency completions inside the engine at any time.
+ * <br>
+ * At most maxInFlight completions are accepted but not finished, complete blocks the caller beyond that.
+ * A completion that loses an optimistic lock, or that the database picked as a deadlock or lock timeout victim,
+ * rolled back as a whole and is retried after a jittered, doubling backoff, so branches that collided at a join do not
+ * collide again in lockstep. H2 locks whole tables, so on the notes' database the deadlocks are the common case.
+ */
+public class TaskCompletionDriver implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TaskCompletionDriver.class);
+
+	private static final String LOCK_TIMEOUT_SQL_STATE = "HYT00";
+
+	public enum ExecutionModel {
+		PLATFORM, VIRTUAL
+	}
+
+	private final TaskService taskService;
+	private final ExecutionModel executionModel;
+	private final ExecutorService executor;
+	private final Semaphore inFlight;
+	private final Semaphore inEngine;
+	private final int maxAttempts;
+	private final long backoffMillis;
+	private volatile boolean closed;
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+
+	public TaskCompletionDriver(ProcessEngine processEngine) {
+		this(processEngine, ExecutionModel.PLATFORM, Runtime.getRuntime().availableProcessors(), 1024, 5, 5);
+	}
+
+	/**
+	 * @param executionModel VIRTUAL falls back to PLATFORM on a jvm without virtual threads
+	 * @param concurrency the most completions running inside the engine at once, keep it at or below the connection pool size
+	 * @param maxInFlight the most completions accepted and not yet finished before complete blocks
+	 * @param maxAttempts how often a completion is tried when it keeps losing optimistic or database locks
+	 * @param backoffMillis the backoff before the first retry, doubled for every further one
+	 */
+	public TaskCompletionDriver(ProcessEngine processEngine, ExecutionModel executionModel, int concurrency,
+			int maxInFlight, int maxAttempts, long backoffMillis) {
+		this.taskService = processEngine.getTaskService();
+		this.inFlight = new Semaphore(maxInFlight);
+		this.inEngine = new Semaphore(concurrency);
+		this.maxAttempts = maxAttempts;
+		this.backoffMillis = backoffMillis;
+
+		ExecutorService virtualThreads = executionModel == ExecutionModel.VIRTUAL ? virtualThreadPerTaskExecutor() : null;
+		if (virtualThreads != null) {
+			this.executionModel = ExecutionModel.VIRTUAL;
+			this.executor = virtualThreads;
+		} else {
+			if (executionModel == ExecutionModel.VIRTUAL) {
+				LOGGER.info("Virtual threads are not available on java {}, completing tasks on {} platform threads",
+						System.getProperty("java.version"), concurrency);
+			}
+			this.executionModel = ExecutionModel.PLATFORM;
+			this.executor = Executors.newFixedThreadPool(concurrency);
+		}
+	}
+
+	public CompletableFuture<Void> complete(String taskId) {
+		return complete(taskId, null);
+	}
+
+	/**
+	 * Queue the completion of a task, blocking while maxInFlight completions are unfinished
+	 * <br>
+	 * The future fails with the exception of the last attempt when the task could not be completed
+	 */
+	public CompletableFuture<Void> complete(String taskId, Map<String, Object> variables) {
+		if (this.closed) {
+			throw new IllegalStateException("Task completion driver is closed, cannot complete task " + taskId);
+		}
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		try {
+			this.inFlight.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			done.completeExceptionally(e);
+			return done;
+		}
+		try {
+			this.executor.execute(() -> run(taskId, variables, done));
+		} catch (RejectedExecutionException e) {
+			this.inFlight.release();
+			done.completeExceptionally(e);
+		}
+		return done;
+	}
+
+	/**
+	 * Queue the completion of every task, the future completes once all of them finished
+	 */
+	public CompletableFuture<Void> completeAll(Collection<String> taskIds) {
+		List<CompletableFuture<Void>> completions = new ArrayList<>(taskIds.size());
+		for (String taskId : taskIds) {
+			completions.add(complete(taskId));
+		}
+		return CompletableFuture.allOf(completions.toArray(new CompletableFuture[0]));
+	}
+
+	/**
+	 * The execution model the completions actually run on
+	 */
+	public ExecutionModel getExecutionModel() {
+		return this.executionModel;
+	}
+
+	/**
+	 * Time from a completion starting to run until it finished, retries and backoff included
+	 */
+	public LatencyHistogram getLatency() {
+		return this.latency;
+	}
+
+	public long getCompleted() {
+		return this.completed.sum();
+	}
+
+	public long getFailed() {
+		return this.failed.sum();
+	}
+
+	/**
+	 * Attempts repeated after losing an optimistic lock or a database lock
+	 */
+	public long getRetries() {
+		return this.retries.sum();
+	}
+
+	/**
+	 * Finishes the completions already accepted and stops the executor
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.executor.shutdown();
+		try {
+			this.executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run(String taskId, Map<String, Object> variables, CompletableFuture<Void> done) {
+		long start = System.nanoTime();
+		Throwable failure = null;
+		try {
+			this.inEngine.acquire();
+			try {
+				completeWithRetry(taskId, variables);
+			} finally {
+				this.inEngine.release();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failure = e;
+		} catch (Throwable e) {
+			// an Error as well, or its place in flight would never be given back and its future never completed
+			failure = e;
+		}
+		// counted before the future completes, so whoever waits on it sees the metrics of its own completion
+		this.latency.record(System.nanoTime() - start);
+		this.inFlight.release();
+		if (failure == null) {
+			this.completed.increment();
+			done.complete(null);
+		} else {
+			this.failed.increment();
+			done.completeExceptionally(failure);
+		}
+	}
+
+	private void completeWithRetry(String taskId, Map<String, Object> variables) throws InterruptedException {
+		for (int attempt = 1;; attempt++) {
+			try {
+				this.taskService.complete(taskId, variables);
+				return;
+			} catch (RuntimeException e) {
+				if (attempt >= this.maxAttempts || !isTransient(e)) {
+					throw e;
+				}
+				this.retries.increment();
+				// equal jitter: half the doubled backoff for sure, the other half at random
+				long ceiling = this.backoffMillis << Math.min(attempt - 1, 10);
+				Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+			}
+		}
+	}
+
+	/**
+	 * A lost optimistic lock, or a statement the database rolled back: sql state class 40 or a lock timeout
+	 */
+	static boolean isTransient(Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof FlowableOptimisticLockingException) {
+				return true;
+			}
+			// a wrapping SQLException of another state can still have the deadlock further down
+			if (cause instanceof SQLException) {
+				String sqlState = ((SQLException) cause).getSQLState();
+				if (sqlState != null && (sqlState.startsWith("40") || LOCK_TIMEOUT_SQL_STATE.equals(sqlState))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Executors.newVirtualThreadPerTaskExecutor when this jvm has it, looked up reflectively as the build targets java 11
+	 */
+	private static ExecutorService virtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// missing before java 19, and unsupported without --enable-preview on 19 and 20
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.hercules.playground.flowable.conditional;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.flowable.bpmn.model.ConditionalEventDefinition;
+import org.flowable.bpmn.model.Event;
+import org.flowable.bpmn.model.EventDefinition;
+import org.flowable.bpmn.model.Process;
+import org.flowable.common.engine.impl.de.odysseus.el.tree.IdentifierNode;
+import org.flowable.common.engine.impl.de.odysseus.el.tree.Tree;
+import org.flowable.common.engine.impl.de.odysseus.el.tree.TreeBuilderException;
+import org.flowable.common.engine.impl.de.odysseus.el.tree.impl.Builder;
+
+/**
+ * The variable names the conditional events of one process definition read
+ * <br>
+ * ${condition == true} reads condition. An expression that calls a function or goes through execution or variableContainer
+ * could read anything, for those every variable counts.
+ */
+class ConditionVariables {
+
+	static final ConditionVariables NONE = new ConditionVariables(false, Collections.emptySet());
+
+	private static final Set<String> SCOPE_IDENTIFIERS = Set.of("execution", "variableContainer", "task");
+
+	private final boolean anyVariable;
+	private final Set<String> variableNames;
+
+	private ConditionVariables(boolean anyVariable, Set<String> variableNames) {
+		this.anyVariable = anyVariable;
+		this.variableNames = variableNames;
+	}
+
+	static ConditionVariables of(Process process) {
+		Builder builder = new Builder();
+		Set<String> variableNames = new HashSet<>();
+		boolean conditionalEvents = false;
+		for (Event event : process.findFlowElementsOfType(Event.class, true)) {
+			for (EventDefinition eventDefinition : event.getEventDefinitions()) {
+				if (!(eventDefinition instanceof ConditionalEventDefinition)) {
+					continue;
+				}
+				conditionalEvents = true;
+				try {
+					Tree tree = builder.build(((ConditionalEventDefinition) eventDefinition).getConditionExpression());
+					if (tree.getFunctionNodes().iterator().hasNext()) {
+						return new ConditionVariables(true, Collections.emptySet());
+					}
+					for (IdentifierNode identifier : tree.getIdentifierNodes()) {
+						if (SCOPE_IDENTIFIERS.contains(identifier.getName())) {
+							return new ConditionVariables(true, Collections.emptySet());
+						}
+						variableNames.add(identifier.getName());
+					}
+				} catch (TreeBuilderException e) {
+					return new ConditionVariables(true, Collections.emptySet());
+				}
+			}
+		}
+		return conditionalEvents ? new ConditionVariables(false, variableNames) : NONE;
+	}
+
+	boolean reads(String variableName) {
+		return this.anyVariable || this.variableNames.contains(variableName);
+	}
+
+}
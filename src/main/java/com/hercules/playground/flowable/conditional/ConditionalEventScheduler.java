@@ -0,0 +1,158 @@
+package com.hercules.playground.flowable.conditional;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.common.engine.impl.context.Context;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.impl.util.ProcessDefinitionUtil;
+import org.flowable.variable.api.event.FlowableVariableEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluates conditional events when a variable they read changes, so nobody has to call runtimeService.evaluateConditionalEvents
+ * <br>
+ * Conditional.boundaryEventTriggered shows a conditional boundary only fires when evaluateConditionalEvents is called
+ * with the process variables. This listener watches variable created and updated events instead, and queues the process instance
+ * once the change is committed, but only when a conditional event of that definition reads the variable.
+ * <br>
+ * Queued instances are evaluated in batches on a background thread, one transaction per batch, without loading any variables up front.
+ * A batch that fails is retried instance by instance so one broken instance does not hold back the rest.
+ */
+public class ConditionalEventScheduler implements FlowableEventListener, AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConditionalEventScheduler.class);
+
+	private final RuntimeService runtimeService;
+	private final ManagementService managementService;
+	private final int batchSize;
+	private final ConcurrentHashMap<String, ConditionVariables> variablesByDefinition = new ConcurrentHashMap<>();
+	private final Set<String> queued = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	private final LongAdder evaluated = new LongAdder();
+
+	ConditionalEventScheduler(ProcessEngine processEngine, int batchSize) {
+		this.runtimeService = processEngine.getRuntimeService();
+		this.managementService = processEngine.getManagementService();
+		this.batchSize = batchSize;
+	}
+
+	public static ConditionalEventScheduler register(ProcessEngine processEngine) {
+		return register(processEngine, 50, 100);
+	}
+
+	/**
+	 * @param intervalMillis how often queued instances are evaluated
+	 * @param batchSize the most process instances evaluated in one transaction
+	 */
+	public static ConditionalEventScheduler register(ProcessEngine processEngine, long intervalMillis, int batchSize) {
+		ConditionalEventScheduler scheduler = new ConditionalEventScheduler(processEngine, batchSize);
+		scheduler.runtimeService.addEventListener(scheduler, FlowableEngineEventType.VARIABLE_CREATED,
+				FlowableEngineEventType.VARIABLE_UPDATED);
+		scheduler.scheduler.scheduleWithFixedDelay(scheduler::flush, intervalMillis, intervalMillis,
+				TimeUnit.MILLISECONDS);
+		return scheduler;
+	}
+
+	/**
+	 * Evaluates everything queued so far on the calling thread
+	 */
+	public void flush() {
+		List<String> batch = new ArrayList<>(this.batchSize);
+		Iterator<String> iterator = this.queued.iterator();
+		while (iterator.hasNext()) {
+			batch.add(iterator.next());
+			iterator.remove();
+			if (batch.size() == this.batchSize) {
+				evaluate(batch);
+				batch = new ArrayList<>(this.batchSize);
+			}
+		}
+		if (!batch.isEmpty()) {
+			evaluate(batch);
+		}
+	}
+
+	/**
+	 * Process instances waiting for their conditional events to be evaluated
+	 */
+	public int getQueued() {
+		return this.queued.size();
+	}
+
+	/**
+	 * Process instances evaluated since the scheduler was registered
+	 */
+	public long getEvaluated() {
+		return this.evaluated.sum();
+	}
+
+	@Override
+	public void close() {
+		this.runtimeService.removeEventListener(this);
+		this.scheduler.shutdownNow();
+	}
+
+	@Override
+	public void onEvent(FlowableEvent event) {
+		FlowableVariableEvent variableEvent = (FlowableVariableEvent) event;
+		String processInstanceId = variableEvent.getProcessInstanceId();
+		if (processInstanceId == null || variableEvent.getProcessDefinitionId() == null) {
+			return;
+		}
+		ConditionVariables conditionVariables = this.variablesByDefinition.computeIfAbsent(
+				variableEvent.getProcessDefinitionId(),
+				(processDefinitionId) -> ConditionVariables.of(ProcessDefinitionUtil.getProcess(processDefinitionId)));
+		if (conditionVariables.reads(variableEvent.getVariableName())) {
+			Context.getTransactionContext().addTransactionListener(TransactionState.COMMITTED,
+					(commandContext) -> this.queued.add(processInstanceId));
+		}
+	}
+
+	@Override
+	public boolean isFailOnException() {
+		return false;
+	}
+
+	@Override
+	public boolean isFireOnTransactionLifecycleEvent() {
+		return false;
+	}
+
+	@Override
+	public String getOnTransaction() {
+		return null;
+	}
+
+	private void evaluate(List<String> processInstanceIds) {
+		try {
+			this.managementService.executeCommand(new EvaluateConditionalEventsBatchCmd(processInstanceIds));
+			this.evaluated.add(processInstanceIds.size());
+		} catch (FlowableException batchFailure) {
+			for (String processInstanceId : processInstanceIds) {
+				try {
+					this.managementService.executeCommand(new EvaluateConditionalEventsBatchCmd(List.of(processInstanceId)));
+					this.evaluated.increment();
+				} catch (FlowableException e) {
+					LOGGER.warn("Could not evaluate the conditional events of process instance {}", processInstanceId, e);
+				}
+			}
+		}
+	}
+
+}
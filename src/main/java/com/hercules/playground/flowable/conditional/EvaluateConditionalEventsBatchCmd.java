@@ -0,0 +1,37 @@
+package com.hercules.playground.flowable.conditional;
+
+import java.util.Collection;
+
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.persistence.entity.ExecutionEntity;
+import org.flowable.engine.impl.persistence.entity.ExecutionEntityManager;
+import org.flowable.engine.impl.util.CommandContextUtil;
+
+/**
+ * EvaluateConditionalEventsCmd for several process instances in one transaction, without handing in any variables
+ * <br>
+ * Instances that ended or got suspended since they were queued are skipped
+ */
+class EvaluateConditionalEventsBatchCmd implements Command<Void> {
+
+	private final Collection<String> processInstanceIds;
+
+	EvaluateConditionalEventsBatchCmd(Collection<String> processInstanceIds) {
+		this.processInstanceIds = processInstanceIds;
+	}
+
+	@Override
+	public Void execute(CommandContext commandContext) {
+		ExecutionEntityManager executionEntityManager = CommandContextUtil.getExecutionEntityManager(commandContext);
+		for (String processInstanceId : this.processInstanceIds) {
+			ExecutionEntity processInstance = executionEntityManager.findById(processInstanceId);
+			if (processInstance == null || processInstance.isEnded() || processInstance.isSuspended()) {
+				continue;
+			}
+			CommandContextUtil.getAgenda(commandContext).planEvaluateConditionalEventsOperation(processInstance);
+		}
+		return null;
+	}
+
+}
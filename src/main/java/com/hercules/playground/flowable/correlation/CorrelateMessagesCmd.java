@@ -0,0 +1,89 @@
+package com.hercules.playground.flowable.correlation;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.common.engine.impl.context.Context;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.ProcessInstanceQueryImpl;
+import org.flowable.engine.impl.cmd.MessageEventReceivedCmd;
+import org.flowable.engine.impl.util.CommandContextUtil;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.eventsubscription.service.EventSubscriptionService;
+import org.flowable.eventsubscription.service.impl.persistence.entity.MessageEventSubscriptionEntity;
+
+/**
+ * Finds the execution waiting for each message and delivers it, all messages in one transaction
+ * <br>
+ * This is the execution query and the messageEventReceived of MessageEvents.howToDoBasicSignalCoordination in one command.
+ * With persistent dedup ids a message already in the dedup table is a duplicate, and the dedup id of every message
+ * delivered is inserted in the same transaction, so the delivery and its record commit or roll back together.
+ */
+class CorrelateMessagesCmd implements Command<List<Correlation>> {
+
+	private final List<CorrelationMessage> messages;
+	private final boolean persistent;
+
+	CorrelateMessagesCmd(List<CorrelationMessage> messages, boolean persistent) {
+		this.messages = messages;
+		this.persistent = persistent;
+	}
+
+	@Override
+	public List<Correlation> execute(CommandContext commandContext) {
+		Connection connection = CommandContextUtil.getDbSqlSession(commandContext).getSqlSession().getConnection();
+		EventSubscriptionService eventSubscriptionService = CommandContextUtil.getEventSubscriptionService(commandContext);
+		Timestamp now = new Timestamp(
+				CommandContextUtil.getProcessEngineConfiguration(commandContext).getClock().getCurrentTime().getTime());
+		List<Correlation> correlations = new ArrayList<>(this.messages.size());
+		if (this.persistent) {
+			// the dedup ids go in around mybatis, which only rolls back a session it has written through itself
+			Context.getTransactionContext().addTransactionListener(TransactionState.ROLLINGBACK,
+					context -> CommandContextUtil.getDbSqlSession(context).getSqlSession().rollback(true));
+		}
+		try {
+			for (CorrelationMessage message : this.messages) {
+				if (this.persistent && DedupTable.contains(connection, message.getDedupId())) {
+					correlations.add(Correlation.DUPLICATE);
+					continue;
+				}
+				String executionId = subscribedExecutionId(commandContext, eventSubscriptionService, message);
+				if (executionId == null) {
+					correlations.add(Correlation.UNMATCHED);
+					continue;
+				}
+				if (this.persistent) {
+					DedupTable.insert(connection, message.getDedupId(), message.getMessageName(), now);
+				}
+				new MessageEventReceivedCmd(message.getMessageName(), executionId, message.getPayload())
+						.execute(commandContext);
+				correlations.add(Correlation.DELIVERED);
+			}
+		} catch (SQLException e) {
+			throw new FlowableException("Could not check or record dedup ids in " + DedupTable.TABLE_NAME, e);
+		}
+		return correlations;
+	}
+
+	private static String subscribedExecutionId(CommandContext commandContext,
+			EventSubscriptionService eventSubscriptionService, CorrelationMessage message) {
+		List<ProcessInstance> processInstances = new ProcessInstanceQueryImpl(commandContext)
+				.processInstanceBusinessKey(message.getCorrelationKey()).list();
+		for (ProcessInstance processInstance : processInstances) {
+			List<MessageEventSubscriptionEntity> subscriptions = eventSubscriptionService
+					.findMessageEventSubscriptionsByProcessInstanceAndEventName(processInstance.getId(),
+							message.getMessageName());
+			if (!subscriptions.isEmpty()) {
+				return subscriptions.get(0).getExecutionId();
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,28 @@
+package com.hercules.playground.flowable.correlation;
+
+/**
+ * What became of a message handed to the MessageCorrelator
+ */
+public enum Correlation {
+
+	/**
+	 * Delivered to the execution of the instance that waited for it
+	 */
+	DELIVERED,
+
+	/**
+	 * A message with the same dedup id was delivered before, nothing was done
+	 */
+	DUPLICATE,
+
+	/**
+	 * No instance with the correlation key waits for the message, it can be redelivered later
+	 */
+	UNMATCHED,
+
+	/**
+	 * Delivering failed and was rolled back, it can be redelivered
+	 */
+	FAILED
+
+}
@@ -0,0 +1,50 @@
+package com.hercules.playground.flowable.correlation;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A message as the broker hands it over
+ * <br>
+ * The correlation key is the business key of the process instance the message is for, the payload becomes
+ * process variables, and the dedup id is the same on every redelivery of the message.
+ */
+public final class CorrelationMessage {
+
+	private final String messageName;
+	private final String correlationKey;
+	private final Map<String, Object> payload;
+	private final String dedupId;
+
+	public CorrelationMessage(String messageName, String correlationKey, Map<String, Object> payload, String dedupId) {
+		if (messageName == null || correlationKey == null || dedupId == null) {
+			throw new IllegalArgumentException("A message needs a name, a correlation key and a dedup id");
+		}
+		this.messageName = messageName;
+		this.correlationKey = correlationKey;
+		this.payload = payload != null ? payload : Collections.emptyMap();
+		this.dedupId = dedupId;
+	}
+
+	public String getMessageName() {
+		return this.messageName;
+	}
+
+	public String getCorrelationKey() {
+		return this.correlationKey;
+	}
+
+	public Map<String, Object> getPayload() {
+		return this.payload;
+	}
+
+	public String getDedupId() {
+		return this.dedupId;
+	}
+
+	@Override
+	public String toString() {
+		return this.messageName + " for " + this.correlationKey + " (" + this.dedupId + ")";
+	}
+
+}
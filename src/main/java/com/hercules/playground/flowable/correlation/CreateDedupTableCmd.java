@@ -0,0 +1,25 @@
+package com.hercules.playground.flowable.correlation;
+
+import java.sql.SQLException;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.util.CommandContextUtil;
+
+/**
+ * Creates the dedup table unless it is there already
+ */
+class CreateDedupTableCmd implements Command<Void> {
+
+	@Override
+	public Void execute(CommandContext commandContext) {
+		try {
+			DedupTable.create(CommandContextUtil.getDbSqlSession(commandContext).getSqlSession().getConnection());
+			return null;
+		} catch (SQLException e) {
+			throw new FlowableException("Could not create " + DedupTable.TABLE_NAME, e);
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.hercules.playground.flowable.correlation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/**
+ * The dedup ids of delivered messages, kept in the engine's database next to the deliveries they record
+ */
+final class DedupTable {
+
+	static final String TABLE_NAME = "HERC_MESSAGE_DEDUP";
+
+	private DedupTable() {
+	}
+
+	static void create(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("create table if not exists " + TABLE_NAME
+					+ " (ID_ varchar(255) not null primary key, MESSAGE_NAME_ varchar(255), DELIVERED_ timestamp not null)");
+		}
+	}
+
+	static boolean contains(Connection connection, String dedupId) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("select 1 from " + TABLE_NAME + " where ID_ = ?")) {
+			statement.setString(1, dedupId);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				return resultSet.next();
+			}
+		}
+	}
+
+	static void insert(Connection connection, String dedupId, String messageName, Timestamp delivered)
+			throws SQLException {
+		try (PreparedStatement statement = connection
+				.prepareStatement("insert into " + TABLE_NAME + " (ID_, MESSAGE_NAME_, DELIVERED_) values (?, ?, ?)")) {
+			statement.setString(1, dedupId);
+			statement.setString(2, messageName);
+			statement.setTimestamp(3, delivered);
+			statement.executeUpdate();
+		}
+	}
+
+	static int deleteBefore(Connection connection, Timestamp delivered) throws SQLException {
+		try (PreparedStatement statement = connection
+				.prepareStatement("delete from " + TABLE_NAME + " where DELIVERED_ < ?")) {
+			statement.setTimestamp(1, delivered);
+			return statement.executeUpdate();
+		}
+	}
+
+}
@@ -0,0 +1,261 @@
+package com.hercules.playground.flowable.correlation;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers broker messages to the instances waiting for them, at most once per dedup id
+ * <br>
+ * MessageEvents.howToDoBasicSignalCoordination queries the execution subscribed to the message, then calls messageEventReceived,
+ * two transactions, and a redelivered message triggers the boundary again. Here a message names its instance by
+ * correlation key, the business key, and is found and delivered in one command. Messages handed over together are grouped
+ * by correlation key and each group is delivered in one transaction. A group that fails is retried message by message,
+ * so one broken message does not hold back the rest.
+ * <br>
+ * The dedup ids of the last windowSize delivered messages are kept in memory, a message with one of them is a duplicate
+ * and not delivered again. The same dedup id handed over by two threads at once is delivered by one of them, the other waits
+ * and reports a duplicate. With persistent on, every delivered dedup id is also written to HERC_MESSAGE_DEDUP in the delivering
+ * transaction, which catches redeliveries that fell out of the window, came after a restart or went to another engine
+ * on the same database. purgeDeliveredBefore keeps that table bounded.
+ * <br>
+ * Unmatched and failed messages are not recorded, the broker can deliver them again.
+ */
+public class MessageCorrelator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MessageCorrelator.class);
+
+	private final ManagementService managementService;
+	private final boolean persistent;
+	private final Map<String, Boolean> window;
+	private final ConcurrentHashMap<String, CompletableFuture<Correlation>> inFlight = new ConcurrentHashMap<>();
+
+	private final LongAdder delivered = new LongAdder();
+	private final LongAdder duplicates = new LongAdder();
+	private final LongAdder unmatched = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+
+	public MessageCorrelator(ProcessEngine processEngine) {
+		this(processEngine, 100_000, false);
+	}
+
+	/**
+	 * @param windowSize the most dedup ids kept in memory
+	 * @param persistent whether dedup ids are also written to the engine's database
+	 */
+	public MessageCorrelator(ProcessEngine processEngine, int windowSize, boolean persistent) {
+		this.managementService = processEngine.getManagementService();
+		this.persistent = persistent;
+		this.window = new LinkedHashMap<>(16, 0.75f, false) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > windowSize;
+			}
+		};
+		if (persistent) {
+			this.managementService.executeCommand(new CreateDedupTableCmd());
+		}
+	}
+
+	public Correlation correlate(CorrelationMessage message) {
+		return correlateAll(List.of(message)).get(0);
+	}
+
+	/**
+	 * Delivers the messages, one transaction per correlation key
+	 *
+	 * @return what became of each message, in the order they were given
+	 */
+	public List<Correlation> correlateAll(List<CorrelationMessage> messages) {
+		Correlation[] correlations = new Correlation[messages.size()];
+		Map<String, Integer> firstInBatch = new HashMap<>();
+		Map<Integer, Integer> sameAsEarlier = new LinkedHashMap<>();
+		Map<Integer, CompletableFuture<Correlation>> claimedElsewhere = new LinkedHashMap<>();
+		Map<String, List<Integer>> claimedByCorrelationKey = new LinkedHashMap<>();
+		Map<Integer, CompletableFuture<Correlation>> claims = new HashMap<>();
+
+		for (int i = 0; i < messages.size(); i++) {
+			CorrelationMessage message = messages.get(i);
+			Integer first = firstInBatch.putIfAbsent(message.getDedupId(), i);
+			if (first != null) {
+				sameAsEarlier.put(i, first);
+			} else if (isInWindow(message.getDedupId())) {
+				correlations[i] = Correlation.DUPLICATE;
+			} else {
+				CompletableFuture<Correlation> claim = new CompletableFuture<>();
+				CompletableFuture<Correlation> running = this.inFlight.putIfAbsent(message.getDedupId(), claim);
+				if (running != null) {
+					claimedElsewhere.put(i, running);
+				} else if (isInWindow(message.getDedupId())) {
+					// delivered by another thread between the first look and the claim
+					this.inFlight.remove(message.getDedupId(), claim);
+					claim.complete(Correlation.DUPLICATE);
+					correlations[i] = Correlation.DUPLICATE;
+				} else {
+					claims.put(i, claim);
+					claimedByCorrelationKey.computeIfAbsent(message.getCorrelationKey(), (key) -> new ArrayList<>())
+							.add(i);
+				}
+			}
+		}
+
+		try {
+			for (List<Integer> group : claimedByCorrelationKey.values()) {
+				deliver(messages, group, correlations);
+				settle(messages, group, correlations, claims);
+			}
+		} finally {
+			// whatever was not delivered is released so no other thread waits on it forever
+			claims.forEach((i, claim) -> {
+				if (claim.complete(Correlation.FAILED)) {
+					this.inFlight.remove(messages.get(i).getDedupId(), claim);
+				}
+			});
+		}
+
+		// waited on only once this thread's own claims are released, two threads can not wait on each other
+		List<Integer> retry = new ArrayList<>();
+		claimedElsewhere.forEach((i, running) -> {
+			Correlation elsewhere = running.join();
+			if (elsewhere == Correlation.DELIVERED || elsewhere == Correlation.DUPLICATE) {
+				correlations[i] = Correlation.DUPLICATE;
+			} else {
+				retry.add(i);
+			}
+		});
+		if (!retry.isEmpty()) {
+			List<CorrelationMessage> retried = new ArrayList<>(retry.size());
+			retry.forEach((i) -> retried.add(messages.get(i)));
+			List<Correlation> retriedCorrelations = correlateAll(retried);
+			for (int r = 0; r < retry.size(); r++) {
+				correlations[retry.get(r)] = retriedCorrelations.get(r);
+			}
+		}
+
+		sameAsEarlier.forEach((i, first) -> correlations[i] = correlations[first] == Correlation.DELIVERED
+				? Correlation.DUPLICATE
+				: correlations[first]);
+		for (int i = 0; i < correlations.length; i++) {
+			// the retried ones were counted by the retry
+			if (!retry.contains(i)) {
+				count(correlations[i]);
+			}
+		}
+		return Arrays.asList(correlations);
+	}
+
+	/**
+	 * Deletes the persistent dedup ids of messages delivered before the given time, their redeliveries are no longer caught
+	 * once they also fell out of the in memory window
+	 *
+	 * @return the number of dedup ids deleted
+	 */
+	public int purgeDeliveredBefore(Instant deliveredBefore) {
+		if (!this.persistent) {
+			return 0;
+		}
+		return this.managementService.executeCommand(new PurgeDedupIdsCmd(deliveredBefore));
+	}
+
+	public long getDelivered() {
+		return this.delivered.sum();
+	}
+
+	public long getDuplicates() {
+		return this.duplicates.sum();
+	}
+
+	public long getUnmatched() {
+		return this.unmatched.sum();
+	}
+
+	public long getFailed() {
+		return this.failed.sum();
+	}
+
+	private void deliver(List<CorrelationMessage> messages, List<Integer> group, Correlation[] correlations) {
+		List<CorrelationMessage> groupMessages = new ArrayList<>(group.size());
+		group.forEach((i) -> groupMessages.add(messages.get(i)));
+		try {
+			List<Correlation> delivered = this.managementService
+					.executeCommand(new CorrelateMessagesCmd(groupMessages, this.persistent));
+			for (int g = 0; g < group.size(); g++) {
+				correlations[group.get(g)] = delivered.get(g);
+			}
+		} catch (FlowableException groupFailure) {
+			if (group.size() == 1) {
+				LOGGER.warn("Could not deliver message {}", groupMessages.get(0), groupFailure);
+				correlations[group.get(0)] = Correlation.FAILED;
+				return;
+			}
+			for (int i : group) {
+				try {
+					correlations[i] = this.managementService
+							.executeCommand(new CorrelateMessagesCmd(List.of(messages.get(i)), this.persistent)).get(0);
+				} catch (FlowableException e) {
+					LOGGER.warn("Could not deliver message {}", messages.get(i), e);
+					correlations[i] = Correlation.FAILED;
+				}
+			}
+		}
+	}
+
+	private void settle(List<CorrelationMessage> messages, List<Integer> group, Correlation[] correlations,
+			Map<Integer, CompletableFuture<Correlation>> claims) {
+		for (int i : group) {
+			String dedupId = messages.get(i).getDedupId();
+			Correlation correlation = correlations[i];
+			if (correlation == Correlation.DELIVERED || correlation == Correlation.DUPLICATE) {
+				remember(dedupId);
+			}
+			CompletableFuture<Correlation> claim = claims.remove(i);
+			this.inFlight.remove(dedupId, claim);
+			claim.complete(correlation);
+		}
+	}
+
+	private void count(Correlation correlation) {
+		switch (correlation) {
+		case DELIVERED:
+			this.delivered.increment();
+			break;
+		case DUPLICATE:
+			this.duplicates.increment();
+			break;
+		case UNMATCHED:
+			this.unmatched.increment();
+			break;
+		default:
+			this.failed.increment();
+		}
+	}
+
+	private boolean isInWindow(String dedupId) {
+		synchronized (this.window) {
+			return this.window.containsKey(dedupId);
+		}
+	}
+
+	private void remember(String dedupId) {
+		synchronized (this.window) {
+			this.window.put(dedupId, Boolean.TRUE);
+		}
+	}
+
+}
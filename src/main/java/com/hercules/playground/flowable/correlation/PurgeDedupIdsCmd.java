@@ -0,0 +1,34 @@
+package com.hercules.playground.flowable.correlation;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.util.CommandContextUtil;
+
+/**
+ * Deletes the dedup ids of messages delivered before the given time
+ */
+class PurgeDedupIdsCmd implements Command<Integer> {
+
+	private final Instant deliveredBefore;
+
+	PurgeDedupIdsCmd(Instant deliveredBefore) {
+		this.deliveredBefore = deliveredBefore;
+	}
+
+	@Override
+	public Integer execute(CommandContext commandContext) {
+		try {
+			return DedupTable.deleteBefore(
+					CommandContextUtil.getDbSqlSession(commandContext).getSqlSession().getConnection(),
+					Timestamp.from(this.deliveredBefore));
+		} catch (SQLException e) {
+			throw new FlowableException("Could not purge " + DedupTable.TABLE_NAME, e);
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+package com.hercules.playground.flowable.deployment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+
+/**
+ * Skips schema and process validation for bpmn resources whose content hash has been parsed and validated before
+ * <br>
+ * Every deployment parses the bpmn xml and validates it against the BPMN 2.0 schema, and validating is most of the time
+ * spent deploying the notes. A resource whose bytes have been parsed with both validations before is parsed again without them.
+ * The xml is still parsed on every deployment: BpmnModel is not serializable and its elements carry the behaviours of the
+ * deployment that parsed them, so neither the model nor the process definition can be shared, and nothing outlives the instance.
+ * <br>
+ * When the engine does not create diagrams on deploy the resource is parsed with its BPMNDiagram section removed,
+ * so the diagram interchange is neither read nor checked. That form is kept by the hash, a hit does not remove it again.
+ * The engine only stores the resource as deployed, the form parsed never shows up in the repository.
+ */
+public class BpmnValidationCache {
+
+	private static final String BPMNDI_NAMESPACE = "http://www.omg.org/spec/BPMN/20100524/DI";
+
+	private final ConcurrentHashMap<String, byte[]> validated = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Makes the engine built from the configuration parse through this cache
+	 */
+	public ProcessEngineConfiguration install(ProcessEngineConfiguration configuration) {
+		((ProcessEngineConfigurationImpl) configuration).setBpmnParseFactory(new CachingBpmnParseFactory(this));
+		return configuration;
+	}
+
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * The number of validated resources held
+	 */
+	public int size() {
+		return this.validated.size();
+	}
+
+	/**
+	 * The form to parse without validation, null when the key has not been validated
+	 */
+	byte[] lookup(String key) {
+		byte[] form = this.validated.get(key);
+		if (form == null) {
+			this.misses.increment();
+		} else {
+			this.hits.increment();
+		}
+		return form;
+	}
+
+	/**
+	 * Records that the form of the key parsed with schema and process validation
+	 */
+	void store(String key, byte[] form) {
+		this.validated.putIfAbsent(key, form);
+	}
+
+	/**
+	 * The cache key of a resource, its content hash and whether the diagram interchange is kept
+	 */
+	static String key(byte[] resource, boolean withDiagrams) {
+		try {
+			StringBuilder key = new StringBuilder(80);
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(resource)) {
+				key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return key.append(withDiagrams ? ".bpmn20.xml" : ".nodi.bpmn20.xml").toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new FlowableException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * The resource without its BPMNDiagram elements, everything else passed through as read
+	 */
+	static byte[] withoutDiagrams(byte[] resource) {
+		XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(resource.length);
+		try {
+			XMLEventReader reader = inputFactory.createXMLEventReader(new ByteArrayInputStream(resource));
+			XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(out, "UTF-8");
+			int skipped = 0;
+			while (reader.hasNext()) {
+				XMLEvent event = reader.nextEvent();
+				if (event.isStartDocument()) {
+					writer.add(XMLEventFactory.newInstance().createStartDocument("UTF-8", "1.0"));
+				} else if (event.isStartElement()
+						&& (skipped > 0 || BPMNDI_NAMESPACE.equals(event.asStartElement().getName().getNamespaceURI()))) {
+					skipped++;
+				} else if (skipped > 0) {
+					if (event.isEndElement()) {
+						skipped--;
+					}
+				} else {
+					writer.add(event);
+				}
+			}
+			writer.close();
+			reader.close();
+		} catch (XMLStreamException e) {
+			throw new FlowableException("Could not remove the diagram interchange", e);
+		}
+		return out.toByteArray();
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.hercules.playground.flowable.deployment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.util.io.InputStreamSource;
+import org.flowable.engine.impl.bpmn.parser.BpmnParse;
+import org.flowable.engine.impl.bpmn.parser.BpmnParser;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.engine.impl.util.CommandContextUtil;
+
+/**
+ * A parse that skips validation when the cache says the same bytes have been parsed and validated before
+ * <br>
+ * Only a parse that ran with schema and process validation is recorded, so a hit can skip both whatever the deployment
+ * asked for. The xml is parsed and the parse handlers run on every parse, each deployment gets its own model and behaviours.
+ */
+class CachingBpmnParse extends BpmnParse {
+
+	private final BpmnValidationCache cache;
+
+	CachingBpmnParse(BpmnParser parser, BpmnValidationCache cache) {
+		super(parser);
+		this.cache = cache;
+	}
+
+	@Override
+	public BpmnParse execute() {
+		byte[] resource = readResource();
+		ProcessEngineConfigurationImpl processEngineConfiguration = CommandContextUtil.getProcessEngineConfiguration();
+		boolean withDiagrams = processEngineConfiguration == null || processEngineConfiguration.isCreateDiagramOnDeploy();
+		String key = BpmnValidationCache.key(resource, withDiagrams);
+
+		byte[] cached = this.cache.lookup(key);
+		if (cached != null) {
+			this.streamSource = new InputStreamSource(new ByteArrayInputStream(cached));
+			this.validateSchema = false;
+			this.validateProcess = false;
+			return super.execute();
+		}
+
+		byte[] form = formOf(resource, withDiagrams);
+		boolean validated = this.validateSchema && this.validateProcess;
+		this.streamSource = new InputStreamSource(new ByteArrayInputStream(form));
+		super.execute();
+		if (validated) {
+			this.cache.store(key, form);
+		}
+		return this;
+	}
+
+	private static byte[] formOf(byte[] resource, boolean withDiagrams) {
+		return withDiagrams ? resource : BpmnValidationCache.withoutDiagrams(resource);
+	}
+
+	private byte[] readResource() {
+		if (this.streamSource == null) {
+			throw new FlowableException("no source set for " + this.name);
+		}
+		try (InputStream inputStream = this.streamSource.getInputStream()) {
+			return inputStream.readAllBytes();
+		} catch (IOException e) {
+			throw new FlowableException("Could not read " + this.name, e);
+		}
+	}
+
+}
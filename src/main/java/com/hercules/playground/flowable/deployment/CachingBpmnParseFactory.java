@@ -0,0 +1,23 @@
+package com.hercules.playground.flowable.deployment;
+
+import org.flowable.engine.impl.bpmn.parser.BpmnParse;
+import org.flowable.engine.impl.bpmn.parser.BpmnParser;
+import org.flowable.engine.impl.cfg.BpmnParseFactory;
+
+/**
+ * Hands the engine's BpmnParser parses that go through a BpmnValidationCache
+ */
+class CachingBpmnParseFactory implements BpmnParseFactory {
+
+	private final BpmnValidationCache cache;
+
+	CachingBpmnParseFactory(BpmnValidationCache cache) {
+		this.cache = cache;
+	}
+
+	@Override
+	public BpmnParse createBpmnParse(BpmnParser bpmnParser) {
+		return new CachingBpmnParse(bpmnParser, this.cache);
+	}
+
+}
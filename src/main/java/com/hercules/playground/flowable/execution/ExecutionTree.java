@@ -0,0 +1,214 @@
+package com.hercules.playground.flowable.execution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The executions of one process instance and their event subscriptions, in parallel arrays indexed by slot
+ * <br>
+ * A slot holds an execution id, the slot of its parent, its activity as a name code and whether it is a scope.
+ * A subscription is its id, the slot of its execution and its name code.
+ * A removed execution leaves a free slot, the arrays are compacted once more than half of them are free.
+ * Executions are found by scanning the ids, the trees of the notes hold a handful of executions.
+ * Not thread safe, the ExecutionTreeIndex locks a tree while it reads or changes it.
+ */
+final class ExecutionTree {
+
+	static final int NONE = -1;
+
+	private static final byte SCOPE = 1;
+
+	private String[] ids = new String[4];
+	private int[] parents = new int[4];
+	private int[] activities = new int[4];
+	private byte[] flags = new byte[4];
+	private int slots;
+	private int live;
+
+	private String[] subscriptionIds = new String[2];
+	private int[] subscriptionSlots = new int[2];
+	private int[] subscriptionNames = new int[2];
+	private int subscriptions;
+
+	/**
+	 * Adds the execution, or fills in the slot it already got as a parent or through its activity
+	 */
+	void putExecution(String executionId, String parentId, int activity, boolean scope) {
+		int slot = slotOf(executionId, true);
+		this.parents[slot] = parentId == null ? NONE : slotOf(parentId, true);
+		if (activity != NONE) {
+			this.activities[slot] = activity;
+		}
+		this.flags[slot] = scope ? SCOPE : 0;
+	}
+
+	void setActivity(String executionId, int activity) {
+		this.activities[slotOf(executionId, true)] = activity;
+	}
+
+	void removeExecution(String executionId) {
+		int slot = slotOf(executionId, false);
+		if (slot == NONE) {
+			return;
+		}
+		this.ids[slot] = null;
+		this.live--;
+		for (int i = this.subscriptions - 1; i >= 0; i--) {
+			if (this.subscriptionSlots[i] == slot) {
+				removeSubscriptionAt(i);
+			}
+		}
+		if (this.slots > 8 && this.live * 2 < this.slots) {
+			compact();
+		}
+	}
+
+	void addSubscription(String subscriptionId, String executionId, int name) {
+		if (this.subscriptions == this.subscriptionSlots.length) {
+			this.subscriptionIds = Arrays.copyOf(this.subscriptionIds, this.subscriptions * 2);
+			this.subscriptionSlots = Arrays.copyOf(this.subscriptionSlots, this.subscriptions * 2);
+			this.subscriptionNames = Arrays.copyOf(this.subscriptionNames, this.subscriptions * 2);
+		}
+		this.subscriptionIds[this.subscriptions] = subscriptionId;
+		this.subscriptionSlots[this.subscriptions] = slotOf(executionId, true);
+		this.subscriptionNames[this.subscriptions] = name;
+		this.subscriptions++;
+	}
+
+	void removeSubscription(String subscriptionId) {
+		for (int i = 0; i < this.subscriptions; i++) {
+			if (subscriptionId.equals(this.subscriptionIds[i])) {
+				removeSubscriptionAt(i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * The executions subscribed to the name code
+	 */
+	List<String> subscribed(int name) {
+		List<String> executionIds = new ArrayList<>(1);
+		for (int i = 0; i < this.subscriptions; i++) {
+			if (this.subscriptionNames[i] == name) {
+				executionIds.add(this.ids[this.subscriptionSlots[i]]);
+			}
+		}
+		return executionIds;
+	}
+
+	/**
+	 * The ids of the subscriptions to the name code
+	 */
+	List<String> subscriptionIds(int name) {
+		List<String> subscriptionIds = new ArrayList<>(1);
+		for (int i = 0; i < this.subscriptions; i++) {
+			if (this.subscriptionNames[i] == name) {
+				subscriptionIds.add(this.subscriptionIds[i]);
+			}
+		}
+		return subscriptionIds;
+	}
+
+	/**
+	 * The execution itself when it is a scope, otherwise its nearest parent that is, null for an unknown execution
+	 */
+	String scopeOf(String executionId) {
+		int slot = slotOf(executionId, false);
+		// a parent never comes back to a child, the bound only stops a corrupt tree from looping
+		for (int steps = 0; slot != NONE && steps <= this.slots; steps++) {
+			if ((this.flags[slot] & SCOPE) != 0) {
+				return this.ids[slot];
+			}
+			slot = this.parents[slot];
+		}
+		return null;
+	}
+
+	/**
+	 * The executions whose current activity is the name code, the tokens that arrived at a join and wait there
+	 */
+	List<String> at(int activity) {
+		List<String> executionIds = new ArrayList<>(2);
+		for (int slot = 0; slot < this.slots; slot++) {
+			if (this.ids[slot] != null && this.activities[slot] == activity) {
+				executionIds.add(this.ids[slot]);
+			}
+		}
+		return executionIds;
+	}
+
+	int countAt(int activity) {
+		int count = 0;
+		for (int slot = 0; slot < this.slots; slot++) {
+			if (this.ids[slot] != null && this.activities[slot] == activity) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	int size() {
+		return this.live;
+	}
+
+	private int slotOf(String executionId, boolean add) {
+		for (int slot = 0; slot < this.slots; slot++) {
+			if (executionId.equals(this.ids[slot])) {
+				return slot;
+			}
+		}
+		if (!add) {
+			return NONE;
+		}
+		if (this.slots == this.ids.length) {
+			int capacity = this.slots * 2;
+			this.ids = Arrays.copyOf(this.ids, capacity);
+			this.parents = Arrays.copyOf(this.parents, capacity);
+			this.activities = Arrays.copyOf(this.activities, capacity);
+			this.flags = Arrays.copyOf(this.flags, capacity);
+		}
+		int slot = this.slots++;
+		this.ids[slot] = executionId;
+		this.parents[slot] = NONE;
+		this.activities[slot] = NONE;
+		this.flags[slot] = 0;
+		this.live++;
+		return slot;
+	}
+
+	private void removeSubscriptionAt(int i) {
+		this.subscriptions--;
+		this.subscriptionIds[i] = this.subscriptionIds[this.subscriptions];
+		this.subscriptionSlots[i] = this.subscriptionSlots[this.subscriptions];
+		this.subscriptionNames[i] = this.subscriptionNames[this.subscriptions];
+		this.subscriptionIds[this.subscriptions] = null;
+	}
+
+	private void compact() {
+		int[] moved = new int[this.slots];
+		int next = 0;
+		for (int slot = 0; slot < this.slots; slot++) {
+			if (this.ids[slot] == null) {
+				moved[slot] = NONE;
+				continue;
+			}
+			moved[slot] = next;
+			this.ids[next] = this.ids[slot];
+			this.parents[next] = this.parents[slot];
+			this.activities[next] = this.activities[slot];
+			this.flags[next] = this.flags[slot];
+			next++;
+		}
+		for (int slot = 0; slot < next; slot++) {
+			this.parents[slot] = this.parents[slot] == NONE ? NONE : moved[this.parents[slot]];
+		}
+		Arrays.fill(this.ids, next, this.slots, null);
+		for (int i = 0; i < this.subscriptions; i++) {
+			this.subscriptionSlots[i] = moved[this.subscriptionSlots[i]];
+		}
+		this.slots = next;
+	}
+
+}
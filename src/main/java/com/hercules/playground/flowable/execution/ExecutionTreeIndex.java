@@ -0,0 +1,308 @@
+package com.hercules.playground.flowable.execution;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEntityEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.delegate.event.FlowableActivityEvent;
+import org.flowable.engine.impl.persistence.entity.ExecutionEntity;
+import org.flowable.engine.runtime.Execution;
+import org.flowable.eventsubscription.api.EventSubscription;
+
+import com.hercules.playground.flowable.teardown.ProcessInstancesPurgedEvent;
+
+/**
+ * Keeps the execution tree of every running process instance in memory, with the event subscriptions hanging off it
+ * <br>
+ * Signal.signalProcessScopeApi delivers a process scoped signal by finding the subscribed execution of one instance,
+ * which is an execution query per signal, and resolving a scope or counting the tokens waiting at a join is another.
+ * The index answers all three from an ExecutionTree per instance, a few primitive arrays holding the parent slot and
+ * activity of each execution, only the delivery of the signal goes to the database. A JoinVariableBuffer given the index
+ * asks it first whether a join fires.
+ * <br>
+ * Activity ids and subscription names are interned into codes shared by every tree. The trees follow the execution and
+ * subscription entities through created and deleted events and the activity started events, applied once the
+ * transaction has committed like the EventSubscriptionIndex does, and drop the instances of a ProcessInstancesPurgedEvent.
+ * An instance the index does not know is looked up
+ * with a query instead.
+ */
+public class ExecutionTreeIndex implements FlowableEventListener, AutoCloseable {
+
+	public static final String MESSAGE = "message";
+	public static final String SIGNAL = "signal";
+
+	private final RuntimeService runtimeService;
+	private final ManagementService managementService;
+	// process instance id -> its executions and subscriptions
+	private final ConcurrentHashMap<String, ExecutionTree> trees = new ConcurrentHashMap<>();
+	// activity id or "signal:processScope" -> code
+	private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+	private final AtomicInteger nextCode = new AtomicInteger();
+
+	ExecutionTreeIndex(RuntimeService runtimeService, ManagementService managementService) {
+		this.runtimeService = runtimeService;
+		this.managementService = managementService;
+	}
+
+	/**
+	 * Builds the trees from the executions and subscriptions already in the database and keeps them up to date from then on
+	 */
+	public static ExecutionTreeIndex register(ProcessEngine processEngine) {
+		ExecutionTreeIndex index = new ExecutionTreeIndex(processEngine.getRuntimeService(),
+				processEngine.getManagementService());
+		index.runtimeService.addEventListener(index, FlowableEngineEventType.ENTITY_CREATED,
+				FlowableEngineEventType.ENTITY_DELETED, FlowableEngineEventType.ACTIVITY_STARTED, FlowableEngineEventType.CUSTOM);
+		List<Execution> executions = new ArrayList<>(index.runtimeService.createExecutionQuery().list());
+		// a child only goes into a tree its root has made
+		executions.sort(Comparator.comparing(execution -> !((ExecutionEntity) execution).isProcessInstanceType()));
+		for (Execution execution : executions) {
+			index.add((ExecutionEntity) execution);
+		}
+		for (EventSubscription subscription : index.runtimeService.createEventSubscriptionQuery().list()) {
+			index.add(subscription);
+		}
+		return index;
+	}
+
+	/**
+	 * An index of no engine, fed only through {@link #onEvent(FlowableEvent)}
+	 */
+	public static ExecutionTreeIndex detached() {
+		return new ExecutionTreeIndex(null, null);
+	}
+
+	/**
+	 * @return the executions of the process instance subscribed to the event, empty when there are none
+	 */
+	public List<String> findSubscriptions(String processInstanceId, String eventType, String eventName) {
+		ExecutionTree tree = this.trees.get(processInstanceId);
+		Integer code = this.codes.get(key(eventType, eventName));
+		if (tree == null || code == null) {
+			return Collections.emptyList();
+		}
+		synchronized (tree) {
+			return tree.subscribed(code);
+		}
+	}
+
+	/**
+	 * @return the execution itself when it is a scope, otherwise its nearest parent that is, null when it is not known
+	 */
+	public String findScope(String processInstanceId, String executionId) {
+		ExecutionTree tree = this.trees.get(processInstanceId);
+		if (tree == null) {
+			return null;
+		}
+		synchronized (tree) {
+			return tree.scopeOf(executionId);
+		}
+	}
+
+	/**
+	 * @return the executions of the process instance whose current activity is the one given
+	 */
+	public List<String> executionsAt(String processInstanceId, String activityId) {
+		ExecutionTree tree = this.trees.get(processInstanceId);
+		Integer code = this.codes.get(activityId);
+		if (tree == null || code == null) {
+			return Collections.emptyList();
+		}
+		synchronized (tree) {
+			return tree.at(code);
+		}
+	}
+
+	/**
+	 * Number of tokens of the process instance at the activity, for a joining gateway the ones that arrived and wait
+	 */
+	public int arrivalsAt(String processInstanceId, String activityId) {
+		ExecutionTree tree = this.trees.get(processInstanceId);
+		Integer code = this.codes.get(activityId);
+		if (tree == null || code == null) {
+			return 0;
+		}
+		synchronized (tree) {
+			return tree.countAt(code);
+		}
+	}
+
+	/**
+	 * Delivers the signal to the executions of the one process instance subscribed to it, the other instances waiting
+	 * for the same signal are not touched. Unlike runtimeService.signalEventReceived this reaches process scoped subscriptions.
+	 * <br>
+	 * The subscriptions in the tree are delivered by their id. When the tree has none, or none of them is there any more,
+	 * the command looks for the ones of the instance itself, an instance can have subscribed in a transaction whose events
+	 * have not been applied yet.
+	 *
+	 * @return the number of subscriptions signalled
+	 */
+	public int signalProcessInstance(String signalName, String processInstanceId) {
+		List<String> subscriptionIds = Collections.emptyList();
+		ExecutionTree tree = this.trees.get(processInstanceId);
+		Integer code = this.codes.get(key(SIGNAL, signalName));
+		if (tree != null && code != null) {
+			synchronized (tree) {
+				subscriptionIds = tree.subscriptionIds(code);
+			}
+		}
+		return this.managementService.executeCommand(new SignalSubscriptionsCmd(signalName, processInstanceId,
+				subscriptionIds.isEmpty() ? null : subscriptionIds));
+	}
+
+	public boolean contains(String processInstanceId) {
+		return this.trees.containsKey(processInstanceId);
+	}
+
+	/**
+	 * Number of executions in every tree
+	 */
+	public int executionCount() {
+		int count = 0;
+		for (ExecutionTree tree : this.trees.values()) {
+			synchronized (tree) {
+				count += tree.size();
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void close() {
+		if (this.runtimeService != null) {
+			this.runtimeService.removeEventListener(this);
+		}
+	}
+
+	@Override
+	public void onEvent(FlowableEvent event) {
+		if (event instanceof ProcessInstancesPurgedEvent) {
+			this.trees.keySet().removeAll(((ProcessInstancesPurgedEvent) event).getProcessInstanceIds());
+			return;
+		}
+		if (event instanceof FlowableActivityEvent) {
+			FlowableActivityEvent activityEvent = (FlowableActivityEvent) event;
+			if (activityEvent.getProcessInstanceId() != null && activityEvent.getActivityId() != null) {
+				update(activityEvent.getProcessInstanceId(),
+						tree -> tree.setActivity(activityEvent.getExecutionId(), code(activityEvent.getActivityId())));
+			}
+			return;
+		}
+		if (!(event instanceof FlowableEntityEvent)) {
+			return;
+		}
+		Object entity = ((FlowableEntityEvent) event).getEntity();
+		boolean created = event.getType() == FlowableEngineEventType.ENTITY_CREATED;
+		if (entity instanceof ExecutionEntity) {
+			if (created) {
+				add((ExecutionEntity) entity);
+			} else {
+				remove((ExecutionEntity) entity);
+			}
+		} else if (entity instanceof EventSubscription) {
+			if (created) {
+				add((EventSubscription) entity);
+			} else {
+				remove((EventSubscription) entity);
+			}
+		}
+	}
+
+	@Override
+	public boolean isFailOnException() {
+		return false;
+	}
+
+	@Override
+	public boolean isFireOnTransactionLifecycleEvent() {
+		return true;
+	}
+
+	@Override
+	public String getOnTransaction() {
+		return TransactionState.COMMITTED.name();
+	}
+
+	private void add(ExecutionEntity execution) {
+		if (execution.getProcessInstanceId() == null) {
+			return;
+		}
+		int activity = execution.getActivityId() != null ? code(execution.getActivityId()) : ExecutionTree.NONE;
+		// the process instance is the root, its parent is the call activity's execution in another tree
+		String parentId = execution.isProcessInstanceType() ? null : execution.getParentId();
+		if (!execution.isProcessInstanceType()) {
+			// a child created after its root was deleted, or of a tree dropped by a purge, does not bring the tree back
+			update(execution.getProcessInstanceId(),
+					tree -> tree.putExecution(execution.getId(), parentId, activity, execution.isScope()));
+			return;
+		}
+		this.trees.compute(execution.getProcessInstanceId(), (id, tree) -> {
+			ExecutionTree added = tree != null ? tree : new ExecutionTree();
+			synchronized (added) {
+				added.putExecution(execution.getId(), parentId, activity, execution.isScope());
+			}
+			return added;
+		});
+	}
+
+	private void remove(ExecutionEntity execution) {
+		if (execution.getProcessInstanceId() == null) {
+			return;
+		}
+		if (execution.isProcessInstanceType()) {
+			this.trees.remove(execution.getProcessInstanceId());
+			return;
+		}
+		update(execution.getProcessInstanceId(), tree -> tree.removeExecution(execution.getId()));
+	}
+
+	private void add(EventSubscription subscription) {
+		// start event subscriptions belong to the definition, not to an instance
+		if (subscription.getProcessInstanceId() == null || subscription.getExecutionId() == null) {
+			return;
+		}
+		int name = code(key(subscription.getEventType(), subscription.getEventName()));
+		update(subscription.getProcessInstanceId(),
+				tree -> tree.addSubscription(subscription.getId(), subscription.getExecutionId(), name));
+	}
+
+	private void remove(EventSubscription subscription) {
+		if (subscription.getProcessInstanceId() == null || subscription.getExecutionId() == null) {
+			return;
+		}
+		update(subscription.getProcessInstanceId(), tree -> tree.removeSubscription(subscription.getId()));
+	}
+
+	/**
+	 * Changes the tree of a process instance the index knows, the events of a deleted instance that come after its root are dropped
+	 */
+	private void update(String processInstanceId, Consumer<ExecutionTree> change) {
+		this.trees.computeIfPresent(processInstanceId, (id, tree) -> {
+			synchronized (tree) {
+				change.accept(tree);
+			}
+			return tree;
+		});
+	}
+
+	private int code(String name) {
+		Integer code = this.codes.get(name);
+		return code != null ? code : this.codes.computeIfAbsent(name, key -> this.nextCode.getAndIncrement());
+	}
+
+	private static String key(String eventType, String eventName) {
+		return eventType + ':' + eventName;
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.hercules.playground.flowable.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.delegate.event.impl.FlowableEventBuilder;
+import org.flowable.engine.impl.util.CommandContextUtil;
+import org.flowable.engine.impl.util.EventSubscriptionUtil;
+import org.flowable.eventsubscription.service.EventSubscriptionService;
+import org.flowable.eventsubscription.service.impl.persistence.entity.EventSubscriptionEntity;
+import org.flowable.eventsubscription.service.impl.persistence.entity.SignalEventSubscriptionEntity;
+
+/**
+ * Delivers a signal to the subscriptions of a process instance, whatever their scope
+ * <br>
+ * runtimeService.signalEventReceived skips every subscription that is not global scoped, even when it is given
+ * the execution, which is why Signal.signalProcessScopeApi sees no task move. This does what it does for the global ones.
+ * <br>
+ * The subscriptions the ExecutionTreeIndex knows are loaded by their id, without them the ones of the instance to the signal
+ * are found with one query. A subscription that is gone by the time it is loaded is passed over, and when none of them is
+ * there any more the query is run all the same, the index may hold only ids replaced by subscriptions it has not heard of.
+ */
+class SignalSubscriptionsCmd implements Command<Integer> {
+
+	private final String signalName;
+	private final String processInstanceId;
+	private final List<String> subscriptionIds;
+
+	/**
+	 * @param subscriptionIds the subscriptions to deliver to, null for every subscription of the instance to the signal
+	 */
+	SignalSubscriptionsCmd(String signalName, String processInstanceId, List<String> subscriptionIds) {
+		this.signalName = signalName;
+		this.processInstanceId = processInstanceId;
+		this.subscriptionIds = subscriptionIds;
+	}
+
+	/**
+	 * @return the number of subscriptions signalled
+	 */
+	@Override
+	public Integer execute(CommandContext commandContext) {
+		EventSubscriptionService eventSubscriptionService = CommandContextUtil.getEventSubscriptionService(commandContext);
+		List<SignalEventSubscriptionEntity> subscriptions = new ArrayList<>();
+		if (this.subscriptionIds != null) {
+			for (String subscriptionId : this.subscriptionIds) {
+				EventSubscriptionEntity subscription = eventSubscriptionService.findById(subscriptionId);
+				if (subscription instanceof SignalEventSubscriptionEntity) {
+					subscriptions.add((SignalEventSubscriptionEntity) subscription);
+				}
+			}
+		}
+		if (subscriptions.isEmpty()) {
+			subscriptions = eventSubscriptionService
+					.findSignalEventSubscriptionsByProcessInstanceAndEventName(this.processInstanceId, this.signalName);
+		}
+		int signalled = 0;
+		for (SignalEventSubscriptionEntity subscription : subscriptions) {
+			CommandContextUtil.getProcessEngineConfiguration(commandContext).getEventDispatcher()
+					.dispatchEvent(FlowableEventBuilder.createSignalEvent(FlowableEngineEventType.ACTIVITY_SIGNALED,
+							subscription.getActivityId(), this.signalName, null, subscription.getExecutionId(),
+							subscription.getProcessInstanceId(), subscription.getProcessDefinitionId()));
+			EventSubscriptionUtil.eventReceived(subscription, null, false);
+			signalled++;
+		}
+		return signalled;
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.hercules.playground.flowable.executor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.engine.parse.BpmnParseHandler;
+
+/**
+ * Runs signal started event subprocesses on the async executor instead of in the transaction of the signal
+ * <br>
+ * flowable.cfg.xml and App.main leave the async executor off, so a global signal caught by 10k instances runs 10k subprocesses
+ * up to their first wait state before signalEventReceived returns. This profile switches the async executor on and makes
+ * the activities after a signal start event asynchronous continuations, see SignalStartedSubProcessParseHandler.
+ * <br>
+ * threads is the executor's pool, queueSize the jobs it holds before acquisition backs off, acquisitionBatchSize the most jobs
+ * locked by one acquisition query, and acquireWaitMillis how long acquisition sleeps when it found nothing. The connection
+ * pool is grown to hold a connection for every thread.
+ * The lock owner names this node on the jobs it locked, by default the JVM's pid@host, so two nodes on one database
+ * can be told apart when a job is stuck.
+ * <br>
+ * Every property can be set with a system property flowable.async.&lt;name&gt;, see fromSystemProperties.
+ */
+public class AsyncExecutionProfile {
+
+	private int threads = 8;
+	private int queueSize = 2048;
+	private int acquisitionBatchSize = 32;
+	private int acquireWaitMillis = 100;
+	private String lockOwner = ManagementFactory.getRuntimeMXBean().getName();
+
+	/**
+	 * The profile with what -Dflowable.async.threads, queueSize, acquisitionBatchSize, acquireWaitMillis and lockOwner set
+	 */
+	public static AsyncExecutionProfile fromSystemProperties() {
+		AsyncExecutionProfile profile = new AsyncExecutionProfile();
+		profile.threads = Integer.getInteger("flowable.async.threads", profile.threads);
+		profile.queueSize = Integer.getInteger("flowable.async.queueSize", profile.queueSize);
+		profile.acquisitionBatchSize = Integer.getInteger("flowable.async.acquisitionBatchSize",
+				profile.acquisitionBatchSize);
+		profile.acquireWaitMillis = Integer.getInteger("flowable.async.acquireWaitMillis", profile.acquireWaitMillis);
+		profile.lockOwner = System.getProperty("flowable.async.lockOwner", profile.lockOwner);
+		return profile;
+	}
+
+	public AsyncExecutionProfile threads(int threads) {
+		this.threads = threads;
+		return this;
+	}
+
+	public AsyncExecutionProfile queueSize(int queueSize) {
+		this.queueSize = queueSize;
+		return this;
+	}
+
+	public AsyncExecutionProfile acquisitionBatchSize(int acquisitionBatchSize) {
+		this.acquisitionBatchSize = acquisitionBatchSize;
+		return this;
+	}
+
+	public AsyncExecutionProfile acquireWaitMillis(int acquireWaitMillis) {
+		this.acquireWaitMillis = acquireWaitMillis;
+		return this;
+	}
+
+	public AsyncExecutionProfile lockOwner(String lockOwner) {
+		this.lockOwner = lockOwner;
+		return this;
+	}
+
+	public ProcessEngineConfiguration install(ProcessEngineConfiguration configuration) {
+		ProcessEngineConfigurationImpl engineConfiguration = (ProcessEngineConfigurationImpl) configuration;
+		List<BpmnParseHandler> parseHandlers = engineConfiguration.getPostBpmnParseHandlers() != null
+				? new ArrayList<>(engineConfiguration.getPostBpmnParseHandlers())
+				: new ArrayList<>();
+		parseHandlers.add(new SignalStartedSubProcessParseHandler());
+		engineConfiguration.setPostBpmnParseHandlers(parseHandlers);
+		engineConfiguration.setAsyncExecutorActivate(true);
+		engineConfiguration.setAsyncExecutorCorePoolSize(this.threads);
+		engineConfiguration.setAsyncExecutorMaxPoolSize(this.threads);
+		engineConfiguration.setAsyncExecutorThreadPoolQueueSize(this.queueSize);
+		engineConfiguration.setAsyncExecutorMaxAsyncJobsDuePerAcquisition(this.acquisitionBatchSize);
+		engineConfiguration.setAsyncExecutorDefaultAsyncJobAcquireWaitTime(this.acquireWaitMillis);
+		engineConfiguration.setAsyncExecutorLockOwner(this.lockOwner);
+		// a connection per executor thread, and one each for acquisition and the caller
+		if (engineConfiguration.getJdbcMaxActiveConnections() < this.threads + 2) {
+			engineConfiguration.setJdbcMaxActiveConnections(this.threads + 2);
+		}
+		return configuration;
+	}
+
+	@Override
+	public String toString() {
+		return "threads=" + this.threads + ", queueSize=" + this.queueSize + ", acquisitionBatchSize="
+				+ this.acquisitionBatchSize + ", acquireWaitMillis=" + this.acquireWaitMillis + ", lockOwner="
+				+ this.lockOwner;
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.hercules.playground.flowable.executor;
+
+import org.flowable.bpmn.model.BaseElement;
+import org.flowable.bpmn.model.EventDefinition;
+import org.flowable.bpmn.model.EventSubProcess;
+import org.flowable.bpmn.model.FlowElement;
+import org.flowable.bpmn.model.FlowNode;
+import org.flowable.bpmn.model.SequenceFlow;
+import org.flowable.bpmn.model.SignalEventDefinition;
+import org.flowable.bpmn.model.StartEvent;
+import org.flowable.engine.impl.bpmn.parser.BpmnParse;
+import org.flowable.engine.impl.bpmn.parser.handler.AbstractBpmnParseHandler;
+
+/**
+ * Makes whatever follows the signal start event of an event subprocess an asynchronous continuation
+ * <br>
+ * MessageEvents.canYouStartASubprocessWithAnEvent: the signal creates the subprocess execution, then the subprocess runs
+ * up to its first wait state in the transaction of whoever threw the signal. With the activities after the start event async,
+ * the thrower's transaction ends at the subprocess start, and the async executor runs the rest, one job per instance.
+ */
+class SignalStartedSubProcessParseHandler extends AbstractBpmnParseHandler<StartEvent> {
+
+	@Override
+	protected Class<? extends BaseElement> getHandledType() {
+		return StartEvent.class;
+	}
+
+	@Override
+	protected void executeParse(BpmnParse bpmnParse, StartEvent startEvent) {
+		if (!(startEvent.getSubProcess() instanceof EventSubProcess) || !isSignalStarted(startEvent)) {
+			return;
+		}
+		for (SequenceFlow outgoing : startEvent.getOutgoingFlows()) {
+			FlowElement target = outgoing.getTargetFlowElement() != null ? outgoing.getTargetFlowElement()
+					: bpmnParse.getBpmnModel().getFlowElement(outgoing.getTargetRef());
+			if (target instanceof FlowNode) {
+				((FlowNode) target).setAsynchronous(true);
+			}
+		}
+	}
+
+	private static boolean isSignalStarted(StartEvent startEvent) {
+		for (EventDefinition eventDefinition : startEvent.getEventDefinitions()) {
+			if (eventDefinition instanceof SignalEventDefinition) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.hercules.playground.flowable.expression;
+
+import java.util.List;
+
+import org.flowable.common.engine.api.delegate.Expression;
+import org.flowable.common.engine.api.delegate.FlowableExpressionEnhancer;
+import org.flowable.common.engine.impl.javax.el.ValueExpression;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.engine.impl.el.JuelExpression;
+import org.flowable.engine.impl.el.ProcessExpressionManager;
+
+/**
+ * The engine's expression manager with its expressions taken from an ExpressionCache
+ * <br>
+ * It is set on the configuration before the engine is built, the delegate interceptor and the beans are only known
+ * once it is, so they are looked up when the first expression is created.
+ */
+class CachingExpressionManager extends ProcessExpressionManager {
+
+	private final ExpressionCache cache;
+	private final ProcessEngineConfigurationImpl configuration;
+
+	CachingExpressionManager(ExpressionCache cache, ProcessEngineConfigurationImpl configuration) {
+		this.cache = cache;
+		this.configuration = configuration;
+	}
+
+	@Override
+	public Expression createExpression(String expression) {
+		return this.cache.lookup(expression, this::interpret);
+	}
+
+	private Expression interpret(String expression) {
+		Expression interpreted = super.createExpression(expression);
+		if (!this.cache.isCompiling() || isEnhanced(expression)) {
+			return interpreted;
+		}
+		CompiledExpression.Evaluation evaluation = ExpressionCompiler.compile(expression);
+		return evaluation == null ? interpreted : new CompiledExpression(interpreted, evaluation, this.cache);
+	}
+
+	/**
+	 * An enhancer rewrites function shorthands, what it changes is not the text the compiler would see
+	 */
+	private boolean isEnhanced(String expression) {
+		List<FlowableExpressionEnhancer> enhancers = getExpressionEnhancers();
+		if (enhancers != null) {
+			for (FlowableExpressionEnhancer enhancer : enhancers) {
+				if (!expression.equals(enhancer.enhance(expression))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	protected Expression createJuelExpression(String expression, ValueExpression valueExpression) {
+		if (this.delegateInterceptor == null) {
+			this.delegateInterceptor = this.configuration.getDelegateInterceptor();
+			this.beans = this.configuration.getBeans();
+		}
+		return new JuelExpression(this, this.delegateInterceptor, valueExpression, expression);
+	}
+
+}
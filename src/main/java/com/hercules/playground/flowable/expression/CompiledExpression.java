@@ -0,0 +1,63 @@
+package com.hercules.playground.flowable.expression;
+
+import org.flowable.common.engine.api.delegate.Expression;
+import org.flowable.common.engine.api.variable.VariableContainer;
+
+/**
+ * An expression evaluated by a lambda ExpressionCompiler built from its text, without an ELContext
+ * <br>
+ * Whatever the lambda does not handle the way EL would, a missing variable or a value of another type than the literal
+ * it is compared with, is handed to the interpreted expression, so the result and the exceptions are the engine's.
+ */
+class CompiledExpression implements Expression {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Returned by an evaluation that leaves the value to the interpreted expression
+	 */
+	static final Object INTERPRET = new Object();
+
+	interface Evaluation {
+
+		Object evaluate(VariableContainer variableContainer);
+	}
+
+	private final Expression interpreted;
+	private final transient Evaluation evaluation;
+	private final transient ExpressionCache cache;
+
+	CompiledExpression(Expression interpreted, Evaluation evaluation, ExpressionCache cache) {
+		this.interpreted = interpreted;
+		this.evaluation = evaluation;
+		this.cache = cache;
+	}
+
+	@Override
+	public Object getValue(VariableContainer variableContainer) {
+		if (this.evaluation != null) {
+			Object value = this.evaluation.evaluate(variableContainer);
+			if (value != INTERPRET) {
+				return value;
+			}
+			this.cache.interpreted();
+		}
+		return this.interpreted.getValue(variableContainer);
+	}
+
+	@Override
+	public void setValue(Object value, VariableContainer variableContainer) {
+		this.interpreted.setValue(value, variableContainer);
+	}
+
+	@Override
+	public String getExpressionText() {
+		return this.interpreted.getExpressionText();
+	}
+
+	@Override
+	public String toString() {
+		return this.interpreted.toString();
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.hercules.playground.flowable.expression;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.flowable.common.engine.api.delegate.Expression;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+
+/**
+ * The expressions of an engine, parsed once per expression text and shared by every definition, execution and thread
+ * <br>
+ * Conditional events and sequence flow conditions ask the expression manager for their expression on every evaluation,
+ * ${condition == true} of the conditional note is created again for each evaluateConditionalEvents. The engine keeps
+ * the parsed trees itself, but every evaluation of a tree builds an ELContext with its resolvers and walks the tree
+ * through them. Here the least recently used expressions are evicted past maxEntries, and with compile on the simple ones,
+ * a variable, its negation or a variable compared with a literal, are evaluated by a lambda reading the variable directly,
+ * see ExpressionCompiler. Whatever a lambda does not handle the way EL would is evaluated by the interpreted expression.
+ * <br>
+ * An expression is looked up by its text alone, the engine does not tell the expression manager which definition
+ * an expression belongs to, nor does the parsed form depend on it. A cache belongs to the one engine it is installed in.
+ */
+public class ExpressionCache {
+
+	private final int maxEntries;
+	private final boolean compiling;
+
+	// guarded by this
+	private final LinkedHashMap<String, Expression> entries;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder compiled = new LongAdder();
+	private final LongAdder interpreted = new LongAdder();
+
+	/**
+	 * 4096 expressions, the simple ones compiled
+	 */
+	public ExpressionCache() {
+		this(4096, true);
+	}
+
+	/**
+	 * @param maxEntries the most expressions kept
+	 * @param compile whether the simple expressions are evaluated by lambdas
+	 */
+	public ExpressionCache(int maxEntries, boolean compile) {
+		this.maxEntries = maxEntries;
+		this.compiling = compile;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+				if (size() <= ExpressionCache.this.maxEntries) {
+					return false;
+				}
+				ExpressionCache.this.evictions.increment();
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Makes the engine built from the configuration create its expressions through this cache
+	 */
+	public ProcessEngineConfiguration install(ProcessEngineConfiguration configuration) {
+		ProcessEngineConfigurationImpl engineConfiguration = (ProcessEngineConfigurationImpl) configuration;
+		engineConfiguration.setExpressionManager(new CachingExpressionManager(this, engineConfiguration));
+		return configuration;
+	}
+
+	Expression lookup(String text, Function<String, Expression> create) {
+		synchronized (this) {
+			Expression expression = this.entries.get(text);
+			if (expression != null) {
+				this.hits.increment();
+				return expression;
+			}
+		}
+		this.misses.increment();
+		// parsed outside the lock, two threads missing the same text parse it twice and keep the first
+		Expression created = create.apply(text);
+		synchronized (this) {
+			Expression expression = this.entries.putIfAbsent(text, created);
+			if (expression != null) {
+				return expression;
+			}
+		}
+		if (created instanceof CompiledExpression) {
+			this.compiled.increment();
+		}
+		return created;
+	}
+
+	boolean isCompiling() {
+		return this.compiling;
+	}
+
+	void interpreted() {
+		this.interpreted.increment();
+	}
+
+	public synchronized void clear() {
+		this.entries.clear();
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * Expressions dropped to stay within maxEntries
+	 */
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+
+	/**
+	 * Expressions cached with a lambda
+	 */
+	public long getCompiled() {
+		return this.compiled.sum();
+	}
+
+	/**
+	 * Evaluations of a compiled expression handed to the interpreted one
+	 */
+	public long getInterpreted() {
+		return this.interpreted.sum();
+	}
+
+}
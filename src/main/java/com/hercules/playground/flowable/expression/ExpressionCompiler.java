@@ -0,0 +1,153 @@
+package com.hercules.playground.flowable.expression;
+
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.flowable.common.engine.api.variable.VariableContainer;
+
+import com.hercules.playground.flowable.expression.CompiledExpression.Evaluation;
+
+/**
+ * Turns the expressions conditions are mostly written in into lambdas: ${flag}, ${!flag} and a variable compared
+ * with a literal, ${condition == true}, ${amount &gt;= 100}, ${state != 'open'}, ${owner == null}
+ * <br>
+ * Anything else is not compiled. A variable named like one of the names the engine resolves itself, execution, task
+ * and authenticatedUserId, is not compiled either. The lambdas compare the way EL does for the values they take,
+ * booleans with booleans, strings with strings, integral and floating point numbers with each other, and leave any other
+ * value to the interpreted expression.
+ */
+final class ExpressionCompiler {
+
+	private static final String IDENTIFIER = "([A-Za-z_][A-Za-z0-9_]*)";
+	private static final String LITERAL = "(true|false|null|-?\\d+|-?\\d+\\.\\d+|'[^'\\\\]*'|\"[^\"\\\\]*\")";
+	private static final String OPERATOR = "(?:\\s*(==|!=|<=|>=|<|>)\\s*|\\s+(eq|ne|le|ge|lt|gt)\\s+)";
+
+	private static final Pattern VARIABLE = Pattern.compile("\\$\\{\\s*" + IDENTIFIER + "\\s*\\}");
+	private static final Pattern NEGATION = Pattern.compile("\\$\\{\\s*(?:!\\s*|not\\s+)" + IDENTIFIER + "\\s*\\}");
+	private static final Pattern COMPARISON = Pattern
+			.compile("\\$\\{\\s*" + IDENTIFIER + OPERATOR + LITERAL + "\\s*\\}");
+
+	private static final Set<String> RESERVED = Set.of("true", "false", "null", "empty", "not", "and", "or", "div", "mod",
+			"eq", "ne", "lt", "gt", "le", "ge", "instanceof", "execution", "task", "authenticatedUserId");
+
+	private ExpressionCompiler() {
+	}
+
+	/**
+	 * The lambda for the expression text, null when it is not one of the forms compiled
+	 */
+	static Evaluation compile(String text) {
+		Matcher matcher = VARIABLE.matcher(text);
+		if (matcher.matches()) {
+			String name = matcher.group(1);
+			return RESERVED.contains(name) ? null
+					: variableContainer -> variableContainer.hasVariable(name) ? variableContainer.getVariable(name)
+							: CompiledExpression.INTERPRET;
+		}
+		matcher = NEGATION.matcher(text);
+		if (matcher.matches()) {
+			String name = matcher.group(1);
+			return RESERVED.contains(name) ? null : variableContainer -> {
+				Object value = variableContainer.hasVariable(name) ? variableContainer.getVariable(name) : null;
+				return value instanceof Boolean ? Boolean.valueOf(!(Boolean) value) : CompiledExpression.INTERPRET;
+			};
+		}
+		matcher = COMPARISON.matcher(text);
+		if (matcher.matches() && !RESERVED.contains(matcher.group(1))) {
+			String operator = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+			try {
+				return comparison(matcher.group(1), operator, matcher.group(4));
+			} catch (NumberFormatException e) {
+				// a literal past the range of a long, EL makes it a BigInteger
+				return null;
+			}
+		}
+		return null;
+	}
+
+	private static Evaluation comparison(String name, String operator, String literal) {
+		IntPredicate holds = holds(operator);
+		boolean equality = "==".equals(operator) || "eq".equals(operator) || "!=".equals(operator)
+				|| "ne".equals(operator);
+		// EL: a null operand is equal to nothing but null
+		Object nullValue = equality ? Boolean.valueOf(!holds.test(0)) : CompiledExpression.INTERPRET;
+		if ("null".equals(literal)) {
+			return equality ? variable(name, value -> Boolean.valueOf(holds.test(value == null ? 0 : 1))) : null;
+		}
+		if ("true".equals(literal) || "false".equals(literal)) {
+			Boolean expected = Boolean.valueOf(literal);
+			return equality ? variable(name, value -> value == null ? nullValue
+					: value instanceof Boolean ? Boolean.valueOf(holds.test(value.equals(expected) ? 0 : 1))
+							: CompiledExpression.INTERPRET)
+					: null;
+		}
+		if (literal.startsWith("'") || literal.startsWith("\"")) {
+			String expected = literal.substring(1, literal.length() - 1);
+			return variable(name, value -> value == null ? nullValue
+					: value instanceof String ? Boolean.valueOf(holds.test(((String) value).compareTo(expected)))
+							: CompiledExpression.INTERPRET);
+		}
+		if (literal.indexOf('.') < 0) {
+			long expected = Long.parseLong(literal);
+			return variable(name, value -> {
+				if (value == null) {
+					return nullValue;
+				} else if (isIntegral(value)) {
+					return Boolean.valueOf(holds.test(Long.compare(((Number) value).longValue(), expected)));
+				} else if (value instanceof Double || value instanceof Float) {
+					return Boolean.valueOf(holds.test(Double.compare(((Number) value).doubleValue(), expected)));
+				}
+				return CompiledExpression.INTERPRET;
+			});
+		}
+		double expected = Double.parseDouble(literal);
+		return variable(name, value -> {
+			if (value == null) {
+				return nullValue;
+			} else if (isIntegral(value) || value instanceof Double || value instanceof Float) {
+				return Boolean.valueOf(holds.test(Double.compare(((Number) value).doubleValue(), expected)));
+			}
+			return CompiledExpression.INTERPRET;
+		});
+	}
+
+	private interface ValueEvaluation {
+
+		Object evaluate(Object value);
+	}
+
+	private static Evaluation variable(String name, ValueEvaluation evaluation) {
+		return (VariableContainer variableContainer) -> variableContainer.hasVariable(name)
+				? evaluation.evaluate(variableContainer.getVariable(name))
+				: CompiledExpression.INTERPRET;
+	}
+
+	private static boolean isIntegral(Object value) {
+		return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+	}
+
+	private static IntPredicate holds(String operator) {
+		switch (operator) {
+		case "==":
+		case "eq":
+			return comparison -> comparison == 0;
+		case "!=":
+		case "ne":
+			return comparison -> comparison != 0;
+		case "<":
+		case "lt":
+			return comparison -> comparison < 0;
+		case "<=":
+		case "le":
+			return comparison -> comparison <= 0;
+		case ">":
+		case "gt":
+			return comparison -> comparison > 0;
+		default:
+			return comparison -> comparison >= 0;
+		}
+	}
+
+}
@@ -0,0 +1,152 @@
+package com.hercules.playground.flowable.feed;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cursor over a TaskChangeFeed, moved by a thread of its own that hands each change to the subscriber
+ * <br>
+ * The thread parks while the cursor is at the head, or at a sequence claimed by a transaction still committing,
+ * and is woken by every publish. A sequence that stays unpublished for STALLED_MILLIS, its transaction gone without
+ * committing or rolling back, is reported as a gap instead of holding up the changes behind it.
+ */
+public final class Subscription implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(Subscription.class);
+	private static final long STALLED_MILLIS = 30_000;
+	// woken by the publishes, the timeout only covers a transaction that neither commits nor rolls back
+	private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	private final TaskChangeFeed feed;
+	private final TaskChangeRing ring;
+	private final TaskChangeSubscriber subscriber;
+	private final Thread thread;
+
+	private volatile long position;
+	private volatile boolean closed;
+
+	private final LongAdder delivered = new LongAdder();
+	private final LongAdder gaps = new LongAdder();
+
+	Subscription(TaskChangeFeed feed, long fromSequence, TaskChangeSubscriber subscriber) {
+		this.feed = feed;
+		this.ring = feed.ring();
+		this.subscriber = subscriber;
+		this.position = Math.max(0, fromSequence);
+		this.thread = new Thread(this::deliver, "task-change-subscription");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * The sequence of the next change to be delivered
+	 */
+	public long getPosition() {
+		return this.position;
+	}
+
+	/**
+	 * Waits until every change before the sequence was delivered, or skipped as part of a gap
+	 *
+	 * @return false when the timeout passed first
+	 */
+	public boolean await(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (this) {
+			while (this.position < sequence) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0 || this.closed) {
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Changes handed to the subscriber
+	 */
+	public long getDelivered() {
+		return this.delivered.sum();
+	}
+
+	/**
+	 * Times the cursor fell behind the ring
+	 */
+	public long getGaps() {
+		return this.gaps.sum();
+	}
+
+	@Override
+	public void close() {
+		this.closed = true;
+		LockSupport.unpark(this.thread);
+		this.feed.closed(this);
+		synchronized (this) {
+			notifyAll();
+		}
+	}
+
+	void start() {
+		this.thread.start();
+	}
+
+	void wake() {
+		LockSupport.unpark(this.thread);
+	}
+
+	private void deliver() {
+		long stalledSince = 0;
+		while (!this.closed) {
+			long sequence = this.position;
+			TaskChange change = sequence < this.ring.head() ? this.ring.get(sequence) : null;
+			if (change != null && change.getSequence() == sequence) {
+				stalledSince = 0;
+				if (change.getType() != null) {
+					apply(change);
+				}
+				this.position = sequence + 1;
+			} else if (change != null && change.getSequence() > sequence) {
+				// overwritten, the oldest change still in the ring is where the cursor goes on
+				stalledSince = 0;
+				gap(sequence, Math.max(sequence + 1, this.ring.head() - this.ring.capacity()));
+			} else if (sequence < this.ring.head() && stalledSince != 0
+					&& System.currentTimeMillis() - stalledSince > STALLED_MILLIS) {
+				stalledSince = 0;
+				gap(sequence, sequence + 1);
+			} else {
+				if (sequence < this.ring.head() && stalledSince == 0) {
+					stalledSince = System.currentTimeMillis();
+				}
+				synchronized (this) {
+					notifyAll();
+				}
+				LockSupport.parkNanos(this, PARK_NANOS);
+			}
+		}
+	}
+
+	private void apply(TaskChange change) {
+		try {
+			this.subscriber.onChange(change);
+			this.delivered.increment();
+		} catch (RuntimeException e) {
+			LOGGER.warn("Subscriber failed on change {}, going on with the next one", change, e);
+		}
+	}
+
+	private void gap(long fromSequence, long nextSequence) {
+		this.gaps.increment();
+		try {
+			this.subscriber.onGap(fromSequence, nextSequence - 1);
+		} catch (RuntimeException e) {
+			LOGGER.warn("Subscriber failed on the gap {} to {}", fromSequence, nextSequence - 1, e);
+		}
+		this.position = nextSequence;
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.hercules.playground.flowable.feed;
+
+import org.flowable.task.api.Task;
+
+/**
+ * A committed change of a task, numbered in the order of the feed
+ * <br>
+ * A change carries what the task looked like when it was made, a subscriber applying the changes in sequence order
+ * ends up with the tasks the database has.
+ */
+public final class TaskChange {
+
+	public enum Type {
+		CREATED, ASSIGNED, COMPLETED, DELETED
+	}
+
+	private final long sequence;
+	// null for the sequence of a transaction that rolled back after claiming it, never handed to subscribers
+	private final Type type;
+	private final String taskId;
+	private final String name;
+	private final String assignee;
+	private final String processInstanceId;
+	private final long committedNanos;
+
+	TaskChange(long sequence, Type type, String taskId, String name, String assignee, String processInstanceId,
+			long committedNanos) {
+		this.sequence = sequence;
+		this.type = type;
+		this.taskId = taskId;
+		this.name = name;
+		this.assignee = assignee;
+		this.processInstanceId = processInstanceId;
+		this.committedNanos = committedNanos;
+	}
+
+	/**
+	 * The task as it is now, numbered when its transaction commits
+	 */
+	static TaskChange of(Type type, Task task) {
+		return new TaskChange(-1, type, task.getId(), task.getName(), task.getAssignee(), task.getProcessInstanceId(), 0);
+	}
+
+	/**
+	 * A task deleted without an event of its own, by a purge, numbered when its transaction commits
+	 */
+	static TaskChange deleted(String taskId, String processInstanceId) {
+		return new TaskChange(-1, Type.DELETED, taskId, null, null, processInstanceId, 0);
+	}
+
+	/**
+	 * A task as a query found it, for subscribers loading the tasks they start from
+	 */
+	static TaskChange loaded(Task task) {
+		return of(Type.CREATED, task).published(-1, System.nanoTime());
+	}
+
+	TaskChange published(long sequence, long committedNanos) {
+		return new TaskChange(sequence, this.type, this.taskId, this.name, this.assignee, this.processInstanceId,
+				committedNanos);
+	}
+
+	/**
+	 * Takes the place of a change whose transaction claimed its sequence and then failed to commit
+	 */
+	static TaskChange rolledBack(long sequence, long committedNanos) {
+		return new TaskChange(sequence, null, null, null, null, null, committedNanos);
+	}
+
+	public long getSequence() {
+		return this.sequence;
+	}
+
+	public Type getType() {
+		return this.type;
+	}
+
+	public String getTaskId() {
+		return this.taskId;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public String getAssignee() {
+		return this.assignee;
+	}
+
+	public String getProcessInstanceId() {
+		return this.processInstanceId;
+	}
+
+	/**
+	 * System.nanoTime when the transaction of the change had committed and the change was published
+	 */
+	public long getCommittedNanos() {
+		return this.committedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return this.sequence + " " + this.type + " " + this.taskId + " (" + this.name + ")";
+	}
+
+}
@@ -0,0 +1,213 @@
+package com.hercules.playground.flowable.feed;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEntityEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.common.engine.impl.context.Context;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.task.api.Task;
+
+import com.hercules.playground.flowable.teardown.ProcessInstancesPurgedEvent;
+
+/**
+ * Pushes the created, assigned, completed and deleted tasks of the engine to subscribers in the order they were committed
+ * <br>
+ * Finding out what changed with createTaskQuery().active().list() after every action reads every active task every time,
+ * most of them unchanged. Here the task events of a transaction are collected while it runs and handed out once it has committed,
+ * a subscriber applies them to what it holds and never queries again. The tasks of process instances purged by a
+ * BulkProcessInstanceTeardown fire no events, they are handed out as deleted from its ProcessInstancesPurgedEvent.
+ * <br>
+ * The sequences of a transaction's changes are claimed while it commits, with its rows still locked, so a transaction acting on
+ * the committed rows of another always gets the later sequences. The changes are published into a ring of the last capacity
+ * changes once the commit went through, a transaction that fails to commit after claiming publishes empty changes in their place.
+ * Every subscription reads the ring from its own cursor, one that falls more than capacity changes behind is told about the gap.
+ */
+public class TaskChangeFeed implements FlowableEventListener, AutoCloseable {
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private static final String BATCH = TaskChangeFeed.class.getName() + ".batch";
+
+	private final RuntimeService runtimeService;
+	private final TaskChangeRing ring;
+	private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+	TaskChangeFeed(RuntimeService runtimeService, int capacity) {
+		this.runtimeService = runtimeService;
+		this.ring = new TaskChangeRing(capacity);
+	}
+
+	/**
+	 * A feed of the last 4096 changes
+	 */
+	public static TaskChangeFeed register(ProcessEngine processEngine) {
+		return register(processEngine, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity the changes kept for subscribers behind, rounded up to a power of two
+	 */
+	public static TaskChangeFeed register(ProcessEngine processEngine, int capacity) {
+		TaskChangeFeed feed = new TaskChangeFeed(processEngine.getRuntimeService(), capacity);
+		feed.runtimeService.addEventListener(feed, FlowableEngineEventType.TASK_CREATED,
+				FlowableEngineEventType.TASK_ASSIGNED, FlowableEngineEventType.TASK_COMPLETED,
+				FlowableEngineEventType.ENTITY_DELETED, FlowableEngineEventType.CUSTOM);
+		return feed;
+	}
+
+	/**
+	 * Delivers the changes committed from now on
+	 */
+	public Subscription subscribe(TaskChangeSubscriber subscriber) {
+		return subscribe(getHead(), subscriber);
+	}
+
+	/**
+	 * Delivers the changes from the sequence on, the ones still in the ring are replayed first
+	 */
+	public Subscription subscribe(long fromSequence, TaskChangeSubscriber subscriber) {
+		Subscription subscription = new Subscription(this, fromSequence, subscriber);
+		this.subscriptions.add(subscription);
+		subscription.start();
+		return subscription;
+	}
+
+	/**
+	 * The sequence the next change gets, every change of a call that returned has a lower one
+	 */
+	public long getHead() {
+		return this.ring.head();
+	}
+
+	public int getCapacity() {
+		return this.ring.capacity();
+	}
+
+	@Override
+	public void close() {
+		this.runtimeService.removeEventListener(this);
+		for (Subscription subscription : this.subscriptions) {
+			subscription.close();
+		}
+	}
+
+	@Override
+	public void onEvent(FlowableEvent event) {
+		if (event instanceof ProcessInstancesPurgedEvent) {
+			Batch batch = batch();
+			((ProcessInstancesPurgedEvent) event).getTaskIds()
+					.forEach((taskId, processInstanceId) -> batch.changes.add(TaskChange.deleted(taskId, processInstanceId)));
+			return;
+		}
+		if (!(event instanceof FlowableEntityEvent) || !(((FlowableEntityEvent) event).getEntity() instanceof Task)) {
+			return;
+		}
+		batch().add(type(event), (Task) ((FlowableEntityEvent) event).getEntity());
+	}
+
+	/**
+	 * The changes of the transaction running, published once it has committed
+	 */
+	private Batch batch() {
+		CommandContext commandContext = Context.getCommandContext();
+		Batch batch = (Batch) commandContext.getAttribute(BATCH);
+		if (batch == null) {
+			batch = new Batch();
+			commandContext.addAttribute(BATCH, batch);
+			Batch registered = batch;
+			Context.getTransactionContext().addTransactionListener(TransactionState.COMMITTING,
+					context -> registered.claim());
+			Context.getTransactionContext().addTransactionListener(TransactionState.COMMITTED,
+					context -> registered.publish(false));
+			Context.getTransactionContext().addTransactionListener(TransactionState.ROLLED_BACK,
+					context -> registered.publish(true));
+		}
+		return batch;
+	}
+
+	@Override
+	public boolean isFailOnException() {
+		return false;
+	}
+
+	@Override
+	public boolean isFireOnTransactionLifecycleEvent() {
+		return false;
+	}
+
+	@Override
+	public String getOnTransaction() {
+		return null;
+	}
+
+	TaskChangeRing ring() {
+		return this.ring;
+	}
+
+	void closed(Subscription subscription) {
+		this.subscriptions.remove(subscription);
+	}
+
+	private static TaskChange.Type type(FlowableEvent event) {
+		switch ((FlowableEngineEventType) event.getType()) {
+		case TASK_CREATED:
+			return TaskChange.Type.CREATED;
+		case TASK_ASSIGNED:
+			return TaskChange.Type.ASSIGNED;
+		case TASK_COMPLETED:
+			return TaskChange.Type.COMPLETED;
+		default:
+			return TaskChange.Type.DELETED;
+		}
+	}
+
+	/**
+	 * The changes of one transaction, as the task looked when the event fired
+	 */
+	private class Batch {
+		final List<TaskChange> changes = new ArrayList<>();
+		final Set<String> completed = new HashSet<>();
+		long first = -1;
+
+		void add(TaskChange.Type type, Task task) {
+			if (type == TaskChange.Type.COMPLETED) {
+				this.completed.add(task.getId());
+			} else if (type == TaskChange.Type.DELETED && this.completed.contains(task.getId())) {
+				// a completed task is deleted right after, the completion says it all
+				return;
+			}
+			this.changes.add(TaskChange.of(type, task));
+		}
+
+		void claim() {
+			this.first = TaskChangeFeed.this.ring.claim(this.changes.size());
+		}
+
+		void publish(boolean rolledBack) {
+			if (this.first < 0) {
+				// rolled back before the commit, nothing was claimed
+				return;
+			}
+			long committedNanos = System.nanoTime();
+			for (int i = 0; i < this.changes.size(); i++) {
+				TaskChangeFeed.this.ring.publish(rolledBack ? TaskChange.rolledBack(this.first + i, committedNanos)
+						: this.changes.get(i).published(this.first + i, committedNanos));
+			}
+			this.first = -1;
+			for (Subscription subscription : TaskChangeFeed.this.subscriptions) {
+				subscription.wake();
+			}
+		}
+	}
+
+}
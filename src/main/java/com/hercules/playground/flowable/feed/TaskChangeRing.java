@@ -0,0 +1,65 @@
+package com.hercules.playground.flowable.feed;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The last capacity changes of the feed, written by the committing threads without a lock
+ * <br>
+ * A transaction claims the sequences of its changes before it commits and publishes them into their slots once it has,
+ * so the slot of a claimed sequence can still hold an older change for a while. A slot only ever takes a later change
+ * than the one it holds, a transaction slow to publish does not overwrite what came capacity changes after it.
+ */
+final class TaskChangeRing {
+
+	private final AtomicReferenceArray<TaskChange> slots;
+	private final int mask;
+	private final AtomicLong claimed = new AtomicLong();
+
+	/**
+	 * @param capacity rounded up to a power of two
+	 */
+	TaskChangeRing(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity));
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.slots = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * @return the first of count consecutive sequences
+	 */
+	long claim(int count) {
+		return this.claimed.getAndAdd(count);
+	}
+
+	void publish(TaskChange change) {
+		int index = (int) change.getSequence() & this.mask;
+		TaskChange current = this.slots.get(index);
+		while ((current == null || current.getSequence() < change.getSequence())
+				&& !this.slots.compareAndSet(index, current, change)) {
+			current = this.slots.get(index);
+		}
+	}
+
+	/**
+	 * The change in the slot of the sequence, an older one while the sequence is not published yet, a later one once it was overwritten
+	 */
+	TaskChange get(long sequence) {
+		return this.slots.get((int) sequence & this.mask);
+	}
+
+	/**
+	 * The next sequence to be claimed
+	 */
+	long head() {
+		return this.claimed.get();
+	}
+
+	int capacity() {
+		return this.slots.length();
+	}
+
+}
@@ -0,0 +1,18 @@
+package com.hercules.playground.flowable.feed;
+
+/**
+ * Receives the changes of a TaskChangeFeed, one at a time in sequence order, on the thread of its subscription
+ */
+@FunctionalInterface
+public interface TaskChangeSubscriber {
+
+	void onChange(TaskChange change);
+
+	/**
+	 * The changes from fromSequence to toSequence were overwritten before this subscriber got to them,
+	 * whatever it built from the changes is to be loaded again
+	 */
+	default void onGap(long fromSequence, long toSequence) {
+	}
+
+}
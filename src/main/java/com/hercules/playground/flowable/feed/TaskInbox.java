@@ -0,0 +1,130 @@
+package com.hercules.playground.flowable.feed;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.TaskService;
+import org.flowable.task.api.Task;
+
+/**
+ * The active tasks of the engine, loaded once with createTaskQuery().active().list() and kept up to date by a TaskChangeFeed
+ * <br>
+ * The inbox subscribes to the changes still in the feed's ring before it queries, so a transaction that claimed its sequences
+ * but had not committed when the query ran is applied once it has. Changes the query already saw are applied again on top
+ * of it, they end up with the same tasks, a created task is put, a completed or deleted one removed.
+ * A gap in the feed drops what the inbox holds and queries again, counted by getReloads.
+ * <br>
+ * Suspending and activating tasks fire no task events, a suspended task stays in the inbox.
+ */
+public class TaskInbox implements TaskChangeSubscriber, AutoCloseable {
+
+	private final TaskService taskService;
+	private final TaskChangeFeed feed;
+	private final Subscription subscription;
+	// task id -> the last change of the task
+	private final Map<String, TaskChange> tasks = new ConcurrentHashMap<>();
+
+	private final LongAdder reloads = new LongAdder();
+	private final LongAdder applied = new LongAdder();
+	private final LongAdder deliveryNanos = new LongAdder();
+
+	TaskInbox(ProcessEngine processEngine, TaskChangeFeed feed) {
+		this.taskService = processEngine.getTaskService();
+		this.feed = feed;
+		long from = feed.getHead() - feed.getCapacity();
+		load();
+		this.subscription = feed.subscribe(from, this);
+	}
+
+	/**
+	 * Loads the active tasks and follows the feed from then on
+	 */
+	public static TaskInbox open(ProcessEngine processEngine, TaskChangeFeed feed) {
+		return new TaskInbox(processEngine, feed);
+	}
+
+	public Collection<TaskChange> getTasks() {
+		return this.tasks.values();
+	}
+
+	public List<TaskChange> getTasks(String processInstanceId) {
+		return this.tasks.values().stream().filter(task -> processInstanceId.equals(task.getProcessInstanceId()))
+				.collect(Collectors.toList());
+	}
+
+	public int size() {
+		return this.tasks.size();
+	}
+
+	/**
+	 * Waits until the inbox holds the changes of every call that returned before this one
+	 *
+	 * @return false when the timeout passed first
+	 */
+	public boolean sync(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.subscription.await(this.feed.getHead(), timeout, unit);
+	}
+
+	/**
+	 * Times the tasks were queried again after a gap in the feed
+	 */
+	public long getReloads() {
+		return this.reloads.sum();
+	}
+
+	/**
+	 * Changes applied to the inbox
+	 */
+	public long getApplied() {
+		return this.applied.sum();
+	}
+
+	/**
+	 * Average nanoseconds from the commit of a change to it being applied here
+	 */
+	public double getAverageDeliveryNanos() {
+		long count = this.applied.sum();
+		return count == 0 ? 0 : (double) this.deliveryNanos.sum() / count;
+	}
+
+	@Override
+	public void onChange(TaskChange change) {
+		if (change.getType() == TaskChange.Type.COMPLETED || change.getType() == TaskChange.Type.DELETED) {
+			this.tasks.remove(change.getTaskId());
+		} else {
+			this.tasks.put(change.getTaskId(), change);
+		}
+		this.applied.increment();
+		this.deliveryNanos.add(System.nanoTime() - change.getCommittedNanos());
+	}
+
+	@Override
+	public void onGap(long fromSequence, long toSequence) {
+		this.reloads.increment();
+		load();
+	}
+
+	@Override
+	public void close() {
+		this.subscription.close();
+	}
+
+	private void load() {
+		List<Task> active = this.taskService.createTaskQuery().active().list();
+		Set<String> gone = new HashSet<>(this.tasks.keySet());
+		for (Task task : active) {
+			gone.remove(task.getId());
+			this.tasks.put(task.getId(), TaskChange.loaded(task));
+		}
+		this.tasks.keySet().removeAll(gone);
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.hercules.playground.flowable.gateway;
+
+import java.util.List;
+import java.util.Map;
+
+import org.flowable.bpmn.model.FlowElement;
+import org.flowable.bpmn.model.FlowNode;
+import org.flowable.bpmn.model.ParallelGateway;
+import org.flowable.bpmn.model.SequenceFlow;
+import org.flowable.common.engine.api.FlowableObjectNotFoundException;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.cmd.CompleteTaskCmd;
+import org.flowable.engine.impl.persistence.entity.ExecutionEntityManager;
+import org.flowable.engine.impl.util.CommandContextUtil;
+import org.flowable.engine.impl.util.ProcessDefinitionUtil;
+import org.flowable.task.api.Task;
+import org.flowable.task.service.impl.persistence.entity.TaskEntity;
+
+import com.hercules.playground.flowable.execution.ExecutionTreeIndex;
+
+/**
+ * Completes a task, setting the given variables on its process instance in the same transaction
+ * unless the task flows into a parallel join that will still be waiting afterwards
+ * <br>
+ * Answers whether the variables were written. The tokens already waiting at the join are counted with a query, which sees
+ * the arrivals other transactions have committed. An ExecutionTreeIndex only learns of them once their listeners have run,
+ * so it is asked first and trusted only when it says the join fires, the query settles every "still waiting".
+ */
+class CompleteTaskWithJoinMergeCmd implements Command<Boolean> {
+
+	private final String taskId;
+	private final Map<String, Object> variables;
+	private final ExecutionTreeIndex executionTrees;
+
+	CompleteTaskWithJoinMergeCmd(String taskId, Map<String, Object> variables, ExecutionTreeIndex executionTrees) {
+		this.taskId = taskId;
+		this.variables = variables;
+		this.executionTrees = executionTrees;
+	}
+
+	@Override
+	public Boolean execute(CommandContext commandContext) {
+		TaskEntity task = CommandContextUtil.getTaskService(commandContext).getTask(this.taskId);
+		if (task == null) {
+			throw new FlowableObjectNotFoundException("Cannot find task with id " + this.taskId, Task.class);
+		}
+		boolean flush = !this.variables.isEmpty() && !arrivesAtWaitingJoin(commandContext, task);
+		if (flush) {
+			CommandContextUtil.getExecutionEntityManager(commandContext).findById(task.getProcessInstanceId())
+					.setVariables(this.variables);
+		}
+		new CompleteTaskCmd(this.taskId, null).execute(commandContext);
+		return flush;
+	}
+
+	private boolean arrivesAtWaitingJoin(CommandContext commandContext, TaskEntity task) {
+		FlowElement taskElement = ProcessDefinitionUtil.getProcess(task.getProcessDefinitionId())
+				.getFlowElement(task.getTaskDefinitionKey(), true);
+		if (!(taskElement instanceof FlowNode)) {
+			return false;
+		}
+		List<SequenceFlow> outgoingFlows = ((FlowNode) taskElement).getOutgoingFlows();
+		if (outgoingFlows.size() != 1 || !(outgoingFlows.get(0).getTargetFlowElement() instanceof ParallelGateway)) {
+			return false;
+		}
+		ParallelGateway join = (ParallelGateway) outgoingFlows.get(0).getTargetFlowElement();
+		if (join.getIncomingFlows().size() < 2) {
+			return false;
+		}
+		if (this.executionTrees != null && this.executionTrees.contains(task.getProcessInstanceId())
+				&& this.executionTrees.arrivalsAt(task.getProcessInstanceId(), join.getId()) + 1 >= join.getIncomingFlows().size()) {
+			// an index that is behind counts too few, rarely too many, and too many only writes the variables early
+			return false;
+		}
+		ExecutionEntityManager executionEntityManager = CommandContextUtil.getExecutionEntityManager(commandContext);
+		int alreadyJoined = executionEntityManager
+				.findInactiveExecutionsByActivityIdAndProcessInstanceId(join.getId(), task.getProcessInstanceId()).size();
+		return alreadyJoined + 1 < join.getIncomingFlows().size();
+	}
+
+}
@@ -0,0 +1,146 @@
+package com.hercules.playground.flowable.gateway;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.task.api.Task;
+
+import com.hercules.playground.flowable.execution.ExecutionTreeIndex;
+import com.hercules.playground.flowable.teardown.ProcessInstancesPurgedEvent;
+
+/**
+ * Join merge mode for fork/join processes: branch variable writes stay in memory until the join fires
+ * <br>
+ * GatewayTests.whatHappensToProcessVariablesWhenTokensMerge shows the branches of a parallel gateway all write to the process instance
+ * and the last write wins. Writing each one as it happens inserts a row, then updates it for every later branch that writes the same name.
+ * Here the writes are kept per process instance, last write wins, and written once as a deduplicated set
+ * in the same transaction as the task completion that fires the join.
+ * <br>
+ * Completing a task that does not lead into a waiting join, Step 1 before the fork for example, writes the buffer straight away,
+ * so outside of a fork/join region nothing is held back.
+ * <br>
+ * Variables set through the buffer land on the process instance, which is where runtimeService.setVariable puts them
+ * for a branch execution that has no local variable of that name. Reads go to the engine and only see flushed values.
+ * <br>
+ * A buffer made with register drops the writes held for a process instance once it has ended, been deleted
+ * or purged by a BulkProcessInstanceTeardown, one made with the constructor keeps them until they are flushed.
+ * <br>
+ * Whether the join is still waiting is a count of the tokens already there, a query. Given an ExecutionTreeIndex the buffer
+ * skips the query when the tree of the process instance already has every other branch at the join; the index may lag
+ * behind other transactions, so when it says the join still waits the query decides.
+ */
+public class JoinVariableBuffer implements FlowableEventListener, AutoCloseable {
+
+	private final RuntimeService runtimeService;
+	private final ManagementService managementService;
+	private final ExecutionTreeIndex executionTrees;
+	private final ConcurrentHashMap<String, Map<String, Object>> buffered = new ConcurrentHashMap<>();
+
+	public JoinVariableBuffer(ProcessEngine processEngine) {
+		this(processEngine, null);
+	}
+
+	/**
+	 * @param executionTrees counts the tokens waiting at a join, null to query them
+	 */
+	public JoinVariableBuffer(ProcessEngine processEngine, ExecutionTreeIndex executionTrees) {
+		this.runtimeService = processEngine.getRuntimeService();
+		this.managementService = processEngine.getManagementService();
+		this.executionTrees = executionTrees;
+	}
+
+	/**
+	 * A buffer that forgets the process instances that are gone
+	 */
+	public static JoinVariableBuffer register(ProcessEngine processEngine) {
+		return register(processEngine, null);
+	}
+
+	public static JoinVariableBuffer register(ProcessEngine processEngine, ExecutionTreeIndex executionTrees) {
+		JoinVariableBuffer buffer = new JoinVariableBuffer(processEngine, executionTrees);
+		buffer.runtimeService.addEventListener(buffer, FlowableEngineEventType.PROCESS_COMPLETED,
+				FlowableEngineEventType.PROCESS_CANCELLED, FlowableEngineEventType.CUSTOM);
+		return buffer;
+	}
+
+	public void setVariable(Task task, String variableName, Object value) {
+		this.buffered.compute(task.getProcessInstanceId(), (processInstanceId, variables) -> {
+			variables = variables != null ? variables : new LinkedHashMap<>();
+			variables.put(variableName, value);
+			return variables;
+		});
+	}
+
+	public void setVariables(Task task, Map<String, Object> variables) {
+		variables.forEach((variableName, value) -> setVariable(task, variableName, value));
+	}
+
+	/**
+	 * The writes of a process instance not yet flushed to the engine
+	 */
+	public Map<String, Object> getBufferedVariables(String processInstanceId) {
+		Map<String, Object> variables = new LinkedHashMap<>();
+		this.buffered.computeIfPresent(processInstanceId, (id, pending) -> {
+			variables.putAll(pending);
+			return pending;
+		});
+		return Collections.unmodifiableMap(variables);
+	}
+
+	/**
+	 * Completes the task, writing the buffered variables of its process instance first unless the task only arrives at a join
+	 * that is still waiting for other branches
+	 */
+	public void complete(Task task) {
+		Map<String, Object> variables = new LinkedHashMap<>(getBufferedVariables(task.getProcessInstanceId()));
+		boolean flushed = this.managementService.executeCommand(new CompleteTaskWithJoinMergeCmd(task.getId(), variables,
+				this.executionTrees));
+		if (flushed) {
+			// anything written while the command ran is kept for the next flush
+			this.buffered.computeIfPresent(task.getProcessInstanceId(), (processInstanceId, pending) -> {
+				variables.forEach(pending::remove);
+				return pending.isEmpty() ? null : pending;
+			});
+		}
+	}
+
+	@Override
+	public void close() {
+		this.runtimeService.removeEventListener(this);
+	}
+
+	@Override
+	public void onEvent(FlowableEvent event) {
+		if (event instanceof ProcessInstancesPurgedEvent) {
+			this.buffered.keySet().removeAll(((ProcessInstancesPurgedEvent) event).getProcessInstanceIds());
+		} else if (event instanceof FlowableEngineEvent && ((FlowableEngineEvent) event).getProcessInstanceId() != null) {
+			this.buffered.remove(((FlowableEngineEvent) event).getProcessInstanceId());
+		}
+	}
+
+	@Override
+	public boolean isFailOnException() {
+		return false;
+	}
+
+	@Override
+	public boolean isFireOnTransactionLifecycleEvent() {
+		return true;
+	}
+
+	@Override
+	public String getOnTransaction() {
+		return TransactionState.COMMITTED.name();
+	}
+
+}
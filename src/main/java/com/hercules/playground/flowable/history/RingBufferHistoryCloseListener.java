@@ -0,0 +1,49 @@
+package com.hercules.playground.flowable.history;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.job.service.impl.history.async.AsyncHistorySession;
+import org.flowable.job.service.impl.history.async.AsyncHistorySessionCommandContextCloseListener;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Collects the history json of a command while it closes, and hands it to the writer once its transaction committed
+ * <br>
+ * History of a command that rolled back is dropped with it, like the history rows would have been.
+ */
+class RingBufferHistoryCloseListener extends AsyncHistorySessionCommandContextCloseListener {
+
+	private final RingBufferHistoryWriter writer;
+	private final List<ObjectNode> generated = new ArrayList<>();
+
+	RingBufferHistoryCloseListener(AsyncHistorySession session, RingBufferHistoryWriter writer) {
+		super(session, null);
+		this.writer = writer;
+		setAsyncHistoryListener((jobServiceConfiguration, historyData) -> {
+			this.generated.addAll(historyData);
+			return Collections.emptyList();
+		});
+	}
+
+	@Override
+	public void closing(CommandContext commandContext) {
+		super.closing(commandContext);
+		if (this.writer.isClosed() && !this.generated.isEmpty()) {
+			// nobody is draining the ring buffer anymore, the history goes in with this transaction
+			new WriteHistoryBatchCmd(this.generated).execute(commandContext);
+			this.generated.clear();
+		}
+	}
+
+	@Override
+	public void closed(CommandContext commandContext) {
+		if (!this.generated.isEmpty()) {
+			this.writer.committed(this.generated);
+		}
+	}
+
+}
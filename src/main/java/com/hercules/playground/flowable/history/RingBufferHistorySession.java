@@ -0,0 +1,19 @@
+package com.hercules.playground.flowable.history;
+
+import java.util.List;
+
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.job.service.impl.history.async.AsyncHistorySession;
+
+/**
+ * The engine's async history session, with history handed to a RingBufferHistoryWriter instead of turned into history jobs
+ */
+class RingBufferHistorySession extends AsyncHistorySession {
+
+	RingBufferHistorySession(CommandContext commandContext, RingBufferHistoryWriter writer, List<String> jobDataTypes) {
+		super(commandContext, null, jobDataTypes);
+		// super already made the default listener, it is only registered once history is added
+		this.commandContextCloseListener = new RingBufferHistoryCloseListener(this, writer);
+	}
+
+}
@@ -0,0 +1,319 @@
+package com.hercules.playground.flowable.history;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.common.engine.impl.interceptor.CommandExecutor;
+import org.flowable.common.engine.impl.interceptor.Session;
+import org.flowable.common.engine.impl.interceptor.SessionFactory;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.ProcessEngineLifecycleListener;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.engine.impl.history.async.HistoryJsonConstants;
+import org.flowable.engine.impl.util.CommandContextUtil;
+import org.flowable.job.service.impl.history.async.AsyncHistorySessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Writes history on a background thread instead of in the transaction of the api call that made it
+ * <br>
+ * With async history enabled the engine no longer inserts and updates history rows as it goes, it describes them as json
+ * and hands them to the async history session. The engine's own session turns that json into async history jobs,
+ * rows in the same transaction again, for the async history executor to pick up. This session factory keeps the json in memory:
+ * once the transaction of the api call committed, its history goes into a bounded ring buffer and a single writer thread
+ * applies it to the history tables with the engine's own history json transformers, up to flushSize at a time in one transaction.
+ * <br>
+ * The writer writes when flushSize entries are waiting, or flushIntervalMillis after its last write, whichever comes first.
+ * A full buffer blocks the committing thread until the writer catches up, history is never dropped to make room.
+ * Closing the writer, or the engine it is registered with, drains the buffer. History made after that is written
+ * in the transaction that made it, as if async history was off.
+ * <br>
+ * History queries only see what the writer wrote so far, call flush before asserting on history.
+ */
+public class RingBufferHistoryWriter extends AsyncHistorySessionFactory
+		implements ProcessEngineLifecycleListener, AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RingBufferHistoryWriter.class);
+
+	private static final int NOT_APPLICABLE_ATTEMPTS = 10;
+
+	private final ArrayBlockingQueue<ObjectNode> ring;
+	private final int flushSize;
+	private final long flushIntervalNanos;
+	private final Object signal = new Object();
+	private final Object progress = new Object();
+	private volatile CommandExecutor commandExecutor;
+	private volatile boolean closed;
+	private volatile boolean flushRequested;
+	private Thread writer;
+
+	private final AtomicLong enqueued = new AtomicLong();
+	private final AtomicLong settled = new AtomicLong();
+	private final LongAdder written = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+
+	// only touched by the writer thread
+	private final ArrayDeque<ObjectNode> notApplicable = new ArrayDeque<>();
+	private final Map<ObjectNode, Integer> attempts = new IdentityHashMap<>();
+
+	public RingBufferHistoryWriter() {
+		this(8192, 500, 50);
+	}
+
+	/**
+	 * @param capacity the most history entries waiting to be written before committing threads block
+	 * @param flushSize the most history entries written in one transaction
+	 * @param flushIntervalMillis the longest a history entry waits for a batch to fill up
+	 */
+	public RingBufferHistoryWriter(int capacity, int flushSize, long flushIntervalMillis) {
+		this.ring = new ArrayBlockingQueue<>(capacity);
+		this.flushSize = flushSize;
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+		registerJobDataTypes(HistoryJsonConstants.ORDERED_TYPES);
+	}
+
+	public static RingBufferHistoryWriter install(ProcessEngineConfiguration configuration) {
+		return install(configuration, new RingBufferHistoryWriter());
+	}
+
+	/**
+	 * Switches the configuration to async history written by the given writer, what flowable.cfg.xml does with asyncHistoryEnabled
+	 */
+	public static RingBufferHistoryWriter install(ProcessEngineConfiguration configuration, RingBufferHistoryWriter writer) {
+		ProcessEngineConfigurationImpl engineConfiguration = (ProcessEngineConfigurationImpl) configuration;
+		List<SessionFactory> sessionFactories = engineConfiguration.getCustomSessionFactories() != null
+				? new ArrayList<>(engineConfiguration.getCustomSessionFactories())
+				: new ArrayList<>();
+		sessionFactories.add(writer);
+		engineConfiguration.setCustomSessionFactories(sessionFactories);
+		engineConfiguration.setAsyncHistoryEnabled(true);
+		engineConfiguration.setProcessEngineLifecycleListener(writer);
+		return writer;
+	}
+
+	@Override
+	public Session openSession(CommandContext commandContext) {
+		if (this.commandExecutor == null) {
+			this.commandExecutor = CommandContextUtil.getProcessEngineConfiguration(commandContext).getCommandExecutor();
+		}
+		return new RingBufferHistorySession(commandContext, this, this.registeredJobDataTypes);
+	}
+
+	/**
+	 * Waits until everything committed so far is written
+	 */
+	public void flush() {
+		long target = this.enqueued.get();
+		synchronized (this.signal) {
+			this.flushRequested = true;
+			this.signal.notifyAll();
+		}
+		synchronized (this.progress) {
+			while (this.settled.get() < target && this.writer != null && this.writer.isAlive()) {
+				try {
+					this.progress.wait(10);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops taking history, and waits up to a minute for the writer to write what it has
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		Thread running;
+		synchronized (this.signal) {
+			running = this.writer;
+			this.signal.notifyAll();
+		}
+		if (running != null) {
+			try {
+				running.join(TimeUnit.MINUTES.toMillis(1));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public void onProcessEngineBuilt(ProcessEngine processEngine) {
+	}
+
+	@Override
+	public void onProcessEngineClosed(ProcessEngine processEngine) {
+		close();
+	}
+
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 * History entries written to the history tables
+	 */
+	public long getWritten() {
+		return this.written.sum();
+	}
+
+	/**
+	 * History entries given up on, after failing to write or still not applicable after repeated attempts
+	 */
+	public long getDropped() {
+		return this.dropped.sum();
+	}
+
+	public long getBatches() {
+		return this.batches.sum();
+	}
+
+	/**
+	 * History entries waiting in the ring buffer
+	 */
+	public int getQueued() {
+		return this.ring.size();
+	}
+
+	/**
+	 * Called once the transaction that generated the history committed
+	 */
+	void committed(List<ObjectNode> historyData) {
+		if (this.closed) {
+			// closed between closing and committing, the writer may be gone already so this thread writes it
+			this.commandExecutor.execute(new WriteHistoryBatchCmd(historyData));
+			return;
+		}
+		startWriter();
+		for (ObjectNode historyNode : historyData) {
+			try {
+				this.ring.put(historyNode);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new FlowableException("Interrupted while waiting for room in the history ring buffer", e);
+			}
+			this.enqueued.incrementAndGet();
+		}
+		if (this.ring.size() >= this.flushSize) {
+			synchronized (this.signal) {
+				this.signal.notifyAll();
+			}
+		}
+	}
+
+	private void startWriter() {
+		if (this.writer == null) {
+			synchronized (this.signal) {
+				if (this.writer == null && !this.closed) {
+					Thread thread = new Thread(this::writeLoop, "history-writer");
+					thread.setDaemon(true);
+					thread.start();
+					this.writer = thread;
+				}
+			}
+		}
+	}
+
+	private void writeLoop() {
+		long lastWrite = System.nanoTime();
+		while (!this.closed || !this.ring.isEmpty() || !this.notApplicable.isEmpty()) {
+			awaitBatch(lastWrite);
+			List<ObjectNode> batch = new ArrayList<>(this.flushSize);
+			while (!this.notApplicable.isEmpty() && batch.size() < this.flushSize) {
+				batch.add(this.notApplicable.poll());
+			}
+			this.ring.drainTo(batch, this.flushSize - batch.size());
+			if (!batch.isEmpty()) {
+				write(batch);
+			}
+			lastWrite = System.nanoTime();
+			synchronized (this.progress) {
+				this.progress.notifyAll();
+			}
+		}
+	}
+
+	private void awaitBatch(long lastWrite) {
+		synchronized (this.signal) {
+			long remaining = lastWrite + this.flushIntervalNanos - System.nanoTime();
+			while (remaining > 0 && this.ring.size() < this.flushSize && !this.flushRequested && !this.closed) {
+				try {
+					TimeUnit.NANOSECONDS.timedWait(this.signal, remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					this.closed = true;
+				}
+				remaining = lastWrite + this.flushIntervalNanos - System.nanoTime();
+			}
+			this.flushRequested = false;
+		}
+	}
+
+	private void write(List<ObjectNode> batch) {
+		List<ObjectNode> retry;
+		int failed = 0;
+		try {
+			retry = this.commandExecutor.execute(new WriteHistoryBatchCmd(batch));
+			this.batches.increment();
+		} catch (RuntimeException e) {
+			// one broken entry should not hold back the rest, the batch is tried entry by entry
+			LOGGER.warn("Writing a batch of {} history entries failed, writing them one by one", batch.size(), e);
+			retry = new ArrayList<>();
+			for (ObjectNode historyNode : batch) {
+				try {
+					retry.addAll(this.commandExecutor.execute(new WriteHistoryBatchCmd(List.of(historyNode))));
+				} catch (RuntimeException failure) {
+					LOGGER.error("Dropping history entry {}", historyNode, failure);
+					drop(historyNode);
+					failed++;
+				}
+			}
+		}
+
+		for (ObjectNode historyNode : retry) {
+			int attempt = this.attempts.merge(historyNode, 1, Integer::sum);
+			if (attempt >= NOT_APPLICABLE_ATTEMPTS) {
+				LOGGER.warn("Dropping history entry {}, still not applicable after {} attempts", historyNode, attempt);
+				drop(historyNode);
+			} else {
+				this.notApplicable.add(historyNode);
+			}
+		}
+		int applied = batch.size() - retry.size() - failed;
+		if (applied > 0) {
+			if (!this.attempts.isEmpty()) {
+				Set<ObjectNode> retried = Collections.newSetFromMap(new IdentityHashMap<>());
+				retried.addAll(retry);
+				batch.stream().filter((historyNode) -> !retried.contains(historyNode)).forEach(this.attempts::remove);
+			}
+			this.written.add(applied);
+			this.settled.addAndGet(applied);
+		}
+	}
+
+	private void drop(ObjectNode historyNode) {
+		this.attempts.remove(historyNode);
+		this.dropped.increment();
+		this.settled.incrementAndGet();
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.hercules.playground.flowable.history;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.util.CommandContextUtil;
+import org.flowable.job.service.HistoryJobHandler;
+import org.flowable.job.service.impl.history.async.AsyncHistoryJobHandler;
+import org.flowable.job.service.impl.history.async.transformer.HistoryJsonTransformer;
+import org.flowable.job.service.impl.persistence.entity.HistoryJobEntity;
+import org.flowable.job.service.impl.persistence.entity.HistoryJobEntityImpl;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Applies history data, in the order it was generated, to the history tables in one transaction
+ * <br>
+ * The json is turned into history rows by the same transformers the engine's async history jobs use.
+ * History data whose row it refers to is not there yet, a task end before its task create was written for example,
+ * is not applicable and handed back to be tried with a later batch.
+ */
+class WriteHistoryBatchCmd implements Command<List<ObjectNode>> {
+
+	private static final String ASYNC_HISTORY_JOB_TYPE = "async-history";
+
+	private final List<ObjectNode> historyData;
+
+	WriteHistoryBatchCmd(List<ObjectNode> historyData) {
+		this.historyData = historyData;
+	}
+
+	@Override
+	public List<ObjectNode> execute(CommandContext commandContext) {
+		Map<String, List<HistoryJsonTransformer>> transformers = transformers(commandContext);
+		// the transformers only read the job for logging, there is no job behind this history
+		HistoryJobEntity job = new HistoryJobEntityImpl();
+		List<ObjectNode> notApplicable = new ArrayList<>();
+		for (ObjectNode historyNode : this.historyData) {
+			String type = historyNode.path("type").asText();
+			ObjectNode data = (ObjectNode) historyNode.get("data");
+			List<HistoryJsonTransformer> typeTransformers = transformers.getOrDefault(type, Collections.emptyList());
+			if (typeTransformers.stream().allMatch((transformer) -> transformer.isApplicable(data, commandContext))) {
+				typeTransformers.forEach((transformer) -> transformer.transformJson(job, data, commandContext));
+			} else {
+				notApplicable.add(historyNode);
+			}
+		}
+		return notApplicable;
+	}
+
+	private static Map<String, List<HistoryJsonTransformer>> transformers(CommandContext commandContext) {
+		Map<String, HistoryJobHandler> historyJobHandlers = CommandContextUtil.getProcessEngineConfiguration(commandContext)
+				.getHistoryJobHandlers();
+		HistoryJobHandler handler = historyJobHandlers != null ? historyJobHandlers.get(ASYNC_HISTORY_JOB_TYPE) : null;
+		if (!(handler instanceof AsyncHistoryJobHandler)) {
+			throw new FlowableException("Async history is not enabled, no history json transformers are configured");
+		}
+		return ((AsyncHistoryJobHandler) handler).getHistoryJsonTransformers();
+	}
+
+}
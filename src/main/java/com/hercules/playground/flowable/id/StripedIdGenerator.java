@@ -0,0 +1,170 @@
+package com.hercules.playground.flowable.id;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.common.engine.impl.db.IdBlock;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.engine.impl.cmd.GetNextIdBlockCmd;
+import org.flowable.engine.impl.db.DbIdGenerator;
+
+/**
+ * Ids drawn from id blocks held per stripe of threads, the next block fetched before the current one runs out
+ * <br>
+ * The engine's DbIdGenerator hands out every id of the engine under one lock, and the thread that finds the block used up
+ * updates the next.dbid property in a transaction of its own while every other thread waits for it. Here a thread draws
+ * from the block of its stripe, threads only wait for the ones sharing their stripe, and once half of a block is used
+ * the next one is fetched on a background thread, so a stripe only waits for the database when blocks are used up faster
+ * than one is fetched. The fetches are made one at a time, the property row is updated by one transaction at a time.
+ * <br>
+ * An id is the time it was handed out in milliseconds, 11 hex digits, followed by its number from the block, 13 hex digits.
+ * The numbers are unique across threads and engines sharing the database. The time in front orders the ids of all stripes
+ * by when they were handed out, to the millisecond, which puts new rows at the end of the primary key indexes instead of
+ * wherever "25010" sorts between "2501" and "2502". Ids of rows written before, by the DbIdGenerator, stay as they were.
+ * <br>
+ * The engine sets the block size, 2500 by default, and the command executor like it does for its own generator.
+ * A stripe that had to wait for its next block doubles the size of the blocks it fetches, up to 64 times the engine's.
+ * Every stripe holds a block and the one prefetched, ids left in them when the engine stops are not handed out.
+ */
+public class StripedIdGenerator extends DbIdGenerator {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	// the largest block of a stripe, in engine block sizes
+	private static final int MAX_GROWTH = 64;
+
+	private final Stripe[] stripes;
+	private final int mask;
+	private final Executor fetcher;
+
+	private final LongAdder fetched = new LongAdder();
+	private final LongAdder waits = new LongAdder();
+
+	/**
+	 * 16 stripes
+	 */
+	public StripedIdGenerator() {
+		this(16);
+	}
+
+	/**
+	 * @param stripes the blocks held, rounded up to a power of two, threads are spread over them by their id
+	 */
+	public StripedIdGenerator(int stripes) {
+		// one thread fetching blocks, gone when there is nothing to fetch
+		this(stripes, new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (runnable) -> {
+			Thread thread = new Thread(runnable, "id-block-fetcher");
+			thread.setDaemon(true);
+			return thread;
+		}));
+	}
+
+	/**
+	 * @param fetcher runs the block fetches, one at a time
+	 */
+	StripedIdGenerator(int stripes, Executor fetcher) {
+		int size = Integer.highestOneBit(Math.max(1, stripes));
+		if (size < stripes) {
+			size <<= 1;
+		}
+		this.stripes = new Stripe[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new Stripe();
+		}
+		this.mask = size - 1;
+		this.fetcher = fetcher;
+	}
+
+	/**
+	 * Makes the engine built from the configuration draw its ids here
+	 */
+	public ProcessEngineConfiguration install(ProcessEngineConfiguration configuration) {
+		((ProcessEngineConfigurationImpl) configuration).setIdGenerator(this);
+		return configuration;
+	}
+
+	@Override
+	public String getNextId() {
+		Stripe stripe = this.stripes[(int) Thread.currentThread().getId() & this.mask];
+		long number;
+		synchronized (stripe) {
+			number = stripe.take();
+		}
+		return format(System.currentTimeMillis(), number);
+	}
+
+	/**
+	 * Blocks fetched or being fetched
+	 */
+	public long getFetched() {
+		return this.fetched.sum();
+	}
+
+	/**
+	 * Times a stripe used up its block before the one fetched ahead was in
+	 */
+	public long getWaits() {
+		return this.waits.sum();
+	}
+
+	static String format(long millis, long number) {
+		char[] id = new char[24];
+		for (int i = 10; i >= 0; i--, millis >>>= 4) {
+			id[i] = HEX[(int) (millis & 0xf)];
+		}
+		for (int i = 23; i >= 11; i--, number >>>= 4) {
+			id[i] = HEX[(int) (number & 0xf)];
+		}
+		return new String(id);
+	}
+
+	private CompletableFuture<IdBlock> fetch(int idBlockSize) {
+		this.fetched.increment();
+		return CompletableFuture.supplyAsync(
+				() -> getCommandExecutor().execute(getCommandConfig(), new GetNextIdBlockCmd(idBlockSize)),
+				this.fetcher);
+	}
+
+	/**
+	 * The block of a stripe and the one fetched for it, guarded by the stripe
+	 */
+	private class Stripe {
+		long next;
+		long last = -1;
+		int idBlockSize;
+		CompletableFuture<IdBlock> prefetched;
+
+		long take() {
+			if (this.next > this.last) {
+				if (this.idBlockSize == 0) {
+					this.idBlockSize = getIdBlockSize();
+				}
+				CompletableFuture<IdBlock> block = this.prefetched != null ? this.prefetched : fetch(this.idBlockSize);
+				if (this.prefetched != null && !block.isDone()) {
+					StripedIdGenerator.this.waits.increment();
+					// the ids of half a block went faster than a block is fetched, the next blocks are larger
+					this.idBlockSize = Math.min(this.idBlockSize * 2, getIdBlockSize() * MAX_GROWTH);
+				}
+				this.prefetched = null;
+				try {
+					IdBlock idBlock = block.join();
+					this.next = idBlock.getNextId();
+					this.last = idBlock.getLastId();
+				} catch (CompletionException e) {
+					// the next take fetches again
+					throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+				}
+			}
+			if (this.prefetched == null && (this.last - this.next) < this.idBlockSize / 2) {
+				this.prefetched = fetch(this.idBlockSize);
+			}
+			return this.next++;
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.hercules.playground.flowable.inmemory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.flowable.common.engine.impl.context.Context;
+import org.flowable.common.engine.impl.db.ListQueryParameterObject;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.persistence.entity.ExecutionEntityImpl;
+import org.flowable.engine.impl.util.CommandContextUtil;
+
+/**
+ * A mybatis plugin answering the engine's execution tree queries from memory while an instance runs transient
+ * <br>
+ * The engine looks for the children of an execution, the executions waiting at a join and the sub process instances
+ * of an execution in the database before it looks in its entity cache. For an instance started in the running
+ * transaction nothing can be in the database: its rows are only inserted at the flush, and no committed row refers
+ * to an id handed out in this transaction. Those queries return nothing here, and the engine finds the executions
+ * in its cache as it would have.
+ * <br>
+ * Only commands started by TransientExecution are answered, every other query goes to the database. It is to be the last
+ * of the engine's mybatis interceptors, see TransientExecution.install, so the ones before it, the statement counter
+ * among them, only see what is sent.
+ */
+@Intercepts(@Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class,
+		RowBounds.class, ResultHandler.class }))
+public class InMemoryExecutionInterceptor implements Interceptor {
+
+	// the command context attribute StartTransientCmd sets while the instance runs
+	static final String TRANSIENT_RUN = InMemoryExecutionInterceptor.class.getName() + ".run";
+
+	@Override
+	public Object intercept(Invocation invocation) throws Throwable {
+		CommandContext commandContext = Context.getCommandContext();
+		if (commandContext != null && commandContext.getAttribute(TRANSIENT_RUN) != null) {
+			MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+			String executionId = executionIdOf(statement.getId(), invocation.getArgs()[1]);
+			if (executionId != null && CommandContextUtil.getDbSqlSession(commandContext)
+					.isEntityInserted(ExecutionEntityImpl.class, executionId)) {
+				return Collections.emptyList();
+			}
+		}
+		return invocation.proceed();
+	}
+
+	/**
+	 * The execution or process instance the query is scoped to, null for the queries not answered here
+	 */
+	private static String executionIdOf(String statementId, Object parameter) {
+		switch (statementId.substring(statementId.lastIndexOf('.') + 1)) {
+		case "selectExecutionsByParentExecutionId":
+		case "selectChildExecutionsByProcessInstanceId":
+		case "selectExecutionsByProcessInstanceId":
+			return parameter instanceof ListQueryParameterObject
+					? asString(((ListQueryParameterObject) parameter).getParameter())
+					: null;
+		case "selectInactiveExecutionsInActivityAndProcessInstance":
+		case "selectInactiveExecutionsForProcessInstance":
+			return parameter instanceof ListQueryParameterObject
+					&& ((ListQueryParameterObject) parameter).getParameter() instanceof Map
+							? asString(((Map<?, ?>) ((ListQueryParameterObject) parameter).getParameter())
+									.get("processInstanceId"))
+							: null;
+		case "selectSubProcessInstanceBySuperExecutionId":
+			return asString(parameter);
+		default:
+			return null;
+		}
+	}
+
+	private static String asString(Object value) {
+		return value instanceof String ? (String) value : null;
+	}
+
+	@Override
+	public Object plugin(Object target) {
+		return Plugin.wrap(target, this);
+	}
+
+	@Override
+	public void setProperties(Properties properties) {
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.hercules.playground.flowable.inmemory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.flowable.bpmn.model.ExtensionElement;
+import org.flowable.bpmn.model.Process;
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.api.FlowableObjectNotFoundException;
+import org.flowable.common.engine.impl.db.DbSqlSession;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.common.engine.impl.persistence.cache.EntityCache;
+import org.flowable.common.engine.impl.persistence.entity.Entity;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.engine.impl.persistence.entity.HistoricActivityInstanceEntity;
+import org.flowable.engine.impl.persistence.entity.HistoricDetailEntity;
+import org.flowable.engine.impl.persistence.entity.HistoricDetailVariableInstanceUpdateEntity;
+import org.flowable.engine.impl.persistence.entity.HistoricProcessInstanceEntity;
+import org.flowable.engine.impl.util.CommandContextUtil;
+import org.flowable.engine.impl.util.ProcessDefinitionUtil;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.identitylink.service.impl.persistence.entity.HistoricIdentityLinkEntity;
+import org.flowable.variable.service.impl.persistence.entity.HistoricVariableInstanceEntity;
+
+/**
+ * Starts the latest definition of a key, in memory when the definition is marked transient
+ * <br>
+ * The instance runs through the engine as any other, its executions and variables only live in the entity cache
+ * until the flush, and the execution tree queries are answered by the InMemoryExecutionInterceptor. When the instance
+ * has ended by the time the start returns, the engine has already paired the inserts of its executions and variables
+ * with their deletes, and the history written for it is deleted here, so the flush has nothing left to send.
+ * An instance at a wait state is flushed like any other, history included.
+ */
+class StartTransientCmd implements Command<ProcessInstance> {
+
+	static final String EXECUTION_MODE = "executionMode";
+	static final String TRANSIENT = "transient";
+
+	private final String processDefinitionKey;
+	private final Map<String, Object> variables;
+	private boolean ranTransient;
+
+	StartTransientCmd(String processDefinitionKey, Map<String, Object> variables) {
+		this.processDefinitionKey = processDefinitionKey;
+		this.variables = variables;
+	}
+
+	@Override
+	public ProcessInstance execute(CommandContext commandContext) {
+		ProcessEngineConfigurationImpl engineConfiguration = CommandContextUtil.getProcessEngineConfiguration(commandContext);
+		ProcessDefinition processDefinition = engineConfiguration.getDeploymentManager()
+				.findDeployedLatestProcessDefinitionByKey(this.processDefinitionKey);
+		if (processDefinition == null) {
+			throw new FlowableObjectNotFoundException("no processes deployed with key '" + this.processDefinitionKey + "'",
+					ProcessDefinition.class);
+		}
+		if (!isTransient(ProcessDefinitionUtil.getProcess(processDefinition.getId()))) {
+			return start(engineConfiguration, processDefinition);
+		}
+
+		this.ranTransient = true;
+		commandContext.addAttribute(InMemoryExecutionInterceptor.TRANSIENT_RUN, Boolean.TRUE);
+		ProcessInstance processInstance;
+		try {
+			processInstance = start(engineConfiguration, processDefinition);
+		} catch (RuntimeException e) {
+			throw new TransientRunFailedException(this.processDefinitionKey, e);
+		} finally {
+			commandContext.addAttribute(InMemoryExecutionInterceptor.TRANSIENT_RUN, null);
+		}
+		if (processInstance.isEnded()) {
+			discardHistory(commandContext, processInstance.getId());
+		}
+		return processInstance;
+	}
+
+	/**
+	 * Whether the definition started was marked transient, known once the command has run
+	 */
+	boolean ranTransient() {
+		return this.ranTransient;
+	}
+
+	static boolean isTransient(Process process) {
+		List<ExtensionElement> executionMode = process.getExtensionElements().get(EXECUTION_MODE);
+		return executionMode != null && !executionMode.isEmpty()
+				&& TRANSIENT.equals(executionMode.get(0).getElementText().trim());
+	}
+
+	private ProcessInstance start(ProcessEngineConfigurationImpl engineConfiguration, ProcessDefinition processDefinition) {
+		// through the runtime service the start is a nested command, the instance has run as far as it goes when it returns
+		return engineConfiguration.getRuntimeService().createProcessInstanceBuilder()
+				.processDefinitionId(processDefinition.getId()).variables(this.variables).start();
+	}
+
+	private static void discardHistory(CommandContext commandContext, String processInstanceId) {
+		EntityCache entityCache = CommandContextUtil.getEntityCache(commandContext);
+		DbSqlSession dbSqlSession = CommandContextUtil.getDbSqlSession(commandContext);
+		discard(entityCache, dbSqlSession, processInstanceId, HistoricProcessInstanceEntity.class,
+				HistoricProcessInstanceEntity::getProcessInstanceId);
+		discard(entityCache, dbSqlSession, processInstanceId, HistoricActivityInstanceEntity.class,
+				HistoricActivityInstanceEntity::getProcessInstanceId);
+		discard(entityCache, dbSqlSession, processInstanceId, HistoricIdentityLinkEntity.class,
+				HistoricIdentityLinkEntity::getProcessInstanceId);
+		for (HistoricVariableInstanceEntity variable : discard(entityCache, dbSqlSession, processInstanceId,
+				HistoricVariableInstanceEntity.class, HistoricVariableInstanceEntity::getProcessInstanceId)) {
+			// looked up first so the byte array inserted with the variable is deleted as an entity and not by id
+			if (variable.getByteArrayRef() != null && variable.getByteArrayRef().getEntity() != null) {
+				variable.getByteArrayRef().delete();
+			}
+		}
+		for (HistoricDetailEntity detail : discard(entityCache, dbSqlSession, processInstanceId,
+				HistoricDetailEntity.class, HistoricDetailEntity::getProcessInstanceId)) {
+			if (detail instanceof HistoricDetailVariableInstanceUpdateEntity) {
+				HistoricDetailVariableInstanceUpdateEntity update = (HistoricDetailVariableInstanceUpdateEntity) detail;
+				if (update.getByteArrayRef() != null && update.getByteArrayRef().getEntity() != null) {
+					update.getByteArrayRef().delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes the entities of the instance inserted in this transaction, the session drops an insert deleted before the flush
+	 */
+	private static <T extends Entity> List<T> discard(EntityCache entityCache, DbSqlSession dbSqlSession,
+			String processInstanceId, Class<T> entityClass, Function<T, String> processInstanceIdOf) {
+		List<T> discarded = new ArrayList<>();
+		for (T entity : entityCache.findInCache(entityClass)) {
+			if (processInstanceId.equals(processInstanceIdOf.apply(entity)) && dbSqlSession.isEntityInserted(entity)) {
+				dbSqlSession.delete(entity);
+				discarded.add(entity);
+			}
+		}
+		return discarded;
+	}
+
+	/**
+	 * The transient run failed, and was rolled back
+	 */
+	static class TransientRunFailedException extends FlowableException {
+
+		private static final long serialVersionUID = 1L;
+
+		TransientRunFailedException(String processDefinitionKey, RuntimeException cause) {
+			super("The transient run of '" + processDefinitionKey + "' failed", cause);
+		}
+	}
+
+}
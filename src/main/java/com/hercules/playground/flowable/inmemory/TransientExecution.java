@@ -0,0 +1,123 @@
+package com.hercules.playground.flowable.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.plugin.Interceptor;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the instances of definitions marked transient in memory, the database only sees the ones that stop at a wait state
+ * or fail
+ * <br>
+ * A definition is marked on its process:
+ * <pre>
+ * &lt;extensionElements&gt;
+ *   &lt;flowable:executionMode&gt;transient&lt;/flowable:executionMode&gt;
+ * &lt;/extensionElements&gt;
+ * </pre>
+ * A straight-through instance, start, gateways, service tasks and end, is started, run and ended in one transaction
+ * anyway, and the engine keeps its executions and variables in its entity cache until the flush. What still reaches
+ * the database is the history of the instance and the engine's queries for executions it is about to find in its
+ * cache. Started through here, a marked instance that ends in the start has its history dropped before the flush,
+ * and the execution queries answered from memory, see InMemoryExecutionInterceptor: an instance that ends leaves no trace,
+ * at the price of leaving no history either.
+ * <br>
+ * An instance that stops at a wait state is flushed as any other, history included, and goes on as a persistent instance.
+ * A run that fails is rolled back and the instance started again the engine's usual way, so the failure is whatever
+ * the engine does with it, a job left to retry or the exception thrown back here. The failed run's side effects,
+ * a service task calling out, happen twice. Definitions that are not marked are started the usual way.
+ */
+public class TransientExecution {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TransientExecution.class);
+
+	private final ManagementService managementService;
+	private final RuntimeService runtimeService;
+
+	private final LongAdder inMemory = new LongAdder();
+	private final LongAdder persisted = new LongAdder();
+	private final LongAdder fallbacks = new LongAdder();
+
+	public TransientExecution(ProcessEngine processEngine) {
+		this.managementService = processEngine.getManagementService();
+		this.runtimeService = processEngine.getRuntimeService();
+	}
+
+	/**
+	 * Makes the engine built from the configuration answer the execution queries of transient runs from memory
+	 * <br>
+	 * Installed after EngineMetrics, the statement counter does not count the queries answered here.
+	 */
+	public static ProcessEngineConfiguration install(ProcessEngineConfiguration configuration) {
+		ProcessEngineConfigurationImpl engineConfiguration = (ProcessEngineConfigurationImpl) configuration;
+		List<Interceptor> mybatisInterceptors = engineConfiguration.getCustomMybatisInterceptors() != null
+				? new ArrayList<>(engineConfiguration.getCustomMybatisInterceptors())
+				: new ArrayList<>();
+		mybatisInterceptors.add(new InMemoryExecutionInterceptor());
+		engineConfiguration.setCustomMybatisInterceptors(mybatisInterceptors);
+		return configuration;
+	}
+
+	public ProcessInstance start(String processDefinitionKey) {
+		return start(processDefinitionKey, Collections.emptyMap());
+	}
+
+	/**
+	 * Starts the latest definition of the key, in memory when it is marked transient
+	 *
+	 * @return the instance, ended when it ran through in memory
+	 */
+	public ProcessInstance start(String processDefinitionKey, Map<String, Object> variables) {
+		StartTransientCmd start = new StartTransientCmd(processDefinitionKey, variables);
+		ProcessInstance processInstance;
+		try {
+			processInstance = this.managementService.executeCommand(start);
+		} catch (StartTransientCmd.TransientRunFailedException e) {
+			LOGGER.debug("{}, starting it persistent", e.getMessage(), e.getCause());
+			this.fallbacks.increment();
+			return this.runtimeService.startProcessInstanceByKey(processDefinitionKey, variables);
+		}
+		if (!start.ranTransient()) {
+			return processInstance;
+		}
+		if (processInstance.isEnded()) {
+			this.inMemory.increment();
+		} else {
+			this.persisted.increment();
+		}
+		return processInstance;
+	}
+
+	/**
+	 * Transient instances that ended in their start and never reached the database
+	 */
+	public long getInMemory() {
+		return this.inMemory.sum();
+	}
+
+	/**
+	 * Transient instances that stopped at a wait state and were flushed
+	 */
+	public long getPersisted() {
+		return this.persisted.sum();
+	}
+
+	/**
+	 * Transient runs that failed and were started again persistent
+	 */
+	public long getFallbacks() {
+		return this.fallbacks.sum();
+	}
+
+}
@@ -0,0 +1,36 @@
+package com.hercules.playground.flowable.metrics;
+
+/**
+ * What the command running on this thread did so far, shared by the command interceptor and the statement counter
+ * <br>
+ * Nested commands run inside the scope of the outermost one, their statements count towards it.
+ */
+final class CommandScope {
+
+	private static final ThreadLocal<CommandScope> CURRENT = ThreadLocal.withInitial(CommandScope::new);
+
+	int depth;
+	long statements;
+	long rowsWritten;
+
+	static CommandScope current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * @return true when this is the outermost command on the thread
+	 */
+	boolean enter() {
+		if (this.depth++ == 0) {
+			this.statements = 0;
+			this.rowsWritten = 0;
+			return true;
+		}
+		return false;
+	}
+
+	void exit() {
+		this.depth--;
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.hercules.playground.flowable.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.plugin.Interceptor;
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.common.engine.impl.interceptor.CommandInterceptor;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+
+/**
+ * Wires the metrics into an engine configuration: the command interceptor, the statement counter and the event listener
+ * <br>
+ * flowable.cfg.xml wires the same three beans around one registry bean, see src/test/resources/flowable.cfg.xml.
+ * Whichever way they were wired, registryOf finds the registry of a built engine.
+ */
+public final class EngineMetrics {
+
+	private EngineMetrics() {
+	}
+
+	public static InMemoryMetricsRegistry install(ProcessEngineConfiguration configuration) {
+		return install(configuration, new InMemoryMetricsRegistry());
+	}
+
+	public static <R extends MetricsRegistry> R install(ProcessEngineConfiguration configuration, R registry) {
+		ProcessEngineConfigurationImpl engineConfiguration = (ProcessEngineConfigurationImpl) configuration;
+		List<CommandInterceptor> commandInterceptors = copy(engineConfiguration.getCustomPreCommandInterceptors());
+		commandInterceptors.add(new MetricsCommandInterceptor(registry));
+		engineConfiguration.setCustomPreCommandInterceptors(commandInterceptors);
+
+		List<Interceptor> mybatisInterceptors = copy(engineConfiguration.getCustomMybatisInterceptors());
+		mybatisInterceptors.add(new StatementCountingInterceptor(registry));
+		engineConfiguration.setCustomMybatisInterceptors(mybatisInterceptors);
+
+		List<FlowableEventListener> eventListeners = copy(engineConfiguration.getEventListeners());
+		eventListeners.add(new MetricsEventListener(registry));
+		engineConfiguration.setEventListeners(eventListeners);
+		return registry;
+	}
+
+	/**
+	 * The registry the metrics of the engine go to
+	 */
+	public static MetricsRegistry registryOf(ProcessEngine processEngine) {
+		List<CommandInterceptor> commandInterceptors = ((ProcessEngineConfigurationImpl) processEngine
+				.getProcessEngineConfiguration()).getCustomPreCommandInterceptors();
+		if (commandInterceptors != null) {
+			for (CommandInterceptor commandInterceptor : commandInterceptors) {
+				if (commandInterceptor instanceof MetricsCommandInterceptor) {
+					return ((MetricsCommandInterceptor) commandInterceptor).getRegistry();
+				}
+			}
+		}
+		throw new FlowableException("No metrics installed on process engine " + processEngine.getName());
+	}
+
+	private static <T> List<T> copy(List<T> configured) {
+		return configured != null ? new ArrayList<>(configured) : new ArrayList<>();
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.hercules.playground.flowable.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of non negative longs, recording a value is one array increment and never allocates
+ * <br>
+ * Values are kept in eight buckets per power of two, so a percentile is at most an eighth above the recorded value.
+ * That is plenty to tell a 2ms completion from a 20ms one, or a 10 statement command from an 80 statement one,
+ * while covering all of long in a fixed 4kb array.
+ */
+public class Histogram {
+
+	private static final int SUB_BUCKETS = 8;
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(bucket(Long.MAX_VALUE) + 1);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long value) {
+		value = Math.max(0, value);
+		this.buckets.incrementAndGet(bucket(value));
+		this.count.increment();
+		this.total.add(value);
+		if (value > this.max.get()) {
+			this.max.accumulateAndGet(value, Math::max);
+		}
+	}
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	public long getMax() {
+		return this.max.get();
+	}
+
+	public long getMean() {
+		long recorded = this.count.sum();
+		return recorded == 0 ? 0 : this.total.sum() / recorded;
+	}
+
+	/**
+	 * The smallest bucket bound at or below which the given percentage of the recorded values lie, 0 when nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		long recorded = 0;
+		long[] counts = new long[this.buckets.length()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = this.buckets.get(i);
+			recorded += counts[i];
+		}
+		long rank = (long) Math.ceil(recorded * Math.min(100, Math.max(0, percentile)) / 100);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen > 0 && seen >= rank) {
+				return Math.min(upperBound(i), this.max.get());
+			}
+		}
+		return 0;
+	}
+
+	public void reset() {
+		for (int i = 0; i < this.buckets.length(); i++) {
+			this.buckets.set(i, 0);
+		}
+		this.count.reset();
+		this.total.reset();
+		this.max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%d p50=%d p99=%d max=%d", getCount(), getMean(), getPercentile(50),
+				getPercentile(99), getMax());
+	}
+
+	private static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.hercules.playground.flowable.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The MetricsRegistry used unless another one is given, keeps every meter in memory until reset
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+	private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+	@Override
+	public LongAdder counter(String name) {
+		return this.counters.computeIfAbsent(name, (counter) -> new LongAdder());
+	}
+
+	@Override
+	public Histogram histogram(String name) {
+		return this.histograms.computeIfAbsent(name, (histogram) -> new Histogram());
+	}
+
+	@Override
+	public LatencyHistogram latency(String name) {
+		return this.latencies.computeIfAbsent(name, (latency) -> new LatencyHistogram());
+	}
+
+	/**
+	 * Zeroes every meter, the meters themselves stay registered
+	 */
+	public void reset() {
+		this.counters.values().forEach(LongAdder::reset);
+		this.histograms.values().forEach(Histogram::reset);
+		this.latencies.values().forEach(Histogram::reset);
+	}
+
+	/**
+	 * One line per meter, sorted by name
+	 */
+	@Override
+	public String toString() {
+		Map<String, Object> meters = new TreeMap<>();
+		meters.putAll(this.counters);
+		meters.putAll(this.histograms);
+		meters.putAll(this.latencies);
+		StringBuilder report = new StringBuilder();
+		meters.forEach((name, meter) -> report.append(name).append(' ').append(meter).append('\n'));
+		return report.toString();
+	}
+
+}
@@ -0,0 +1,32 @@
+package com.hercules.playground.flowable.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Histogram of durations in nanoseconds, printed in milliseconds
+ */
+public class LatencyHistogram extends Histogram {
+
+	public long getMaxNanos() {
+		return getMax();
+	}
+
+	public long getMeanNanos() {
+		return getMean();
+	}
+
+	public long getPercentileNanos(double percentile) {
+		return getPercentile(percentile);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms", getCount(), millis(getMean()),
+				millis(getPercentile(50)), millis(getPercentile(99)), millis(getMax()));
+	}
+
+	private static double millis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.hercules.playground.flowable.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.common.engine.api.FlowableOptimisticLockingException;
+import org.flowable.common.engine.impl.interceptor.AbstractCommandInterceptor;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandConfig;
+
+/**
+ * Times every command the engine runs and records what it did to the database, by command class
+ * <br>
+ * Registered as a pre command interceptor it sits outside the transaction and the command context, so the time
+ * includes the flush and the commit. For a command named after its class, CompleteTaskCmd for example, it keeps
+ * <ul>
+ * <li>command.CompleteTaskCmd.latency, the time spent in the engine</li>
+ * <li>command.CompleteTaskCmd.statements, sql statements issued, see StatementCountingInterceptor</li>
+ * <li>command.CompleteTaskCmd.flushSize, rows inserted, updated or deleted, for commands that wrote any</li>
+ * <li>command.CompleteTaskCmd.optimisticLockFailures, and optimisticLockFailures across all commands</li>
+ * </ul>
+ * Commands run from inside another command are part of the outer one and are not metered on their own.
+ */
+public class MetricsCommandInterceptor extends AbstractCommandInterceptor {
+
+	private final MetricsRegistry registry;
+	private final LongAdder optimisticLockFailures;
+	private final ClassValue<CommandMeters> meters = new ClassValue<>() {
+
+		@Override
+		protected CommandMeters computeValue(Class<?> commandClass) {
+			return new CommandMeters(MetricsCommandInterceptor.this.registry, "command." + name(commandClass));
+		}
+	};
+
+	public MetricsCommandInterceptor(MetricsRegistry registry) {
+		this.registry = registry;
+		this.optimisticLockFailures = registry.counter("optimisticLockFailures");
+	}
+
+	public MetricsRegistry getRegistry() {
+		return this.registry;
+	}
+
+	@Override
+	public <T> T execute(CommandConfig config, Command<T> command) {
+		CommandScope scope = CommandScope.current();
+		if (!scope.enter()) {
+			try {
+				return this.next.execute(config, command);
+			} finally {
+				scope.exit();
+			}
+		}
+
+		CommandMeters commandMeters = this.meters.get(command.getClass());
+		long start = System.nanoTime();
+		try {
+			return this.next.execute(config, command);
+		} catch (FlowableOptimisticLockingException e) {
+			commandMeters.optimisticLockFailures.increment();
+			this.optimisticLockFailures.increment();
+			throw e;
+		} finally {
+			commandMeters.latency.record(System.nanoTime() - start);
+			commandMeters.statements.record(scope.statements);
+			if (scope.rowsWritten > 0) {
+				commandMeters.flushSize.record(scope.rowsWritten);
+			}
+			scope.exit();
+		}
+	}
+
+	private static String name(Class<?> commandClass) {
+		// anonymous commands and lambdas have no simple name worth reading
+		String simpleName = commandClass.getSimpleName();
+		return simpleName.isEmpty() || simpleName.contains("$$Lambda") ? commandClass.getName() : simpleName;
+	}
+
+	private static class CommandMeters {
+		final LatencyHistogram latency;
+		final Histogram statements;
+		final Histogram flushSize;
+		final LongAdder optimisticLockFailures;
+
+		CommandMeters(MetricsRegistry registry, String prefix) {
+			this.latency = registry.latency(prefix + ".latency");
+			this.statements = registry.histogram(prefix + ".statements");
+			this.flushSize = registry.histogram(prefix + ".flushSize");
+			this.optimisticLockFailures = registry.counter(prefix + ".optimisticLockFailures");
+		}
+	}
+
+}
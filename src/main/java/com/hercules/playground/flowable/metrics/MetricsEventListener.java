@@ -0,0 +1,50 @@
+package com.hercules.playground.flowable.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.common.engine.api.delegate.event.FlowableEventType;
+
+/**
+ * Counts the engine events by type, event.TASK_COMPLETED, event.ACTIVITY_STARTED and so on
+ * <br>
+ * Next to the per command meters this says what the engine did rather than what was asked of it,
+ * how many activities a signal moved through for example.
+ */
+public class MetricsEventListener implements FlowableEventListener {
+
+	private final MetricsRegistry registry;
+	private final ConcurrentHashMap<FlowableEventType, LongAdder> counters = new ConcurrentHashMap<>();
+
+	public MetricsEventListener(MetricsRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public void onEvent(FlowableEvent event) {
+		LongAdder counter = this.counters.get(event.getType());
+		if (counter == null) {
+			counter = this.counters.computeIfAbsent(event.getType(),
+					(type) -> this.registry.counter("event." + type.name()));
+		}
+		counter.increment();
+	}
+
+	@Override
+	public boolean isFailOnException() {
+		return false;
+	}
+
+	@Override
+	public boolean isFireOnTransactionLifecycleEvent() {
+		return false;
+	}
+
+	@Override
+	public String getOnTransaction() {
+		return null;
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.hercules.playground.flowable.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where the engine metrics are kept, implement it to hand them to another metrics library
+ * <br>
+ * Meters are looked up once per name and then held on to by the caller, so lookups may be slow but the meters
+ * returned must stay the same for a name and be safe to update from any thread.
+ */
+public interface MetricsRegistry {
+
+	LongAdder counter(String name);
+
+	Histogram histogram(String name);
+
+	LatencyHistogram latency(String name);
+
+}
@@ -0,0 +1,58 @@
+package com.hercules.playground.flowable.metrics;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * A mybatis plugin counting the statements the engine sends, and the rows its inserts, updates and deletes touch
+ * <br>
+ * Every query and write of the engine and its services goes through the one mybatis executor, so this sees all of them.
+ * The counts go to the global sql.statements and sql.rowsWritten counters and to the command running on the thread.
+ */
+@Intercepts({ @Signature(type = Executor.class, method = "update", args = { MappedStatement.class, Object.class }),
+		@Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class,
+				RowBounds.class, ResultHandler.class }) })
+public class StatementCountingInterceptor implements Interceptor {
+
+	private final LongAdder statements;
+	private final LongAdder rowsWritten;
+
+	public StatementCountingInterceptor(MetricsRegistry registry) {
+		this.statements = registry.counter("sql.statements");
+		this.rowsWritten = registry.counter("sql.rowsWritten");
+	}
+
+	@Override
+	public Object intercept(Invocation invocation) throws Throwable {
+		CommandScope scope = CommandScope.current();
+		scope.statements++;
+		this.statements.increment();
+		Object result = invocation.proceed();
+		if (result instanceof Integer) {
+			int rows = (Integer) result;
+			scope.rowsWritten += rows;
+			this.rowsWritten.add(rows);
+		}
+		return result;
+	}
+
+	@Override
+	public Object plugin(Object target) {
+		return Plugin.wrap(target, this);
+	}
+
+	@Override
+	public void setProperties(Properties properties) {
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.hercules.playground.flowable.query;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.util.CommandContextUtil;
+
+/**
+ * Counts the tasks matching the criteria, per value of the group by column or all together under the key null
+ */
+class CountTasksCmd implements Command<Map<String, Long>> {
+
+	private final String tableName;
+	private final List<String> columns;
+	private final List<Object> values;
+	private final String groupBy;
+
+	CountTasksCmd(String tableName, List<String> columns, List<Object> values, String groupBy) {
+		this.tableName = tableName;
+		this.columns = columns;
+		this.values = values;
+		this.groupBy = groupBy;
+	}
+
+	@Override
+	public Map<String, Long> execute(CommandContext commandContext) {
+		String key = this.groupBy != null ? "T." + this.groupBy : "null";
+		StringBuilder sql = new StringBuilder("select ").append(key).append(", count(*) from ").append(this.tableName)
+				.append(" T where 1 = 1");
+		for (String column : this.columns) {
+			sql.append(" and T.").append(column).append(" = ?");
+		}
+		if (this.groupBy != null) {
+			sql.append(" group by ").append(key).append(" order by ").append(key);
+		}
+
+		Connection connection = CommandContextUtil.getDbSqlSession(commandContext).getSqlSession().getConnection();
+		try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+			for (int i = 0; i < this.values.size(); i++) {
+				statement.setObject(i + 1, this.values.get(i));
+			}
+			Map<String, Long> counts = new LinkedHashMap<>();
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					counts.put(resultSet.getString(1), resultSet.getLong(2));
+				}
+			}
+			return counts;
+		} catch (SQLException e) {
+			throw new FlowableException("Could not count tasks", e);
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+package com.hercules.playground.flowable.query;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.flowable.common.engine.api.FlowableIllegalArgumentException;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.TaskService;
+import org.flowable.task.api.NativeTaskQuery;
+import org.flowable.task.api.Task;
+import org.flowable.task.service.impl.persistence.entity.TaskEntity;
+
+/**
+ * Tasks as a lazily fetched stream, and counted or grouped in the database, in place of taskQuery.list() grouped in java
+ * <br>
+ * The notes collect createTaskQuery().active().list() into a map by name, which puts every open task on the heap at once.
+ * stream fetches pageSize tasks at a time, ordered by id, each page from where the last one ended (id greater than the
+ * last id seen) in its own short transaction. A database cursor kept open for the life of the stream would hold H2's read
+ * lock on the task table just as long and stop every task from being created or completed. Tasks created or completed
+ * while the stream is consumed may or may not show up, depending on which side of the current page their id falls.
+ * <br>
+ * countByName and countByTaskDefinitionKey are a group by in the database, no task entity is loaded at all.
+ * <br>
+ * Criteria are equality on the task's own columns only, anything richer is what createTaskQuery is for. Like TaskQuery, a null
+ * criterion is refused with a FlowableIllegalArgumentException rather than matching nothing.
+ */
+public class TaskStreamQuery {
+
+	private static final int DEFAULT_PAGE_SIZE = 500;
+
+	private final TaskService taskService;
+	private final ManagementService managementService;
+	private final List<String> columns = new ArrayList<>();
+	private final List<Object> values = new ArrayList<>();
+	private int pageSize = DEFAULT_PAGE_SIZE;
+
+	public TaskStreamQuery(ProcessEngine processEngine) {
+		this.taskService = processEngine.getTaskService();
+		this.managementService = processEngine.getManagementService();
+	}
+
+	/**
+	 * Only tasks that are not suspended, like TaskQuery.active()
+	 */
+	public TaskStreamQuery active() {
+		return where("SUSPENSION_STATE_", 1, "Suspension state");
+	}
+
+	public TaskStreamQuery taskName(String name) {
+		return where("NAME_", name, "Task name");
+	}
+
+	public TaskStreamQuery taskDefinitionKey(String taskDefinitionKey) {
+		return where("TASK_DEF_KEY_", taskDefinitionKey, "Task definition key");
+	}
+
+	public TaskStreamQuery processInstanceId(String processInstanceId) {
+		return where("PROC_INST_ID_", processInstanceId, "Process instance id");
+	}
+
+	public TaskStreamQuery processDefinitionId(String processDefinitionId) {
+		return where("PROC_DEF_ID_", processDefinitionId, "Process definition id");
+	}
+
+	public TaskStreamQuery taskAssignee(String assignee) {
+		return where("ASSIGNEE_", assignee, "Assignee");
+	}
+
+	/**
+	 * The most tasks fetched, and held, at once
+	 */
+	public TaskStreamQuery pageSize(int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be at least 1, got " + pageSize);
+		}
+		this.pageSize = pageSize;
+		return this;
+	}
+
+	/**
+	 * The matching tasks ordered by id, fetched a page at a time as the stream is consumed
+	 */
+	public Stream<Task> stream() {
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(new PageIterator(), Spliterator.ORDERED | Spliterator.NONNULL),
+				false);
+	}
+
+	public long count() {
+		return this.managementService.executeCommand(new CountTasksCmd(tableName(), this.columns, this.values, null))
+				.values().stream().mapToLong(Long::longValue).sum();
+	}
+
+	/**
+	 * Number of matching tasks per task name, counted by the database
+	 */
+	public Map<String, Long> countByName() {
+		return countBy("NAME_");
+	}
+
+	/**
+	 * Number of matching tasks per task definition key, the id of the user task in the bpmn, counted by the database
+	 */
+	public Map<String, Long> countByTaskDefinitionKey() {
+		return countBy("TASK_DEF_KEY_");
+	}
+
+	private Map<String, Long> countBy(String column) {
+		return this.managementService.executeCommand(new CountTasksCmd(tableName(), this.columns, this.values, column));
+	}
+
+	private TaskStreamQuery where(String column, Object value, String criterion) {
+		// "= null" matches no row, TaskQuery refuses a null criterion the same way
+		if (value == null) {
+			throw new FlowableIllegalArgumentException(criterion + " is null");
+		}
+		this.columns.add(column);
+		this.values.add(value);
+		return this;
+	}
+
+	private String tableName() {
+		return this.managementService.getTableName(TaskEntity.class);
+	}
+
+	private List<Task> page(String afterId) {
+		StringBuilder sql = new StringBuilder("select T.* from ").append(tableName()).append(" T where 1 = 1");
+		NativeTaskQuery query = this.taskService.createNativeTaskQuery();
+		for (int i = 0; i < this.columns.size(); i++) {
+			sql.append(" and T.").append(this.columns.get(i)).append(" = #{p").append(i).append('}');
+			query.parameter("p" + i, this.values.get(i));
+		}
+		if (afterId != null) {
+			sql.append(" and T.ID_ > #{afterId}");
+			query.parameter("afterId", afterId);
+		}
+		sql.append(" order by T.ID_");
+		return query.sql(sql.toString()).listPage(0, this.pageSize);
+	}
+
+	private class PageIterator implements Iterator<Task> {
+
+		private List<Task> page;
+		private int next;
+		private boolean last;
+
+		@Override
+		public boolean hasNext() {
+			if (this.page == null || (this.next == this.page.size() && !this.last)) {
+				String afterId = this.page == null ? null : this.page.get(this.page.size() - 1).getId();
+				this.page = page(afterId);
+				this.next = 0;
+				this.last = this.page.size() < TaskStreamQuery.this.pageSize;
+			}
+			return this.next < this.page.size();
+		}
+
+		@Override
+		public Task next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return this.page.get(this.next++);
+		}
+	}
+
+}
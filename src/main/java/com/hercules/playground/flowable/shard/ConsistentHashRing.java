@@ -0,0 +1,55 @@
+package com.hercules.playground.flowable.shard;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps keys onto shards so that adding a shard only moves the keys the new shard takes over, about 1/K of them
+ * <br>
+ * Every shard owns virtualNodes points on a ring of 64 bit hashes, a key belongs to the first point at or after its own hash.
+ * Many points per shard keep the shares even, a plain hash modulo K would move almost every key when K changes.
+ */
+class ConsistentHashRing {
+
+	private final TreeMap<Long, Integer> ring = new TreeMap<>();
+	private final int shards;
+
+	ConsistentHashRing(int shards, int virtualNodes) {
+		if (shards < 1) {
+			throw new IllegalArgumentException("A hash ring needs at least one shard, got " + shards);
+		}
+		this.shards = shards;
+		for (int shard = 0; shard < shards; shard++) {
+			for (int node = 0; node < virtualNodes; node++) {
+				this.ring.put(hash("shard-" + shard + "#" + node), shard);
+			}
+		}
+	}
+
+	int shardOf(String key) {
+		Map.Entry<Long, Integer> owner = this.ring.ceilingEntry(hash(key));
+		return owner != null ? owner.getValue() : this.ring.firstEntry().getValue();
+	}
+
+	int getShards() {
+		return this.shards;
+	}
+
+	/**
+	 * FNV-1a over the characters, finished with the murmur3 mix so that similar keys like order-1 and order-2 spread over the ring
+	 */
+	static long hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+}
@@ -0,0 +1,259 @@
+package com.hercules.playground.flowable.shard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import org.flowable.common.engine.api.FlowableObjectNotFoundException;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.repository.DeploymentBuilder;
+import org.flowable.engine.runtime.Execution;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.eventsubscription.api.EventSubscription;
+import org.flowable.eventsubscription.service.impl.persistence.entity.SignalEventSubscriptionEntity;
+import org.flowable.task.api.Task;
+
+import com.hercules.playground.flowable.App;
+import com.hercules.playground.flowable.snapshot.EngineSnapshot;
+
+/**
+ * K process engines, each on its own database, with every process instance living on the shard its business key hashes to
+ * <br>
+ * One database is the ceiling of one engine: on H2 every transaction locks whole tables. Here the instances are spread
+ * over K engines by a consistent hash of their business key, so K transactions on different shards never wait on each other.
+ * Starting, task, signal and message calls name the business key of the instance they are for and go to its shard only.
+ * A global signal is for every instance, it is thrown on all shards in parallel, one transaction per shard,
+ * so one shard can have caught it while another has not yet, or failed to.
+ * <br>
+ * The shards share nothing: deploy to all of them, and query each of them, or the owner of a business key.
+ * Closing the router closes its engines.
+ */
+public class ShardedProcessEngines implements AutoCloseable {
+
+	private static final int VIRTUAL_NODES = 128;
+	private static final String SIGNAL_EVENT_TYPE = "signal";
+
+	private final List<ProcessEngine> shards;
+	private final ConsistentHashRing ring;
+	private final ExecutorService broadcaster;
+
+	public ShardedProcessEngines(List<ProcessEngine> shards) {
+		this.shards = List.copyOf(shards);
+		this.ring = new ConsistentHashRing(shards.size(), VIRTUAL_NODES);
+		this.broadcaster = Executors.newFixedThreadPool(shards.size());
+	}
+
+	/**
+	 * K engines configured the way App.main configures its engine, each on its own in memory H2 database
+	 */
+	public static ShardedProcessEngines inMemory(int shards) {
+		String run = UUID.randomUUID().toString();
+		return build(shards, (shard) -> App.createConfiguration(inMemoryUrl(shard, run)), run);
+	}
+
+	/**
+	 * K in memory engines restored from the snapshot, each starts out with the snapshot's deployments
+	 */
+	public static ShardedProcessEngines inMemory(int shards, EngineSnapshot snapshot) {
+		String run = UUID.randomUUID().toString();
+		List<ProcessEngine> engines = new ArrayList<>(shards);
+		for (int shard = 0; shard < shards; shard++) {
+			engines.add(snapshot.buildProcessEngine(
+					App.createConfiguration(inMemoryUrl(shard, run)).setEngineName(engineName(shard, run))));
+		}
+		return new ShardedProcessEngines(engines);
+	}
+
+	private static String inMemoryUrl(int shard, String run) {
+		return "jdbc:h2:mem:shard-" + shard + "-" + run + ";DB_CLOSE_DELAY=-1";
+	}
+
+	/**
+	 * Builds an engine from each configuration, the engines are named shard-0-&lt;run&gt; to shard-(K-1)-&lt;run&gt;
+	 * <br>
+	 * Every engine registers in ProcessEngines under its name, and closing it unregisters that name. The run id is new for
+	 * every router, the engines of one router never take the place of another's.
+	 */
+	public static ShardedProcessEngines build(int shards, IntFunction<ProcessEngineConfiguration> configuration) {
+		return build(shards, configuration, UUID.randomUUID().toString());
+	}
+
+	private static ShardedProcessEngines build(int shards, IntFunction<ProcessEngineConfiguration> configuration,
+			String run) {
+		List<ProcessEngine> engines = new ArrayList<>(shards);
+		for (int shard = 0; shard < shards; shard++) {
+			engines.add(configuration.apply(shard).setEngineName(engineName(shard, run)).buildProcessEngine());
+		}
+		return new ShardedProcessEngines(engines);
+	}
+
+	private static String engineName(int shard, String run) {
+		return "shard-" + shard + "-" + run;
+	}
+
+	public int getShardCount() {
+		return this.shards.size();
+	}
+
+	public List<ProcessEngine> getShards() {
+		return Collections.unmodifiableList(this.shards);
+	}
+
+	/**
+	 * The engine owning the instances with the given business key
+	 */
+	public ProcessEngine shardFor(String businessKey) {
+		return this.shards.get(shardIndexFor(businessKey));
+	}
+
+	public int shardIndexFor(String businessKey) {
+		if (businessKey == null) {
+			throw new IllegalArgumentException("Instances are sharded by business key, a business key is required");
+		}
+		return this.ring.shardOf(businessKey);
+	}
+
+	/**
+	 * Deploys the classpath resources to every shard
+	 */
+	public void deployClasspathResources(String... resources) {
+		for (ProcessEngine shard : this.shards) {
+			DeploymentBuilder deployment = shard.getRepositoryService().createDeployment();
+			for (String resource : resources) {
+				deployment.addClasspathResource(resource);
+			}
+			deployment.deploy();
+		}
+	}
+
+	public ProcessInstance startProcessInstanceByKey(String processDefinitionKey, String businessKey) {
+		return startProcessInstanceByKey(processDefinitionKey, businessKey, null);
+	}
+
+	public ProcessInstance startProcessInstanceByKey(String processDefinitionKey, String businessKey,
+			Map<String, Object> variables) {
+		return shardFor(businessKey).getRuntimeService().startProcessInstanceByKey(processDefinitionKey, businessKey,
+				variables);
+	}
+
+	/**
+	 * The active tasks of the instances with the given business key
+	 */
+	public List<Task> tasks(String businessKey) {
+		return shardFor(businessKey).getTaskService().createTaskQuery().processInstanceBusinessKey(businessKey).active()
+				.list();
+	}
+
+	public void complete(String businessKey, String taskId) {
+		complete(businessKey, taskId, null);
+	}
+
+	public void complete(String businessKey, String taskId, Map<String, Object> variables) {
+		shardFor(businessKey).getTaskService().complete(taskId, variables);
+	}
+
+	/**
+	 * Triggers the subscriptions to the signal of the instances with the given business key
+	 * <br>
+	 * Just like the api, only global scoped subscriptions are triggered, see Signal.signalProcessScopeApi.
+	 * The signal is delivered once per subscribed execution, which triggers all of its subscriptions to it. An execution
+	 * whose subscriptions were ended by an earlier delivery, the other events of an event based gateway, is passed over.
+	 *
+	 * @return the number of subscriptions triggered
+	 */
+	public int signalEventReceived(String businessKey, String signalName) {
+		RuntimeService runtimeService = shardFor(businessKey).getRuntimeService();
+		int triggered = 0;
+		for (String processInstanceId : processInstanceIds(runtimeService, businessKey)) {
+			Set<String> executionIds = globalSubscriptions(runtimeService.createEventSubscriptionQuery()
+					.processInstanceId(processInstanceId).eventType(SIGNAL_EVENT_TYPE).eventName(signalName).list()).stream()
+					.map(EventSubscription::getExecutionId).collect(Collectors.toCollection(LinkedHashSet::new));
+			for (String executionId : executionIds) {
+				int subscriptions = globalSubscriptions(runtimeService.createEventSubscriptionQuery().executionId(executionId)
+						.eventType(SIGNAL_EVENT_TYPE).eventName(signalName).list()).size();
+				if (subscriptions > 0) {
+					runtimeService.signalEventReceived(signalName, executionId);
+					triggered += subscriptions;
+				}
+			}
+		}
+		return triggered;
+	}
+
+	private static List<EventSubscription> globalSubscriptions(List<EventSubscription> subscriptions) {
+		return subscriptions.stream()
+				.filter((subscription) -> ((SignalEventSubscriptionEntity) subscription).isGlobalScoped())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Delivers the message to the instance with the given business key
+	 *
+	 * @throws FlowableObjectNotFoundException when no execution of that instance waits for the message
+	 */
+	public void messageEventReceived(String businessKey, String messageName) {
+		RuntimeService runtimeService = shardFor(businessKey).getRuntimeService();
+		for (String processInstanceId : processInstanceIds(runtimeService, businessKey)) {
+			Execution subscribed = runtimeService.createExecutionQuery().processInstanceId(processInstanceId)
+					.messageEventSubscriptionName(messageName).singleResult();
+			if (subscribed != null) {
+				runtimeService.messageEventReceived(messageName, subscribed.getId());
+				return;
+			}
+		}
+		throw new FlowableObjectNotFoundException("No execution of the instance with business key '" + businessKey
+				+ "' on shard " + shardIndexFor(businessKey) + " waits for message '" + messageName + "'",
+				Execution.class);
+	}
+
+	/**
+	 * Throws the global signal on every shard at once, the future completes when all shards delivered it
+	 * <br>
+	 * It fails if any shard failed, the other shards delivered the signal all the same
+	 */
+	public CompletableFuture<Void> broadcastSignal(String signalName) {
+		return broadcastSignal(signalName, null);
+	}
+
+	public CompletableFuture<Void> broadcastSignal(String signalName, Map<String, Object> payload) {
+		List<CompletableFuture<Void>> deliveries = new ArrayList<>(this.shards.size());
+		for (ProcessEngine shard : this.shards) {
+			deliveries.add(CompletableFuture
+					.runAsync(() -> shard.getRuntimeService().signalEventReceived(signalName, payload), this.broadcaster));
+		}
+		return CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0]));
+	}
+
+	// the business key is on the process instance only, the subscriptions are on its child executions
+	private static List<String> processInstanceIds(RuntimeService runtimeService, String businessKey) {
+		return runtimeService.createProcessInstanceQuery().processInstanceBusinessKey(businessKey).list().stream()
+				.map(ProcessInstance::getId).collect(Collectors.toList());
+	}
+
+	/**
+	 * Waits for broadcasts still running, then closes every shard
+	 */
+	@Override
+	public void close() {
+		this.broadcaster.shutdown();
+		try {
+			this.broadcaster.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.shards.forEach(ProcessEngine::close);
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.hercules.playground.flowable.signal;
+
+import java.util.List;
+import java.util.Map;
+
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.delegate.event.impl.FlowableEventBuilder;
+import org.flowable.engine.impl.util.CommandContextUtil;
+import org.flowable.engine.impl.util.EventSubscriptionUtil;
+import org.flowable.eventsubscription.service.EventSubscriptionService;
+import org.flowable.eventsubscription.service.impl.persistence.entity.EventSubscriptionEntity;
+
+/**
+ * Triggers one chunk of signal subscriptions in a single transaction, the same way SignalEventReceivedCmd triggers each of them
+ * <br>
+ * Subscriptions that are gone by the time the chunk runs have been consumed by something else and are skipped
+ */
+class DeliverSignalChunkCmd implements Command<Integer> {
+
+	private final String signalName;
+	private final Map<String, Object> payload;
+	private final List<String> subscriptionIds;
+
+	DeliverSignalChunkCmd(String signalName, Map<String, Object> payload, List<String> subscriptionIds) {
+		this.signalName = signalName;
+		this.payload = payload;
+		this.subscriptionIds = subscriptionIds;
+	}
+
+	@Override
+	public Integer execute(CommandContext commandContext) {
+		EventSubscriptionService eventSubscriptionService = CommandContextUtil.getEventSubscriptionService(commandContext);
+		int delivered = 0;
+		for (String subscriptionId : this.subscriptionIds) {
+			EventSubscriptionEntity subscription = eventSubscriptionService.findById(subscriptionId);
+			if (subscription == null || subscription.isDeleted()) {
+				continue;
+			}
+			CommandContextUtil.getProcessEngineConfiguration(commandContext).getEventDispatcher()
+					.dispatchEvent(FlowableEventBuilder.createSignalEvent(FlowableEngineEventType.ACTIVITY_SIGNALED,
+							subscription.getActivityId(), this.signalName, this.payload, subscription.getExecutionId(),
+							subscription.getProcessInstanceId(), subscription.getProcessDefinitionId()));
+			EventSubscriptionUtil.eventReceived(subscription, this.payload, false);
+			delivered++;
+		}
+		return delivered;
+	}
+
+}
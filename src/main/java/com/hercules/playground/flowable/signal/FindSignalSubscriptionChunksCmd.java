@@ -0,0 +1,55 @@
+package com.hercules.playground.flowable.signal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.util.CommandContextUtil;
+import org.flowable.eventsubscription.service.impl.persistence.entity.SignalEventSubscriptionEntity;
+
+/**
+ * Reads the global scoped subscriptions of a signal and packs their ids into chunks, keeping each process instance in one chunk
+ * <br>
+ * Signal start event subscriptions have no process instance, each of those is packed on its own
+ */
+class FindSignalSubscriptionChunksCmd implements Command<List<List<String>>> {
+
+	private final String signalName;
+	private final int chunkSize;
+
+	FindSignalSubscriptionChunksCmd(String signalName, int chunkSize) {
+		this.signalName = signalName;
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	public List<List<String>> execute(CommandContext commandContext) {
+		Map<String, List<String>> subscriptionsByInstance = new LinkedHashMap<>();
+		for (SignalEventSubscriptionEntity subscription : CommandContextUtil.getEventSubscriptionService(commandContext)
+				.findSignalEventSubscriptionsByEventName(this.signalName, null)) {
+			if (subscription.isGlobalScoped()) {
+				String instance = subscription.getProcessInstanceId() != null ? subscription.getProcessInstanceId()
+						: subscription.getId();
+				subscriptionsByInstance.computeIfAbsent(instance, key -> new ArrayList<>()).add(subscription.getId());
+			}
+		}
+
+		List<List<String>> chunks = new ArrayList<>();
+		List<String> chunk = new ArrayList<>();
+		for (List<String> instanceSubscriptions : subscriptionsByInstance.values()) {
+			chunk.addAll(instanceSubscriptions);
+			if (chunk.size() >= this.chunkSize) {
+				chunks.add(chunk);
+				chunk = new ArrayList<>();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+
+}
@@ -0,0 +1,201 @@
+package com.hercules.playground.flowable.signal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.flowable.common.engine.api.FlowableOptimisticLockingException;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+
+/**
+ * Delivers global signals the way runtimeService.signalEventReceived(signalName) does, without the one giant transaction
+ * <br>
+ * Signals of the same name raised within the coalesce window are merged into one delivery, later payload values overwrite earlier ones.
+ * <br>
+ * The subscriptions of a delivery are cut into chunks of roughly chunkSize subscriptions, each chunk is its own transaction on the worker pool.
+ * All subscriptions of one process instance always land in the same chunk, so two workers never race on the same instance.
+ * <br>
+ * Just like the api, only global scoped subscriptions are triggered, see Signal.signalProcessScopeApi
+ */
+public class SignalDispatcher implements AutoCloseable {
+
+	private static final int OPTIMISTIC_LOCK_ATTEMPTS = 3;
+
+	private final ManagementService managementService;
+	private final long coalesceWindowMillis;
+	private final int chunkSize;
+	private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+	private final ExecutorService workers;
+	private final ConcurrentHashMap<String, PendingSignal> pending = new ConcurrentHashMap<>();
+	// signals are queued under the read lock, close stops the scheduler under the write lock
+	private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+	private boolean closed;
+
+	private final LongAdder coalescedSignals = new LongAdder();
+	private final LongAdder deliveredChunks = new LongAdder();
+	private final AtomicLong longestChunkNanos = new AtomicLong();
+
+	public SignalDispatcher(ProcessEngine processEngine) {
+		this(processEngine, 10, 100, 4);
+	}
+
+	public SignalDispatcher(ProcessEngine processEngine, long coalesceWindowMillis, int chunkSize, int workerThreads) {
+		this.managementService = processEngine.getManagementService();
+		this.coalesceWindowMillis = coalesceWindowMillis;
+		this.chunkSize = chunkSize;
+		this.workers = Executors.newFixedThreadPool(workerThreads);
+		// close delivers the flushes still waiting for their window itself
+		this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+	}
+
+	public CompletableFuture<Integer> signal(String signalName) {
+		return signal(signalName, null);
+	}
+
+	/**
+	 * Queue a global signal
+	 * <br>
+	 * The future completes with the number of subscriptions triggered by the delivery this signal was coalesced into
+	 *
+	 * @throws IllegalStateException once the dispatcher is closing, a signal queued before is delivered by close
+	 */
+	public CompletableFuture<Integer> signal(String signalName, Map<String, Object> payload) {
+		this.lifecycle.readLock().lock();
+		try {
+			if (this.closed) {
+				throw new IllegalStateException("Signal dispatcher is closed, cannot signal '" + signalName + "'");
+			}
+			return this.pending.compute(signalName, (name, existing) -> {
+				if (existing == null) {
+					existing = new PendingSignal(name);
+					this.scheduler.schedule(() -> flush(name), this.coalesceWindowMillis, TimeUnit.MILLISECONDS);
+				} else {
+					this.coalescedSignals.increment();
+				}
+				existing.merge(payload);
+				return existing;
+			}).delivered;
+		} finally {
+			this.lifecycle.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Signals that were folded into an already pending signal of the same name
+	 */
+	public long getCoalescedSignals() {
+		return this.coalescedSignals.sum();
+	}
+
+	public long getDeliveredChunks() {
+		return this.deliveredChunks.sum();
+	}
+
+	/**
+	 * The longest time a single chunk transaction took, which bounds how long subscription rows stay locked
+	 */
+	public long getLongestChunkMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.longestChunkNanos.get());
+	}
+
+	/**
+	 * Delivers everything still pending and waits for the workers to finish
+	 * <br>
+	 * A flush the scheduler is running is let finish, it still hands its chunks to the workers, which are only shut down
+	 * once nothing is left to flush.
+	 */
+	@Override
+	public void close() {
+		this.lifecycle.writeLock().lock();
+		try {
+			this.closed = true;
+			this.scheduler.shutdown();
+		} finally {
+			this.lifecycle.writeLock().unlock();
+		}
+		try {
+			this.scheduler.awaitTermination(1, TimeUnit.MINUTES);
+			new ArrayList<>(this.pending.keySet()).forEach(this::flush);
+			this.workers.shutdown();
+			this.workers.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			this.workers.shutdown();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void flush(String signalName) {
+		PendingSignal signal = this.pending.remove(signalName);
+		if (signal == null) {
+			return;
+		}
+		try {
+			List<List<String>> chunks = this.managementService
+					.executeCommand(new FindSignalSubscriptionChunksCmd(signalName, this.chunkSize));
+			List<CompletableFuture<Integer>> deliveries = new ArrayList<>();
+			for (List<String> chunk : chunks) {
+				deliveries.add(CompletableFuture.supplyAsync(() -> deliverChunk(signal, chunk), this.workers));
+			}
+			CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0])).whenComplete((done, failure) -> {
+				if (failure != null) {
+					signal.delivered.completeExceptionally(failure);
+				} else {
+					signal.delivered.complete(deliveries.stream().mapToInt(CompletableFuture::join).sum());
+				}
+			});
+		} catch (RuntimeException e) {
+			signal.delivered.completeExceptionally(e);
+		}
+	}
+
+	private int deliverChunk(PendingSignal signal, List<String> subscriptionIds) {
+		for (int attempt = 1;; attempt++) {
+			long start = System.nanoTime();
+			try {
+				int delivered = this.managementService
+						.executeCommand(new DeliverSignalChunkCmd(signal.signalName, signal.payload, subscriptionIds));
+				this.deliveredChunks.increment();
+				this.longestChunkNanos.accumulateAndGet(System.nanoTime() - start, Math::max);
+				return delivered;
+			} catch (FlowableOptimisticLockingException e) {
+				// the chunk rolled back as a whole, subscriptions consumed meanwhile are skipped on the retry
+				if (attempt == OPTIMISTIC_LOCK_ATTEMPTS) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	private static class PendingSignal {
+		final String signalName;
+		final CompletableFuture<Integer> delivered = new CompletableFuture<>();
+		Map<String, Object> payload;
+
+		PendingSignal(String signalName) {
+			this.signalName = signalName;
+		}
+
+		void merge(Map<String, Object> payload) {
+			if (payload == null) {
+				return;
+			}
+			if (this.payload == null) {
+				this.payload = new HashMap<>();
+			}
+			this.payload.putAll(payload);
+		}
+	}
+
+}
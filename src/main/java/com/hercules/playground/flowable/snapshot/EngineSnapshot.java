@@ -0,0 +1,150 @@
+package com.hercules.playground.flowable.snapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.repository.DeploymentBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An image of an engine's H2 database right after its schema was created and its resources deployed
+ * <br>
+ * Building an engine on a fresh database creates some seventy tables, and deploying the notes parses and stores every one
+ * of them. The first engine built through a snapshot does both and writes its database to the image, a deflated sql script.
+ * Every engine after it on a fresh database is restored from the image before it is built, its schema and deployments are
+ * already there, so neither the DDL nor the deployment runs again.
+ * <br>
+ * The image is named by a hash of the engine version and the resources' names and content, a changed resource or
+ * a Flowable upgrade makes a new one. An image is only restored into an empty database, a database that already has
+ * an engine's tables is built on as it is and nothing is deployed.
+ */
+public class EngineSnapshot {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(EngineSnapshot.class);
+
+	private final Path image;
+	private final String[] resources;
+
+	private EngineSnapshot(Path image, String[] resources) {
+		this.image = image;
+		this.resources = resources;
+	}
+
+	/**
+	 * The snapshot of an engine with the classpath resources deployed, its image kept in the directory
+	 */
+	public static EngineSnapshot of(Path directory, String... resources) {
+		return new EngineSnapshot(directory.resolve(key(resources) + ".sql.deflate"), resources.clone());
+	}
+
+	public Path getImage() {
+		return this.image;
+	}
+
+	public boolean exists() {
+		return Files.isRegularFile(this.image);
+	}
+
+	/**
+	 * The engine of the configuration, restored from the image, or built, deployed and written to it when there is none
+	 */
+	public ProcessEngine buildProcessEngine(ProcessEngineConfiguration configuration) {
+		if (!exists()) {
+			ProcessEngine processEngine = configuration.buildProcessEngine();
+			deploy(processEngine);
+			write(processEngine);
+			return processEngine;
+		}
+		// an in memory database without DB_CLOSE_DELAY is dropped with its last connection, it is held until the engine has one
+		try (Connection connection = DriverManager.getConnection(configuration.getJdbcUrl(),
+				configuration.getJdbcUsername(), configuration.getJdbcPassword())) {
+			if (hasEngineTables(connection)) {
+				LOGGER.info("{} already has an engine, not restoring {}", configuration.getJdbcUrl(), this.image);
+			} else {
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("RUNSCRIPT FROM " + literal(this.image) + " COMPRESSION DEFLATE");
+				}
+			}
+			return configuration.buildProcessEngine();
+		} catch (SQLException e) {
+			throw new FlowableException("Could not restore the engine snapshot " + this.image, e);
+		}
+	}
+
+	private void deploy(ProcessEngine processEngine) {
+		if (this.resources.length == 0) {
+			return;
+		}
+		DeploymentBuilder deployment = processEngine.getRepositoryService().createDeployment();
+		for (String resource : this.resources) {
+			deployment.addClasspathResource(resource);
+		}
+		deployment.deploy();
+	}
+
+	private void write(ProcessEngine processEngine) {
+		try {
+			Files.createDirectories(this.image.getParent());
+			// written aside and moved in, so a concurrent engine never restores half an image
+			Path written = Files.createTempFile(this.image.getParent(), this.image.getFileName().toString(), ".tmp");
+			processEngine.getManagementService().executeCommand(new WriteSnapshotCmd(written));
+			Files.move(written, this.image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LOGGER.warn("Could not write the engine snapshot {}", this.image, e);
+		}
+	}
+
+	private static boolean hasEngineTables(Connection connection) throws SQLException {
+		try (ResultSet tables = connection.getMetaData().getTables(null, null, "ACT_GE_PROPERTY", null)) {
+			return tables.next();
+		}
+	}
+
+	/**
+	 * The path as an sql string literal
+	 */
+	static String literal(Path path) {
+		return "'" + path.toAbsolutePath().toString().replace("'", "''") + "'";
+	}
+
+	private static String key(String[] resources) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(ProcessEngine.VERSION.getBytes(StandardCharsets.UTF_8));
+			for (String resource : resources) {
+				digest.update(resource.getBytes(StandardCharsets.UTF_8));
+				try (InputStream in = EngineSnapshot.class.getClassLoader().getResourceAsStream(resource)) {
+					if (in == null) {
+						throw new FlowableException("No resource " + resource + " on the classpath");
+					}
+					digest.update(in.readAllBytes());
+				}
+			}
+			StringBuilder key = new StringBuilder(64);
+			for (byte b : digest.digest()) {
+				key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new FlowableException("SHA-256 is not available", e);
+		} catch (IOException e) {
+			throw new FlowableException("Could not read the resources to snapshot", e);
+		}
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.hercules.playground.flowable.snapshot;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.util.CommandContextUtil;
+
+/**
+ * Writes the engine's H2 database, schema and rows, as a deflated sql script
+ */
+class WriteSnapshotCmd implements Command<Void> {
+
+	private final Path image;
+
+	WriteSnapshotCmd(Path image) {
+		this.image = image;
+	}
+
+	@Override
+	public Void execute(CommandContext commandContext) {
+		try (Statement statement = CommandContextUtil.getDbSqlSession(commandContext).getSqlSession().getConnection()
+				.createStatement()) {
+			statement.execute("SCRIPT TO " + EngineSnapshot.literal(this.image) + " COMPRESSION DEFLATE");
+			return null;
+		} catch (SQLException e) {
+			throw new FlowableException("Could not write the engine snapshot " + this.image, e);
+		}
+	}
+
+}
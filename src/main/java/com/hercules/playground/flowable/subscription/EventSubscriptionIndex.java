@@ -0,0 +1,258 @@
+package com.hercules.playground.flowable.subscription;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.api.FlowableObjectNotFoundException;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEntityEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.runtime.Execution;
+import org.flowable.engine.runtime.ExecutionQuery;
+import org.flowable.eventsubscription.api.EventSubscription;
+
+import com.hercules.playground.flowable.teardown.ProcessInstancesPurgedEvent;
+
+/**
+ * Keeps the message and signal subscriptions of running process instances in memory, keyed by event name and process instance
+ * <br>
+ * MessageEvents.howToDoBasicSignalCoordination finds its execution with
+ * createExecutionQuery().messageEventSubscriptionName(...).singleResult() before it can call messageEventReceived,
+ * with the index that lookup is a map read and only the trigger goes to the database.
+ * <br>
+ * The index follows the subscription entities through created and deleted events, applied once the transaction has committed,
+ * so a rolled back subscription never shows up. Instances purged by a BulkProcessInstanceTeardown are dropped through
+ * its ProcessInstancesPurgedEvent. When the index has no entry the execution query is used instead,
+ * which keeps the answers the same as the query based path.
+ * <br>
+ * The listeners run on whichever thread commits, so the create of one transaction can be applied after the delete of another
+ * and leave an execution that no longer waits. A delivery to it that fails is checked against the database, the stale entry
+ * is dropped and the delivery goes through the execution query.
+ */
+public class EventSubscriptionIndex implements FlowableEventListener, AutoCloseable {
+
+	public static final String MESSAGE = "message";
+	public static final String SIGNAL = "signal";
+
+	private final RuntimeService runtimeService;
+	// "message:OrderedPizza" -> process instance id -> subscribed execution id -> subscriptions it holds to that name
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>>> subscriptions =
+			new ConcurrentHashMap<>();
+
+	EventSubscriptionIndex(RuntimeService runtimeService) {
+		this.runtimeService = runtimeService;
+	}
+
+	/**
+	 * Builds the index from the subscriptions already in the database and keeps it up to date from then on
+	 */
+	public static EventSubscriptionIndex register(ProcessEngine processEngine) {
+		EventSubscriptionIndex index = new EventSubscriptionIndex(processEngine.getRuntimeService());
+		index.runtimeService.addEventListener(index, FlowableEngineEventType.ENTITY_CREATED,
+				FlowableEngineEventType.ENTITY_DELETED, FlowableEngineEventType.CUSTOM);
+		for (EventSubscription subscription : index.runtimeService.createEventSubscriptionQuery().list()) {
+			index.add(subscription);
+		}
+		return index;
+	}
+
+	/**
+	 * @return the execution of the process instance subscribed to the message, or null when there is none
+	 */
+	public String findMessageSubscription(String messageName, String processInstanceId) {
+		return find(MESSAGE, messageName, processInstanceId);
+	}
+
+	/**
+	 * @return the execution of the process instance subscribed to the signal, or null when there is none
+	 */
+	public String findSignalSubscription(String signalName, String processInstanceId) {
+		return find(SIGNAL, signalName, processInstanceId);
+	}
+
+	public void messageEventReceived(String messageName, String processInstanceId) {
+		messageEventReceived(messageName, processInstanceId, null);
+	}
+
+	/**
+	 * @throws FlowableObjectNotFoundException when no execution of the process instance waits for the message
+	 */
+	public void messageEventReceived(String messageName, String processInstanceId, Map<String, Object> payload) {
+		String executionId = findMessageSubscription(messageName, processInstanceId);
+		if (executionId != null) {
+			try {
+				this.runtimeService.messageEventReceived(messageName, executionId, payload);
+				return;
+			} catch (FlowableException e) {
+				if (!evictStale(MESSAGE, messageName, processInstanceId, executionId)) {
+					throw e;
+				}
+			}
+		}
+		Execution execution = this.runtimeService.createExecutionQuery().processInstanceId(processInstanceId)
+				.messageEventSubscriptionName(messageName).singleResult();
+		if (execution == null) {
+			throw notSubscribed(MESSAGE, messageName, processInstanceId);
+		}
+		this.runtimeService.messageEventReceived(messageName, execution.getId(), payload);
+	}
+
+	public void signalEventReceived(String signalName, String processInstanceId) {
+		signalEventReceived(signalName, processInstanceId, null);
+	}
+
+	/**
+	 * @throws FlowableObjectNotFoundException when no execution of the process instance waits for the signal
+	 */
+	public void signalEventReceived(String signalName, String processInstanceId, Map<String, Object> payload) {
+		String executionId = findSignalSubscription(signalName, processInstanceId);
+		if (executionId != null) {
+			try {
+				this.runtimeService.signalEventReceived(signalName, executionId, payload);
+				return;
+			} catch (FlowableException e) {
+				if (!evictStale(SIGNAL, signalName, processInstanceId, executionId)) {
+					throw e;
+				}
+			}
+		}
+		List<Execution> executions = this.runtimeService.createExecutionQuery().processInstanceId(processInstanceId)
+				.signalEventSubscriptionName(signalName).list();
+		if (executions.isEmpty()) {
+			throw notSubscribed(SIGNAL, signalName, processInstanceId);
+		}
+		this.runtimeService.signalEventReceived(signalName, executions.get(0).getId(), payload);
+	}
+
+	/**
+	 * Drops the execution from the index when the database says it does not wait for the event
+	 *
+	 * @return whether it was stale, a delivery to an execution that does wait failed for a reason of its own
+	 */
+	private boolean evictStale(String eventType, String eventName, String processInstanceId, String executionId) {
+		ExecutionQuery query = this.runtimeService.createExecutionQuery().executionId(executionId);
+		if ((MESSAGE.equals(eventType) ? query.messageEventSubscriptionName(eventName)
+				: query.signalEventSubscriptionName(eventName)).count() > 0) {
+			return false;
+		}
+		ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>> instances = this.subscriptions
+				.get(key(eventType, eventName));
+		if (instances != null) {
+			instances.computeIfPresent(processInstanceId, (id, executions) -> {
+				executions.remove(executionId);
+				return executions.isEmpty() ? null : executions;
+			});
+		}
+		return true;
+	}
+
+	private static FlowableObjectNotFoundException notSubscribed(String eventType, String eventName,
+			String processInstanceId) {
+		return new FlowableObjectNotFoundException("No execution of process instance '" + processInstanceId + "' waits for "
+				+ eventType + " '" + eventName + "'", Execution.class);
+	}
+
+	/**
+	 * Number of process instances holding at least one indexed subscription, summed over every event name
+	 */
+	public int size() {
+		return this.subscriptions.values().stream().mapToInt(Map::size).sum();
+	}
+
+	@Override
+	public void close() {
+		this.runtimeService.removeEventListener(this);
+	}
+
+	@Override
+	public void onEvent(FlowableEvent event) {
+		if (event instanceof ProcessInstancesPurgedEvent) {
+			Set<String> purged = ((ProcessInstancesPurgedEvent) event).getProcessInstanceIds();
+			for (Map<String, ConcurrentHashMap<String, Integer>> instances : this.subscriptions.values()) {
+				instances.keySet().removeAll(purged);
+			}
+			return;
+		}
+		if (!(event instanceof FlowableEntityEvent)
+				|| !(((FlowableEntityEvent) event).getEntity() instanceof EventSubscription)) {
+			return;
+		}
+		EventSubscription subscription = (EventSubscription) ((FlowableEntityEvent) event).getEntity();
+		if (event.getType() == FlowableEngineEventType.ENTITY_CREATED) {
+			add(subscription);
+		} else {
+			remove(subscription);
+		}
+	}
+
+	@Override
+	public boolean isFailOnException() {
+		return false;
+	}
+
+	@Override
+	public boolean isFireOnTransactionLifecycleEvent() {
+		return true;
+	}
+
+	@Override
+	public String getOnTransaction() {
+		return TransactionState.COMMITTED.name();
+	}
+
+	private String find(String eventType, String eventName, String processInstanceId) {
+		Map<String, ConcurrentHashMap<String, Integer>> instances = this.subscriptions.get(key(eventType, eventName));
+		Map<String, Integer> executions = instances != null ? instances.get(processInstanceId) : null;
+		if (executions == null) {
+			return null;
+		}
+		Iterator<String> iterator = executions.keySet().iterator();
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+
+	private void add(EventSubscription subscription) {
+		// start event subscriptions belong to the definition, not to an instance
+		if (subscription.getProcessInstanceId() == null || subscription.getExecutionId() == null) {
+			return;
+		}
+		// one compute on the instance, so the executions map is never one a concurrent remove has just dropped
+		this.subscriptions.computeIfAbsent(key(subscription), key -> new ConcurrentHashMap<>())
+				.compute(subscription.getProcessInstanceId(), (id, executions) -> {
+					ConcurrentHashMap<String, Integer> added = executions != null ? executions : new ConcurrentHashMap<>();
+					added.merge(subscription.getExecutionId(), 1, Integer::sum);
+					return added;
+				});
+	}
+
+	private void remove(EventSubscription subscription) {
+		if (subscription.getProcessInstanceId() == null || subscription.getExecutionId() == null) {
+			return;
+		}
+		ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>> instances = this.subscriptions.get(key(subscription));
+		if (instances != null) {
+			instances.computeIfPresent(subscription.getProcessInstanceId(), (id, executions) -> {
+				// an execution can hold several subscriptions to one name, it is subscribed until the last one is gone
+				executions.computeIfPresent(subscription.getExecutionId(),
+						(executionId, count) -> count > 1 ? count - 1 : null);
+				return executions.isEmpty() ? null : executions;
+			});
+		}
+	}
+
+	private static String key(EventSubscription subscription) {
+		return key(subscription.getEventType(), subscription.getEventName());
+	}
+
+	private static String key(String eventType, String eventName) {
+		return eventType + ':' + eventName;
+	}
+
+}
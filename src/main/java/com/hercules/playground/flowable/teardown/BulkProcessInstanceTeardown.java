@@ -0,0 +1,106 @@
+package com.hercules.playground.flowable.teardown;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+
+/**
+ * Deletes running process instances with a handful of set based statements per batch instead of one deleteProcessInstance call each
+ * <br>
+ * Each batch of process instances is one transaction that removes the identity links, variables, jobs, event subscriptions, tasks,
+ * activity instances and executions of the whole batch, sub process instances started by call activities go with their parent.
+ * Batches never share a process instance, so they run in parallel without contending on the same rows.
+ * <br>
+ * This is a purge: it goes around the engine, so no delete events are dispatched. Each batch dispatches a ProcessInstancesPurgedEvent
+ * instead, listeners such as EventSubscriptionIndex drop the instances it names.
+ * The history rows stay, the instances and their open activities and tasks are ended in them as deleteProcessInstance ends them.
+ */
+public class BulkProcessInstanceTeardown {
+
+	private final ManagementService managementService;
+	private final String tablePrefix;
+	private final int batchSize;
+	private final int parallelism;
+
+	public BulkProcessInstanceTeardown(ProcessEngine processEngine) {
+		this(processEngine, 500, 2);
+	}
+
+	public BulkProcessInstanceTeardown(ProcessEngine processEngine, int batchSize, int parallelism) {
+		this.managementService = processEngine.getManagementService();
+		this.tablePrefix = processEngine.getProcessEngineConfiguration().getDatabaseTablePrefix();
+		this.batchSize = batchSize;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @return the number of rows deleted
+	 */
+	public long deleteAll() {
+		return deleteByIds(this.managementService.executeCommand(new FindRootProcessInstanceIdsCmd(this.tablePrefix, null)));
+	}
+
+	/**
+	 * @return the number of rows deleted
+	 */
+	public long deleteByProcessDefinitionKey(String processDefinitionKey) {
+		return deleteByIds(this.managementService
+				.executeCommand(new FindRootProcessInstanceIdsCmd(this.tablePrefix, processDefinitionKey)));
+	}
+
+	/**
+	 * @return the number of rows deleted
+	 */
+	public long deleteByIds(Collection<String> processInstanceIds) {
+		List<List<String>> batches = new ArrayList<>();
+		List<String> batch = new ArrayList<>();
+		for (String processInstanceId : processInstanceIds) {
+			batch.add(processInstanceId);
+			if (batch.size() == this.batchSize) {
+				batches.add(batch);
+				batch = new ArrayList<>();
+			}
+		}
+		if (!batch.isEmpty()) {
+			batches.add(batch);
+		}
+		if (batches.size() <= 1 || this.parallelism <= 1) {
+			long rows = 0;
+			for (List<String> processInstanceBatch : batches) {
+				rows += this.managementService
+						.executeCommand(new DeleteProcessInstanceBatchCmd(this.tablePrefix, processInstanceBatch));
+			}
+			return rows;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.parallelism, batches.size()));
+		try {
+			List<Future<Long>> deletes = new ArrayList<>();
+			for (List<String> processInstanceBatch : batches) {
+				deletes.add(executor.submit(() -> this.managementService
+						.executeCommand(new DeleteProcessInstanceBatchCmd(this.tablePrefix, processInstanceBatch))));
+			}
+			long rows = 0;
+			for (Future<Long> delete : deletes) {
+				rows += delete.get();
+			}
+			return rows;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FlowableException("Interrupted while deleting process instances", e);
+		} catch (ExecutionException e) {
+			throw new FlowableException("Could not delete process instances", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,183 @@
+package com.hercules.playground.flowable.teardown;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.common.engine.impl.context.Context;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.history.DeleteReason;
+import org.flowable.engine.impl.util.CommandContextUtil;
+
+/**
+ * Deletes the runtime rows of a batch of process instances and answers how many rows went,
+ * children before parents so every foreign key holds at each statement
+ * <br>
+ * The history rows of the instances, their activities and tasks that are still open are ended now, with the delete reason
+ * deleteProcessInstance gives them when it is given none.
+ * <br>
+ * No entity events are fired, the batch dispatches one ProcessInstancesPurgedEvent for listeners to drop the instances.
+ */
+class DeleteProcessInstanceBatchCmd implements Command<Long> {
+
+	private static final String[] HISTORY_TABLES = { "ACT_HI_PROCINST", "ACT_HI_ACTINST", "ACT_HI_TASKINST" };
+	private static final String[] JOB_TABLES = { "ACT_RU_JOB", "ACT_RU_TIMER_JOB", "ACT_RU_SUSPENDED_JOB",
+			"ACT_RU_DEADLETTER_JOB" };
+
+	private final String tablePrefix;
+	private final List<String> processInstanceIds;
+
+	DeleteProcessInstanceBatchCmd(String tablePrefix, List<String> processInstanceIds) {
+		this.tablePrefix = tablePrefix;
+		this.processInstanceIds = processInstanceIds;
+	}
+
+	@Override
+	public Long execute(CommandContext commandContext) {
+		Connection connection = CommandContextUtil.getDbSqlSession(commandContext).getSqlSession().getConnection();
+		// the deletes go around mybatis, which only rolls back a session it has written through itself
+		Context.getTransactionContext().addTransactionListener(TransactionState.ROLLINGBACK,
+				context -> CommandContextUtil.getDbSqlSession(context).getSqlSession().rollback(true));
+		try {
+			Set<String> ids = withSubProcessInstances(connection);
+			String in = placeholders(ids.size());
+			Set<String> byteArrayIds = new LinkedHashSet<>();
+			long rows = 0;
+
+			Timestamp endTime = new Timestamp(CommandContextUtil.getProcessEngineConfiguration(commandContext).getClock()
+					.getCurrentTime().getTime());
+			for (String historyTable : HISTORY_TABLES) {
+				endHistory(connection, historyTable, in, ids, endTime);
+			}
+
+			rows += update(connection, "delete from " + table("ACT_RU_IDENTITYLINK") + " where TASK_ID_ in (select ID_ from "
+					+ table("ACT_RU_TASK") + " where PROC_INST_ID_ in " + in + ")", ids);
+			rows += update(connection, "delete from " + table("ACT_RU_IDENTITYLINK") + " where PROC_INST_ID_ in " + in, ids);
+
+			byteArrayIds.addAll(select(connection, "select BYTEARRAY_ID_ from " + table("ACT_RU_VARIABLE")
+					+ " where BYTEARRAY_ID_ is not null and PROC_INST_ID_ in " + in, ids));
+			rows += update(connection, "delete from " + table("ACT_RU_VARIABLE") + " where PROC_INST_ID_ in " + in, ids);
+
+			for (String jobTable : JOB_TABLES) {
+				byteArrayIds.addAll(select(connection, "select EXCEPTION_STACK_ID_ from " + table(jobTable)
+						+ " where EXCEPTION_STACK_ID_ is not null and PROCESS_INSTANCE_ID_ in " + in, ids));
+				byteArrayIds.addAll(select(connection, "select CUSTOM_VALUES_ID_ from " + table(jobTable)
+						+ " where CUSTOM_VALUES_ID_ is not null and PROCESS_INSTANCE_ID_ in " + in, ids));
+				rows += update(connection, "delete from " + table(jobTable) + " where PROCESS_INSTANCE_ID_ in " + in, ids);
+			}
+
+			Map<String, String> taskIds = new LinkedHashMap<>();
+			try (PreparedStatement statement = prepare(connection, "select ID_, PROC_INST_ID_ from " + table("ACT_RU_TASK")
+					+ " where PROC_INST_ID_ in " + in, ids); ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					taskIds.put(resultSet.getString(1), resultSet.getString(2));
+				}
+			}
+
+			rows += update(connection, "delete from " + table("ACT_RU_EVENT_SUBSCR") + " where PROC_INST_ID_ in " + in, ids);
+			rows += update(connection, "delete from " + table("ACT_RU_TASK") + " where PROC_INST_ID_ in " + in, ids);
+			rows += update(connection, "delete from " + table("ACT_RU_ACTINST") + " where PROC_INST_ID_ in " + in, ids);
+			rows += update(connection, "delete from " + table("ACT_RU_ENTITYLINK") + " where SCOPE_TYPE_ = 'bpmn' and SCOPE_ID_ in "
+					+ in, ids);
+
+			// the execution tree references itself, unhook it before deleting it
+			update(connection, "update " + table("ACT_RU_EXECUTION") + " set PARENT_ID_ = null, SUPER_EXEC_ = null"
+					+ " where PROC_INST_ID_ in " + in, ids);
+			rows += update(connection, "delete from " + table("ACT_RU_EXECUTION") + " where ID_ <> PROC_INST_ID_ and PROC_INST_ID_ in "
+					+ in, ids);
+			rows += update(connection, "delete from " + table("ACT_RU_EXECUTION") + " where ID_ in " + in, ids);
+
+			if (!byteArrayIds.isEmpty()) {
+				rows += update(connection, "delete from " + table("ACT_GE_BYTEARRAY") + " where ID_ in "
+						+ placeholders(byteArrayIds.size()), byteArrayIds);
+			}
+
+			CommandContextUtil.getProcessEngineConfiguration(commandContext).getEventDispatcher()
+					.dispatchEvent(new ProcessInstancesPurgedEvent(ids, taskIds));
+			return rows;
+		} catch (SQLException e) {
+			throw new FlowableException("Could not delete process instances " + this.processInstanceIds, e);
+		}
+	}
+
+	private Set<String> withSubProcessInstances(Connection connection) throws SQLException {
+		Set<String> ids = new LinkedHashSet<>(this.processInstanceIds);
+		Collection<String> parents = this.processInstanceIds;
+		while (!parents.isEmpty()) {
+			List<String> children = select(connection,
+					"select ID_ from " + table("ACT_RU_EXECUTION") + " where ID_ = PROC_INST_ID_ and SUPER_EXEC_ in (select ID_ from "
+							+ table("ACT_RU_EXECUTION") + " where PROC_INST_ID_ in " + placeholders(parents.size()) + ")",
+					parents);
+			children.removeAll(ids);
+			ids.addAll(children);
+			parents = children;
+		}
+		return ids;
+	}
+
+	private void endHistory(Connection connection, String historyTable, String in, Set<String> ids, Timestamp endTime)
+			throws SQLException {
+		try (PreparedStatement select = prepare(connection, "select ID_, START_TIME_ from " + table(historyTable)
+				+ " where END_TIME_ is null and PROC_INST_ID_ in " + in, ids);
+				ResultSet resultSet = select.executeQuery();
+				PreparedStatement update = connection.prepareStatement("update " + table(historyTable)
+						+ " set END_TIME_ = ?, DURATION_ = ?, DELETE_REASON_ = ? where ID_ = ?")) {
+			while (resultSet.next()) {
+				update.setTimestamp(1, endTime);
+				update.setLong(2, endTime.getTime() - resultSet.getTimestamp(2).getTime());
+				update.setString(3, DeleteReason.PROCESS_INSTANCE_DELETED);
+				update.setString(4, resultSet.getString(1));
+				update.addBatch();
+			}
+			update.executeBatch();
+		}
+	}
+
+	private String table(String name) {
+		return this.tablePrefix + name;
+	}
+
+	private static String placeholders(int count) {
+		return "(" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+	}
+
+	private static int update(Connection connection, String sql, Collection<String> ids) throws SQLException {
+		try (PreparedStatement statement = prepare(connection, sql, ids)) {
+			return statement.executeUpdate();
+		}
+	}
+
+	private static List<String> select(Connection connection, String sql, Collection<String> ids) throws SQLException {
+		List<String> values = new ArrayList<>();
+		try (PreparedStatement statement = prepare(connection, sql, ids); ResultSet resultSet = statement.executeQuery()) {
+			while (resultSet.next()) {
+				values.add(resultSet.getString(1));
+			}
+		}
+		return values;
+	}
+
+	private static PreparedStatement prepare(Connection connection, String sql, Collection<String> ids)
+			throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(sql);
+		int index = 1;
+		for (String id : ids) {
+			statement.setString(index++, id);
+		}
+		return statement;
+	}
+
+}
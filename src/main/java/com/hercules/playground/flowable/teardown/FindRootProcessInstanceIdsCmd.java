@@ -0,0 +1,52 @@
+package com.hercules.playground.flowable.teardown;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.util.CommandContextUtil;
+
+/**
+ * Ids of the running process instances that were not started by a call activity, optionally only those of one definition key
+ */
+class FindRootProcessInstanceIdsCmd implements Command<List<String>> {
+
+	private final String tablePrefix;
+	private final String processDefinitionKey;
+
+	FindRootProcessInstanceIdsCmd(String tablePrefix, String processDefinitionKey) {
+		this.tablePrefix = tablePrefix;
+		this.processDefinitionKey = processDefinitionKey;
+	}
+
+	@Override
+	public List<String> execute(CommandContext commandContext) {
+		String sql = "select E.ID_ from " + this.tablePrefix + "ACT_RU_EXECUTION E"
+				+ " where E.ID_ = E.PROC_INST_ID_ and E.SUPER_EXEC_ is null";
+		if (this.processDefinitionKey != null) {
+			sql += " and E.PROC_DEF_ID_ in (select D.ID_ from " + this.tablePrefix + "ACT_RE_PROCDEF D where D.KEY_ = ?)";
+		}
+		Connection connection = CommandContextUtil.getDbSqlSession(commandContext).getSqlSession().getConnection();
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			if (this.processDefinitionKey != null) {
+				statement.setString(1, this.processDefinitionKey);
+			}
+			List<String> ids = new ArrayList<>();
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					ids.add(resultSet.getString(1));
+				}
+			}
+			return ids;
+		} catch (SQLException e) {
+			throw new FlowableException("Could not select process instances to delete", e);
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.hercules.playground.flowable.teardown;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventType;
+
+/**
+ * Dispatched by every batch of a BulkProcessInstanceTeardown, in the transaction that deleted the rows
+ * <br>
+ * The purge fires none of the events deleteProcessInstance fires, listeners that keep process instances in memory drop
+ * the ones of this event instead. Its type is CUSTOM, a listener added for a list of types has to list it. A listener that fires
+ * on the transaction lifecycle gets it once the batch has committed, and not at all when the batch rolled back.
+ */
+public class ProcessInstancesPurgedEvent implements FlowableEvent {
+
+	private final Set<String> processInstanceIds;
+	private final Map<String, String> taskIds;
+
+	ProcessInstancesPurgedEvent(Set<String> processInstanceIds, Map<String, String> taskIds) {
+		this.processInstanceIds = Collections.unmodifiableSet(processInstanceIds);
+		this.taskIds = Collections.unmodifiableMap(taskIds);
+	}
+
+	@Override
+	public FlowableEventType getType() {
+		return FlowableEngineEventType.CUSTOM;
+	}
+
+	/**
+	 * The process instances deleted, the sub process instances started by call activities included
+	 */
+	public Set<String> getProcessInstanceIds() {
+		return this.processInstanceIds;
+	}
+
+	/**
+	 * Task id -> process instance id of the tasks deleted
+	 */
+	public Map<String, String> getTaskIds() {
+		return this.taskIds;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " " + this.processInstanceIds;
+	}
+
+}
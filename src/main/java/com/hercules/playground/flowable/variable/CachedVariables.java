@@ -0,0 +1,18 @@
+package com.hercules.playground.flowable.variable;
+
+import java.util.Map;
+
+/**
+ * The variables of one execution as they were read, with the process instance whose writes make them stale
+ */
+class CachedVariables {
+
+	final String processInstanceId;
+	final Map<String, Object> variables;
+
+	CachedVariables(String processInstanceId, Map<String, Object> variables) {
+		this.processInstanceId = processInstanceId;
+		this.variables = variables;
+	}
+
+}
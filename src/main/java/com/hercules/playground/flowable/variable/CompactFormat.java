@@ -0,0 +1,323 @@
+package com.hercules.playground.flowable.variable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.flowable.common.engine.api.FlowableException;
+
+/**
+ * A schema-less binary encoding of maps, lists and the scalars in them
+ * <br>
+ * Every value is a tag byte followed by its content. Numbers are zigzag varints, strings and byte arrays are length prefixed,
+ * and lists and maps start with the byte length of their content and their element count. So any value can be stepped over
+ * without decoding it, which is what lets CompactMap and CompactList decode only the elements that are read.
+ * Map keys are strings, maps keep their iteration order.
+ */
+final class CompactFormat {
+
+	static final byte NULL = 0;
+	static final byte FALSE = 1;
+	static final byte TRUE = 2;
+	static final byte INT = 3;
+	static final byte LONG = 4;
+	static final byte DOUBLE = 5;
+	static final byte STRING = 6;
+	static final byte BYTES = 7;
+	static final byte DATE = 8;
+	static final byte LIST = 9;
+	static final byte MAP = 10;
+
+	// deeper than this is more likely a cycle than a payload, it is left to java serialization
+	private static final int MAX_DEPTH = 64;
+
+	private CompactFormat() {
+	}
+
+	/**
+	 * Whether the value and everything in it can be encoded
+	 */
+	static boolean isEncodable(Object value) {
+		return isEncodable(value, 0);
+	}
+
+	private static boolean isEncodable(Object value, int depth) {
+		// a Date exactly, a java.sql.Timestamp or java.sql.Date would come back as a Date without its type or nanos
+		if (value == null || value instanceof Boolean || value instanceof Integer || value instanceof Long
+				|| value instanceof Double || value instanceof String || value instanceof byte[] || value.getClass() == Date.class
+				|| value instanceof CompactMap || value instanceof CompactList) {
+			return true;
+		}
+		if (depth == MAX_DEPTH) {
+			return false;
+		}
+		if (value instanceof List) {
+			for (Object element : (List<?>) value) {
+				if (!isEncodable(element, depth + 1)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (value instanceof Map) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if (!(entry.getKey() instanceof String) || !isEncodable(entry.getValue(), depth + 1)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	static byte[] encode(Object value) {
+		Output output = new Output(256);
+		write(output, value);
+		return output.toByteArray();
+	}
+
+	static Object decode(byte[] buffer) {
+		return decode(buffer, 0);
+	}
+
+	/**
+	 * The value starting at offset, maps and lists come back as views that decode their elements when read
+	 */
+	static Object decode(byte[] buffer, int offset) {
+		byte tag = buffer[offset++];
+		switch (tag) {
+		case NULL:
+			return null;
+		case FALSE:
+			return Boolean.FALSE;
+		case TRUE:
+			return Boolean.TRUE;
+		case INT:
+			return (int) unzigzag(readVarLong(buffer, offset));
+		case LONG:
+			return unzigzag(readVarLong(buffer, offset));
+		case DOUBLE:
+			return Double.longBitsToDouble(readFixedLong(buffer, offset));
+		case STRING: {
+			int length = (int) readVarLong(buffer, offset);
+			int start = offset + varLongSize(length);
+			return new String(buffer, start, length, StandardCharsets.UTF_8);
+		}
+		case BYTES: {
+			int length = (int) readVarLong(buffer, offset);
+			int start = offset + varLongSize(length);
+			return Arrays.copyOfRange(buffer, start, start + length);
+		}
+		case DATE:
+			return new Date(unzigzag(readVarLong(buffer, offset)));
+		case LIST:
+			return new CompactList(buffer, offset);
+		case MAP:
+			return new CompactMap(buffer, offset);
+		default:
+			throw new FlowableException("Unknown compact value tag " + tag + " at offset " + (offset - 1));
+		}
+	}
+
+	/**
+	 * The offset right after the value starting at offset
+	 */
+	static int skip(byte[] buffer, int offset) {
+		byte tag = buffer[offset++];
+		switch (tag) {
+		case NULL:
+		case FALSE:
+		case TRUE:
+			return offset;
+		case INT:
+		case LONG:
+		case DATE:
+			while (buffer[offset++] < 0) {
+			}
+			return offset;
+		case DOUBLE:
+			return offset + Long.BYTES;
+		case STRING:
+		case BYTES: {
+			int length = (int) readVarLong(buffer, offset);
+			return offset + varLongSize(length) + length;
+		}
+		case LIST:
+		case MAP:
+			return offset + Integer.BYTES + readFixedInt(buffer, offset);
+		default:
+			throw new FlowableException("Unknown compact value tag " + tag + " at offset " + (offset - 1));
+		}
+	}
+
+	private static void write(Output output, Object value) {
+		if (value == null) {
+			output.write(NULL);
+		} else if (value instanceof Boolean) {
+			output.write((Boolean) value ? TRUE : FALSE);
+		} else if (value instanceof Integer) {
+			output.write(INT);
+			output.writeVarLong(zigzag((Integer) value));
+		} else if (value instanceof Long) {
+			output.write(LONG);
+			output.writeVarLong(zigzag((Long) value));
+		} else if (value instanceof Double) {
+			output.write(DOUBLE);
+			output.writeFixedLong(Double.doubleToRawLongBits((Double) value));
+		} else if (value instanceof String) {
+			output.write(STRING);
+			writeString(output, (String) value);
+		} else if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			output.write(BYTES);
+			output.writeVarLong(bytes.length);
+			output.write(bytes, 0, bytes.length);
+		} else if (value.getClass() == Date.class) {
+			output.write(DATE);
+			output.writeVarLong(zigzag(((Date) value).getTime()));
+		} else if (value instanceof CompactMap) {
+			// still encoded, copied as it is
+			CompactMap map = (CompactMap) value;
+			output.write(map.buffer, map.offset - 1, skip(map.buffer, map.offset - 1) - map.offset + 1);
+		} else if (value instanceof CompactList) {
+			CompactList list = (CompactList) value;
+			output.write(list.buffer, list.offset - 1, skip(list.buffer, list.offset - 1) - list.offset + 1);
+		} else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			output.write(LIST);
+			int lengthAt = output.reserveFixedInt();
+			output.writeVarLong(list.size());
+			for (Object element : list) {
+				write(output, element);
+			}
+			output.patchFixedInt(lengthAt, output.size() - lengthAt - Integer.BYTES);
+		} else if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			output.write(MAP);
+			int lengthAt = output.reserveFixedInt();
+			output.writeVarLong(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeString(output, (String) entry.getKey());
+				write(output, entry.getValue());
+			}
+			output.patchFixedInt(lengthAt, output.size() - lengthAt - Integer.BYTES);
+		} else {
+			throw new FlowableException("A " + value.getClass().getName() + " can not be stored as a compact value");
+		}
+	}
+
+	private static void writeString(Output output, String value) {
+		byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+		output.writeVarLong(utf8.length);
+		output.write(utf8, 0, utf8.length);
+	}
+
+	static long readVarLong(byte[] buffer, int offset) {
+		long value = 0;
+		int shift = 0;
+		byte current;
+		do {
+			current = buffer[offset++];
+			value |= (long) (current & 0x7f) << shift;
+			shift += 7;
+		} while (current < 0);
+		return value;
+	}
+
+	static int varLongSize(long value) {
+		int size = 1;
+		while ((value & ~0x7fL) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	static int readFixedInt(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xff) << 24 | (buffer[offset + 1] & 0xff) << 16 | (buffer[offset + 2] & 0xff) << 8
+				| (buffer[offset + 3] & 0xff);
+	}
+
+	private static long readFixedLong(byte[] buffer, int offset) {
+		return (long) readFixedInt(buffer, offset) << 32 | readFixedInt(buffer, offset + Integer.BYTES) & 0xffffffffL;
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * A growable byte array that can fill in a length once what it measures is written
+	 */
+	private static final class Output {
+
+		private byte[] bytes;
+		private int size;
+
+		Output(int capacity) {
+			this.bytes = new byte[capacity];
+		}
+
+		void write(byte value) {
+			ensure(1);
+			this.bytes[this.size++] = value;
+		}
+
+		void write(byte[] source, int offset, int length) {
+			ensure(length);
+			System.arraycopy(source, offset, this.bytes, this.size, length);
+			this.size += length;
+		}
+
+		void writeVarLong(long value) {
+			ensure(10);
+			while ((value & ~0x7fL) != 0) {
+				this.bytes[this.size++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			this.bytes[this.size++] = (byte) value;
+		}
+
+		void writeFixedLong(long value) {
+			ensure(Long.BYTES);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				this.bytes[this.size++] = (byte) (value >>> shift);
+			}
+		}
+
+		int reserveFixedInt() {
+			ensure(Integer.BYTES);
+			int at = this.size;
+			this.size += Integer.BYTES;
+			return at;
+		}
+
+		void patchFixedInt(int at, int value) {
+			this.bytes[at] = (byte) (value >>> 24);
+			this.bytes[at + 1] = (byte) (value >>> 16);
+			this.bytes[at + 2] = (byte) (value >>> 8);
+			this.bytes[at + 3] = (byte) value;
+		}
+
+		int size() {
+			return this.size;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(this.bytes, this.size);
+		}
+
+		private void ensure(int more) {
+			if (this.size + more > this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.size + more));
+			}
+		}
+	}
+
+}
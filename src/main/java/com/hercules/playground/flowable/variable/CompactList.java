@@ -0,0 +1,53 @@
+package com.hercules.playground.flowable.variable;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read only list over a compact encoded list, an element is only decoded when it is read
+ * <br>
+ * The first get steps over every element once to find where each one starts, without decoding any of them.
+ */
+class CompactList extends AbstractList<Object> implements RandomAccess {
+
+	final byte[] buffer;
+	// right after the list tag, where its byte length starts
+	final int offset;
+	private final int size;
+	private int[] elementOffsets;
+
+	CompactList(byte[] buffer, int offset) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.size = (int) CompactFormat.readVarLong(buffer, offset + Integer.BYTES);
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public Object get(int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + this.size);
+		}
+		return CompactFormat.decode(this.buffer, elementOffsets()[index]);
+	}
+
+	private int[] elementOffsets() {
+		if (this.elementOffsets == null) {
+			int[] offsets = new int[this.size];
+			int position = this.offset + Integer.BYTES + CompactFormat.varLongSize(this.size);
+			for (int i = 0; i < this.size; i++) {
+				offsets[i] = position;
+				if (i + 1 < this.size) {
+					position = CompactFormat.skip(this.buffer, position);
+				}
+			}
+			this.elementOffsets = offsets;
+		}
+		return this.elementOffsets;
+	}
+
+}
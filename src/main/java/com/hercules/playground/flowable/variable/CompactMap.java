@@ -0,0 +1,115 @@
+package com.hercules.playground.flowable.variable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read only map over a compact encoded map, a value is only decoded when it is read
+ * <br>
+ * get compares the encoded key bytes and steps over the values of the other keys, so reading one field of a large map
+ * decodes that field and nothing else. Nested maps and lists come back as views in turn.
+ */
+class CompactMap extends AbstractMap<String, Object> {
+
+	final byte[] buffer;
+	// right after the map tag, where its byte length starts
+	final int offset;
+	private final int size;
+	private final int first;
+
+	CompactMap(byte[] buffer, int offset) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.size = (int) CompactFormat.readVarLong(buffer, offset + Integer.BYTES);
+		this.first = offset + Integer.BYTES + CompactFormat.varLongSize(this.size);
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return valueOffset(key) >= 0;
+	}
+
+	@Override
+	public Object get(Object key) {
+		int valueOffset = valueOffset(key);
+		return valueOffset >= 0 ? CompactFormat.decode(this.buffer, valueOffset) : null;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<>() {
+
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new Iterator<>() {
+
+					private int position = CompactMap.this.first;
+					private int remaining = CompactMap.this.size;
+
+					@Override
+					public boolean hasNext() {
+						return this.remaining > 0;
+					}
+
+					@Override
+					public Entry<String, Object> next() {
+						if (this.remaining == 0) {
+							throw new NoSuchElementException();
+						}
+						byte[] buffer = CompactMap.this.buffer;
+						int keyLength = (int) CompactFormat.readVarLong(buffer, this.position);
+						int keyStart = this.position + CompactFormat.varLongSize(keyLength);
+						String key = new String(buffer, keyStart, keyLength, StandardCharsets.UTF_8);
+						int valueOffset = keyStart + keyLength;
+						this.position = CompactFormat.skip(buffer, valueOffset);
+						this.remaining--;
+						return new SimpleImmutableEntry<>(key, CompactFormat.decode(buffer, valueOffset));
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return CompactMap.this.size;
+			}
+		};
+	}
+
+	private int valueOffset(Object key) {
+		if (!(key instanceof String)) {
+			return -1;
+		}
+		byte[] wanted = ((String) key).getBytes(StandardCharsets.UTF_8);
+		int position = this.first;
+		for (int i = 0; i < this.size; i++) {
+			int keyLength = (int) CompactFormat.readVarLong(this.buffer, position);
+			int keyStart = position + CompactFormat.varLongSize(keyLength);
+			int valueOffset = keyStart + keyLength;
+			if (keyLength == wanted.length && matches(keyStart, wanted)) {
+				return valueOffset;
+			}
+			position = CompactFormat.skip(this.buffer, valueOffset);
+		}
+		return -1;
+	}
+
+	private boolean matches(int keyStart, byte[] wanted) {
+		for (int i = 0; i < wanted.length; i++) {
+			if (this.buffer[keyStart + i] != wanted[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,161 @@
+package com.hercules.playground.flowable.variable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.variable.api.types.ValueFields;
+import org.flowable.variable.api.types.VariableType;
+
+/**
+ * Stores map and list variables in the CompactFormat instead of java serialization
+ * <br>
+ * A Map.of(...) or a list handed to setVariable is java serialized into ACT_GE_BYTEARRAY, class descriptors and all,
+ * and reading it back deserializes every entry. Registered ahead of the engine's own types this one takes maps with string keys
+ * and lists holding strings, numbers, booleans, dates, byte arrays and further maps and lists. Anything else, a map
+ * holding a bean for example, is left to java serialization as before.
+ * <br>
+ * Encoded values above compressAbove bytes are deflated at the fastest level, when that makes them smaller.
+ * <br>
+ * The variable reads back as a read only map or list whose entries are decoded as they are read, and that is not Serializable,
+ * copy it into a HashMap or ArrayList to change it and set the copy. Code changing the maps it reads breaks, so the type is
+ * opt in, an engine only stores its variables compact when install put the type into its configuration.
+ */
+public class CompactVariableType implements VariableType {
+
+	public static final String TYPE_NAME = "compact";
+
+	private static final byte RAW = 0;
+	private static final byte DEFLATED = 1;
+
+	private final int compressAbove;
+
+	public CompactVariableType() {
+		this(1024);
+	}
+
+	/**
+	 * @param compressAbove encoded values larger than this many bytes are compressed, -1 never compresses
+	 */
+	public CompactVariableType(int compressAbove) {
+		this.compressAbove = compressAbove;
+	}
+
+	public static CompactVariableType install(ProcessEngineConfiguration configuration) {
+		return install(configuration, new CompactVariableType());
+	}
+
+	/**
+	 * Puts the type ahead of the engine's own, in the customPreVariableTypes of the configuration
+	 */
+	public static CompactVariableType install(ProcessEngineConfiguration configuration, CompactVariableType type) {
+		ProcessEngineConfigurationImpl engineConfiguration = (ProcessEngineConfigurationImpl) configuration;
+		List<VariableType> variableTypes = engineConfiguration.getCustomPreVariableTypes() != null
+				? new ArrayList<>(engineConfiguration.getCustomPreVariableTypes())
+				: new ArrayList<>();
+		variableTypes.add(type);
+		engineConfiguration.setCustomPreVariableTypes(variableTypes);
+		return type;
+	}
+
+	@Override
+	public String getTypeName() {
+		return TYPE_NAME;
+	}
+
+	@Override
+	public boolean isCachable() {
+		return true;
+	}
+
+	@Override
+	public boolean isAbleToStore(Object value) {
+		return (value instanceof Map || value instanceof List) && CompactFormat.isEncodable(value);
+	}
+
+	@Override
+	public void setValue(Object value, ValueFields valueFields) {
+		valueFields.setBytes(value != null ? serialize(value) : null);
+	}
+
+	@Override
+	public Object getValue(ValueFields valueFields) {
+		byte[] bytes = valueFields.getBytes();
+		return bytes != null ? deserialize(bytes) : null;
+	}
+
+	/**
+	 * The bytes stored for the value, a format byte, then the encoded value, deflated if it was worth it
+	 */
+	public byte[] serialize(Object value) {
+		byte[] encoded = CompactFormat.encode(value);
+		if (this.compressAbove >= 0 && encoded.length > this.compressAbove) {
+			byte[] deflated = deflate(encoded);
+			if (deflated != null) {
+				return deflated;
+			}
+		}
+		byte[] stored = new byte[encoded.length + 1];
+		stored[0] = RAW;
+		System.arraycopy(encoded, 0, stored, 1, encoded.length);
+		return stored;
+	}
+
+	public Object deserialize(byte[] stored) {
+		switch (stored[0]) {
+		case RAW:
+			return CompactFormat.decode(stored, 1);
+		case DEFLATED:
+			return CompactFormat.decode(inflate(stored));
+		default:
+			throw new FlowableException("Unknown compact variable format " + stored[0]);
+		}
+	}
+
+	// format byte, 4 byte encoded length, deflated bytes, or null when deflating does not make it smaller
+	private static byte[] deflate(byte[] encoded) {
+		if (encoded.length <= 5) {
+			return null;
+		}
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(encoded);
+			deflater.finish();
+			byte[] stored = new byte[encoded.length];
+			stored[0] = DEFLATED;
+			stored[1] = (byte) (encoded.length >>> 24);
+			stored[2] = (byte) (encoded.length >>> 16);
+			stored[3] = (byte) (encoded.length >>> 8);
+			stored[4] = (byte) encoded.length;
+			int length = 5 + deflater.deflate(stored, 5, stored.length - 5);
+			return deflater.finished() ? Arrays.copyOf(stored, length) : null;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(byte[] stored) {
+		Inflater inflater = new Inflater();
+		try {
+			byte[] encoded = new byte[CompactFormat.readFixedInt(stored, 1)];
+			inflater.setInput(stored, 5, stored.length - 5);
+			int length = inflater.inflate(encoded);
+			if (length != encoded.length) {
+				throw new FlowableException("Compact variable inflated to " + length + " bytes, " + encoded.length + " expected");
+			}
+			return encoded;
+		} catch (DataFormatException e) {
+			throw new FlowableException("Could not inflate compact variable", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.hercules.playground.flowable.variable;
+
+import java.util.Collections;
+import java.util.HashMap;
+
+import org.flowable.common.engine.api.FlowableObjectNotFoundException;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.common.engine.impl.interceptor.CommandContext;
+import org.flowable.engine.impl.persistence.entity.ExecutionEntity;
+import org.flowable.engine.impl.util.CommandContextUtil;
+import org.flowable.engine.runtime.Execution;
+
+/**
+ * The variables runtimeService.getVariables returns for an execution, together with the process instance they belong to
+ */
+class LoadVariablesCmd implements Command<CachedVariables> {
+
+	private final String executionId;
+
+	LoadVariablesCmd(String executionId) {
+		this.executionId = executionId;
+	}
+
+	@Override
+	public CachedVariables execute(CommandContext commandContext) {
+		ExecutionEntity execution = CommandContextUtil.getExecutionEntityManager(commandContext).findById(this.executionId);
+		if (execution == null) {
+			throw new FlowableObjectNotFoundException("execution " + this.executionId + " doesn't exist", Execution.class);
+		}
+		return new CachedVariables(execution.getProcessInstanceId(),
+				Collections.unmodifiableMap(new HashMap<>(execution.getVariables())));
+	}
+
+}
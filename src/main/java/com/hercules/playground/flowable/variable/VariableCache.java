@@ -0,0 +1,256 @@
+package com.hercules.playground.flowable.variable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEntityEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.common.engine.impl.cfg.TransactionContext;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.common.engine.impl.context.Context;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.runtime.Execution;
+
+import com.hercules.playground.flowable.teardown.ProcessInstancesPurgedEvent;
+
+/**
+ * Read through cache of runtimeService.getVariables, per engine, keyed by execution id
+ * <br>
+ * Conditional.boundaryEventTriggered reads every variable of the process instance to hand them to evaluateConditionalEvents,
+ * and GatewayTests reads the variables of the execution at the join, each read is a query or two for values that rarely change.
+ * Here the variable map of an execution is kept after the first read, the least recently read ones are evicted past maxEntries.
+ * <br>
+ * An execution sees the variables of its parents as well, so any variable created, updated or deleted in a process instance,
+ * an execution of it ending or the instance being purged, drops every cached execution of that instance. It is dropped when the change is made
+ * and again when its transaction commits, and a read that ran while a change was in flight is not cached,
+ * so a read never sees an older value than the engine would have returned. Only writes made through this engine are seen,
+ * another engine on the same database changes variables behind the cache's back.
+ * <br>
+ * The maps handed out are read only and shared between readers, do not change the values in them.
+ */
+public class VariableCache implements FlowableEventListener, AutoCloseable {
+
+	private static final int RECENT_INVALIDATIONS = 4096;
+
+	private final RuntimeService runtimeService;
+	private final ManagementService managementService;
+	private final int maxEntries;
+
+	// guarded by this
+	private final LinkedHashMap<String, CachedVariables> entries;
+	private final Map<String, Set<String>> executionsByProcessInstance = new HashMap<>();
+	private final LinkedHashMap<String, Long> invalidatedAt = new LinkedHashMap<>();
+	private long sequence;
+	private long forgottenBefore;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	VariableCache(ProcessEngine processEngine, int maxEntries) {
+		this.runtimeService = processEngine.getRuntimeService();
+		this.managementService = processEngine.getManagementService();
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedVariables> eldest) {
+				if (size() <= VariableCache.this.maxEntries) {
+					return false;
+				}
+				unindex(eldest.getKey(), eldest.getValue());
+				VariableCache.this.evictions.increment();
+				return true;
+			}
+		};
+	}
+
+	public static VariableCache register(ProcessEngine processEngine) {
+		return register(processEngine, 10_000);
+	}
+
+	/**
+	 * @param maxEntries the most executions whose variables are kept
+	 */
+	public static VariableCache register(ProcessEngine processEngine, int maxEntries) {
+		VariableCache cache = new VariableCache(processEngine, maxEntries);
+		cache.runtimeService.addEventListener(cache, FlowableEngineEventType.VARIABLE_CREATED,
+				FlowableEngineEventType.VARIABLE_UPDATED, FlowableEngineEventType.VARIABLE_DELETED,
+				FlowableEngineEventType.ENTITY_DELETED, FlowableEngineEventType.PROCESS_COMPLETED,
+				FlowableEngineEventType.PROCESS_CANCELLED, FlowableEngineEventType.CUSTOM);
+		return cache;
+	}
+
+	/**
+	 * What runtimeService.getVariables(executionId) returns, from the cache when it has them
+	 *
+	 * @throws org.flowable.common.engine.api.FlowableObjectNotFoundException when the execution does not exist
+	 */
+	public Map<String, Object> getVariables(String executionId) {
+		long readAt;
+		synchronized (this) {
+			CachedVariables cached = this.entries.get(executionId);
+			if (cached != null) {
+				this.hits.increment();
+				return cached.variables;
+			}
+			readAt = this.sequence;
+		}
+		this.misses.increment();
+		CachedVariables loaded = this.managementService.executeCommand(new LoadVariablesCmd(executionId));
+		synchronized (this) {
+			if (readAt >= this.forgottenBefore
+					&& this.invalidatedAt.getOrDefault(loaded.processInstanceId, Long.MIN_VALUE) <= readAt) {
+				CachedVariables replaced = this.entries.put(executionId, loaded);
+				if (replaced != null) {
+					unindex(executionId, replaced);
+				}
+				this.executionsByProcessInstance.computeIfAbsent(loaded.processInstanceId, (id) -> new HashSet<>())
+						.add(executionId);
+			}
+		}
+		return loaded.variables;
+	}
+
+	public Object getVariable(String executionId, String variableName) {
+		return getVariables(executionId).get(variableName);
+	}
+
+	/**
+	 * Drops the cached variables of every execution of the process instance
+	 */
+	public synchronized void invalidate(String processInstanceId) {
+		this.sequence++;
+		this.invalidatedAt.remove(processInstanceId);
+		this.invalidatedAt.put(processInstanceId, this.sequence);
+		if (this.invalidatedAt.size() > RECENT_INVALIDATIONS) {
+			Map.Entry<String, Long> oldest = this.invalidatedAt.entrySet().iterator().next();
+			// reads older than a forgotten invalidation can no longer be told apart, they are not cached
+			this.forgottenBefore = oldest.getValue();
+			this.invalidatedAt.remove(oldest.getKey());
+		}
+		Set<String> executionIds = this.executionsByProcessInstance.remove(processInstanceId);
+		if (executionIds != null) {
+			executionIds.forEach(this.entries::remove);
+		}
+		this.invalidations.increment();
+	}
+
+	public synchronized void clear() {
+		this.sequence++;
+		this.forgottenBefore = this.sequence;
+		this.invalidatedAt.clear();
+		this.entries.clear();
+		this.executionsByProcessInstance.clear();
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * The share of reads answered from the cache, 0 before the first read
+	 */
+	public double getHitRatio() {
+		long hits = getHits();
+		long reads = hits + getMisses();
+		return reads == 0 ? 0 : (double) hits / reads;
+	}
+
+	/**
+	 * Entries dropped to stay within maxEntries
+	 */
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+
+	/**
+	 * Process instances dropped because they changed
+	 */
+	public long getInvalidations() {
+		return this.invalidations.sum();
+	}
+
+	@Override
+	public void close() {
+		this.runtimeService.removeEventListener(this);
+		clear();
+	}
+
+	@Override
+	public void onEvent(FlowableEvent event) {
+		if (event instanceof ProcessInstancesPurgedEvent) {
+			((ProcessInstancesPurgedEvent) event).getProcessInstanceIds().forEach(this::invalidateUntilCommitted);
+			return;
+		}
+		if (!(event instanceof FlowableEngineEvent)) {
+			return;
+		}
+		if (event.getType() == FlowableEngineEventType.ENTITY_DELETED
+				&& !(((FlowableEntityEvent) event).getEntity() instanceof Execution)) {
+			return;
+		}
+		FlowableEngineEvent engineEvent = (FlowableEngineEvent) event;
+		String processInstanceId = engineEvent.getProcessInstanceId() != null ? engineEvent.getProcessInstanceId()
+				: engineEvent.getExecutionId();
+		if (processInstanceId != null) {
+			invalidateUntilCommitted(processInstanceId);
+		}
+	}
+
+	@Override
+	public boolean isFailOnException() {
+		return false;
+	}
+
+	@Override
+	public boolean isFireOnTransactionLifecycleEvent() {
+		return false;
+	}
+
+	@Override
+	public String getOnTransaction() {
+		return null;
+	}
+
+	private void invalidateUntilCommitted(String processInstanceId) {
+		invalidate(processInstanceId);
+		TransactionContext transactionContext = Context.getTransactionContext();
+		if (transactionContext != null) {
+			// a read between the change and its commit still sees the old value, and may have cached it
+			transactionContext.addTransactionListener(TransactionState.COMMITTED,
+					(commandContext) -> invalidate(processInstanceId));
+		}
+	}
+
+	private void unindex(String executionId, CachedVariables cached) {
+		Set<String> executionIds = this.executionsByProcessInstance.get(cached.processInstanceId);
+		if (executionIds != null) {
+			executionIds.remove(executionId);
+			if (executionIds.isEmpty()) {
+				this.executionsByProcessInstance.remove(cached.processInstanceId);
+			}
+		}
+	}
+
+}
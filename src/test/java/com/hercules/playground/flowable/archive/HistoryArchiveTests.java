@@ -0,0 +1,179 @@
+package com.hercules.playground.flowable.archive;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.history.HistoricActivityInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * The history of GatewayTests.whatHappensToProcessVariablesWhenTokensMerge instances, moved out of the tables into segments
+ */
+@FlowableTest
+public class HistoryArchiveTests {
+
+	private static final String GATEWAY_RESOURCE = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml";
+	private static final String GATEWAY_KEY = "GatewayTests.ParralleGateProcessVariableMerge";
+
+	@TempDir
+	Path directory;
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+	private HistoryService historyService;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		this.historyService = processEngine.getHistoryService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+		// the history other tests left behind goes to an archive of its own
+		new HistoryArchive(processEngine, this.directory.resolve("before")).archiveEndedBefore(new Date(Long.MAX_VALUE));
+	}
+
+	/**
+	 * Question: Does the archive answer what the history tables answered before the instances were archived?
+	 * <br>
+	 * Answer: Yes, the same instances per definition and the same activity durations, and the tables no longer hold
+	 * the ended instances. The running instance is left where it is
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void archivedInstancesLeaveTheTables() {
+		List<String> ended = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			ended.add(walk(this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY).getId()));
+		}
+		String running = this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY).getId();
+		String definitionId = this.historyService.createHistoricProcessInstanceQuery().processInstanceId(running)
+				.singleResult().getProcessDefinitionId();
+		Map<String, LongSummaryStatistics> queried = this.historyService.createHistoricActivityInstanceQuery().finished()
+				.list().stream().filter(activity -> ended.contains(activity.getProcessInstanceId()))
+				.collect(Collectors.groupingBy(HistoricActivityInstance::getActivityId,
+						Collectors.summarizingLong(HistoricActivityInstance::getDurationInMillis)));
+		long variables = this.historyService.createHistoricVariableInstanceQuery().list().stream()
+				.filter(variable -> ended.contains(variable.getProcessInstanceId())).count();
+
+		HistoryArchive archive = new HistoryArchive(this.processEngine, this.directory.resolve("archive"));
+		assertEquals(3, archive.archiveEndedBefore(new Date(System.currentTimeMillis() + 1000)));
+
+		Map<String, LongSummaryStatistics> archived = archive.durationsPerActivity(definitionId);
+		assertAll(() -> assertEquals(Collections.singletonMap(definitionId, 3L), archive.countInstancesPerProcessDefinition()),
+				() -> assertEquals(queried.keySet(), archived.keySet()),
+				() -> assertEquals(summary(queried), summary(archived)),
+				() -> assertEquals(variables, archive.getArchivedRows(ArchiveTable.VARIABLE_INSTANCES)),
+				() -> assertEquals(1, this.historyService.createHistoricProcessInstanceQuery().count()),
+				() -> assertEquals(0, this.historyService.createHistoricActivityInstanceQuery().processInstanceId(ended.get(0))
+						.count()),
+				() -> assertEquals(running, this.historyService.createHistoricProcessInstanceQuery().singleResult().getId()));
+	}
+
+	/**
+	 * Every batch is a segment of its own, later runs add segments next to the ones there
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void batchesAreAppendedAsSegments() {
+		for (int i = 0; i < 5; i++) {
+			walk(this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY).getId());
+		}
+		HistoryArchive archive = new HistoryArchive(this.processEngine, this.directory.resolve("archive"), 2);
+		assertEquals(5, archive.archiveEndedBefore(new Date(System.currentTimeMillis() + 1000)));
+		assertEquals(3, archive.getSegmentCount());
+
+		walk(this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY).getId());
+		assertEquals(1, archive.archiveEndedBefore(new Date(System.currentTimeMillis() + 1000)));
+		assertAll(() -> assertEquals(4, archive.getSegmentCount()), () -> assertEquals(6, archive.getArchivedInstances()),
+				() -> assertEquals(6L, archive.countInstancesPerProcessDefinition().values().stream()
+						.mapToLong(Long::longValue).sum()));
+	}
+
+	/**
+	 * A segment that cannot take its name while the transaction commits rolls the deletes back
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void unpublishedSegmentKeepsTheRows() throws IOException {
+		String ended = walk(this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY).getId());
+		// a directory that is not empty cannot be replaced by the segment
+		Path taken = Files.createDirectories(this.directory.resolve("taken.segment"));
+		Files.createFile(taken.resolve("occupant"));
+
+		assertThrows(FlowableException.class, () -> this.processEngine.getManagementService().executeCommand(
+				new ArchiveBatchCmd(this.processEngine.getProcessEngineConfiguration().getDatabaseTablePrefix(),
+						Collections.singletonList(ended), taken)));
+		try (Stream<Path> files = Files.list(this.directory)) {
+			assertAll(() -> assertEquals(1, this.historyService.createHistoricProcessInstanceQuery()
+					.processInstanceId(ended).count()),
+					() -> assertFalse(this.historyService.createHistoricActivityInstanceQuery().processInstanceId(ended)
+							.list().isEmpty()),
+					() -> assertFalse(files.anyMatch(file -> file.toString().endsWith(".tmp"))));
+		}
+	}
+
+	/**
+	 * A segment already under the name is left as it is, the batch rolls back instead of replacing it
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void existingSegmentIsNotReplaced() throws IOException {
+		String ended = walk(this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY).getId());
+		Path taken = Files.write(this.directory.resolve("taken.segment"), new byte[] { 42 });
+
+		assertThrows(FlowableException.class, () -> this.processEngine.getManagementService().executeCommand(
+				new ArchiveBatchCmd(this.processEngine.getProcessEngineConfiguration().getDatabaseTablePrefix(),
+						Collections.singletonList(ended), taken)));
+		assertAll(() -> assertArrayEquals(new byte[] { 42 }, Files.readAllBytes(taken)),
+				() -> assertEquals(1, this.historyService.createHistoricProcessInstanceQuery().processInstanceId(ended)
+						.count()));
+	}
+
+	/**
+	 * Completes the tasks of the instance until it has ended
+	 */
+	private String walk(String processInstanceId) {
+		List<Task> tasks;
+		while (!(tasks = this.taskService.createTaskQuery().processInstanceId(processInstanceId).list()).isEmpty()) {
+			for (Task task : tasks) {
+				this.taskService.complete(task.getId());
+			}
+		}
+		return processInstanceId;
+	}
+
+	private static Map<String, String> summary(Map<String, LongSummaryStatistics> durations) {
+		return durations.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey,
+				entry -> entry.getValue().getCount() + "/" + entry.getValue().getSum()));
+	}
+
+}
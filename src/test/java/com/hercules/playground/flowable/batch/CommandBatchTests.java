@@ -0,0 +1,191 @@
+package com.hercules.playground.flowable.batch;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.flowable.common.engine.api.FlowableObjectNotFoundException;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.metrics.EngineMetrics;
+import com.hercules.playground.flowable.metrics.InMemoryMetricsRegistry;
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * GatewayTests.whatHappensToProcessVariablesWhenTokensMerge with its calls batched into fewer transactions
+ */
+@FlowableTest
+public class CommandBatchTests {
+
+	private static final String GATEWAY_RESOURCE = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml";
+	private static final String GATEWAY_KEY = "GatewayTests.ParralleGateProcessVariableMerge";
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+	}
+
+	/**
+	 * Question: Do the twelve setVariable and complete calls of the gateway note need twelve transactions?
+	 * <br>
+	 * Answer: No, batched they are two, one up to Step 1 and one for the branches, and the variables merge the same way
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void gatewayCallsInTwoTransactions() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY);
+		InMemoryMetricsRegistry registry = (InMemoryMetricsRegistry) EngineMetrics.registryOf(this.processEngine);
+		registry.reset();
+
+		Task step1 = task(processInstance, "Step 1");
+		try (CommandBatch batch = new CommandBatch(this.processEngine)) {
+			batch.setVariable(step1.getExecutionId(), "ORIGIONAL", "THIS IS THE ORIGIONAL")
+					.setVariable(step1.getExecutionId(), "VARIABLE 1", "THIS GETS OVERWRITTEN IN TASK 2")
+					.complete(step1.getId());
+		}
+
+		Task step2 = task(processInstance, "Step 2");
+		Task step3 = task(processInstance, "Step 3");
+		Task step4 = task(processInstance, "Step 4");
+		try (CommandBatch batch = new CommandBatch(this.processEngine)) {
+			batch.setVariable(step2.getExecutionId(), "VARIABLE 2", "VARIABLE 2")
+					.setVariable(step2.getExecutionId(), "VARIABLE 1", "TASK 2 OVERWRITES VARIABLE 1")
+					.setVariable(step2.getExecutionId(), "WHICH VARIABLE", "THIS IS FROM TASK 2")
+					.setVariable(step3.getExecutionId(), "VARIABLE 3", "VARIABLE 3")
+					.setVariable(step3.getExecutionId(), "WHICH VARIABLE", "THIS IS FROM TASK 3")
+					.setVariable(step4.getExecutionId(), "VARIABLE 4", "VARIABLE 4")
+					.complete(step2.getId()).complete(step3.getId()).complete(step4.getId());
+		}
+
+		Map<String, Object> variables = this.runtimeService.getVariables(processInstance.getId());
+		assertAll(() -> assertEquals(2, registry.latency("command.RunBatchCmd.latency").getCount()),
+				() -> assertEquals(0, registry.latency("command.SetExecutionVariablesCmd.latency").getCount()),
+				() -> assertEquals(0, registry.latency("command.CompleteTaskCmd.latency").getCount()),
+				() -> assertEquals("What do i get?", this.taskService.createTaskQuery()
+						.processInstanceId(processInstance.getId()).singleResult().getName()),
+				() -> assertEquals("THIS IS FROM TASK 3", variables.get("WHICH VARIABLE")),
+				() -> assertEquals("TASK 2 OVERWRITES VARIABLE 1", variables.get("VARIABLE 1")),
+				() -> assertEquals(6, variables.size()));
+	}
+
+	/**
+	 * Question: Do calls from many threads share transactions without batching them by hand?
+	 * <br>
+	 * Answer: Yes, the AutoBatcher groups the calls that arrive within its window, every thread still sees its own call committed
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void callsFromManyThreadsShareTransactions() throws Exception {
+		List<ProcessInstance> processInstances = new ArrayList<>();
+		for (int i = 0; i < 16; i++) {
+			processInstances.add(this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY));
+		}
+		ExecutorService threads = Executors.newFixedThreadPool(16);
+		try (AutoBatcher batcher = new AutoBatcher(this.processEngine, 20_000, 64)) {
+			List<Future<?>> calls = new ArrayList<>();
+			for (ProcessInstance processInstance : processInstances) {
+				Task step1 = task(processInstance, "Step 1");
+				calls.add(threads.submit(() -> {
+					batcher.setVariable(step1.getExecutionId(), "ORIGIONAL", processInstance.getId());
+					batcher.complete(step1.getId());
+				}));
+			}
+			for (Future<?> call : calls) {
+				call.get();
+			}
+
+			assertAll(() -> assertEquals(32, batcher.getBatched()),
+					() -> assertTrue(batcher.getBatches() < batcher.getBatched(), batcher.getBatches() + " batches"),
+					() -> assertEquals(48, this.taskService.createTaskQuery().active().count()),
+					() -> assertTrue(processInstances.stream().allMatch((processInstance) -> processInstance.getId()
+							.equals(this.runtimeService.getVariable(processInstance.getId(), "ORIGIONAL")))));
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+	/**
+	 * A call that fails takes only itself down, the calls it was batched with are run again and commit
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void failingCallFailsAlone() throws Exception {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY);
+		Task step1 = task(processInstance, "Step 1");
+		ExecutorService threads = Executors.newFixedThreadPool(2);
+		try (AutoBatcher batcher = new AutoBatcher(this.processEngine, 50_000, 64)) {
+			Future<?> missing = threads.submit(() -> batcher.complete("no such task"));
+			Future<?> completed = threads.submit(() -> batcher.complete(step1.getId()));
+
+			ExecutionException failure = assertThrows(ExecutionException.class, missing::get);
+			completed.get();
+			assertAll(() -> assertTrue(failure.getCause() instanceof FlowableObjectNotFoundException),
+					() -> assertEquals(3, this.taskService.createTaskQuery().processInstanceId(processInstance.getId())
+							.count()));
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+	/**
+	 * An Error thrown by a call fails that call, the batching thread carries on with the next one
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void errorFailsTheCallAndNotTheBatcher() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY);
+		Task step1 = task(processInstance, "Step 1");
+		try (AutoBatcher batcher = new AutoBatcher(this.processEngine, 200, 64)) {
+			assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+				assertThrows(AssertionError.class,
+						() -> batcher.setVariable(processInstance.getId(), "failing", new FailsToSerialize()));
+				batcher.complete(step1.getId());
+
+				assertEquals(3, this.taskService.createTaskQuery().processInstanceId(processInstance.getId()).count());
+			});
+		}
+	}
+
+	private Task task(ProcessInstance processInstance, String name) {
+		return this.taskService.createTaskQuery().processInstanceId(processInstance.getId()).taskNameLike(name + "%")
+				.singleResult();
+	}
+
+	static class FailsToSerialize implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private void writeObject(ObjectOutputStream out) {
+			throw new AssertionError("not serializable after all");
+		}
+	}
+
+}
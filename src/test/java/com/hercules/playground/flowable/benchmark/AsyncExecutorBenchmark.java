@@ -0,0 +1,117 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.executor.AsyncExecutionProfile;
+
+/**
+ * One global startASubTask signal caught by every instance of the canYouStartASubprocessWithAnEvent note,
+ * the subprocesses run in the signal's transaction (SYNC) or on the async executor (ASYNC, the AsyncExecutionProfile)
+ * <br>
+ * signal is what the caller waits for, signalAndDrain the time until every subprocess reached its Async event task.
+ * The boundary does not cancel, every signal starts another subprocess in each instance. Both run on row locking H2,
+ * on table locks the executor threads would mostly deadlock each other.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsyncExecutorBenchmark {
+
+	private static final String SUBPROCESS_RESOURCE = "com/hercules/playground/flowable/events/message/MessageEvents.canYouStartASubprocessWithAnEvent.bpmn20.xml";
+
+	@State(Scope.Benchmark)
+	public static class FanOutEngine extends EngineState {
+
+		@Param({ "SYNC", "ASYNC" })
+		String execution;
+
+		@Param({ "8" })
+		int threads;
+
+		@Param({ "32" })
+		int acquisitionBatchSize;
+
+		@Override
+		protected void configure(ProcessEngineConfiguration configuration) {
+			// the pool takes back connections checked out longer than 20s, a SYNC signal to many instances holds its own longer
+			configuration.setJdbcMaxCheckoutTime(600_000);
+			if ("ASYNC".equals(this.execution)) {
+				new AsyncExecutionProfile().threads(this.threads).queueSize(4 * this.acquisitionBatchSize * this.threads)
+						.acquisitionBatchSize(this.acquisitionBatchSize).acquireWaitMillis(20).lockOwner("benchmark")
+						.install(configuration);
+			}
+		}
+
+		@Override
+		protected String jdbcUrl() {
+			return super.jdbcUrl() + ";MVCC=TRUE";
+		}
+
+		@Override
+		protected String[] resources() {
+			return new String[] { SUBPROCESS_RESOURCE };
+		}
+	}
+
+	// a SYNC signal to 10000 instances takes over two minutes in its one transaction
+	@Param({ "1000" })
+	int instances;
+
+	@Setup(Level.Trial)
+	public void startInstances(FanOutEngine engine) {
+		for (int i = 0; i < this.instances; i++) {
+			engine.runtimeService.startProcessInstanceByKey("asynchroniousTask");
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void drainAndReport(FanOutEngine engine) {
+		ManagementService managementService = engine.processEngine.getManagementService();
+		awaitJobs(managementService);
+		System.out.println(" Async event tasks: "
+				+ engine.taskService.createTaskQuery().taskName("Async event").count() + ", dead letter jobs: "
+				+ managementService.createDeadLetterJobQuery().count());
+	}
+
+	@Benchmark
+	public void signal(FanOutEngine engine) {
+		engine.runtimeService.signalEventReceived("startASubTask");
+	}
+
+	@Benchmark
+	public void signalAndDrain(FanOutEngine engine) {
+		engine.runtimeService.signalEventReceived("startASubTask");
+		awaitJobs(engine.processEngine.getManagementService());
+	}
+
+	private static void awaitJobs(ManagementService managementService) {
+		while (managementService.createJobQuery().count() > 0) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once per thread count and prints throughput next to p99 latency
+ * <br>
+ * Arguments: [-t 1,8,64] [benchmark regex ...], by default every benchmark in this package at 1, 8 and 64 threads
+ * <br>
+ * mvn -B -Pbenchmark verify -DskipTests -Dbenchmark.args="-t 1,8,64 ProcessEngineBenchmark"
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		List<Integer> threadCounts = List.of(1, 8, 64);
+		List<String> includes = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if ("-t".equals(args[i])) {
+				threadCounts = new ArrayList<>();
+				for (String threads : args[++i].split(",")) {
+					threadCounts.add(Integer.parseInt(threads.trim()));
+				}
+			} else {
+				includes.add(args[i]);
+			}
+		}
+		if (includes.isEmpty()) {
+			includes.add(BenchmarkRunner.class.getPackageName() + ".*");
+		}
+
+		List<RunResult> results = new ArrayList<>();
+		for (int threads : threadCounts) {
+			ChainedOptionsBuilder options = new OptionsBuilder().threads(threads)
+					.jvmArgsAppend("-Dlog4j.configuration=log4j-benchmark.properties");
+			includes.forEach(options::include);
+			results.addAll(new Runner(options.build()).run());
+		}
+		printSummary(results);
+	}
+
+	private static void printSummary(Collection<RunResult> results) {
+		System.out.println();
+		System.out.println(String.format("%-70s %8s %16s %16s", "Benchmark", "Threads", "Throughput", "p99"));
+		for (RunResult result : results) {
+			Result<?> primary = result.getPrimaryResult();
+			String name = result.getParams().getBenchmark() + paramsOf(result);
+			int threads = result.getParams().getThreads();
+			if (result.getParams().getMode() == Mode.Throughput) {
+				System.out.println(String.format("%-70s %8d %16s %16s", name, threads,
+						String.format("%.3f %s", primary.getScore(), primary.getScoreUnit()), ""));
+			} else if (result.getParams().getMode() == Mode.SampleTime) {
+				System.out.println(String.format("%-70s %8d %16s %16s", name, threads, "",
+						String.format("%.3f %s", primary.getStatistics().getPercentile(99), primary.getScoreUnit())));
+			}
+		}
+	}
+
+	private static String paramsOf(RunResult result) {
+		StringBuilder params = new StringBuilder();
+		for (String key : result.getParams().getParamsKeys()) {
+			params.append(params.length() == 0 ? " (" : ", ").append(key).append('=')
+					.append(result.getParams().getParam(key));
+		}
+		return params.length() == 0 ? "" : params.append(')').toString();
+	}
+
+}
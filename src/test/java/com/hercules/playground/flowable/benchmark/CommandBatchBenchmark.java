@@ -0,0 +1,171 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.task.api.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.batch.AutoBatcher;
+import com.hercules.playground.flowable.batch.CommandBatch;
+import com.hercules.playground.flowable.metrics.EngineMetrics;
+import com.hercules.playground.flowable.metrics.InMemoryMetricsRegistry;
+
+/**
+ * The setVariable and complete calls of the gateway note one command each (DIRECT), and batched (BATCH)
+ * <br>
+ * gatewayScenario is the whole note, start, eight variables and four completions, the calls made through the runtime and
+ * task service or through two CommandBatches, and reports the write transactions it took. setVariable is one
+ * variable written by every benchmark thread, each on its own process instance, through the runtime service or an AutoBatcher,
+ * run it with -t 1,8 to see the batcher's window cost a lone caller and pay off for eight.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandBatchBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class BatchEngine extends EngineState {
+
+		@Param({ "DIRECT", "BATCH" })
+		String calls;
+
+		InMemoryMetricsRegistry registry;
+		AutoBatcher batcher;
+		final LongAdder scenarios = new LongAdder();
+
+		@Override
+		protected void configure(ProcessEngineConfiguration configuration) {
+			this.registry = EngineMetrics.install(configuration);
+		}
+
+		@Override
+		protected String jdbcUrl() {
+			// row locks, the benchmark threads write to different process instances
+			return "jdbc:h2:mem:batch-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MVCC=TRUE";
+		}
+
+		long writeTransactions() {
+			return this.registry.latency("command.RunBatchCmd.latency").getCount()
+					+ this.registry.latency("command.SetExecutionVariablesCmd.latency").getCount()
+					+ this.registry.latency("command.CompleteTaskCmd.latency").getCount();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadInstance {
+
+		String executionId;
+		long value;
+
+		@Setup(Level.Trial)
+		public void start(BatchEngine engine) {
+			this.executionId = engine.runtimeService.startProcessInstanceByKey(EngineState.GATEWAY_KEY).getId();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void startBatcher(BatchEngine engine) {
+		if ("BATCH".equals(engine.calls)) {
+			engine.batcher = new AutoBatcher(engine.processEngine);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void stopBatcher(BatchEngine engine) {
+		if (engine.batcher != null) {
+			engine.batcher.close();
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void resetMeters(BatchEngine engine) {
+		engine.registry.reset();
+		engine.scenarios.reset();
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportTransactions(BatchEngine engine) {
+		long scenarios = engine.scenarios.sum();
+		if (scenarios > 0) {
+			System.out.println(" write transactions per scenario: " + (double) engine.writeTransactions() / scenarios);
+		} else if (engine.batcher != null) {
+			System.out.println(" calls per batch: " + (double) engine.batcher.getBatched() / engine.batcher.getBatches());
+		}
+	}
+
+	@Benchmark
+	public void gatewayScenario(BatchEngine engine) {
+		String processInstanceId = engine.runtimeService.startProcessInstanceByKey(EngineState.GATEWAY_KEY).getId();
+		Task step1 = task(engine, processInstanceId, "Step 1");
+		if ("BATCH".equals(engine.calls)) {
+			try (CommandBatch batch = new CommandBatch(engine.processEngine)) {
+				batch.setVariable(step1.getExecutionId(), "ORIGIONAL", "THIS IS THE ORIGIONAL")
+						.setVariable(step1.getExecutionId(), "VARIABLE 1", "THIS GETS OVERWRITTEN IN TASK 2")
+						.complete(step1.getId());
+			}
+		} else {
+			engine.runtimeService.setVariable(step1.getExecutionId(), "ORIGIONAL", "THIS IS THE ORIGIONAL");
+			engine.runtimeService.setVariable(step1.getExecutionId(), "VARIABLE 1", "THIS GETS OVERWRITTEN IN TASK 2");
+			engine.taskService.complete(step1.getId());
+		}
+
+		Task step2 = task(engine, processInstanceId, "Step 2");
+		Task step3 = task(engine, processInstanceId, "Step 3");
+		Task step4 = task(engine, processInstanceId, "Step 4");
+		if ("BATCH".equals(engine.calls)) {
+			try (CommandBatch batch = new CommandBatch(engine.processEngine)) {
+				batch.setVariable(step2.getExecutionId(), "VARIABLE 2", "VARIABLE 2")
+						.setVariable(step2.getExecutionId(), "VARIABLE 1", "TASK 2 OVERWRITES VARIABLE 1")
+						.setVariable(step2.getExecutionId(), "WHICH VARIABLE", "THIS IS FROM TASK 2")
+						.setVariable(step3.getExecutionId(), "VARIABLE 3", "VARIABLE 3")
+						.setVariable(step3.getExecutionId(), "WHICH VARIABLE", "THIS IS FROM TASK 3")
+						.setVariable(step4.getExecutionId(), "VARIABLE 4", "VARIABLE 4")
+						.complete(step2.getId()).complete(step3.getId()).complete(step4.getId());
+			}
+		} else {
+			engine.runtimeService.setVariable(step2.getExecutionId(), "VARIABLE 2", "VARIABLE 2");
+			engine.runtimeService.setVariable(step2.getExecutionId(), "VARIABLE 1", "TASK 2 OVERWRITES VARIABLE 1");
+			engine.runtimeService.setVariable(step2.getExecutionId(), "WHICH VARIABLE", "THIS IS FROM TASK 2");
+			engine.runtimeService.setVariable(step3.getExecutionId(), "VARIABLE 3", "VARIABLE 3");
+			engine.runtimeService.setVariable(step3.getExecutionId(), "WHICH VARIABLE", "THIS IS FROM TASK 3");
+			engine.runtimeService.setVariable(step4.getExecutionId(), "VARIABLE 4", "VARIABLE 4");
+			engine.taskService.complete(step2.getId());
+			engine.taskService.complete(step3.getId());
+			engine.taskService.complete(step4.getId());
+		}
+		engine.scenarios.increment();
+	}
+
+	@Benchmark
+	public void setVariable(BatchEngine engine, ThreadInstance instance) {
+		if (engine.batcher != null) {
+			engine.batcher.setVariable(instance.executionId, "value", instance.value++);
+		} else {
+			engine.runtimeService.setVariable(instance.executionId, "value", instance.value++);
+		}
+	}
+
+	private static Task task(BatchEngine engine, String processInstanceId, String name) {
+		return engine.taskService.createTaskQuery().processInstanceId(processInstanceId).taskNameLike(name + "%")
+				.singleResult();
+	}
+
+}
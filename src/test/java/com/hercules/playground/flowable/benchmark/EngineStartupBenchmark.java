@@ -0,0 +1,82 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.repository.DeploymentBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.App;
+import com.hercules.playground.flowable.snapshot.EngineSnapshot;
+
+/**
+ * Time until an engine on a fresh in memory database has the gateway, signal and message notes deployed,
+ * creating the schema and deploying (SCHEMA) or restoring both from an EngineSnapshot (SNAPSHOT)
+ * <br>
+ * The image is written once per trial, before the first measured start.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EngineStartupBenchmark {
+
+	private static final String[] RESOURCES = { EngineState.GATEWAY_RESOURCE, EngineState.SIGNAL_RESOURCE,
+			EngineState.MESSAGE_RESOURCE };
+
+	@Param({ "SCHEMA", "SNAPSHOT" })
+	String startup;
+
+	EngineSnapshot snapshot;
+	ProcessEngine processEngine;
+
+	@Setup(Level.Trial)
+	public void writeImage() throws Exception {
+		Path directory = Files.createTempDirectory("engine-snapshots");
+		this.snapshot = EngineSnapshot.of(directory, RESOURCES);
+		this.snapshot.buildProcessEngine(App.createConfiguration(jdbcUrl())).close();
+		System.out.println(" image: " + Files.size(this.snapshot.getImage()) + " bytes");
+	}
+
+	@TearDown(Level.Invocation)
+	public void closeEngine() {
+		this.processEngine.close();
+	}
+
+	@Benchmark
+	public ProcessEngine start() {
+		if ("SNAPSHOT".equals(this.startup)) {
+			this.processEngine = this.snapshot.buildProcessEngine(App.createConfiguration(jdbcUrl()));
+		} else {
+			this.processEngine = App.createConfiguration(jdbcUrl()).buildProcessEngine();
+			DeploymentBuilder deployment = this.processEngine.getRepositoryService().createDeployment();
+			for (String resource : RESOURCES) {
+				deployment.addClasspathResource(resource);
+			}
+			deployment.deploy();
+		}
+		return this.processEngine;
+	}
+
+	private static String jdbcUrl() {
+		return "jdbc:h2:mem:startup-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.hercules.playground.flowable.App;
+import com.hercules.playground.flowable.snapshot.EngineSnapshot;
+
+/**
+ * One engine per trial, built the way App.main builds it but on its own H2 database
+ * <br>
+ * The bpmn notes used by the tests are deployed so the benchmarks drive exactly the processes the notes describe.
+ * The schema and the deployment come from an EngineSnapshot after the first trial.
+ */
+@State(Scope.Benchmark)
+public class EngineState {
+
+	public static final String GATEWAY_RESOURCE = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml";
+	public static final String SIGNAL_RESOURCE = "com/hercules/playground/flowable/events/signal/Signal.signalGlobalScopeApi.bpmn20.xml";
+	public static final String MESSAGE_RESOURCE = "com/hercules/playground/flowable/events/message/MessageEvents.howToDoBasicSignalCoordination.bpmn20.xml";
+
+	public static final String GATEWAY_KEY = "GatewayTests.ParralleGateProcessVariableMerge";
+	public static final String SIGNAL_KEY = "signalScope";
+	public static final String MESSAGE_KEY = "messageEvents";
+
+	private static final Path SNAPSHOTS = Paths.get("target", "engine-snapshots");
+
+	public ProcessEngine processEngine;
+	public RuntimeService runtimeService;
+	public TaskService taskService;
+
+	@Setup(Level.Trial)
+	public void buildEngine() {
+		ProcessEngineConfiguration configuration = App.createConfiguration(jdbcUrl());
+		configure(configuration);
+		this.processEngine = EngineSnapshot.of(SNAPSHOTS, resources()).buildProcessEngine(configuration);
+		this.runtimeService = this.processEngine.getRuntimeService();
+		this.taskService = this.processEngine.getTaskService();
+	}
+
+	@TearDown(Level.Trial)
+	public void closeEngine() {
+		this.processEngine.close();
+	}
+
+	/**
+	 * Hook for benchmarks that measure an engine extension, called before the engine is built
+	 */
+	protected void configure(ProcessEngineConfiguration configuration) {
+	}
+
+	/**
+	 * A fresh in memory H2 database per trial
+	 */
+	protected String jdbcUrl() {
+		return "jdbc:h2:mem:benchmark-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+	}
+
+	protected String[] resources() {
+		return new String[] { GATEWAY_RESOURCE, SIGNAL_RESOURCE, MESSAGE_RESOURCE };
+	}
+
+}
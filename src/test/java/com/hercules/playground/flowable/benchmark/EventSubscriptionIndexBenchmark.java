@@ -0,0 +1,72 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.subscription.EventSubscriptionIndex;
+
+/**
+ * Resolving the OrderedPizza subscription of a random messageEvents instance, execution query against the in memory index
+ * <br>
+ * Every messageEvents instance holds two open subscriptions, the OrderedPizza boundary message and the StartPizzaMarking event sub process,
+ * so the default of 50000 instances means 100k open subscriptions
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventSubscriptionIndexBenchmark {
+
+	@Param({ "50000" })
+	int instances;
+
+	String[] processInstanceIds;
+	EventSubscriptionIndex index;
+
+	@Setup(Level.Trial)
+	public void openSubscriptions(EngineState engine) {
+		this.processInstanceIds = new String[this.instances];
+		for (int i = 0; i < this.instances; i++) {
+			this.processInstanceIds[i] = engine.runtimeService.startProcessInstanceByKey(EngineState.MESSAGE_KEY)
+					.getId();
+		}
+		this.index = EventSubscriptionIndex.register(engine.processEngine);
+	}
+
+	@TearDown(Level.Trial)
+	public void closeIndex() {
+		this.index.close();
+	}
+
+	@Benchmark
+	public String executionQuery(EngineState engine) {
+		return engine.runtimeService.createExecutionQuery().processInstanceId(randomInstance())
+				.messageEventSubscriptionName("OrderedPizza").singleResult().getId();
+	}
+
+	@Benchmark
+	public String indexLookup() {
+		return this.index.findMessageSubscription("OrderedPizza", randomInstance());
+	}
+
+	private String randomInstance() {
+		return this.processInstanceIds[ThreadLocalRandom.current().nextInt(this.processInstanceIds.length)];
+	}
+
+}
@@ -0,0 +1,219 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.engine.delegate.event.impl.FlowableEventBuilder;
+import org.flowable.engine.impl.persistence.entity.ExecutionEntityImpl;
+import org.flowable.engine.runtime.Execution;
+import org.flowable.eventsubscription.api.EventSubscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.execution.ExecutionTreeIndex;
+
+/**
+ * Lookups on an ExecutionTreeIndex holding a million executions, against the execution query they replace
+ * <br>
+ * The index is fed the entity created events of 250000 signalScope like instances, the process instance,
+ * an execution at Step 1, one waiting at the process scoped catch event with its subscription and one at the join,
+ * and reports the heap it takes per execution. findSubscriptions, findScope and arrivalsAt look up a random instance,
+ * querySubscriptions is the execution query Signal.signalProcessScopeApi would need, on an engine with a few instances.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ExecutionTreeBenchmark {
+
+	static final int INSTANCES = 250_000;
+
+	private static final String STEP = "sid-D53A5063-164F-4F0B-BCD3-BD2E1DC5251C";
+	private static final String CATCH = "sid-B63A970C-9D66-4C5A-BF3E-3D3D859C3D7D";
+	private static final String JOIN = "sid-D1C2832B-FCC4-4562-ABA4-60F6B1C113EB";
+
+	@State(Scope.Benchmark)
+	public static class SignalEngine extends EngineState {
+
+		String processInstanceId;
+
+		@Setup(Level.Trial)
+		public void waitForSignal() {
+			for (int i = 0; i < 10; i++) {
+				this.processInstanceId = this.runtimeService.startProcessInstanceByKey(SIGNAL_KEY).getId();
+			}
+			this.taskService.createTaskQuery().list().forEach((task) -> this.taskService.complete(task.getId()));
+		}
+	}
+
+	ExecutionTreeIndex index;
+	String[] processInstanceIds;
+
+	@Setup(Level.Trial)
+	public void fill() {
+		long before = usedHeap();
+		this.index = ExecutionTreeIndex.detached();
+		this.processInstanceIds = new String[INSTANCES];
+		for (int i = 0; i < INSTANCES; i++) {
+			String processInstanceId = Integer.toString(1_000_000 + i);
+			this.processInstanceIds[i] = processInstanceId;
+			created(execution(processInstanceId, processInstanceId, null, null, true));
+			created(execution(processInstanceId + "-1", processInstanceId, processInstanceId, STEP, false));
+			created(execution(processInstanceId + "-2", processInstanceId, processInstanceId, CATCH, false));
+			created(execution(processInstanceId + "-3", processInstanceId, processInstanceId, JOIN, false));
+
+			created(new CatchSubscription(processInstanceId, processInstanceId + "-2"));
+		}
+		long after = usedHeap();
+		System.out.println(" executions: " + this.index.executionCount() + ", heap: " + (after - before) / 1024 / 1024
+				+ " MB, " + (after - before) / this.index.executionCount() + " bytes per execution");
+	}
+
+	@Benchmark
+	public List<String> findSubscriptions() {
+		return this.index.findSubscriptions(randomInstance(), ExecutionTreeIndex.SIGNAL, "processScope");
+	}
+
+	@Benchmark
+	public String findScope() {
+		String processInstanceId = randomInstance();
+		return this.index.findScope(processInstanceId, processInstanceId + "-2");
+	}
+
+	@Benchmark
+	public int arrivalsAt() {
+		return this.index.arrivalsAt(randomInstance(), JOIN);
+	}
+
+	@Benchmark
+	public List<Execution> querySubscriptions(SignalEngine engine) {
+		return engine.runtimeService.createExecutionQuery().processInstanceId(engine.processInstanceId)
+				.signalEventSubscriptionName("processScope").list();
+	}
+
+	private void created(Object entity) {
+		this.index.onEvent(FlowableEventBuilder.createEntityEvent(FlowableEngineEventType.ENTITY_CREATED, entity));
+	}
+
+	private static ExecutionEntityImpl execution(String id, String processInstanceId, String parentId, String activityId,
+			boolean scope) {
+		ExecutionEntityImpl execution = new ExecutionEntityImpl();
+		execution.setId(id);
+		execution.setProcessInstanceId(processInstanceId);
+		execution.setParentId(parentId);
+		execution.setActivityId(activityId);
+		execution.setScope(scope);
+		return execution;
+	}
+
+	private String randomInstance() {
+		return this.processInstanceIds[ThreadLocalRandom.current().nextInt(INSTANCES)];
+	}
+
+	/**
+	 * The processScope subscription of the catch event, the engine's own entity can only be created in a command
+	 */
+	static class CatchSubscription implements EventSubscription {
+
+		private final String processInstanceId;
+		private final String executionId;
+
+		CatchSubscription(String processInstanceId, String executionId) {
+			this.processInstanceId = processInstanceId;
+			this.executionId = executionId;
+		}
+
+		@Override
+		public String getId() {
+			return this.executionId;
+		}
+
+		@Override
+		public String getEventType() {
+			return ExecutionTreeIndex.SIGNAL;
+		}
+
+		@Override
+		public String getEventName() {
+			return "processScope";
+		}
+
+		@Override
+		public String getExecutionId() {
+			return this.executionId;
+		}
+
+		@Override
+		public String getActivityId() {
+			return CATCH;
+		}
+
+		@Override
+		public String getProcessInstanceId() {
+			return this.processInstanceId;
+		}
+
+		@Override
+		public String getProcessDefinitionId() {
+			return null;
+		}
+
+		@Override
+		public String getSubScopeId() {
+			return null;
+		}
+
+		@Override
+		public String getScopeId() {
+			return null;
+		}
+
+		@Override
+		public String getScopeDefinitionId() {
+			return null;
+		}
+
+		@Override
+		public String getScopeType() {
+			return null;
+		}
+
+		@Override
+		public String getConfiguration() {
+			return "processInstance";
+		}
+
+		@Override
+		public Date getCreated() {
+			return null;
+		}
+
+		@Override
+		public String getTenantId() {
+			return null;
+		}
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
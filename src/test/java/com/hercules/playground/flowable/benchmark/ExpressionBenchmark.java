@@ -0,0 +1,132 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.common.engine.api.variable.VariableContainer;
+import org.flowable.common.engine.impl.el.ExpressionManager;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.expression.ExpressionCache;
+
+/**
+ * Evaluating a condition the way the engine does it, asking the expression manager for the expression by its text
+ * and getting its value for the variables, with the engine's own expression manager and through the ExpressionCache,
+ * interpreted and compiled
+ * <br>
+ * evaluate is the expression alone against in memory variables, for ${condition == true} of the conditional note,
+ * a number and a string comparison. evaluateConditionalEvents is the whole call on a Conditional.boundaryEventTriggered
+ * instance whose condition stays false.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpressionBenchmark {
+
+	private static final String CONDITIONAL_RESOURCE = "com/hercules/playground/flowable/events/conditional/Conditional.boundaryEventTriggered.bpmn20.xml";
+
+	@State(Scope.Benchmark)
+	public static class ExpressionEngine extends EngineState {
+
+		@Param({ "ENGINE", "CACHE", "COMPILED" })
+		String expressions;
+
+		ExpressionCache cache;
+
+		@Override
+		protected void configure(ProcessEngineConfiguration configuration) {
+			if (!"ENGINE".equals(this.expressions)) {
+				this.cache = new ExpressionCache(4096, "COMPILED".equals(this.expressions));
+				this.cache.install(configuration);
+			}
+		}
+
+		@Override
+		protected String[] resources() {
+			return new String[] { CONDITIONAL_RESOURCE };
+		}
+	}
+
+	@Param({ "${condition == true}", "${amount >= 100}", "${state != 'open'}" })
+	String expression;
+
+	ExpressionManager expressionManager;
+	VariableContainer variables;
+	String processInstanceId;
+
+	@Setup(Level.Trial)
+	public void prepare(ExpressionEngine engine) {
+		this.expressionManager = ((ProcessEngineConfigurationImpl) engine.processEngine.getProcessEngineConfiguration())
+				.getExpressionManager();
+		this.variables = new MapVariables(Map.of("condition", false, "amount", 250L, "state", "open"));
+		this.processInstanceId = engine.runtimeService
+				.startProcessInstanceByKey("conditional", Map.of("condition", false)).getId();
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportCache(ExpressionEngine engine) {
+		if (engine.cache != null) {
+			System.out.println(" expressions: " + engine.cache.size() + ", compiled: " + engine.cache.getCompiled()
+					+ ", interpreted evaluations: " + engine.cache.getInterpreted());
+		}
+	}
+
+	@Benchmark
+	public Object evaluate() {
+		return this.expressionManager.createExpression(this.expression).getValue(this.variables);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void evaluateConditionalEvents(ExpressionEngine engine) {
+		engine.runtimeService.evaluateConditionalEvents(this.processInstanceId);
+	}
+
+	static class MapVariables implements VariableContainer {
+
+		private final Map<String, Object> variables;
+
+		MapVariables(Map<String, Object> variables) {
+			this.variables = new HashMap<>(variables);
+		}
+
+		@Override
+		public boolean hasVariable(String variableName) {
+			return this.variables.containsKey(variableName);
+		}
+
+		@Override
+		public Object getVariable(String variableName) {
+			return this.variables.get(variableName);
+		}
+
+		@Override
+		public void setVariable(String variableName, Object variableValue) {
+			this.variables.put(variableName, variableValue);
+		}
+
+		@Override
+		public void setTransientVariable(String variableName, Object variableValue) {
+			this.variables.put(variableName, variableValue);
+		}
+	}
+
+}
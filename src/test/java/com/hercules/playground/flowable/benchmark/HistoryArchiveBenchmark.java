@@ -0,0 +1,172 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.engine.impl.util.CommandContextUtil;
+import org.flowable.task.api.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.archive.ArchiveTable;
+import com.hercules.playground.flowable.archive.HistoryArchive;
+
+/**
+ * Instances per process definition and durations per activity over the history of instances ended in the gateway note,
+ * aggregated by sql over the history tables (TABLES) against a scan of the archive segments they were moved to (ARCHIVE)
+ * <br>
+ * The engine runs on an H2 file. The trial setup prints how much the file grew while the instances were walked,
+ * the history rows are most of what stays, and for ARCHIVE the size of the segments.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryArchiveBenchmark {
+
+	private static final Path DIRECTORY = Paths.get("target", "archive-benchmark").toAbsolutePath();
+
+	@State(Scope.Benchmark)
+	public static class ArchiveEngine extends EngineState {
+
+		@Param({ "TABLES", "ARCHIVE" })
+		String source;
+
+		@Param({ "2000" })
+		int instances;
+
+		final Path database = DIRECTORY.resolve(UUID.randomUUID().toString());
+		HistoryArchive archive;
+
+		@Override
+		protected String jdbcUrl() {
+			// H2 answers a query on unchanged tables with its last result, every op is to aggregate the rows again
+			return "jdbc:h2:file:" + this.database + ";MVCC=TRUE;OPTIMIZE_REUSE_RESULTS=0";
+		}
+
+		@Override
+		protected String[] resources() {
+			return new String[] { GATEWAY_RESOURCE };
+		}
+
+		long databaseSize() {
+			sql("CHECKPOINT", null);
+			try {
+				return Files.size(Paths.get(this.database + ".h2.db"));
+			} catch (IOException e) {
+				throw new FlowableException("Could not read the size of " + this.database, e);
+			}
+		}
+
+		<T> T sql(String sql, ResultReader<T> reader) {
+			return this.processEngine.getManagementService().executeCommand((Command<T>) commandContext -> {
+				Connection connection = CommandContextUtil.getDbSqlSession(commandContext).getSqlSession().getConnection();
+				try (Statement statement = connection.createStatement()) {
+					if (reader == null) {
+						statement.execute(sql);
+						return null;
+					}
+					try (ResultSet resultSet = statement.executeQuery(sql)) {
+						return reader.read(resultSet);
+					}
+				} catch (SQLException e) {
+					throw new FlowableException("Could not run " + sql, e);
+				}
+			});
+		}
+	}
+
+	@FunctionalInterface
+	interface ResultReader<T> {
+		T read(ResultSet resultSet) throws SQLException;
+	}
+
+	@Setup(Level.Trial)
+	public void walkInstances(ArchiveEngine engine) {
+		long before = engine.databaseSize();
+		for (int i = 0; i < engine.instances; i++) {
+			String processInstanceId = engine.runtimeService.startProcessInstanceByKey(EngineState.GATEWAY_KEY).getId();
+			List<Task> tasks;
+			while (!(tasks = engine.taskService.createTaskQuery().processInstanceId(processInstanceId).list()).isEmpty()) {
+				for (Task task : tasks) {
+					engine.taskService.complete(task.getId());
+				}
+			}
+		}
+		long rows = 0;
+		for (ArchiveTable table : ArchiveTable.values()) {
+			rows += engine.sql("select count(*) from " + table.getTable(), resultSet -> {
+				resultSet.next();
+				return resultSet.getLong(1);
+			});
+		}
+		System.out.println(" history rows: " + rows + ", database grew by " + (engine.databaseSize() - before) + " bytes");
+
+		if ("ARCHIVE".equals(engine.source)) {
+			engine.archive = new HistoryArchive(engine.processEngine, Paths.get(engine.database + "-segments"));
+			long start = System.nanoTime();
+			engine.archive.archiveEndedBefore(new Date(System.currentTimeMillis() + 1000));
+			System.out.println(" archived " + engine.archive.getArchivedInstances() + " instances in "
+					+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms to " + engine.archive.getSegmentCount()
+					+ " segments of " + engine.archive.getSizeOnDisk() + " bytes");
+		}
+	}
+
+	@Benchmark
+	public Map<String, Long> countInstancesPerProcessDefinition(ArchiveEngine engine) {
+		if (engine.archive != null) {
+			return engine.archive.countInstancesPerProcessDefinition();
+		}
+		return engine.sql("select PROC_DEF_ID_, count(*) from ACT_HI_PROCINST group by PROC_DEF_ID_", resultSet -> {
+			Map<String, Long> counts = new HashMap<>();
+			while (resultSet.next()) {
+				counts.put(resultSet.getString(1), resultSet.getLong(2));
+			}
+			return counts;
+		});
+	}
+
+	@Benchmark
+	public Map<String, LongSummaryStatistics> durationsPerActivity(ArchiveEngine engine) {
+		if (engine.archive != null) {
+			return engine.archive.durationsPerActivity();
+		}
+		return engine.sql("select ACT_ID_, count(DURATION_), sum(DURATION_), min(DURATION_), max(DURATION_)"
+				+ " from ACT_HI_ACTINST where DURATION_ is not null group by ACT_ID_", resultSet -> {
+					Map<String, LongSummaryStatistics> durations = new HashMap<>();
+					while (resultSet.next()) {
+						durations.put(resultSet.getString(1), new LongSummaryStatistics(resultSet.getLong(2),
+								resultSet.getLong(4), resultSet.getLong(5), resultSet.getLong(3)));
+					}
+					return durations;
+				});
+	}
+
+}
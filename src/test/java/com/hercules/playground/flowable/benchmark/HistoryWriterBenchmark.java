@@ -0,0 +1,79 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.history.RingBufferHistoryWriter;
+
+/**
+ * taskService.complete of Step 1 of the gateway note, which forks into three user tasks, with history written in the call or behind it
+ * <br>
+ * SYNC is the engine as App.main builds it, ASYNC the same engine with the RingBufferHistoryWriter installed.
+ * The history entries and batches the writer wrote are printed after each iteration, so a writer falling behind shows.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryWriterBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class HistoryEngine extends EngineState {
+
+		@Param({ "SYNC", "ASYNC" })
+		String history;
+
+		RingBufferHistoryWriter writer;
+
+		@Override
+		protected void configure(ProcessEngineConfiguration configuration) {
+			if ("ASYNC".equals(this.history)) {
+				this.writer = RingBufferHistoryWriter.install(configuration);
+			}
+		}
+
+		@TearDown(Level.Iteration)
+		public void reportHistory() {
+			if (this.writer != null) {
+				System.out.println(" history entries written: " + this.writer.getWritten() + " in "
+						+ this.writer.getBatches() + " batches, " + this.writer.getQueued() + " queued");
+			}
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Step1 {
+		String taskId;
+
+		@Setup(Level.Invocation)
+		public void startGatewayProcess(HistoryEngine engine) {
+			ProcessInstance processInstance = engine.runtimeService.startProcessInstanceByKey(EngineState.GATEWAY_KEY);
+			Task step1 = engine.taskService.createTaskQuery().processInstanceId(processInstance.getId()).singleResult();
+			this.taskId = step1.getId();
+		}
+	}
+
+	@Benchmark
+	public void completeStep1(HistoryEngine engine, Step1 step1) {
+		engine.taskService.complete(step1.taskId);
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.common.engine.impl.cfg.IdGenerator;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.id.StripedIdGenerator;
+
+/**
+ * Ids drawn by every benchmark thread at once from the engine's DbIdGenerator (DB) and from a StripedIdGenerator (STRIPED)
+ * <br>
+ * nextId is the generator alone, startGatewayProcess a start of the gateway note, which draws ids for its executions,
+ * Step 1 and history. Run it with -t 64. The id blocks fetched in each iteration, transactions updating next.dbid,
+ * are printed after it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdGeneratorBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class IdEngine extends EngineState {
+
+		@Param({ "DB", "STRIPED" })
+		String ids;
+
+		IdGenerator idGenerator;
+		long nextDbId;
+
+		@Override
+		protected void configure(ProcessEngineConfiguration configuration) {
+			// a connection for each of 64 threads and one more for a block fetched while they all hold theirs,
+			// with the default 10 the threads holding all of them wait for the 11th until the pool takes them back
+			configuration.setJdbcMaxActiveConnections(80);
+			if ("STRIPED".equals(this.ids)) {
+				new StripedIdGenerator().install(configuration);
+			}
+		}
+
+		@Override
+		protected String jdbcUrl() {
+			// row locks, the threads insert rows of their own instances
+			return "jdbc:h2:mem:ids-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MVCC=TRUE";
+		}
+
+		long nextDbId() {
+			return Long.parseLong(this.processEngine.getManagementService().getProperties().get("next.dbid"));
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void lookUpIdGenerator(IdEngine engine) {
+		engine.idGenerator = ((ProcessEngineConfigurationImpl) engine.processEngine.getProcessEngineConfiguration())
+				.getIdGenerator();
+	}
+
+	@Setup(Level.Iteration)
+	public void markNextDbId(IdEngine engine) {
+		engine.nextDbId = engine.nextDbId();
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportBlocks(IdEngine engine) {
+		int idBlockSize = ((ProcessEngineConfigurationImpl) engine.processEngine.getProcessEngineConfiguration())
+				.getIdBlockSize();
+		System.out.print(" id blocks fetched: " + (engine.nextDbId() - engine.nextDbId) / idBlockSize);
+		if (engine.idGenerator instanceof StripedIdGenerator) {
+			System.out.print(", waited for " + ((StripedIdGenerator) engine.idGenerator).getWaits() + " since the trial started");
+		}
+		System.out.println();
+	}
+
+	@Benchmark
+	public String nextId(IdEngine engine) {
+		return engine.idGenerator.getNextId();
+	}
+
+	@Benchmark
+	public String startGatewayProcess(IdEngine engine) {
+		return engine.runtimeService.startProcessInstanceByKey(EngineState.GATEWAY_KEY).getId();
+	}
+
+}
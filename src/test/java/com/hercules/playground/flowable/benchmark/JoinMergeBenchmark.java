@@ -0,0 +1,133 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.gateway.JoinVariableBuffer;
+
+/**
+ * A wide fork/join where every branch writes the same variables before it completes, setVariable per write against the JoinVariableBuffer
+ * <br>
+ * One operation is the whole branch phase: branches times variables writes, then every branch completed until the join fires.
+ * Variable rows inserted or updated per operation are counted from the variable events and printed after each iteration.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JoinMergeBenchmark {
+
+	@Param({ "50" })
+	int branches;
+
+	@Param({ "20" })
+	int variables;
+
+	final LongAdder variableWrites = new LongAdder();
+	final LongAdder operations = new LongAdder();
+	JoinVariableBuffer buffer;
+
+	@State(Scope.Thread)
+	public static class Forked {
+		List<Task> branchTasks;
+
+		@Setup(Level.Invocation)
+		public void forkBranches(EngineState engine) {
+			ProcessInstance processInstance = engine.runtimeService.startProcessInstanceByKey(WideForkJoin.KEY);
+			engine.taskService.complete(engine.taskService.createTaskQuery().processInstanceId(processInstance.getId())
+					.singleResult().getId());
+			this.branchTasks = engine.taskService.createTaskQuery().processInstanceId(processInstance.getId()).list();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void deployWideForkJoin(EngineState engine) {
+		engine.processEngine.getRepositoryService().createDeployment()
+				.addBpmnModel("wideForkJoin.bpmn20.xml", WideForkJoin.withBranches(this.branches)).deploy();
+		engine.runtimeService.addEventListener(new FlowableEventListener() {
+
+			@Override
+			public void onEvent(FlowableEvent event) {
+				JoinMergeBenchmark.this.variableWrites.increment();
+			}
+
+			@Override
+			public boolean isFailOnException() {
+				return false;
+			}
+
+			@Override
+			public boolean isFireOnTransactionLifecycleEvent() {
+				return false;
+			}
+
+			@Override
+			public String getOnTransaction() {
+				return null;
+			}
+		}, FlowableEngineEventType.VARIABLE_CREATED, FlowableEngineEventType.VARIABLE_UPDATED);
+		this.buffer = new JoinVariableBuffer(engine.processEngine);
+	}
+
+	@Setup(Level.Iteration)
+	public void resetCounters() {
+		this.variableWrites.reset();
+		this.operations.reset();
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportWrites() {
+		if (this.operations.sum() > 0) {
+			System.out.println(" variable rows written per join: " + this.variableWrites.sum() / this.operations.sum());
+		}
+	}
+
+	@Benchmark
+	public void setVariablePerWrite(EngineState engine, Forked forked) {
+		for (Task task : forked.branchTasks) {
+			for (int i = 0; i < this.variables; i++) {
+				engine.runtimeService.setVariable(task.getExecutionId(), "variable " + i, task.getName());
+			}
+		}
+		for (Task task : forked.branchTasks) {
+			engine.taskService.complete(task.getId());
+		}
+		this.operations.increment();
+	}
+
+	@Benchmark
+	public void joinVariableBuffer(Forked forked) {
+		for (Task task : forked.branchTasks) {
+			for (int i = 0; i < this.variables; i++) {
+				this.buffer.setVariable(task, "variable " + i, task.getName());
+			}
+		}
+		for (Task task : forked.branchTasks) {
+			this.buffer.complete(task);
+		}
+		this.operations.increment();
+	}
+
+}
@@ -0,0 +1,378 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEntityEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.Execution;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hercules.playground.flowable.App;
+import com.hercules.playground.flowable.metrics.LatencyHistogram;
+
+/**
+ * Replays the scenarios of the bpmn notes at a set rate for a fixed time, a soak test for the engine and H2
+ * <br>
+ * Every second it starts startRate instances of each of signalScope, messageEvents and GatewayTests.ParralleGateProcessVariableMerge,
+ * completes completeRate open user tasks, oldest first, sends messageRate OrderedPizza messages to messageEvents instances
+ * and throws signalRate signals, globaleScope and processScope in turn. Every reportSeconds it prints throughput and
+ * latency per action, heap used and the row counts of the runtime and history tables; at the end the same over the whole run.
+ * <br>
+ * Work that finds all workers busy is skipped and counted rather than queued, so a growing skipped count, a task backlog
+ * that only grows or p99 latencies climbing with the row counts is where the engine or H2 stopped keeping up.
+ * Errors include the deadlocks H2 picks between concurrent completions, they are counted, not retried.
+ * <br>
+ * Arguments: [-d seconds] [-r startRate] [-c completeRate] [-m messageRate] [-s signalRate] [-i reportSeconds] [-t threads] [-u jdbcUrl]
+ * <br>
+ * The notes are test resources, so it lives with the benchmarks and runs on the test classpath:
+ * mvn -B -Ploadtest verify -DskipTests -Dloadtest.args="-d 300 -r 20 -c 150"
+ */
+public class LoadGenerator implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+
+	public static final String SIGNAL_RESOURCE = "com/hercules/playground/flowable/events/signal/Signal.signalGlobalScopeApi.bpmn20.xml";
+	public static final String MESSAGE_RESOURCE = "com/hercules/playground/flowable/events/message/MessageEvents.howToDoBasicSignalCoordination.bpmn20.xml";
+	public static final String GATEWAY_RESOURCE = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml";
+
+	private static final String SIGNAL_KEY = "signalScope";
+	private static final String MESSAGE_KEY = "messageEvents";
+	private static final String GATEWAY_KEY = "GatewayTests.ParralleGateProcessVariableMerge";
+	private static final String ORDERED_PIZZA = "OrderedPizza";
+	private static final String[] SIGNALS = { "globaleScope", "processScope" };
+	private static final String[] REPORTED_TABLES = { "ACT_RU_EXECUTION", "ACT_RU_TASK", "ACT_RU_EVENT_SUBSCR",
+			"ACT_RU_VARIABLE", "ACT_HI_PROCINST", "ACT_HI_ACTINST", "ACT_HI_TASKINST" };
+
+	private final RuntimeService runtimeService;
+	private final TaskService taskService;
+	private final ManagementService managementService;
+	private final ThreadPoolExecutor workers;
+	private final ScheduledExecutorService pacer = Executors.newSingleThreadScheduledExecutor();
+	private final List<Action> actions = new ArrayList<>();
+
+	// filled once the creating transaction committed, so a rolled back task is never handed out
+	private final ConcurrentLinkedQueue<String> openTasks = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<String> awaitingOrder = new ConcurrentLinkedQueue<>();
+	private final AtomicLong signalsThrown = new AtomicLong();
+	private final FlowableEventListener taskCreated = new TaskCreatedListener();
+
+	public static void main(String[] args) {
+		long durationSeconds = 60;
+		long reportSeconds = 5;
+		double startRate = 10;
+		double completeRate = 60;
+		double messageRate = 10;
+		double signalRate = 1;
+		int threads = 8;
+		String jdbcUrl = App.JDBC_URL;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+			case "-d":
+				durationSeconds = Long.parseLong(value);
+				break;
+			case "-r":
+				startRate = Double.parseDouble(value);
+				break;
+			case "-c":
+				completeRate = Double.parseDouble(value);
+				break;
+			case "-m":
+				messageRate = Double.parseDouble(value);
+				break;
+			case "-s":
+				signalRate = Double.parseDouble(value);
+				break;
+			case "-i":
+				reportSeconds = Long.parseLong(value);
+				break;
+			case "-t":
+				threads = Integer.parseInt(value);
+				break;
+			case "-u":
+				jdbcUrl = value;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		ProcessEngineConfiguration configuration = App.createConfiguration(jdbcUrl);
+		// the pool has to cover every worker, or the workers queue on connections instead of on the engine
+		configuration.setJdbcMaxActiveConnections(Math.max(10, threads + 2));
+		ProcessEngine processEngine = configuration.buildProcessEngine();
+		processEngine.getRepositoryService().createDeployment().addClasspathResource(SIGNAL_RESOURCE)
+				.addClasspathResource(MESSAGE_RESOURCE).addClasspathResource(GATEWAY_RESOURCE).deploy();
+		try (LoadGenerator loadGenerator = new LoadGenerator(processEngine, threads, startRate, completeRate,
+				messageRate, signalRate)) {
+			loadGenerator.run(durationSeconds, reportSeconds, System.out);
+		} finally {
+			processEngine.close();
+		}
+	}
+
+	/**
+	 * The notes' processes have to be deployed already, rates are per second and 0 switches an action off
+	 *
+	 * @param threads the workers calling the engine, at most one api call each at a time
+	 * @param startRate instances started per second, of each of the three processes
+	 */
+	public LoadGenerator(ProcessEngine processEngine, int threads, double startRate, double completeRate,
+			double messageRate, double signalRate) {
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		this.managementService = processEngine.getManagementService();
+		this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(threads * 16));
+
+		this.actions.add(new Action("start " + SIGNAL_KEY, startRate, () -> start(SIGNAL_KEY)));
+		this.actions.add(new Action("start " + MESSAGE_KEY, startRate, () -> {
+			this.awaitingOrder.add(start(MESSAGE_KEY).getId());
+		}));
+		this.actions.add(new Action("start gateway", startRate, () -> start(GATEWAY_KEY)));
+		this.actions.add(new Action("complete", completeRate, this::completeOpenTask));
+		this.actions.add(new Action("message", messageRate, this::orderPizza));
+		this.actions.add(new Action("signal", signalRate, this::throwSignal));
+		this.runtimeService.addEventListener(this.taskCreated, FlowableEngineEventType.TASK_CREATED);
+	}
+
+	/**
+	 * Generates load for the given time, reporting to out every reportSeconds and once more at the end
+	 */
+	public void run(long durationSeconds, long reportSeconds, PrintStream out) {
+		long started = System.nanoTime();
+		for (Action action : this.actions) {
+			if (action.rate > 0) {
+				long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / action.rate);
+				this.pacer.scheduleAtFixedRate(() -> fire(action), 0, periodNanos, TimeUnit.NANOSECONDS);
+			}
+		}
+		long deadline = started + TimeUnit.SECONDS.toNanos(durationSeconds);
+		long lastReport = started;
+		try {
+			while (System.nanoTime() < deadline) {
+				long now = System.nanoTime();
+				long nextReport = Math.min(lastReport + TimeUnit.SECONDS.toNanos(reportSeconds), deadline);
+				TimeUnit.NANOSECONDS.sleep(Math.max(0, nextReport - now));
+				now = System.nanoTime();
+				report(out, now - started, now - lastReport, false);
+				lastReport = now;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		stop();
+		out.println("whole run");
+		long elapsed = System.nanoTime() - started;
+		report(out, elapsed, elapsed, true);
+	}
+
+	/**
+	 * Makes one call of every action that has a rate, in turn on the calling thread, iterations times, then reports to out
+	 * once. The calls are not paced, a check that every scenario still runs rather than load.
+	 */
+	public void runIterations(int iterations, PrintStream out) {
+		long started = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			for (Action action : this.actions) {
+				if (action.rate > 0) {
+					action.call();
+				}
+			}
+		}
+		long elapsed = System.nanoTime() - started;
+		report(out, elapsed, elapsed, true);
+	}
+
+	/**
+	 * Calls made by the action so far, the action named as in the report
+	 */
+	public long getCount(String action) {
+		return find(action).total.getCount();
+	}
+
+	public long getErrors(String action) {
+		return find(action).errors.sum();
+	}
+
+	public long getSkipped(String action) {
+		return find(action).skipped.sum();
+	}
+
+	@Override
+	public void close() {
+		stop();
+		this.runtimeService.removeEventListener(this.taskCreated);
+	}
+
+	private void stop() {
+		this.pacer.shutdownNow();
+		this.workers.shutdown();
+		try {
+			this.workers.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void fire(Action action) {
+		try {
+			this.workers.execute(() -> action.call());
+		} catch (RejectedExecutionException e) {
+			action.skipped.increment();
+		}
+	}
+
+	private ProcessInstance start(String processKey) {
+		return this.runtimeService.startProcessInstanceByKey(processKey);
+	}
+
+	private boolean completeOpenTask() {
+		String taskId = this.openTasks.poll();
+		if (taskId == null) {
+			return false;
+		}
+		this.taskService.complete(taskId);
+		return true;
+	}
+
+	private boolean orderPizza() {
+		String processInstanceId = this.awaitingOrder.poll();
+		if (processInstanceId == null) {
+			return false;
+		}
+		// the order pizza task may have been completed in the meantime, taking the message boundary event with it
+		Execution orderPizza = this.runtimeService.createExecutionQuery().processInstanceId(processInstanceId)
+				.messageEventSubscriptionName(ORDERED_PIZZA).singleResult();
+		if (orderPizza == null) {
+			return false;
+		}
+		this.runtimeService.messageEventReceived(ORDERED_PIZZA, orderPizza.getId());
+		return true;
+	}
+
+	private void throwSignal() {
+		this.runtimeService.signalEventReceived(SIGNALS[(int) (this.signalsThrown.getAndIncrement() % SIGNALS.length)]);
+	}
+
+	private void report(PrintStream out, long elapsedNanos, long intervalNanos, boolean whole) {
+		Map<String, Long> tableCounts = this.managementService.getTableCount();
+		StringBuilder rows = new StringBuilder();
+		for (String table : REPORTED_TABLES) {
+			rows.append(' ').append(table).append('=').append(tableCounts.getOrDefault(table, 0L));
+		}
+		long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		out.println(String.format("%6ds heap %dMB, %d open tasks, rows%s", TimeUnit.NANOSECONDS.toSeconds(elapsedNanos),
+				heapUsed / (1024 * 1024), this.openTasks.size(), rows));
+		double seconds = intervalNanos / (double) TimeUnit.SECONDS.toNanos(1);
+		for (Action action : this.actions) {
+			if (action.rate > 0) {
+				LatencyHistogram latency = whole ? action.total : action.interval;
+				out.println(String.format("        %-22s %8.1f/s %s errors=%d skipped=%d", action.name,
+						latency.getCount() / seconds, latency, action.errors.sum(), action.skipped.sum()));
+				action.interval.reset();
+			}
+		}
+	}
+
+	private Action find(String name) {
+		return this.actions.stream().filter((action) -> action.name.equals(name)).findFirst()
+				.orElseThrow(() -> new IllegalArgumentException("No action " + name));
+	}
+
+	private interface Call {
+		/**
+		 * @return false when there was nothing to do, no engine call was made
+		 */
+		boolean call();
+	}
+
+	private static class Action {
+
+		final String name;
+		final double rate;
+		final Call call;
+		final LatencyHistogram interval = new LatencyHistogram();
+		final LatencyHistogram total = new LatencyHistogram();
+		final LongAdder errors = new LongAdder();
+		final LongAdder skipped = new LongAdder();
+
+		Action(String name, double rate, Runnable call) {
+			this(name, rate, () -> {
+				call.run();
+				return true;
+			});
+		}
+
+		Action(String name, double rate, Call call) {
+			this.name = name;
+			this.rate = rate;
+			this.call = call;
+		}
+
+		void call() {
+			long start = System.nanoTime();
+			boolean called;
+			try {
+				called = this.call.call();
+			} catch (RuntimeException e) {
+				LOGGER.debug("{} failed", this.name, e);
+				this.errors.increment();
+				called = true;
+			}
+			if (called) {
+				long nanos = System.nanoTime() - start;
+				this.interval.record(nanos);
+				this.total.record(nanos);
+			}
+		}
+	}
+
+	private class TaskCreatedListener implements FlowableEventListener {
+
+		@Override
+		public void onEvent(FlowableEvent event) {
+			LoadGenerator.this.openTasks.add(((Task) ((FlowableEntityEvent) event).getEntity()).getId());
+		}
+
+		@Override
+		public boolean isFailOnException() {
+			return false;
+		}
+
+		@Override
+		public boolean isFireOnTransactionLifecycleEvent() {
+			return true;
+		}
+
+		@Override
+		public String getOnTransaction() {
+			return TransactionState.COMMITTED.name();
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.hercules.playground.flowable.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * Question: Do the notes' scenarios hold up when they are replayed many times at once?
+ * <br>
+ * Answer: the LoadGenerator replays them at a set rate and reports where they stop keeping up, here only a few times over
+ */
+@FlowableTest
+public class LoadGeneratorTests {
+
+	private ProcessEngine processEngine;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+	}
+
+	/**
+	 * Three iterations of every action, every action made calls and the report has the row counts
+	 */
+	@Deployment(resources = { LoadGenerator.SIGNAL_RESOURCE, LoadGenerator.MESSAGE_RESOURCE,
+			LoadGenerator.GATEWAY_RESOURCE })
+	@Test
+	public void fewIterations() {
+		ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+		try (LoadGenerator loadGenerator = new LoadGenerator(this.processEngine, 4, 10, 50, 10, 2)) {
+			loadGenerator.runIterations(3, new PrintStream(report, true, StandardCharsets.UTF_8));
+
+			assertAll(() -> assertEquals(3, loadGenerator.getCount("start gateway")),
+					() -> assertTrue(loadGenerator.getCount("complete") > 0),
+					() -> assertTrue(loadGenerator.getCount("message") > 0),
+					() -> assertTrue(loadGenerator.getCount("signal") > 0),
+					() -> assertTrue(report.toString(StandardCharsets.UTF_8).contains("ACT_RU_TASK="), report::toString));
+		}
+	}
+
+}
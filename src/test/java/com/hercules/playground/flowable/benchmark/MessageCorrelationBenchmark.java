@@ -0,0 +1,104 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.flowable.engine.runtime.Execution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.correlation.CorrelationMessage;
+import com.hercules.playground.flowable.correlation.MessageCorrelator;
+
+/**
+ * Messages per second delivered to the OrderedPizza boundary of the messageEvents note, ten messages for two orders at a time,
+ * the way a broker hands over a batch
+ * <br>
+ * TWO_CALL is the note's execution query plus messageEventReceived per message, given the process instance id up front.
+ * CORRELATE hands each message to the MessageCorrelator by business key, CORRELATE_ALL hands it the whole batch,
+ * PERSISTENT does the same with the dedup ids written to the database. The boundary does not cancel, so every order
+ * keeps taking messages.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageCorrelationBenchmark {
+
+	private static final int BATCH = 10;
+
+	@Param({ "TWO_CALL", "CORRELATE", "CORRELATE_ALL", "PERSISTENT" })
+	String delivery;
+
+	@Param({ "100" })
+	int orders;
+
+	MessageCorrelator correlator;
+	Map<String, String> processInstanceIds = new HashMap<>();
+	AtomicLong dedupIds = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void startOrders(EngineState engine) {
+		this.correlator = new MessageCorrelator(engine.processEngine, 100_000, "PERSISTENT".equals(this.delivery));
+		for (int i = 0; i < this.orders; i++) {
+			String businessKey = "order-" + i;
+			this.processInstanceIds.put(businessKey,
+					engine.runtimeService.startProcessInstanceByKey(EngineState.MESSAGE_KEY, businessKey).getId());
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportCorrelations() {
+		if (!"TWO_CALL".equals(this.delivery)) {
+			System.out.println(" delivered: " + this.correlator.getDelivered() + ", duplicates: "
+					+ this.correlator.getDuplicates() + ", failed: " + this.correlator.getFailed());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void deliverBatch(EngineState engine) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String[] businessKeys = { "order-" + random.nextInt(this.orders), "order-" + random.nextInt(this.orders) };
+		List<CorrelationMessage> batch = new ArrayList<>(BATCH);
+		for (int i = 0; i < BATCH; i++) {
+			batch.add(new CorrelationMessage("OrderedPizza", businessKeys[i % 2], null,
+					Long.toString(this.dedupIds.incrementAndGet())));
+		}
+		switch (this.delivery) {
+		case "TWO_CALL":
+			for (CorrelationMessage message : batch) {
+				Execution subscribed = engine.runtimeService.createExecutionQuery()
+						.processInstanceId(this.processInstanceIds.get(message.getCorrelationKey()))
+						.messageEventSubscriptionName(message.getMessageName()).singleResult();
+				engine.runtimeService.messageEventReceived(message.getMessageName(), subscribed.getId());
+			}
+			break;
+		case "CORRELATE":
+			batch.forEach(this.correlator::correlate);
+			break;
+		default:
+			this.correlator.correlateAll(batch);
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.engine.runtime.Execution;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The four engine calls the notes are built around, one benchmark each
+ * <br>
+ * Each invocation gets its own process instance prepared outside of the measured call, so only the api call itself is timed:
+ * <br>
+ * startProcessInstanceByKey - the gateway process up to Step 1
+ * <br>
+ * complete - Step 1 of the gateway process, which forks into three tasks
+ * <br>
+ * signalEventReceived - the globaleScope catch event of signalScope, once Step 1 and Step 2 are done
+ * <br>
+ * messageEventReceived - the OrderedPizza boundary event of messageEvents
+ * <br>
+ * Run through BenchmarkRunner to get the 1, 8 and 64 thread results with p99 latency
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessEngineBenchmark {
+
+	@State(Scope.Thread)
+	public static class GatewayFork {
+		String taskId;
+
+		@Setup(Level.Invocation)
+		public void startGateway(EngineState engine) {
+			ProcessInstance processInstance = engine.runtimeService.startProcessInstanceByKey(EngineState.GATEWAY_KEY);
+			this.taskId = engine.taskService.createTaskQuery().processInstanceId(processInstance.getId())
+					.singleResult().getId();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class WaitingForSignal {
+		String executionId;
+
+		@Setup(Level.Invocation)
+		public void startSignalScope(EngineState engine) {
+			ProcessInstance processInstance = engine.runtimeService.startProcessInstanceByKey(EngineState.SIGNAL_KEY);
+			for (Task task : engine.taskService.createTaskQuery().processInstanceId(processInstance.getId()).list()) {
+				engine.taskService.complete(task.getId());
+			}
+			this.executionId = engine.runtimeService.createExecutionQuery().processInstanceId(processInstance.getId())
+					.signalEventSubscriptionName("globaleScope").singleResult().getId();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class WaitingForMessage {
+		String executionId;
+
+		@Setup(Level.Invocation)
+		public void startMessageEvents(EngineState engine) {
+			ProcessInstance processInstance = engine.runtimeService.startProcessInstanceByKey(EngineState.MESSAGE_KEY);
+			Execution execution = engine.runtimeService.createExecutionQuery()
+					.processInstanceId(processInstance.getId()).messageEventSubscriptionName("OrderedPizza")
+					.singleResult();
+			this.executionId = execution.getId();
+		}
+	}
+
+	@Benchmark
+	public ProcessInstance startProcessInstanceByKey(EngineState engine) {
+		return engine.runtimeService.startProcessInstanceByKey(EngineState.GATEWAY_KEY);
+	}
+
+	@Benchmark
+	public void completeForkingTask(EngineState engine, GatewayFork fork) {
+		engine.taskService.complete(fork.taskId);
+	}
+
+	@Benchmark
+	public void signalEventReceived(EngineState engine, WaitingForSignal waiting) {
+		engine.runtimeService.signalEventReceived("globaleScope", waiting.executionId);
+	}
+
+	@Benchmark
+	public void messageEventReceived(EngineState engine, WaitingForMessage waiting) {
+		engine.runtimeService.messageEventReceived("OrderedPizza", waiting.executionId);
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.shard.ShardedProcessEngines;
+
+/**
+ * Starting gateway instances and completing their Step 1 through the ShardedProcessEngines, over 1 to 8 shards
+ * <br>
+ * Every instance gets a business key of its own, so the calls spread evenly over the shards.
+ * With one shard all threads queue on the table locks of one H2 database, each shard added takes a share of them away.
+ * Calls H2 picked as deadlock victim fail, they are counted and printed after each iteration instead of failing the run.
+ * <br>
+ * Meant to be run with more threads than shards: -Dbenchmark.args="-t 8 ShardingBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardingBenchmark {
+
+	@Param({ "1", "2", "4", "8" })
+	int shards;
+
+	ShardedProcessEngines engines;
+	final AtomicLong businessKeys = new AtomicLong();
+	final LongAdder failed = new LongAdder();
+
+	@State(Scope.Thread)
+	public static class Step1 {
+		String businessKey;
+		String taskId;
+
+		@Setup(Level.Invocation)
+		public void startGateway(ShardingBenchmark benchmark) {
+			this.businessKey = benchmark.nextBusinessKey();
+			benchmark.engines.startProcessInstanceByKey(EngineState.GATEWAY_KEY, this.businessKey);
+			this.taskId = benchmark.engines.tasks(this.businessKey).get(0).getId();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void buildShards() {
+		this.engines = ShardedProcessEngines.inMemory(this.shards);
+		this.engines.deployClasspathResources(EngineState.GATEWAY_RESOURCE);
+	}
+
+	@TearDown(Level.Trial)
+	public void closeShards() {
+		this.engines.close();
+	}
+
+	@Setup(Level.Iteration)
+	public void resetFailures() {
+		this.failed.reset();
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportFailures() {
+		System.out.println(" " + this.shards + " shards: " + this.failed.sum() + " calls failed");
+	}
+
+	@Benchmark
+	public void startProcessInstanceByKey() {
+		try {
+			this.engines.startProcessInstanceByKey(EngineState.GATEWAY_KEY, nextBusinessKey());
+		} catch (RuntimeException e) {
+			this.failed.increment();
+		}
+	}
+
+	@Benchmark
+	public void completeStep1(Step1 step1) {
+		try {
+			this.engines.complete(step1.businessKey, step1.taskId);
+		} catch (RuntimeException e) {
+			this.failed.increment();
+		}
+	}
+
+	String nextBusinessKey() {
+		return "order-" + this.businessKeys.incrementAndGet();
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.engine.runtime.ProcessInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.signal.SignalDispatcher;
+
+/**
+ * One global signal waking every waiting signalScope instance, the api call against the SignalDispatcher
+ * <br>
+ * Each iteration starts the given number of instances and leaves them waiting on globaleScope, then times a single signal.
+ * signals/sec is instances divided by the reported time.
+ * <br>
+ * The api call holds the subscription rows for the whole reported time, the dispatcher only for its longest chunk, printed on tear down.
+ * <br>
+ * Meant to be run with one thread: -Dbenchmark.args="-t 1 SignalDispatcherBenchmark"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignalDispatcherBenchmark {
+
+	@Param({ "1000" })
+	int instances;
+
+	@Param({ "50" })
+	int chunkSize;
+
+	SignalDispatcher dispatcher;
+
+	@Setup(Level.Trial)
+	public void createDispatcher(EngineState engine) {
+		this.dispatcher = new SignalDispatcher(engine.processEngine, 0, this.chunkSize, 4);
+	}
+
+	@Setup(Level.Iteration)
+	public void startWaitingInstances(EngineState engine) {
+		for (int i = 0; i < this.instances; i++) {
+			ProcessInstance processInstance = engine.runtimeService.startProcessInstanceByKey(EngineState.SIGNAL_KEY);
+			engine.taskService.createTaskQuery().processInstanceId(processInstance.getId()).list()
+					.forEach((task) -> engine.taskService.complete(task.getId()));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void closeDispatcher() {
+		this.dispatcher.close();
+		System.out.println("dispatcher chunks: " + this.dispatcher.getDeliveredChunks() + ", longest chunk transaction: "
+				+ this.dispatcher.getLongestChunkMillis() + " ms");
+	}
+
+	@Benchmark
+	public void signalEventReceived(EngineState engine) {
+		engine.runtimeService.signalEventReceived("globaleScope");
+	}
+
+	@Benchmark
+	public int dispatcherSignal() {
+		return this.dispatcher.signal("globaleScope").join();
+	}
+
+}
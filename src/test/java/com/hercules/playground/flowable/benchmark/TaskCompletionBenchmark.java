@@ -0,0 +1,105 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.completion.TaskCompletionDriver;
+import com.hercules.playground.flowable.completion.TaskCompletionDriver.ExecutionModel;
+
+/**
+ * Every branch task of one wide fork/join instance completed at the same time through the TaskCompletionDriver
+ * <br>
+ * One operation is the whole branch phase of an instance, all branches racing into the same join.
+ * Completions per second, retries and the driver's per call latency are printed after each iteration.
+ * VIRTUAL runs on platform threads before java 21, the printed execution model says which one was measured.
+ * <br>
+ * Meant to be run with one thread: -Dbenchmark.args="-t 1 TaskCompletionBenchmark"
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskCompletionBenchmark {
+
+	@Param({ "100" })
+	int branches;
+
+	@Param({ "PLATFORM", "VIRTUAL" })
+	ExecutionModel executionModel;
+
+	@Param({ "1", "4", "8" })
+	int concurrency;
+
+	TaskCompletionDriver driver;
+	long iterationStart;
+	long completedBefore;
+	long retriesBefore;
+
+	@State(Scope.Thread)
+	public static class Forked {
+		List<String> branchTaskIds;
+
+		@Setup(Level.Invocation)
+		public void forkBranches(EngineState engine) {
+			ProcessInstance processInstance = engine.runtimeService.startProcessInstanceByKey(WideForkJoin.KEY);
+			engine.taskService.complete(engine.taskService.createTaskQuery().processInstanceId(processInstance.getId())
+					.singleResult().getId());
+			this.branchTaskIds = engine.taskService.createTaskQuery().processInstanceId(processInstance.getId()).list()
+					.stream().map(Task::getId).collect(Collectors.toList());
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void deployWideForkJoin(EngineState engine) {
+		engine.processEngine.getRepositoryService().createDeployment()
+				.addBpmnModel("wideForkJoin.bpmn20.xml", WideForkJoin.withBranches(this.branches)).deploy();
+		this.driver = new TaskCompletionDriver(engine.processEngine, this.executionModel, this.concurrency, 256, 20, 1);
+	}
+
+	@TearDown(Level.Trial)
+	public void closeDriver() {
+		this.driver.close();
+	}
+
+	@Setup(Level.Iteration)
+	public void startClock() {
+		this.driver.getLatency().reset();
+		this.completedBefore = this.driver.getCompleted();
+		this.retriesBefore = this.driver.getRetries();
+		this.iterationStart = System.nanoTime();
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportCompletions() {
+		long nanos = System.nanoTime() - this.iterationStart;
+		long completions = this.driver.getCompleted() - this.completedBefore;
+		System.out.println(" " + this.driver.getExecutionModel() + ": "
+				+ (completions * TimeUnit.SECONDS.toNanos(1) / nanos) + " completions/s, "
+				+ (this.driver.getRetries() - this.retriesBefore) + " retries, " + this.driver.getLatency());
+	}
+
+	@Benchmark
+	public void completeAllBranches(Forked forked) {
+		this.driver.completeAll(forked.branchTaskIds).join();
+	}
+
+}
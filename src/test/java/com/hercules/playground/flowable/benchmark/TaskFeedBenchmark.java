@@ -0,0 +1,143 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.task.api.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.feed.TaskChange;
+import com.hercules.playground.flowable.feed.TaskChangeFeed;
+import com.hercules.playground.flowable.feed.TaskInbox;
+import com.hercules.playground.flowable.metrics.EngineMetrics;
+import com.hercules.playground.flowable.metrics.InMemoryMetricsRegistry;
+
+/**
+ * A client walking a gateway instance while backlog other instances wait in Step 1, learning about its tasks after every action
+ * by querying the active tasks (POLLING) or from an inbox kept by the TaskChangeFeed (FEED)
+ * <br>
+ * The sql statements per walk and the time from an action returning to the client seeing its tasks are printed after each iteration,
+ * for FEED also the time from a commit to the inbox applying it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskFeedBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class FeedEngine extends EngineState {
+
+		@Param({ "POLLING", "FEED" })
+		String mode;
+
+		@Param({ "1000" })
+		int backlog;
+
+		InMemoryMetricsRegistry registry;
+		TaskChangeFeed feed;
+		TaskInbox inbox;
+		final LongAdder walks = new LongAdder();
+		final LongAdder discoveries = new LongAdder();
+		final LongAdder discoveryNanos = new LongAdder();
+
+		@Override
+		protected void configure(ProcessEngineConfiguration configuration) {
+			this.registry = EngineMetrics.install(configuration);
+		}
+
+		@Override
+		protected String[] resources() {
+			return new String[] { GATEWAY_RESOURCE };
+		}
+
+		/**
+		 * @return the ids of the active tasks of the instance
+		 */
+		List<String> discover(String processInstanceId) throws InterruptedException {
+			long start = System.nanoTime();
+			List<String> tasks;
+			if (this.inbox != null) {
+				this.inbox.sync(10, TimeUnit.SECONDS);
+				tasks = this.inbox.getTasks(processInstanceId).stream().map(TaskChange::getTaskId)
+						.collect(Collectors.toList());
+			} else {
+				tasks = this.taskService.createTaskQuery().active().list().stream()
+						.filter(task -> processInstanceId.equals(task.getProcessInstanceId())).map(Task::getId)
+						.collect(Collectors.toList());
+			}
+			this.discoveryNanos.add(System.nanoTime() - start);
+			this.discoveries.increment();
+			return tasks;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void openInbox(FeedEngine engine) {
+		for (int i = 0; i < engine.backlog; i++) {
+			engine.runtimeService.startProcessInstanceByKey(EngineState.GATEWAY_KEY);
+		}
+		if ("FEED".equals(engine.mode)) {
+			engine.feed = TaskChangeFeed.register(engine.processEngine);
+			engine.inbox = TaskInbox.open(engine.processEngine, engine.feed);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void closeFeed(FeedEngine engine) {
+		if (engine.feed != null) {
+			engine.feed.close();
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void resetMeters(FeedEngine engine) {
+		engine.registry.reset();
+		engine.walks.reset();
+		engine.discoveries.reset();
+		engine.discoveryNanos.reset();
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportLoad(FeedEngine engine) {
+		System.out.print(" sql statements per walk: "
+				+ (double) engine.registry.counter("sql.statements").sum() / engine.walks.sum()
+				+ ", microseconds to see the tasks: " + engine.discoveryNanos.sum() / 1000.0 / engine.discoveries.sum());
+		if (engine.inbox != null) {
+			System.out.print(", microseconds from commit to inbox since it opened: " + engine.inbox.getAverageDeliveryNanos() / 1000.0
+					+ ", reloads: " + engine.inbox.getReloads() + ", inbox size: " + engine.inbox.size());
+		}
+		System.out.println();
+	}
+
+	/**
+	 * Start, see Step 1, complete it, see the three branches, delete the instance, see them gone
+	 */
+	@Benchmark
+	public int walk(FeedEngine engine) throws InterruptedException {
+		engine.walks.increment();
+		String processInstanceId = engine.runtimeService.startProcessInstanceByKey(EngineState.GATEWAY_KEY).getId();
+		engine.taskService.complete(engine.discover(processInstanceId).get(0));
+		int branches = engine.discover(processInstanceId).size();
+		engine.runtimeService.deleteProcessInstance(processInstanceId, "walked");
+		return branches + engine.discover(processInstanceId).size();
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.engine.runtime.ProcessInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * Tearing down forked gateway instances, the parallelStream delete loop of the tests against BulkProcessInstanceTeardown
+ * <br>
+ * Each iteration starts the given number of gateway instances past Step 1, four executions, three tasks and two variables each,
+ * then times removing all of them. Both sides delete the same runtime rows and end the same history rows, each prints the
+ * runtime rows it deleted per second, counted from the table counts before and after.
+ * <br>
+ * Meant to be run with one thread: -Dbenchmark.args="-t 1 TeardownBenchmark"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TeardownBenchmark {
+
+	@Param({ "2000" })
+	int instances;
+
+	@Param({ "500" })
+	int batchSize;
+
+	long rowsBefore;
+	long nanos;
+
+	@Setup(Level.Iteration)
+	public void startForkedInstances(EngineState engine) {
+		for (int i = 0; i < this.instances; i++) {
+			ProcessInstance processInstance = engine.runtimeService.startProcessInstanceByKey(EngineState.GATEWAY_KEY,
+					Map.of("ORIGIONAL", "THIS IS THE ORIGIONAL", "VARIABLE 1", "THIS GETS OVERWRITTEN IN TASK 2"));
+			engine.taskService.complete(engine.taskService.createTaskQuery().processInstanceId(processInstance.getId())
+					.singleResult().getId());
+		}
+		this.rowsBefore = runtimeRows(engine);
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportRows(EngineState engine) {
+		long rows = this.rowsBefore - runtimeRows(engine);
+		System.out.println(rows + " rows deleted, " + (rows * TimeUnit.SECONDS.toNanos(1) / this.nanos) + " rows/s");
+	}
+
+	@Benchmark
+	public void deleteProcessInstanceLoop(EngineState engine) {
+		long start = System.nanoTime();
+		engine.runtimeService.createProcessInstanceQuery().list().parallelStream()
+				.forEach((processInstance) -> engine.runtimeService
+						.deleteProcessInstance(processInstance.getProcessInstanceId(), "RESET DATA"));
+		this.nanos = System.nanoTime() - start;
+	}
+
+	@Benchmark
+	public long bulkTeardown(EngineState engine) {
+		long start = System.nanoTime();
+		long rows = new BulkProcessInstanceTeardown(engine.processEngine, this.batchSize, 4).deleteAll();
+		this.nanos = System.nanoTime() - start;
+		return rows;
+	}
+
+	/**
+	 * Rows of the runtime tables and the byte arrays, which hold the serialized variables
+	 */
+	private static long runtimeRows(EngineState engine) {
+		return engine.processEngine.getManagementService().getTableCount().entrySet().stream()
+				.filter(table -> table.getKey().startsWith("ACT_RU_") || table.getKey().equals("ACT_GE_BYTEARRAY"))
+				.mapToLong(Map.Entry::getValue).sum();
+	}
+
+}
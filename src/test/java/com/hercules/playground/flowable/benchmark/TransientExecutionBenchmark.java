@@ -0,0 +1,91 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.inmemory.TransientExecution;
+import com.hercules.playground.flowable.metrics.EngineMetrics;
+import com.hercules.playground.flowable.metrics.InMemoryMetricsRegistry;
+
+/**
+ * Instances of the gateway note without its user tasks started per second, the usual way (PERSISTENT) and in memory (TRANSIENT)
+ * <br>
+ * Every instance runs from start to end in its start. The sql statements sent per instance are printed after each iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransientExecutionBenchmark {
+
+	static final String STRAIGHT_THROUGH_RESOURCE = "com/hercules/playground/flowable/inmemory/TransientExecution.straightThroughGateway.bpmn20.xml";
+	static final String STRAIGHT_THROUGH_KEY = "straightThroughGateway";
+
+	@State(Scope.Benchmark)
+	public static class TransientEngine extends EngineState {
+
+		@Param({ "PERSISTENT", "TRANSIENT" })
+		String mode;
+
+		InMemoryMetricsRegistry registry;
+		TransientExecution transientExecution;
+		final LongAdder instances = new LongAdder();
+
+		@Override
+		protected void configure(ProcessEngineConfiguration configuration) {
+			this.registry = EngineMetrics.install(configuration);
+			TransientExecution.install(configuration);
+		}
+
+		@Override
+		protected String[] resources() {
+			return new String[] { STRAIGHT_THROUGH_RESOURCE };
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void startTransientExecution(TransientEngine engine) {
+		if ("TRANSIENT".equals(engine.mode)) {
+			engine.transientExecution = new TransientExecution(engine.processEngine);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void resetMeters(TransientEngine engine) {
+		engine.registry.reset();
+		engine.instances.reset();
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportStatements(TransientEngine engine) {
+		System.out.println(" sql statements per instance: "
+				+ (double) engine.registry.counter("sql.statements").sum() / engine.instances.sum());
+	}
+
+	@Benchmark
+	public String straightThrough(TransientEngine engine) {
+		engine.instances.increment();
+		if (engine.transientExecution != null) {
+			return engine.transientExecution.start(STRAIGHT_THROUGH_KEY).getId();
+		}
+		return engine.runtimeService.startProcessInstanceByKey(STRAIGHT_THROUGH_KEY).getId();
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.App;
+import com.hercules.playground.flowable.deployment.BpmnValidationCache;
+
+/**
+ * Startup the way App.main does it: build an engine on a fresh H2 database and deploy every bpmn note
+ * <br>
+ * none parses and validates each note as the engine does by default, memory shares one warm BpmnValidationCache between
+ * the startups, so every note is parsed without validation. diagrams=false also stops the engine rendering a png per process
+ * definition, and lets the cache drop the diagram interchange.
+ * <br>
+ * Meant to be run with one thread: -Dbenchmark.args="-t 1 ValidationCacheBenchmark"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationCacheBenchmark {
+
+	static final String[] NOTES = {
+			EngineState.GATEWAY_RESOURCE,
+			EngineState.SIGNAL_RESOURCE,
+			EngineState.MESSAGE_RESOURCE,
+			"com/hercules/playground/flowable/events/signal/Signal.signalProcessScope.bpmn20.xml",
+			"com/hercules/playground/flowable/events/signal/Signal.signalGlobalScope.bpmn20.xml",
+			"com/hercules/playground/flowable/events/signal/Signal.signalProcessScopeApi.bpmn20.xml",
+			"com/hercules/playground/flowable/events/message/MessageEvents.canYouStartASubprocessWithAnEvent.bpmn20.xml",
+			"com/hercules/playground/flowable/events/message/MessageEvents.asynchroniousTaskSignal.bpmn20.xml",
+			"com/hercules/playground/flowable/events/conditional/Conditional.boundaryEventTriggered.bpmn20.xml",
+			"com/hercules/playground/flowable/events/conditional/Conditional.boundaryEventNotTriggered.bpmn20.xml" };
+
+	@Param({ "none", "memory" })
+	String cache;
+
+	@Param({ "true", "false" })
+	boolean diagrams;
+
+	BpmnValidationCache memory;
+
+	@Setup(Level.Trial)
+	public void warmCache() {
+		this.memory = new BpmnValidationCache();
+		startEngine(this.memory).close();
+	}
+
+	@Benchmark
+	public void startup() {
+		startEngine("memory".equals(this.cache) ? this.memory : null).close();
+	}
+
+	private ProcessEngine startEngine(BpmnValidationCache validationCache) {
+		ProcessEngineConfiguration configuration = App
+				.createConfiguration("jdbc:h2:mem:startup-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")
+				.setCreateDiagramOnDeploy(this.diagrams);
+		if (validationCache != null) {
+			validationCache.install(configuration);
+		}
+		ProcessEngine processEngine = configuration.buildProcessEngine();
+		// several notes reuse a process id, so each note is its own deployment as it is in the tests
+		for (String note : NOTES) {
+			processEngine.getRepositoryService().createDeployment().addClasspathResource(note).deploy();
+		}
+		return processEngine;
+	}
+
+}
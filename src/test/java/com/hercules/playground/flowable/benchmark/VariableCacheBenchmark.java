@@ -0,0 +1,98 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.variable.VariableCache;
+
+/**
+ * The evaluate conditions path of Conditional.boundaryEventTriggered: read the variables of a process instance
+ * and evaluate its conditional events when the condition holds, with the variables read through the api or the VariableCache
+ * <br>
+ * The condition stays false so every call is a read, writePercent of the calls set a variable of the instance first,
+ * which drops it from the cache. Hits, misses and invalidations are printed after each iteration.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VariableCacheBenchmark {
+
+	private static final String CONDITIONAL_RESOURCE = "com/hercules/playground/flowable/events/conditional/Conditional.boundaryEventTriggered.bpmn20.xml";
+
+	@State(Scope.Benchmark)
+	public static class ConditionalEngine extends EngineState {
+
+		@Override
+		protected String[] resources() {
+			return new String[] { CONDITIONAL_RESOURCE };
+		}
+	}
+
+	@Param({ "API", "CACHE" })
+	String variables;
+
+	@Param({ "0", "10" })
+	int writePercent;
+
+	@Param({ "1000" })
+	int instances;
+
+	VariableCache cache;
+	List<String> processInstanceIds = new ArrayList<>();
+
+	@Setup(Level.Trial)
+	public void startInstances(ConditionalEngine engine) {
+		if ("CACHE".equals(this.variables)) {
+			this.cache = VariableCache.register(engine.processEngine);
+		}
+		for (int i = 0; i < this.instances; i++) {
+			this.processInstanceIds.add(engine.runtimeService
+					.startProcessInstanceByKey("conditional", Map.of("condition", false, "reads", 0)).getId());
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportCache() {
+		if (this.cache != null) {
+			System.out.println(" variable cache hits: " + this.cache.getHits() + ", misses: " + this.cache.getMisses()
+					+ ", invalidations: " + this.cache.getInvalidations());
+		}
+	}
+
+	@Benchmark
+	public boolean evaluateConditions(ConditionalEngine engine) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String processInstanceId = this.processInstanceIds.get(random.nextInt(this.processInstanceIds.size()));
+		if (random.nextInt(100) < this.writePercent) {
+			engine.runtimeService.setVariable(processInstanceId, "reads", random.nextInt());
+		}
+		Map<String, Object> variables = this.cache != null ? this.cache.getVariables(processInstanceId)
+				: engine.runtimeService.getVariables(processInstanceId);
+		if (Boolean.TRUE.equals(variables.get("condition"))) {
+			engine.runtimeService.evaluateConditionalEvents(processInstanceId, variables);
+			return true;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.hercules.playground.flowable.benchmark;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hercules.playground.flowable.variable.CompactVariableType;
+
+/**
+ * setVariable and getVariable of an order map with its lines, java serialized as App.main stores it,
+ * or stored by the CompactVariableType with and without compression
+ * <br>
+ * getField reads the variable and one field of it, the customer name, the way a gateway condition would.
+ * The bytes ACT_GE_BYTEARRAY holds for the order are printed once the trial's instance is set up.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VariableSerializationBenchmark {
+
+	private static final String CONDITIONAL_RESOURCE = "com/hercules/playground/flowable/events/conditional/Conditional.boundaryEventTriggered.bpmn20.xml";
+
+	@State(Scope.Benchmark)
+	public static class SerializationEngine extends EngineState {
+
+		@Param({ "JAVA", "COMPACT", "COMPACT_DEFLATE" })
+		String serialization;
+
+		@Override
+		protected void configure(ProcessEngineConfiguration configuration) {
+			if ("COMPACT".equals(this.serialization)) {
+				CompactVariableType.install(configuration, new CompactVariableType(-1));
+			} else if ("COMPACT_DEFLATE".equals(this.serialization)) {
+				CompactVariableType.install(configuration, new CompactVariableType(1024));
+			}
+		}
+
+		@Override
+		protected String[] resources() {
+			return new String[] { CONDITIONAL_RESOURCE };
+		}
+	}
+
+	@Param({ "200" })
+	int lines;
+
+	Map<String, Object> order;
+	String processInstanceId;
+
+	@Setup(Level.Trial)
+	public void startInstance(SerializationEngine engine) throws SQLException {
+		this.order = order(this.lines);
+		this.processInstanceId = engine.runtimeService
+				.startProcessInstanceByKey("conditional", Map.of("condition", false, "order", this.order)).getId();
+		ProcessEngineConfigurationImpl configuration = (ProcessEngineConfigurationImpl) engine.processEngine
+				.getProcessEngineConfiguration();
+		try (Connection connection = configuration.getDataSource().getConnection();
+				Statement statement = connection.createStatement();
+				ResultSet bytes = statement
+						.executeQuery("select sum(length(BYTES_)) from ACT_GE_BYTEARRAY where NAME_ = 'var-order'")) {
+			bytes.next();
+			System.out.println(" " + engine.serialization + " order of " + this.lines + " lines stored in "
+					+ bytes.getLong(1) + " bytes");
+		}
+	}
+
+	@Benchmark
+	public void setVariable(SerializationEngine engine) {
+		engine.runtimeService.setVariable(this.processInstanceId, "order", this.order);
+	}
+
+	@Benchmark
+	public Object getField(SerializationEngine engine) {
+		Map<?, ?> order = (Map<?, ?>) engine.runtimeService.getVariable(this.processInstanceId, "order");
+		return ((Map<?, ?>) order.get("customer")).get("name");
+	}
+
+	private static Map<String, Object> order(int lines) {
+		List<Object> orderLines = new ArrayList<>(lines);
+		for (int i = 0; i < lines; i++) {
+			Map<String, Object> line = new LinkedHashMap<>();
+			line.put("sku", "sku-" + (i % 25));
+			line.put("description", "Large pizza with extra cheese, box " + (i % 7));
+			line.put("quantity", 1 + i % 4);
+			line.put("price", 9.5d + i % 3);
+			line.put("giftWrapped", i % 5 == 0);
+			orderLines.add(line);
+		}
+		Map<String, Object> customer = new LinkedHashMap<>();
+		customer.put("name", "Ada Lovelace");
+		customer.put("email", "ada@example.com");
+		customer.put("loyaltyPoints", 1_250L);
+		Map<String, Object> order = new LinkedHashMap<>();
+		order.put("id", 42);
+		order.put("customer", customer);
+		order.put("lines", orderLines);
+		return order;
+	}
+
+}
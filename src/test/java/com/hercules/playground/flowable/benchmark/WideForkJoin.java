@@ -0,0 +1,60 @@
+package com.hercules.playground.flowable.benchmark;
+
+import org.flowable.bpmn.model.BpmnModel;
+import org.flowable.bpmn.model.EndEvent;
+import org.flowable.bpmn.model.FlowElement;
+import org.flowable.bpmn.model.ParallelGateway;
+import org.flowable.bpmn.model.Process;
+import org.flowable.bpmn.model.SequenceFlow;
+import org.flowable.bpmn.model.StartEvent;
+import org.flowable.bpmn.model.UserTask;
+
+/**
+ * The gateway note widened to any number of branches: start, Step 1, fork, one user task per branch, join, What do i get?, end
+ */
+public final class WideForkJoin {
+
+	public static final String KEY = "wideForkJoin";
+
+	private WideForkJoin() {
+	}
+
+	public static BpmnModel withBranches(int branches) {
+		Process process = new Process();
+		process.setId(KEY);
+		process.setExecutable(true);
+
+		add(process, new StartEvent(), "start", null);
+		add(process, new UserTask(), "step1", "Step 1");
+		add(process, new ParallelGateway(), "fork", null);
+		add(process, new ParallelGateway(), "join", null);
+		add(process, new UserTask(), "merged", "What do i get?");
+		add(process, new EndEvent(), "end", null);
+		flow(process, "start", "step1");
+		flow(process, "step1", "fork");
+		for (int i = 0; i < branches; i++) {
+			add(process, new UserTask(), "branch" + i, "Branch " + i);
+			flow(process, "fork", "branch" + i);
+			flow(process, "branch" + i, "join");
+		}
+		flow(process, "join", "merged");
+		flow(process, "merged", "end");
+
+		BpmnModel model = new BpmnModel();
+		model.addProcess(process);
+		return model;
+	}
+
+	private static void add(Process process, FlowElement element, String id, String name) {
+		element.setId(id);
+		element.setName(name);
+		process.addFlowElement(element);
+	}
+
+	private static void flow(Process process, String source, String target) {
+		SequenceFlow sequenceFlow = new SequenceFlow(source, target);
+		sequenceFlow.setId(source + "-" + target);
+		process.addFlowElement(sequenceFlow);
+	}
+
+}
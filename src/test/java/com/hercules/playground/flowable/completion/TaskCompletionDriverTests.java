@@ -0,0 +1,170 @@
+package com.hercules.playground.flowable.completion;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.api.FlowableObjectNotFoundException;
+import org.flowable.common.engine.api.FlowableOptimisticLockingException;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.completion.TaskCompletionDriver.ExecutionModel;
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * Question: Can the branches of a parallel gateway be completed all at once without failing on the join?
+ * <br>
+ * Answer: Yes, if a completion that loses the lock on the join, optimistic or in H2's tables, is simply tried again
+ */
+@FlowableTest
+public class TaskCompletionDriverTests {
+
+	private static final String GATEWAY_RESOURCE = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml";
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+	}
+
+	/**
+	 * Every branch of ten forked instances completed concurrently, four in flight at a time, every instance reaches the merge
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void branchesArrivingAtTheJoinTogether() {
+		forkedInstances(10);
+
+		try (TaskCompletionDriver driver = new TaskCompletionDriver(this.processEngine, ExecutionModel.PLATFORM, 8, 4,
+				10, 2)) {
+			driver.completeAll(activeTaskIds()).join();
+
+			assertAll(() -> assertEquals(30, driver.getCompleted()), () -> assertEquals(0, driver.getFailed()),
+					() -> assertEquals(30, driver.getLatency().getCount()),
+					() -> assertEquals(10, this.taskService.createTaskQuery().taskName("What do i get?").count()),
+					() -> assertEquals(10, this.taskService.createTaskQuery().count()));
+		}
+	}
+
+	/**
+	 * Asking for virtual threads runs on them from java 21 on, and on platform threads before
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void virtualThreadsWhenTheJvmHasThem() {
+		forkedInstances(2);
+
+		try (TaskCompletionDriver driver = new TaskCompletionDriver(this.processEngine, ExecutionModel.VIRTUAL, 4, 64,
+				10, 2)) {
+			driver.completeAll(activeTaskIds()).join();
+
+			ExecutionModel expected = Runtime.version().feature() >= 21 ? ExecutionModel.VIRTUAL : ExecutionModel.PLATFORM;
+			assertAll(() -> assertEquals(expected, driver.getExecutionModel()),
+					() -> assertEquals(6, driver.getCompleted()),
+					() -> assertEquals(2, this.taskService.createTaskQuery().taskName("What do i get?").count()));
+		}
+	}
+
+	/**
+	 * Anything but a lost lock fails the completion straight away
+	 */
+	@Test
+	public void unknownTaskFailsTheFuture() {
+		try (TaskCompletionDriver driver = new TaskCompletionDriver(this.processEngine)) {
+			CompletionException failure = assertThrows(CompletionException.class,
+					() -> driver.complete("no such task").join());
+
+			assertAll(() -> assertTrue(failure.getCause() instanceof FlowableObjectNotFoundException),
+					() -> assertEquals(1, driver.getFailed()), () -> assertEquals(0, driver.getRetries()),
+					() -> assertTrue(driver.getLatency().getMaxNanos() > 0));
+		}
+	}
+
+	/**
+	 * An Error thrown by the completion fails its future and gives its place in flight back, the next one still runs
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void errorFailsTheFutureAndFreesItsPlace() {
+		forkedInstances(1);
+		List<String> taskIds = activeTaskIds();
+
+		try (TaskCompletionDriver driver = new TaskCompletionDriver(this.processEngine, ExecutionModel.PLATFORM, 1, 1, 1,
+				2)) {
+			assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+				CompletionException failure = assertThrows(CompletionException.class,
+						() -> driver.complete(taskIds.get(0), Map.of("failing", new FailsToSerialize())).join());
+				driver.complete(taskIds.get(1)).join();
+
+				assertAll(() -> assertTrue(failure.getCause() instanceof AssertionError),
+						() -> assertEquals(1, driver.getFailed()), () -> assertEquals(1, driver.getCompleted()));
+			});
+		}
+	}
+
+	/**
+	 * A deadlock or a lost optimistic lock is transient however deep it sits under SQLExceptions of other states
+	 */
+	@Test
+	public void transientCauseUnderAnotherSqlException() {
+		assertAll(() -> assertTrue(TaskCompletionDriver.isTransient(new FlowableException("flush failed",
+				new SQLException("batch failed", "HY000", new SQLException("deadlock", "40001"))))),
+				() -> assertTrue(TaskCompletionDriver.isTransient(new SQLException("batch failed", "HY000",
+						new FlowableOptimisticLockingException("updated by another transaction")))),
+				() -> assertFalse(TaskCompletionDriver.isTransient(new FlowableException("flush failed",
+						new SQLException("constraint", "23505")))));
+	}
+
+	private void forkedInstances(int instances) {
+		for (int i = 0; i < instances; i++) {
+			ProcessInstance processInstance = this.runtimeService
+					.startProcessInstanceByKey("GatewayTests.ParralleGateProcessVariableMerge");
+			this.taskService.complete(this.taskService.createTaskQuery().processInstanceId(processInstance.getId())
+					.singleResult().getId());
+		}
+	}
+
+	private List<String> activeTaskIds() {
+		return this.taskService.createTaskQuery().active().list().stream().map(Task::getId).collect(Collectors.toList());
+	}
+
+	/**
+	 * A variable whose serialization throws an Error instead of an exception
+	 */
+	static class FailsToSerialize implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private void writeObject(ObjectOutputStream out) {
+			throw new AssertionError("not serializable after all");
+		}
+	}
+
+}
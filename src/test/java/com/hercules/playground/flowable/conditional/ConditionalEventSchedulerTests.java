@@ -0,0 +1,87 @@
+package com.hercules.playground.flowable.conditional;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * Conditional.boundaryEventTriggered without calling evaluateConditionalEvents by hand
+ * <br>
+ * The scheduler runs once an hour here, the tests flush it so they do not depend on timing
+ */
+@FlowableTest
+public class ConditionalEventSchedulerTests {
+
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+	private ConditionalEventScheduler scheduler;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+		this.scheduler = ConditionalEventScheduler.register(processEngine, 3_600_000, 10);
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.scheduler.close();
+	}
+
+	/**
+	 * Question: Does setting the variable the condition reads fire the conditional boundary event?
+	 * <br>
+	 * Answer: Yes, once the scheduler has evaluated the queued process instance
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/conditional/Conditional.boundaryEventTriggered.bpmn20.xml")
+	@Test
+	public void settingTheConditionVariableTriggersTheBoundary() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("conditional",
+				Map.of("condition", false));
+		this.scheduler.flush();
+		assertEquals(1, this.taskService.createTaskQuery().active().list().size());
+
+		this.runtimeService.setVariable(processInstance.getId(), "condition", true);
+		assertEquals(1, this.scheduler.getQueued());
+		this.scheduler.flush();
+
+		assertAll(() -> assertEquals(1, this.taskService.createTaskQuery().taskName("Step 1").count()),
+				() -> assertEquals(1, this.taskService.createTaskQuery().taskName("Step 2").count()),
+				() -> assertEquals(0, this.scheduler.getQueued()));
+	}
+
+	/**
+	 * Question: Does every variable change cause an evaluation?
+	 * <br>
+	 * Answer: No, only variables the conditional event expressions read queue the process instance
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/conditional/Conditional.boundaryEventTriggered.bpmn20.xml")
+	@Test
+	public void unrelatedVariablesAreIgnored() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("conditional",
+				Map.of("condition", false));
+		this.scheduler.flush();
+		long evaluatedAfterStart = this.scheduler.getEvaluated();
+
+		this.runtimeService.setVariable(processInstance.getId(), "somethingElse", true);
+
+		assertAll(() -> assertEquals(0, this.scheduler.getQueued()),
+				() -> assertEquals(evaluatedAfterStart, this.scheduler.getEvaluated()),
+				() -> assertEquals(1, this.taskService.createTaskQuery().active().list().size()));
+	}
+
+}
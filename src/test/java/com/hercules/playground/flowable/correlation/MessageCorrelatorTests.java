@@ -0,0 +1,164 @@
+package com.hercules.playground.flowable.correlation;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.metrics.EngineMetrics;
+import com.hercules.playground.flowable.metrics.InMemoryMetricsRegistry;
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * Question: Can the broker deliver OrderedPizza more than once without the pizza being cooked twice?
+ * <br>
+ * Answer: Yes, through the MessageCorrelator, which delivers each dedup id once
+ */
+@FlowableTest
+public class MessageCorrelatorTests {
+
+	private static final String MESSAGE_EVENTS_RESOURCE = "com/hercules/playground/flowable/events/message/MessageEvents.howToDoBasicSignalCoordination.bpmn20.xml";
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+	}
+
+	/**
+	 * The message boundary on Order Pizza does not cancel, every delivery would create another Cook and deliver pizza task,
+	 * a redelivery does not
+	 */
+	@Deployment(resources = MESSAGE_EVENTS_RESOURCE)
+	@Test
+	public void redeliveriesAreDuplicates() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("messageEvents", "order-1");
+		MessageCorrelator correlator = new MessageCorrelator(this.processEngine);
+		CorrelationMessage ordered = new CorrelationMessage("OrderedPizza", "order-1", Map.of("pizza", "margherita"),
+				id());
+
+		assertAll(() -> assertEquals(Correlation.DELIVERED, correlator.correlate(ordered)),
+				() -> assertEquals(Correlation.DUPLICATE, correlator.correlate(ordered)),
+				() -> assertEquals(Correlation.UNMATCHED,
+						correlator.correlate(new CorrelationMessage("OrderedPizza", "order-2", null, id()))),
+				() -> assertEquals(2, this.taskService.createTaskQuery().active().list().size()),
+				() -> assertEquals("margherita", this.runtimeService.getVariable(processInstance.getId(), "pizza")),
+				() -> assertEquals(1, correlator.getDelivered()), () -> assertEquals(1, correlator.getDuplicates()),
+				() -> assertEquals(1, correlator.getUnmatched()));
+	}
+
+	/**
+	 * Five messages for two orders are delivered in two transactions, a dedup id repeated within them counts once
+	 */
+	@Deployment(resources = MESSAGE_EVENTS_RESOURCE)
+	@Test
+	public void messagesForOneInstanceShareATransaction() {
+		this.runtimeService.startProcessInstanceByKey("messageEvents", "order-1");
+		this.runtimeService.startProcessInstanceByKey("messageEvents", "order-2");
+		MessageCorrelator correlator = new MessageCorrelator(this.processEngine);
+		String repeated = id();
+		InMemoryMetricsRegistry registry = (InMemoryMetricsRegistry) EngineMetrics.registryOf(this.processEngine);
+		registry.reset();
+
+		List<Correlation> correlations = correlator.correlateAll(List.of(
+				new CorrelationMessage("OrderedPizza", "order-1", null, repeated),
+				new CorrelationMessage("OrderedPizza", "order-2", null, id()),
+				new CorrelationMessage("OrderedPizza", "order-1", null, id()),
+				new CorrelationMessage("OrderedPizza", "order-1", null, repeated),
+				new CorrelationMessage("OrderedPizza", "order-2", null, id())));
+
+		assertAll(() -> assertEquals(List.of(Correlation.DELIVERED, Correlation.DELIVERED, Correlation.DELIVERED,
+				Correlation.DUPLICATE, Correlation.DELIVERED), correlations),
+				() -> assertEquals(2, registry.latency("command.CorrelateMessagesCmd.latency").getCount()),
+				() -> assertEquals(6, this.taskService.createTaskQuery().active().list().size()));
+	}
+
+	/**
+	 * A dedup id that fell out of the window, or was delivered before a restart, is still found in the dedup table
+	 * until it is purged
+	 */
+	@Deployment(resources = MESSAGE_EVENTS_RESOURCE)
+	@Test
+	public void persistentDedupIdsOutliveTheWindow() {
+		this.runtimeService.startProcessInstanceByKey("messageEvents", "order-1");
+		MessageCorrelator correlator = new MessageCorrelator(this.processEngine, 1, true);
+		CorrelationMessage first = new CorrelationMessage("OrderedPizza", "order-1", null, id());
+		CorrelationMessage second = new CorrelationMessage("OrderedPizza", "order-1", null, id());
+		correlator.correlate(first);
+		correlator.correlate(second);
+
+		Correlation outOfWindow = correlator.correlate(first);
+		MessageCorrelator restarted = new MessageCorrelator(this.processEngine, 1, true);
+		Correlation afterRestart = restarted.correlate(second);
+		int purged = restarted.purgeDeliveredBefore(Instant.now().plusSeconds(1));
+		Correlation afterPurge = new MessageCorrelator(this.processEngine, 1, true).correlate(first);
+
+		assertAll(() -> assertEquals(Correlation.DUPLICATE, outOfWindow),
+				() -> assertEquals(Correlation.DUPLICATE, afterRestart), () -> assertTrue(purged >= 2),
+				() -> assertEquals(Correlation.DELIVERED, afterPurge),
+				() -> assertEquals(4, this.taskService.createTaskQuery().active().list().size()));
+	}
+
+	/**
+	 * A delivery that fails leaves no dedup id behind, the redelivery of the message goes through
+	 */
+	@Deployment(resources = MESSAGE_EVENTS_RESOURCE)
+	@Test
+	public void failedDeliveryIsRedelivered() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("messageEvents", "order-1");
+		MessageCorrelator correlator = new MessageCorrelator(this.processEngine, 100, true);
+		CorrelationMessage ordered = new CorrelationMessage("OrderedPizza", "order-1",
+				Map.of("pizza", new FailsToSerializeOnce()), id());
+
+		Correlation failed = correlator.correlate(ordered);
+		Correlation redelivered = correlator.correlate(ordered);
+
+		assertAll(() -> assertEquals(Correlation.FAILED, failed), () -> assertEquals(Correlation.DELIVERED, redelivered),
+				() -> assertEquals(2, this.taskService.createTaskQuery().active().list().size()),
+				() -> assertTrue(this.runtimeService.getVariable(processInstance.getId(), "pizza") instanceof FailsToSerializeOnce));
+	}
+
+	private static String id() {
+		return UUID.randomUUID().toString();
+	}
+
+	/**
+	 * A payload whose first serialization fails, the variable write of the first delivery throws
+	 */
+	static class FailsToSerializeOnce implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		private static final AtomicBoolean FAILED = new AtomicBoolean();
+
+		private void writeObject(ObjectOutputStream out) throws IOException {
+			if (FAILED.compareAndSet(false, true)) {
+				throw new IOException("the first serialization fails");
+			}
+			out.defaultWriteObject();
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.hercules.playground.flowable.deployment;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.App;
+
+/**
+ * Question: Does an engine need to validate the same bpmn xml every time it is deployed?
+ * <br>
+ * Answer: No, the content hash says whether these bytes were validated before, and the process runs the same parsed without validation
+ */
+public class BpmnValidationCacheTests {
+
+	private static final String GATEWAY_RESOURCE = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml";
+
+	/**
+	 * The second deployment of the same resource is a hit, and the process it deploys still forks into three tasks
+	 */
+	@Test
+	public void redeployingTheSameResourceIsAHit() {
+		BpmnValidationCache cache = new BpmnValidationCache();
+		ProcessEngine processEngine = buildEngine(cache, true);
+		try {
+			deploy(processEngine);
+			deploy(processEngine);
+
+			processEngine.getRuntimeService().startProcessInstanceByKey("GatewayTests.ParralleGateProcessVariableMerge");
+			Task task = processEngine.getTaskService().createTaskQuery().singleResult();
+			processEngine.getTaskService().complete(task.getId());
+
+			assertAll(() -> assertEquals(1, cache.getMisses()), () -> assertEquals(1, cache.getHits()),
+					() -> assertEquals(1, cache.size()),
+					() -> assertEquals(3, processEngine.getTaskService().createTaskQuery().count()),
+					() -> assertEquals(2, processEngine.getRepositoryService().createProcessDefinitionQuery()
+							.processDefinitionKey("GatewayTests.ParralleGateProcessVariableMerge").count()));
+		} finally {
+			processEngine.close();
+		}
+	}
+
+	/**
+	 * Without diagrams on deploy the form parsed has no BPMNDiagram, the deployment keeps the resource as it was given
+	 */
+	@Test
+	public void diagramInterchangeIsSkippedWhenNoDiagramIsCreated() throws IOException {
+		BpmnValidationCache cache = new BpmnValidationCache();
+		ProcessEngine processEngine = buildEngine(cache, false);
+		try {
+			deploy(processEngine);
+
+			RepositoryService repositoryService = processEngine.getRepositoryService();
+			ProcessDefinition processDefinition = repositoryService.createProcessDefinitionQuery().singleResult();
+			byte[] deployed;
+			try (InputStream resource = repositoryService.getResourceAsStream(processDefinition.getDeploymentId(),
+					GATEWAY_RESOURCE)) {
+				deployed = resource.readAllBytes();
+			}
+			String compiled = new String(BpmnValidationCache.withoutDiagrams(deployed), StandardCharsets.UTF_8);
+
+			assertAll(() -> assertArrayEquals(original(), deployed),
+					() -> assertFalse(compiled.contains("BPMNDiagram")),
+					() -> assertTrue(compiled.contains("parallelGateway")),
+					() -> assertFalse(processDefinition.hasGraphicalNotation()),
+					() -> assertTrue(repositoryService.getBpmnModel(processDefinition.getId()).getLocationMap().isEmpty()));
+		} finally {
+			processEngine.close();
+		}
+	}
+
+	private static ProcessEngine buildEngine(BpmnValidationCache cache, boolean diagrams) {
+		ProcessEngineConfiguration configuration = App
+				.createConfiguration("jdbc:h2:mem:validation-cache-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")
+				.setCreateDiagramOnDeploy(diagrams);
+		return cache.install(configuration).buildProcessEngine();
+	}
+
+	private static void deploy(ProcessEngine processEngine) {
+		processEngine.getRepositoryService().createDeployment().addClasspathResource(GATEWAY_RESOURCE).deploy();
+	}
+
+	private static byte[] original() throws IOException {
+		try (InputStream resource = BpmnValidationCacheTests.class.getClassLoader().getResourceAsStream(GATEWAY_RESOURCE)) {
+			return resource.readAllBytes();
+		}
+	}
+
+}
@@ -18,6 +18,8 @@ import org.flowable.task.api.Task;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
 /**
  * Looks like conditional events can be either 
  * Starting,
@@ -46,9 +48,7 @@ public class Conditional {
 	void setUp(ProcessEngine processEngine) {
 		this.runtimeService = processEngine.getRuntimeService();
 		this.taskService = processEngine.getTaskService();
-		this.runtimeService.createProcessInstanceQuery().list().parallelStream()
-				.forEach((processInstance) -> this.runtimeService
-						.deleteProcessInstance(processInstance.getProcessInstanceId(), "RESET DATA"));
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
 	}
 	
 	/**
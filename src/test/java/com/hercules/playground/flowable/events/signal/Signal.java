@@ -18,6 +18,8 @@ import org.flowable.task.api.Task;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
 /**
  * Template Testing,
  * <br>
@@ -38,9 +40,7 @@ public class Signal {
 	void setUp(ProcessEngine processEngine) {
 		this.runtimeService = processEngine.getRuntimeService();
 		this.taskService = processEngine.getTaskService();
-		this.runtimeService.createProcessInstanceQuery().list().parallelStream()
-				.forEach((processInstance) -> this.runtimeService
-						.deleteProcessInstance(processInstance.getProcessInstanceId(), "RESET DATA"));
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
 	}
 
 
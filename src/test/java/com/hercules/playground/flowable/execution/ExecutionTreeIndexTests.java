@@ -0,0 +1,164 @@
+package com.hercules.playground.flowable.execution;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.delegate.event.impl.FlowableEventBuilder;
+import org.flowable.engine.impl.persistence.entity.ExecutionEntityImpl;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.flowable.eventsubscription.api.EventSubscription;
+import org.flowable.eventsubscription.service.impl.persistence.entity.SignalEventSubscriptionEntityImpl;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * Signal.signalProcessScopeApi and the gateway join without the execution queries, the index walks the tree
+ */
+@FlowableTest
+public class ExecutionTreeIndexTests {
+
+	private static final String JOIN = "sid-7CA02DB7-00BC-4C31-8FA7-C681F023F935";
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+	private ExecutionTreeIndex index;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+		this.index = ExecutionTreeIndex.register(processEngine);
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.index.close();
+	}
+
+	/**
+	 * Question: Can a process scoped signal be sent to one instance from outside, where runtimeService.signalEventReceived does nothing?
+	 * <br>
+	 * Answer: Yes, the index finds the execution of that instance waiting for it, its scope is the process instance,
+	 * and only that instance moves on to PROCESS RESULT
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/signal/Signal.signalProcessScopeApi.bpmn20.xml")
+	@Test
+	public void processScopedSignalReachesOneInstance() {
+		ProcessInstance signalled = this.runtimeService.startProcessInstanceByKey("signalScope");
+		ProcessInstance other = this.runtimeService.startProcessInstanceByKey("signalScope");
+		this.taskService.createTaskQuery().active().list().forEach((task) -> this.taskService.complete(task.getId()));
+
+		List<String> subscribed = this.index.findSubscriptions(signalled.getId(), ExecutionTreeIndex.SIGNAL,
+				"processScope");
+		String queried = this.runtimeService.createExecutionQuery().processInstanceId(signalled.getId())
+				.signalEventSubscriptionName("processScope").singleResult().getId();
+		assertAll(() -> assertEquals(List.of(queried), subscribed),
+				() -> assertEquals(signalled.getId(), this.index.findScope(signalled.getId(), queried)));
+
+		assertEquals(1, this.index.signalProcessInstance("processScope", signalled.getId()));
+
+		assertAll(
+				() -> assertEquals(1, this.taskService.createTaskQuery().processInstanceId(signalled.getId())
+						.taskName("PROCESS RESULT").count()),
+				() -> assertEquals(0, this.taskService.createTaskQuery().processInstanceId(other.getId()).count()),
+				() -> assertTrue(this.index.findSubscriptions(signalled.getId(), ExecutionTreeIndex.SIGNAL, "processScope")
+						.isEmpty()),
+				() -> assertEquals(1, this.index.findSubscriptions(other.getId(), ExecutionTreeIndex.SIGNAL, "processScope")
+						.size()));
+	}
+
+	/**
+	 * Question: Can the tokens that reached the join be counted without a query?
+	 * <br>
+	 * Answer: Yes, after one of the three branches is completed one token waits at the join,
+	 * and the tree is dropped with its process instance
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml")
+	@Test
+	public void arrivalsAtTheJoinAreCounted() {
+		ProcessInstance processInstance = this.runtimeService
+				.startProcessInstanceByKey("GatewayTests.ParralleGateProcessVariableMerge");
+		this.taskService.complete(this.taskService.createTaskQuery().processInstanceId(processInstance.getId())
+				.taskName("Step 1").singleResult().getId());
+		assertEquals(0, this.index.arrivalsAt(processInstance.getId(), JOIN));
+
+		Task step2 = this.taskService.createTaskQuery().processInstanceId(processInstance.getId()).taskName("Step 2")
+				.singleResult();
+		this.taskService.complete(step2.getId());
+
+		// the execution query's activityId only matches active executions, the one waiting at the join is not
+		assertAll(() -> assertEquals(1, this.index.arrivalsAt(processInstance.getId(), JOIN)),
+				() -> assertEquals(List.of(step2.getExecutionId()), this.index.executionsAt(processInstance.getId(), JOIN)),
+				() -> assertEquals(
+						this.runtimeService.createExecutionQuery().processInstanceId(processInstance.getId()).count(),
+						this.index.executionCount()));
+
+		this.runtimeService.deleteProcessInstance(processInstance.getId(), "done");
+		assertFalse(this.index.contains(processInstance.getId()));
+	}
+
+	/**
+	 * A tree holding only a subscription id that is gone, the new one not yet applied, still gets the signal through
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/signal/Signal.signalProcessScopeApi.bpmn20.xml")
+	@Test
+	public void staleSubscriptionIdsFallBackToTheQuery() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("signalScope");
+		this.taskService.createTaskQuery().active().list().forEach((task) -> this.taskService.complete(task.getId()));
+		EventSubscription subscription = this.runtimeService.createEventSubscriptionQuery()
+				.processInstanceId(processInstance.getId()).eventName("processScope").singleResult();
+		SignalEventSubscriptionEntityImpl replaced = this.processEngine.getManagementService()
+				.executeCommand((Command<SignalEventSubscriptionEntityImpl>) commandContext -> {
+					SignalEventSubscriptionEntityImpl entity = new SignalEventSubscriptionEntityImpl();
+					entity.setId("replaced-" + subscription.getId());
+					entity.setEventName(subscription.getEventName());
+					entity.setExecutionId(subscription.getExecutionId());
+					entity.setProcessInstanceId(subscription.getProcessInstanceId());
+					return entity;
+				});
+		this.index.onEvent(FlowableEventBuilder.createEntityEvent(FlowableEngineEventType.ENTITY_DELETED, subscription));
+		this.index.onEvent(FlowableEventBuilder.createEntityEvent(FlowableEngineEventType.ENTITY_CREATED, replaced));
+
+		assertAll(() -> assertEquals(1, this.index.signalProcessInstance("processScope", processInstance.getId())),
+				() -> assertEquals(1, this.taskService.createTaskQuery().processInstanceId(processInstance.getId())
+						.taskName("PROCESS RESULT").count()));
+	}
+
+	/**
+	 * The event of a child execution applied after its process instance was deleted does not bring a tree back
+	 */
+	@Test
+	public void childAfterItsRootLeavesNoTree() {
+		ExecutionEntityImpl child = this.processEngine.getManagementService()
+				.executeCommand((Command<ExecutionEntityImpl>) commandContext -> {
+					ExecutionEntityImpl entity = new ExecutionEntityImpl();
+					entity.setId("child");
+					entity.setParentId("deleted");
+					entity.setProcessInstanceId("deleted");
+					return entity;
+				});
+
+		this.index.onEvent(FlowableEventBuilder.createEntityEvent(FlowableEngineEventType.ENTITY_CREATED, child));
+
+		assertAll(() -> assertFalse(this.index.contains("deleted")), () -> assertEquals(0, this.index.executionCount()));
+	}
+
+}
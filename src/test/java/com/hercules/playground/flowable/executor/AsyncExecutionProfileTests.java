@@ -0,0 +1,91 @@
+package com.hercules.playground.flowable.executor;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.flowable.common.engine.api.delegate.event.AbstractFlowableEventListener;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.impl.test.JobTestHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.App;
+import com.hercules.playground.flowable.snapshot.EngineSnapshot;
+
+/**
+ * Question: Can MessageEvents.canYouStartASubprocessWithAnEvent run its subprocesses outside of the signal's transaction?
+ * <br>
+ * Answer: Yes, with the AsyncExecutionProfile the signal only starts them, the async executor runs them
+ */
+public class AsyncExecutionProfileTests {
+
+	private ProcessEngine processEngine;
+
+	@BeforeEach
+	void buildEngine() {
+		// row locks, the executor threads would deadlock on H2's table locks
+		this.processEngine = EngineSnapshot.of(Paths.get("target", "engine-snapshots"),
+				"com/hercules/playground/flowable/events/message/MessageEvents.canYouStartASubprocessWithAnEvent.bpmn20.xml")
+				.buildProcessEngine(new AsyncExecutionProfile().threads(2).acquisitionBatchSize(4).lockOwner("node-a")
+						.install(App.createConfiguration(
+								"jdbc:h2:mem:async-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MVCC=TRUE")));
+	}
+
+	@AfterEach
+	void closeEngine() {
+		this.processEngine.close();
+	}
+
+	/**
+	 * The Async event task of each subprocess is created by an executor thread, once its job ran
+	 */
+	@Test
+	public void signalStartedSubprocessesRunOnTheExecutor() {
+		Set<String> taskCreatingThreads = ConcurrentHashMap.newKeySet();
+		AtomicInteger jobsExecuted = new AtomicInteger();
+		RuntimeService runtimeService = this.processEngine.getRuntimeService();
+		runtimeService.addEventListener(new AbstractFlowableEventListener() {
+
+			@Override
+			public void onEvent(FlowableEvent event) {
+				if (event.getType() == FlowableEngineEventType.TASK_CREATED) {
+					taskCreatingThreads.add(Thread.currentThread().getName());
+				} else {
+					jobsExecuted.incrementAndGet();
+				}
+			}
+
+			@Override
+			public boolean isFailOnException() {
+				return false;
+			}
+		}, FlowableEngineEventType.TASK_CREATED, FlowableEngineEventType.JOB_EXECUTION_SUCCESS);
+		for (int i = 0; i < 5; i++) {
+			runtimeService.startProcessInstanceByKey("asynchroniousTask");
+		}
+		taskCreatingThreads.clear();
+
+		runtimeService.signalEventReceived("startASubTask");
+		JobTestHelper.waitForJobExecutorToProcessAllJobs(this.processEngine.getProcessEngineConfiguration(),
+				this.processEngine.getManagementService(), 10_000, 50);
+
+		assertAll(() -> assertEquals(5, jobsExecuted.get()),
+				() -> assertEquals(5,
+						this.processEngine.getTaskService().createTaskQuery().taskName("Async event").count()),
+				() -> assertFalse(taskCreatingThreads.contains(Thread.currentThread().getName())),
+				() -> assertEquals("node-a",
+						this.processEngine.getProcessEngineConfiguration().getAsyncExecutor().getLockOwner()));
+	}
+
+}
@@ -0,0 +1,157 @@
+package com.hercules.playground.flowable.expression;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.flowable.common.engine.api.delegate.Expression;
+import org.flowable.common.engine.api.variable.VariableContainer;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.engine.impl.delegate.invocation.DefaultDelegateInterceptor;
+import org.flowable.engine.impl.el.ProcessExpressionManager;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.App;
+import com.hercules.playground.flowable.snapshot.EngineSnapshot;
+
+/**
+ * Question: Does ${condition == true} of the conditional note have to go through EL on every evaluateConditionalEvents?
+ * <br>
+ * Answer: No, with the ExpressionCache it is parsed once and evaluated by a lambda, with the same result
+ */
+public class ExpressionCacheTests {
+
+	private static final String CONDITIONAL_RESOURCE = "com/hercules/playground/flowable/events/conditional/Conditional.boundaryEventTriggered.bpmn20.xml";
+
+	private ExpressionCache cache;
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+
+	@BeforeEach
+	void buildEngine() {
+		this.cache = new ExpressionCache();
+		this.processEngine = EngineSnapshot.of(Paths.get("target", "engine-snapshots"), CONDITIONAL_RESOURCE)
+				.buildProcessEngine(this.cache.install(
+						App.createConfiguration("jdbc:h2:mem:expression-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")));
+		this.runtimeService = this.processEngine.getRuntimeService();
+	}
+
+	@AfterEach
+	void closeEngine() {
+		this.processEngine.close();
+	}
+
+	/**
+	 * The boundary fires once the condition holds, its expression is parsed on the first evaluation only
+	 */
+	@Test
+	public void conditionIsCompiledOnce() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("conditional",
+				Map.of("condition", false));
+		for (int i = 0; i < 5; i++) {
+			this.runtimeService.evaluateConditionalEvents(processInstance.getId());
+		}
+		this.runtimeService.setVariable(processInstance.getId(), "condition", true);
+		this.runtimeService.evaluateConditionalEvents(processInstance.getId());
+
+		assertAll(() -> assertEquals(2, taskCount(processInstance)), () -> assertEquals(1, this.cache.getCompiled()),
+				() -> assertTrue(this.cache.getHits() >= 5), () -> assertEquals(0, this.cache.getInterpreted()));
+	}
+
+	/**
+	 * EL takes the string "true" as true, the lambda only compares booleans and leaves it to the interpreted expression
+	 */
+	@Test
+	public void otherTypesAreInterpreted() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("conditional",
+				Map.of("condition", "true"));
+		this.runtimeService.evaluateConditionalEvents(processInstance.getId());
+
+		assertAll(() -> assertEquals(2, taskCount(processInstance)),
+				() -> assertEquals(1, this.cache.getInterpreted()));
+	}
+
+	/**
+	 * Every compiled form gives what EL gives, for the values it takes and those it hands over
+	 */
+	@Test
+	public void compiledExpressionsEvaluateLikeEl() {
+		ProcessExpressionManager el = new ProcessExpressionManager(new DefaultDelegateInterceptor(), null);
+		CachingExpressionManager compiling = new CachingExpressionManager(this.cache,
+				(ProcessEngineConfigurationImpl) this.processEngine.getProcessEngineConfiguration());
+		List<String> expressions = List.of("${value}", "${!value}", "${not value}", "${value == true}",
+				"${value != false}", "${value == null}", "${value ne null}", "${value == 'open'}", "${value < 'm'}",
+				"${value >= 10}", "${value gt -1}", "${value <= 2.5}", "${value == 3}");
+		List<Object> values = List.of(true, false, "open", "closed", "true", 3, 3L, 10, 2.5d, 11.0f, (short) -1);
+		for (String text : expressions) {
+			Expression expression = compiling.createExpression(text);
+			assertTrue(expression instanceof CompiledExpression, text);
+			for (Object value : values) {
+				VariableContainer variables = variables(value);
+				assertEquals(evaluate(el.createExpression(text), variables), evaluate(expression, variables),
+						text + " with " + value);
+			}
+			VariableContainer unset = variables(null);
+			assertEquals(evaluate(el.createExpression(text), unset), evaluate(expression, unset), text + " with null");
+		}
+		assertAll(() -> assertNull(ExpressionCompiler.compile("${value == 1 && other}")),
+				() -> assertNull(ExpressionCompiler.compile("${execution}")),
+				() -> assertNull(ExpressionCompiler.compile("${value == 5 ? 1 : 0}")),
+				() -> assertNull(ExpressionCompiler.compile("${value < true}")));
+	}
+
+	private long taskCount(ProcessInstance processInstance) {
+		return this.processEngine.getTaskService().createTaskQuery().processInstanceId(processInstance.getId()).count();
+	}
+
+	/**
+	 * The value, or the exception's type when EL cannot compare it
+	 */
+	private static Object evaluate(Expression expression, VariableContainer variables) {
+		try {
+			return expression.getValue(variables);
+		} catch (RuntimeException e) {
+			return e.getClass();
+		}
+	}
+
+	private static VariableContainer variables(Object value) {
+		Map<String, Object> variables = new HashMap<>();
+		variables.put("value", value);
+		return new VariableContainer() {
+
+			@Override
+			public boolean hasVariable(String variableName) {
+				return variables.containsKey(variableName);
+			}
+
+			@Override
+			public Object getVariable(String variableName) {
+				return variables.get(variableName);
+			}
+
+			@Override
+			public void setVariable(String variableName, Object variableValue) {
+				variables.put(variableName, variableValue);
+			}
+
+			@Override
+			public void setTransientVariable(String variableName, Object variableValue) {
+				variables.put(variableName, variableValue);
+			}
+		};
+	}
+
+}
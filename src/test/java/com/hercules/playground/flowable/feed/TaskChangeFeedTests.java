@@ -0,0 +1,155 @@
+package com.hercules.playground.flowable.feed;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * GatewayTests.whatHappensToProcessVariablesWhenTokensMerge followed through the feed instead of task queries
+ */
+@FlowableTest
+public class TaskChangeFeedTests {
+
+	private static final String GATEWAY_RESOURCE = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml";
+	private static final String GATEWAY_KEY = "GatewayTests.ParralleGateProcessVariableMerge";
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+	private TaskChangeFeed feed;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+		this.feed = TaskChangeFeed.register(processEngine, 8);
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.feed.close();
+	}
+
+	/**
+	 * Question: Does a subscriber see every task change of an instance, in the order the engine made them?
+	 * <br>
+	 * Answer: Yes, one change per task event with consecutive sequences.
+	 * Completing Step 1 deletes its row too, the feed only tells about the completion.
+	 * Deleting the instance deletes the three open branches
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void changesArriveInCommitOrder() throws InterruptedException {
+		List<TaskChange> received = new CopyOnWriteArrayList<>();
+		Subscription subscription = this.feed.subscribe(received::add);
+
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY);
+		Task step1 = this.taskService.createTaskQuery().processInstanceId(processInstance.getId()).singleResult();
+		this.taskService.setAssignee(step1.getId(), "kermit");
+		this.taskService.complete(step1.getId());
+		this.runtimeService.deleteProcessInstance(processInstance.getId(), "done");
+
+		assertTrue(subscription.await(this.feed.getHead(), 5, TimeUnit.SECONDS));
+		subscription.close();
+		assertAll(
+				() -> assertEquals("CREATED Step 1, ASSIGNED Step 1, COMPLETED Step 1, CREATED, CREATED, CREATED, DELETED, DELETED, DELETED",
+						received.stream().map(change -> change.getType() + (change.getTaskId().equals(step1.getId())
+								? " " + change.getName() : "")).collect(Collectors.joining(", "))),
+				() -> assertEquals("kermit", received.get(1).getAssignee()),
+				() -> assertEquals(received.get(0).getSequence() + 8, received.get(8).getSequence()));
+	}
+
+	/**
+	 * Question: What does a subscriber starting behind the ring get?
+	 * <br>
+	 * Answer: A gap for the changes already overwritten, then the last capacity changes replayed in order
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void lateSubscribersReplayTheRing() throws InterruptedException {
+		long from = this.feed.getHead();
+		for (int i = 0; i < 3; i++) {
+			String processInstanceId = this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY).getId();
+			this.taskService.complete(
+					this.taskService.createTaskQuery().processInstanceId(processInstanceId).singleResult().getId());
+		}
+		long head = this.feed.getHead();
+		List<TaskChange> received = new CopyOnWriteArrayList<>();
+		List<long[]> gaps = new CopyOnWriteArrayList<>();
+		Subscription subscription = this.feed.subscribe(from, new TaskChangeSubscriber() {
+			@Override
+			public void onChange(TaskChange change) {
+				received.add(change);
+			}
+
+			@Override
+			public void onGap(long fromSequence, long toSequence) {
+				gaps.add(new long[] { fromSequence, toSequence });
+			}
+		});
+
+		assertTrue(subscription.await(head, 5, TimeUnit.SECONDS));
+		subscription.close();
+		assertAll(() -> assertEquals(15, head - from), () -> assertEquals(1, gaps.size()),
+				() -> assertEquals(from, gaps.get(0)[0]), () -> assertEquals(head - 9, gaps.get(0)[1]),
+				() -> assertEquals(8, received.size()), () -> assertEquals(head - 8, received.get(0).getSequence()));
+	}
+
+	/**
+	 * Question: Does an inbox opened on running instances hold the tasks the active task query finds, as they change?
+	 * <br>
+	 * Answer: Yes, without querying again, unless the ring of 8 changes ran past it
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void inboxFollowsTheActiveTasks() throws InterruptedException {
+		String running = this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY).getId();
+		try (TaskInbox inbox = TaskInbox.open(this.processEngine, this.feed)) {
+			assertEquals(activeTaskIds(), inboxTaskIds(inbox));
+
+			this.taskService.complete(this.taskService.createTaskQuery().processInstanceId(running).singleResult().getId());
+			String started = this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY).getId();
+			this.taskService.setAssignee(
+					this.taskService.createTaskQuery().processInstanceId(started).singleResult().getId(), "gonzo");
+			assertTrue(inbox.sync(5, TimeUnit.SECONDS));
+			assertAll(() -> assertEquals(activeTaskIds(), inboxTaskIds(inbox)),
+					() -> assertEquals("gonzo", inbox.getTasks(started).get(0).getAssignee()),
+					() -> assertEquals(0, inbox.getReloads()));
+
+			this.runtimeService.deleteProcessInstance(running, "done");
+			assertTrue(inbox.sync(5, TimeUnit.SECONDS));
+			assertAll(() -> assertEquals(activeTaskIds(), inboxTaskIds(inbox)),
+					() -> assertTrue(inbox.getTasks(running).isEmpty()));
+		}
+	}
+
+	private Set<String> activeTaskIds() {
+		return this.taskService.createTaskQuery().active().list().stream().map(Task::getId).collect(Collectors.toSet());
+	}
+
+	private static Set<String> inboxTaskIds(TaskInbox inbox) {
+		return inbox.getTasks().stream().map(TaskChange::getTaskId).collect(Collectors.toSet());
+	}
+
+}
@@ -19,6 +19,8 @@ import org.flowable.variable.api.persistence.entity.VariableInstance;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
 
 /**
  * Template Testing,
@@ -40,9 +42,7 @@ public class GatewayTests {
 	void setUp(ProcessEngine processEngine) {
 		this.runtimeService = processEngine.getRuntimeService();
 		this.taskService = processEngine.getTaskService();
-		this.runtimeService.createProcessInstanceQuery().list().parallelStream()
-				.forEach((processInstance) -> this.runtimeService
-						.deleteProcessInstance(processInstance.getProcessInstanceId(), "RESET DATA"));
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
 	}
 
 	/**
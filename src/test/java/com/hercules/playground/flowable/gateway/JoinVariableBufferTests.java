@@ -0,0 +1,174 @@
+package com.hercules.playground.flowable.gateway;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.flowable.task.api.Task;
+import org.flowable.variable.api.persistence.entity.VariableInstance;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.execution.ExecutionTreeIndex;
+import com.hercules.playground.flowable.metrics.EngineMetrics;
+import com.hercules.playground.flowable.metrics.InMemoryMetricsRegistry;
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * GatewayTests.whatHappensToProcessVariablesWhenTokensMerge with the branch writes going through the JoinVariableBuffer
+ */
+@FlowableTest
+public class JoinVariableBufferTests {
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+	private JoinVariableBuffer buffer;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		this.buffer = new JoinVariableBuffer(processEngine);
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+	}
+
+	/**
+	 * Question: Does buffering the branch writes change what the merged process sees?
+	 * <br>
+	 * Answer: No, the last write still wins, the branch writes only reach the database when the join fires
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml")
+	@Test
+	public void mergeSemanticsAreKept() {
+		ProcessInstance processInstance = this.runtimeService
+				.startProcessInstanceByKey("GatewayTests.ParralleGateProcessVariableMerge");
+
+		Task task = this.taskService.createTaskQuery().singleResult();
+		this.buffer.setVariable(task, "ORIGIONAL", "THIS IS THE ORIGIONAL");
+		this.buffer.setVariable(task, "VARIABLE 1", "THIS GETS OVERWRITTEN IN TASK 2");
+		this.buffer.complete(task);
+		// Step 1 leads into the fork, not a join, so its writes are flushed right away
+		assertEquals("THIS IS THE ORIGIONAL", this.runtimeService.getVariable(processInstance.getId(), "ORIGIONAL"));
+
+		List<Task> afterParalleGatewayTasks = this.taskService.createTaskQuery().active().list();
+		Task task2 = named(afterParalleGatewayTasks, "Step 2");
+		this.buffer.setVariable(task2, "VARIABLE 2", "VARIABLE 2");
+		this.buffer.setVariable(task2, "VARIABLE 1", "TASK 2 OVERWRITES VARIABLE 1");
+		this.buffer.setVariable(task2, "WHICH VARIABLE", "THIS IS FROM TASK 2");
+
+		Task task3 = named(afterParalleGatewayTasks, "Step 3");
+		this.buffer.setVariable(task3, "VARIABLE 3", "VARIABLE 3");
+		this.buffer.setVariable(task3, "WHICH VARIABLE", "THIS IS FROM TASK 3");
+
+		Task task4 = named(afterParalleGatewayTasks, "Step 4");
+		this.buffer.setVariable(task4, "VARIABLE 4", "VARIABLE 4");
+
+		this.buffer.complete(task2);
+		this.buffer.complete(task3);
+		// two of three branches have arrived, the join still waits and nothing has been written
+		assertAll(() -> assertNull(this.runtimeService.getVariable(processInstance.getId(), "WHICH VARIABLE")),
+				() -> assertEquals(5, this.buffer.getBufferedVariables(processInstance.getId()).size()));
+		this.buffer.complete(task4);
+
+		List<Task> finalTaskList = this.taskService.createTaskQuery().active().list();
+		assertTrue(finalTaskList.size() == 1);
+		Map<String, VariableInstance> variableInstances = this.runtimeService
+				.getVariableInstances(finalTaskList.get(0).getExecutionId());
+		this.taskService.complete(finalTaskList.get(0).getId());
+
+		assertAll(
+				() -> assertTrue(variableInstances.get("WHICH VARIABLE").getTextValue().equalsIgnoreCase("THIS IS FROM TASK 3")),
+				() -> assertTrue(variableInstances.get("ORIGIONAL").getTextValue().equalsIgnoreCase("THIS IS THE ORIGIONAL")),
+				() -> assertTrue(variableInstances.get("VARIABLE 1").getTextValue().equalsIgnoreCase("TASK 2 OVERWRITES VARIABLE 1")),
+				() -> assertTrue(variableInstances.get("VARIABLE 2").getTextValue().equalsIgnoreCase("VARIABLE 2")),
+				() -> assertTrue(variableInstances.get("VARIABLE 3").getTextValue().equalsIgnoreCase("VARIABLE 3")),
+				() -> assertTrue(variableInstances.get("VARIABLE 4").getTextValue().equalsIgnoreCase("VARIABLE 4")),
+				() -> assertTrue(this.buffer.getBufferedVariables(processInstance.getId()).isEmpty()),
+				() -> assertTrue(this.taskService.createTaskQuery().active().list().isEmpty()));
+	}
+
+	/**
+	 * Question: Does the buffer still ask the database whether the join waits once it has an ExecutionTreeIndex?
+	 * <br>
+	 * Answer: Not for the last branch, the index already counts the two waiting and Step 4 is flushed with one statement
+	 * less, the query for the tokens at the join. A branch the index says still waits is asked of the database all the same,
+	 * the index may not have heard of an arrival yet
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml")
+	@Test
+	public void lastArrivalAtTheJoinIsCountedByTheIndex() {
+		InMemoryMetricsRegistry registry = (InMemoryMetricsRegistry) EngineMetrics.registryOf(this.processEngine);
+		long[] statements = new long[2];
+		try (ExecutionTreeIndex index = ExecutionTreeIndex.register(this.processEngine)) {
+			JoinVariableBuffer[] buffers = { this.buffer, new JoinVariableBuffer(this.processEngine, index) };
+			for (int i = 0; i < buffers.length; i++) {
+				JoinVariableBuffer buffer = buffers[i];
+				String processInstanceId = this.runtimeService
+						.startProcessInstanceByKey("GatewayTests.ParralleGateProcessVariableMerge").getId();
+				this.taskService.complete(this.taskService.createTaskQuery().processInstanceId(processInstanceId)
+						.singleResult().getId());
+				List<Task> branches = this.taskService.createTaskQuery().processInstanceId(processInstanceId).list();
+				for (String name : new String[] { "Step 2", "Step 3" }) {
+					Task branch = named(branches, name);
+					buffer.setVariable(branch, name, name);
+					buffer.complete(branch);
+				}
+				assertEquals(2, buffer.getBufferedVariables(processInstanceId).size());
+				Task step4 = named(branches, "Step 4");
+				buffer.setVariable(step4, "Step 4", "Step 4");
+				registry.reset();
+
+				buffer.complete(step4);
+
+				statements[i] = registry.histogram("command.CompleteTaskWithJoinMergeCmd.statements").getMax();
+				assertAll(() -> assertTrue(buffer.getBufferedVariables(processInstanceId).isEmpty()),
+						() -> assertEquals("Step 2", this.runtimeService.getVariable(processInstanceId, "Step 2")));
+			}
+		}
+		assertEquals(statements[0] - 1, statements[1]);
+	}
+
+	/**
+	 * An index that has not heard of the branches already at the join says Step 4 still waits, the query says it fires
+	 * and the buffered variables are written
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml")
+	@Test
+	public void indexBehindTheJoinIsCheckedByTheQuery() {
+		ExecutionTreeIndex index = ExecutionTreeIndex.register(this.processEngine);
+		JoinVariableBuffer buffer = new JoinVariableBuffer(this.processEngine, index);
+		String processInstanceId = this.runtimeService
+				.startProcessInstanceByKey("GatewayTests.ParralleGateProcessVariableMerge").getId();
+		this.taskService.complete(this.taskService.createTaskQuery().processInstanceId(processInstanceId)
+				.singleResult().getId());
+		// from here on the index misses every arrival, as it does while their listeners have yet to run
+		index.close();
+		List<Task> branches = this.taskService.createTaskQuery().processInstanceId(processInstanceId).list();
+		for (String name : new String[] { "Step 2", "Step 3", "Step 4" }) {
+			Task branch = named(branches, name);
+			buffer.setVariable(branch, name, name);
+			buffer.complete(branch);
+		}
+
+		assertAll(() -> assertTrue(buffer.getBufferedVariables(processInstanceId).isEmpty()),
+				() -> assertEquals("Step 2", this.runtimeService.getVariable(processInstanceId, "Step 2")),
+				() -> assertEquals("Step 4", this.runtimeService.getVariable(processInstanceId, "Step 4")));
+	}
+
+	private static Task named(List<Task> tasks, String name) {
+		return tasks.stream().filter((task) -> task.getName().trim().equalsIgnoreCase(name)).findFirst().get();
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.hercules.playground.flowable.history;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.UUID;
+
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.App;
+import com.hercules.playground.flowable.snapshot.EngineSnapshot;
+
+/**
+ * Question: Can the history tables be written behind the api calls instead of inside them?
+ * <br>
+ * Answer: yes, with async history on the engine describes its history as json, the RingBufferHistoryWriter queues it
+ * once the api call committed and writes it in batches. History catches up on flush, or when the engine closes.
+ */
+public class RingBufferHistoryWriterTests {
+
+	private static final String GATEWAY_RESOURCE = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml";
+	private static final String GATEWAY_KEY = "GatewayTests.ParralleGateProcessVariableMerge";
+
+	private String jdbcUrl;
+	private RingBufferHistoryWriter writer;
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+	private HistoryService historyService;
+
+	@BeforeEach
+	void setUp() {
+		this.jdbcUrl = "jdbc:h2:mem:history-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+		// an interval long enough that nothing is written unless the test asks for it
+		this.writer = new RingBufferHistoryWriter(1024, 100, 60_000);
+		ProcessEngineConfiguration configuration = App.createConfiguration(this.jdbcUrl);
+		RingBufferHistoryWriter.install(configuration, this.writer);
+		this.processEngine = EngineSnapshot.of(Paths.get("target", "engine-snapshots"), GATEWAY_RESOURCE)
+				.buildProcessEngine(configuration);
+		this.runtimeService = this.processEngine.getRuntimeService();
+		this.taskService = this.processEngine.getTaskService();
+		this.historyService = this.processEngine.getHistoryService();
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.processEngine.close();
+	}
+
+	/**
+	 * The whole gateway process runs before any of its history is written, flush writes all of it
+	 */
+	@Test
+	public void historyIsWrittenOnFlush() {
+		ProcessInstance processInstance = runGatewayProcess();
+		assertEquals(0, this.historyService.createHistoricProcessInstanceQuery().count());
+
+		this.writer.flush();
+
+		assertAll(() -> assertEquals(1, this.historyService.createHistoricProcessInstanceQuery().finished()
+				.processInstanceId(processInstance.getId()).count()),
+				() -> assertEquals(5, this.historyService.createHistoricTaskInstanceQuery().finished().count()),
+				() -> assertEquals(0, this.writer.getDropped()), () -> assertEquals(0, this.writer.getQueued()),
+				() -> assertTrue(this.writer.getWritten() > 0));
+	}
+
+	/**
+	 * The entries wait for a full batch, flushSize of them are written together
+	 */
+	@Test
+	public void historyIsWrittenInBatches() {
+		for (int i = 0; i < 10; i++) {
+			runGatewayProcess();
+		}
+		this.writer.flush();
+
+		assertAll(() -> assertEquals(10, this.historyService.createHistoricProcessInstanceQuery().finished().count()),
+				() -> assertTrue(this.writer.getBatches() < this.writer.getWritten() / 50,
+						this.writer.getBatches() + " batches for " + this.writer.getWritten() + " entries"));
+	}
+
+	/**
+	 * Closing the engine drains the writer, the history is there for the next engine on the same database
+	 */
+	@Test
+	public void historyIsDrainedOnClose() {
+		ProcessInstance processInstance = runGatewayProcess();
+
+		this.processEngine.close();
+
+		this.processEngine = App.createConfiguration(this.jdbcUrl).buildProcessEngine();
+		assertAll(() -> assertTrue(this.writer.isClosed()),
+				() -> assertEquals(1, this.processEngine.getHistoryService().createHistoricProcessInstanceQuery()
+						.finished().processInstanceId(processInstance.getId()).count()));
+	}
+
+	private ProcessInstance runGatewayProcess() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey(GATEWAY_KEY);
+		while (true) {
+			Task task = this.taskService.createTaskQuery().processInstanceId(processInstance.getId()).listPage(0, 1)
+					.stream().findFirst().orElse(null);
+			if (task == null) {
+				return processInstance;
+			}
+			this.taskService.complete(task.getId());
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.hercules.playground.flowable.id;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.App;
+import com.hercules.playground.flowable.snapshot.EngineSnapshot;
+
+/**
+ * The ids of an engine drawing them from a StripedIdGenerator
+ */
+public class StripedIdGeneratorTests {
+
+	private static final String GATEWAY_RESOURCE = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml";
+	private static final String GATEWAY_KEY = "GatewayTests.ParralleGateProcessVariableMerge";
+
+	private StripedIdGenerator engineIdGenerator;
+	private ProcessEngine processEngine;
+	private ProcessEngineConfigurationImpl engineConfiguration;
+
+	@BeforeEach
+	void buildEngine() {
+		this.engineIdGenerator = new StripedIdGenerator();
+		this.processEngine = EngineSnapshot.of(Paths.get("target", "engine-snapshots"), GATEWAY_RESOURCE)
+				.buildProcessEngine(this.engineIdGenerator.install(
+						App.createConfiguration("jdbc:h2:mem:striped-ids-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")));
+		this.engineConfiguration = (ProcessEngineConfigurationImpl) this.processEngine.getProcessEngineConfiguration();
+	}
+
+	@AfterEach
+	void closeEngine() {
+		this.processEngine.close();
+	}
+
+	/**
+	 * Question: Do ids drawn by many threads at once stay unique, and in the order they were drawn?
+	 * <br>
+	 * Answer: Yes, every id is handed out once, and the ids of a thread sort in the order it drew them
+	 */
+	@Test
+	public void idsFromManyThreadsAreUniqueAndOrdered() throws Exception {
+		StripedIdGenerator idGenerator = this.engineIdGenerator;
+		ExecutorService threads = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<List<String>>> drawn = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				drawn.add(threads.submit(() -> {
+					List<String> ids = new ArrayList<>();
+					for (int j = 0; j < 5_000; j++) {
+						ids.add(idGenerator.getNextId());
+					}
+					return ids;
+				}));
+			}
+			Set<String> unique = new HashSet<>();
+			for (Future<List<String>> ids : drawn) {
+				List<String> sorted = new ArrayList<>(ids.get());
+				sorted.sort(null);
+				assertEquals(ids.get(), sorted);
+				unique.addAll(ids.get());
+			}
+			assertEquals(16 * 5_000, unique.size());
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+	/**
+	 * The next block is fetched once half of the current one is used, not when it runs out
+	 */
+	@Test
+	public void nextBlockIsFetchedAhead() {
+		// the fetches run on the calling thread, every prefetched block is in before it is needed
+		StripedIdGenerator idGenerator = new StripedIdGenerator(1, Runnable::run);
+		idGenerator.setIdBlockSize(10);
+		idGenerator.setCommandExecutor(this.engineConfiguration.getCommandExecutor());
+		idGenerator.setCommandConfig(this.engineConfiguration.getDefaultCommandConfig().transactionRequiresNew());
+
+		List<Long> fetched = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			idGenerator.getNextId();
+			fetched.add(idGenerator.getFetched());
+		}
+		// the first block by the first call, the next ones by the 6th id of the block before
+		assertAll(() -> assertEquals(1, fetched.get(4)), () -> assertEquals(2, fetched.get(5)),
+				() -> assertEquals(2, fetched.get(14)), () -> assertEquals(3, fetched.get(15)),
+				() -> assertEquals(4, fetched.get(29)), () -> assertEquals(0, idGenerator.getWaits()));
+	}
+
+	/**
+	 * The rows of an instance carry the generator's ids, a time in milliseconds and a number, 24 hex digits
+	 */
+	@Test
+	public void instancesCarryTimeOrderedIds() {
+		long before = System.currentTimeMillis();
+		ProcessInstance processInstance = this.processEngine.getRuntimeService().startProcessInstanceByKey(GATEWAY_KEY);
+		Task step1 = this.processEngine.getTaskService().createTaskQuery().processInstanceId(processInstance.getId())
+				.singleResult();
+
+		assertAll(() -> assertTrue(processInstance.getId().matches("[0-9a-f]{24}"), processInstance.getId()),
+				() -> assertTrue(Long.parseLong(processInstance.getId().substring(0, 11), 16) >= before),
+				() -> assertTrue(step1.getId().compareTo(processInstance.getId()) > 0,
+						step1.getId() + " after " + processInstance.getId()));
+	}
+
+}
@@ -0,0 +1,143 @@
+package com.hercules.playground.flowable.inmemory;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.metrics.EngineMetrics;
+import com.hercules.playground.flowable.metrics.InMemoryMetricsRegistry;
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * The gateway note without its user tasks, run in memory
+ */
+@FlowableTest
+public class TransientExecutionTests {
+
+	private static final String STRAIGHT_THROUGH_RESOURCE = "com/hercules/playground/flowable/inmemory/TransientExecution.straightThroughGateway.bpmn20.xml";
+	private static final String FAILS_ONCE_RESOURCE = "com/hercules/playground/flowable/inmemory/TransientExecution.failsOnce.bpmn20.xml";
+	private static final String STRAIGHT_THROUGH_KEY = "straightThroughGateway";
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+	private HistoryService historyService;
+	private TransientExecution transientExecution;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		this.historyService = processEngine.getHistoryService();
+		this.transientExecution = new TransientExecution(processEngine);
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+	}
+
+	/**
+	 * Question: What does an instance that runs from start to end send to the database?
+	 * <br>
+	 * Answer: Started the usual way, its history and the queries for the executions at the join. Run transient,
+	 * only the lookup of the latest definition, and it leaves no trace
+	 */
+	@Deployment(resources = STRAIGHT_THROUGH_RESOURCE)
+	@Test
+	public void straightThroughInstanceStaysInMemory() {
+		InMemoryMetricsRegistry registry = (InMemoryMetricsRegistry) EngineMetrics.registryOf(this.processEngine);
+		registry.reset();
+		ProcessInstance persistent = this.runtimeService.startProcessInstanceByKey(STRAIGHT_THROUGH_KEY);
+		long persistentStatements = registry.counter("sql.statements").sum();
+
+		registry.reset();
+		ProcessInstance inMemory = this.transientExecution.start(STRAIGHT_THROUGH_KEY);
+		long transientStatements = registry.counter("sql.statements").sum();
+
+		assertAll(() -> assertTrue(persistent.isEnded()), () -> assertTrue(inMemory.isEnded()),
+				() -> assertEquals(1, transientStatements),
+				() -> assertTrue(persistentStatements > transientStatements, persistentStatements + " statements"),
+				() -> assertNotNull(this.historyService.createHistoricProcessInstanceQuery()
+						.processInstanceId(persistent.getId()).singleResult()),
+				() -> assertEquals(0, this.historyService.createHistoricProcessInstanceQuery()
+						.processInstanceId(inMemory.getId()).count()),
+				() -> assertEquals(0, this.historyService.createHistoricActivityInstanceQuery()
+						.processInstanceId(inMemory.getId()).count()),
+				() -> assertEquals(0, this.historyService.createHistoricVariableInstanceQuery()
+						.processInstanceId(inMemory.getId()).count()),
+				() -> assertEquals(1, this.transientExecution.getInMemory()));
+	}
+
+	/**
+	 * Question: What happens to a transient instance that reaches a wait state?
+	 * <br>
+	 * Answer: It is flushed where it stopped, history included, with the variables a persistent instance has, and goes on
+	 * like one
+	 */
+	@Deployment(resources = STRAIGHT_THROUGH_RESOURCE)
+	@Test
+	public void waitStatePersistsTheInstance() {
+		ProcessInstance persistent = this.runtimeService.startProcessInstanceByKey(STRAIGHT_THROUGH_KEY,
+				Map.of("review", true));
+		ProcessInstance waiting = this.transientExecution.start(STRAIGHT_THROUGH_KEY, Map.of("review", true));
+
+		Task review = this.taskService.createTaskQuery().processInstanceId(waiting.getId()).singleResult();
+		Map<String, Object> variables = this.runtimeService.getVariables(waiting.getId());
+		assertAll(() -> assertFalse(waiting.isEnded()), () -> assertEquals("Review", review.getName()),
+				() -> assertEquals(this.runtimeService.getVariables(persistent.getId()), variables),
+				() -> assertEquals("TASK 2 OVERWRITES VARIABLE 1", variables.get("VARIABLE 1")),
+				() -> assertEquals(this.historyService.createHistoricActivityInstanceQuery()
+						.processInstanceId(persistent.getId()).count(), this.historyService
+								.createHistoricActivityInstanceQuery().processInstanceId(waiting.getId()).count()),
+				() -> assertEquals(1, this.transientExecution.getPersisted()));
+
+		this.taskService.complete(review.getId());
+		assertNotNull(this.historyService.createHistoricProcessInstanceQuery().processInstanceId(waiting.getId())
+				.finished().singleResult());
+	}
+
+	/**
+	 * A run that fails is rolled back and started again persistent, the instance it ends up as has its history
+	 */
+	@Deployment(resources = FAILS_ONCE_RESOURCE)
+	@Test
+	public void failedRunStartsPersistent() {
+		FailsOnce.CALLS.set(0);
+		ProcessInstance processInstance = this.transientExecution.start("failsOnce", Map.of("failsOnce", new FailsOnce()));
+
+		assertAll(() -> assertTrue(processInstance.isEnded()), () -> assertEquals(2, FailsOnce.CALLS.get()),
+				() -> assertEquals(1, this.transientExecution.getFallbacks()),
+				() -> assertEquals(0, this.transientExecution.getInMemory()),
+				() -> assertNotNull(this.historyService.createHistoricProcessInstanceQuery()
+						.processInstanceId(processInstance.getId()).finished().singleResult()));
+	}
+
+	public static class FailsOnce implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		static final AtomicInteger CALLS = new AtomicInteger();
+
+		public void call() {
+			if (CALLS.getAndIncrement() == 0) {
+				throw new IllegalStateException("the first call fails");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.hercules.playground.flowable.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.flowable.common.engine.api.FlowableOptimisticLockingException;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.Execution;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * Question: What does a single api call cost the database?
+ * <br>
+ * Answer: flowable.cfg.xml meters every command, so the notes can put a number on it
+ */
+@FlowableTest
+public class EngineMetricsTests {
+
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+	private ManagementService managementService;
+	private InMemoryMetricsRegistry registry;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		this.managementService = processEngine.getManagementService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+		this.registry = (InMemoryMetricsRegistry) EngineMetrics.registryOf(processEngine);
+		this.registry.reset();
+	}
+
+	/**
+	 * Completing Step 1 of the gateway note, which forks into three user tasks, is one command of at most 25 statements, 23 on H2 with audit history
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml")
+	@Test
+	public void completingStep1() {
+		this.runtimeService.startProcessInstanceByKey("GatewayTests.ParralleGateProcessVariableMerge");
+		Task step1 = this.taskService.createTaskQuery().singleResult();
+		this.registry.reset();
+
+		this.taskService.complete(step1.getId());
+
+		Histogram statements = this.registry.histogram("command.CompleteTaskCmd.statements");
+		Histogram flushSize = this.registry.histogram("command.CompleteTaskCmd.flushSize");
+		assertAll(() -> assertEquals(1, this.registry.latency("command.CompleteTaskCmd.latency").getCount()),
+				() -> assertEquals(1, statements.getCount()), () -> assertTrue(statements.getMax() <= 25),
+				() -> assertEquals(this.registry.counter("sql.statements").sum(), statements.getMax()),
+				() -> assertTrue(flushSize.getMax() > 0),
+				() -> assertEquals(1, this.registry.counter("event.TASK_COMPLETED").sum()),
+				() -> assertEquals(3, this.registry.counter("event.TASK_CREATED").sum()));
+	}
+
+	/**
+	 * Starting, signalling and messaging are metered by their command, the engine commands nested inside them are not
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/message/MessageEvents.howToDoBasicSignalCoordination.bpmn20.xml")
+	@Test
+	public void startSignalAndMessage() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("messageEvents");
+		Execution orderPizza = this.runtimeService.createExecutionQuery().processInstanceId(processInstance.getId())
+				.messageEventSubscriptionName("OrderedPizza").singleResult();
+		this.runtimeService.messageEventReceived("OrderedPizza", orderPizza.getId());
+		this.runtimeService.signalEventReceived("DeliverPizza");
+
+		assertAll(() -> assertEquals(1, this.registry.latency("command.StartProcessInstanceCmd.latency").getCount()),
+				() -> assertEquals(1, this.registry.latency("command.MessageEventReceivedCmd.latency").getCount()),
+				() -> assertEquals(1, this.registry.latency("command.SignalEventReceivedCmd.latency").getCount()),
+				() -> assertTrue(this.registry.latency("command.SignalEventReceivedCmd.latency").getMaxNanos() > 0));
+	}
+
+	@Test
+	public void optimisticLockFailuresAreCounted() {
+		assertThrows(FlowableOptimisticLockingException.class, () -> this.managementService.executeCommand((context) -> {
+			throw new FlowableOptimisticLockingException("lost the race");
+		}));
+
+		assertEquals(1, this.registry.counter("optimisticLockFailures").sum());
+	}
+
+}
@@ -0,0 +1,122 @@
+package com.hercules.playground.flowable.query;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.flowable.common.engine.api.FlowableIllegalArgumentException;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.metrics.EngineMetrics;
+import com.hercules.playground.flowable.metrics.InMemoryMetricsRegistry;
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * Question: Do the tasks have to be on the heap to be grouped by name?
+ * <br>
+ * Answer: no, the database can count them per name, and a stream can walk them a page at a time
+ */
+@FlowableTest
+public class TaskStreamQueryTests {
+
+	private static final String GATEWAY_RESOURCE = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml";
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+	private InMemoryMetricsRegistry registry;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+		this.registry = (InMemoryMetricsRegistry) EngineMetrics.registryOf(processEngine);
+	}
+
+	/**
+	 * 25 forked gateway instances, 75 branch tasks streamed ten at a time, each exactly once
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void streamingEveryTask() {
+		forkedInstances(25);
+
+		Set<String> streamed = new TaskStreamQuery(this.processEngine).active().pageSize(10).stream().map(Task::getId)
+				.collect(Collectors.toSet());
+
+		assertEquals(this.taskService.createTaskQuery().active().list().stream().map(Task::getId)
+				.collect(Collectors.toSet()), streamed);
+	}
+
+	/**
+	 * Only the pages the stream consumer got to are fetched
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void streamingIsLazy() {
+		forkedInstances(25);
+		this.registry.reset();
+
+		long firstFive = new TaskStreamQuery(this.processEngine).pageSize(10).stream().limit(5).count();
+
+		assertAll(() -> assertEquals(5, firstFive),
+				() -> assertEquals(1, this.registry.latency("command.NativeTaskQueryImpl.latency").getCount()));
+	}
+
+	/**
+	 * Counting by name is the database's job, what the notes do with groupingBy on the whole task list
+	 */
+	@Deployment(resources = GATEWAY_RESOURCE)
+	@Test
+	public void countingByName() {
+		ProcessInstance first = forkedInstances(25);
+
+		TaskStreamQuery query = new TaskStreamQuery(this.processEngine).active();
+		Map<String, Long> byName = query.countByName();
+
+		assertAll(() -> assertEquals(Map.of("Step 2", 25L, "Step 3", 25L, "Step 4", 25L), byName),
+				() -> assertEquals(75, query.count()),
+				() -> assertEquals(3, new TaskStreamQuery(this.processEngine).processInstanceId(first.getId())
+						.countByTaskDefinitionKey().size()),
+				() -> assertEquals(25, new TaskStreamQuery(this.processEngine).taskName("Step 3").count()));
+	}
+
+	/**
+	 * A null criterion is refused like TaskQuery refuses it, "= null" would silently match no task
+	 */
+	@Test
+	public void nullCriterionIsRefused() {
+		TaskStreamQuery query = new TaskStreamQuery(this.processEngine);
+		assertAll(() -> assertThrows(FlowableIllegalArgumentException.class, () -> query.taskName(null)),
+				() -> assertThrows(FlowableIllegalArgumentException.class, () -> query.taskAssignee(null)),
+				() -> assertThrows(FlowableIllegalArgumentException.class, () -> this.taskService.createTaskQuery()
+						.taskName(null)));
+	}
+
+	private ProcessInstance forkedInstances(int instances) {
+		ProcessInstance first = null;
+		for (int i = 0; i < instances; i++) {
+			ProcessInstance processInstance = this.runtimeService
+					.startProcessInstanceByKey("GatewayTests.ParralleGateProcessVariableMerge");
+			this.taskService.complete(this.taskService.createTaskQuery().processInstanceId(processInstance.getId())
+					.singleResult().getId());
+			first = first == null ? processInstance : first;
+		}
+		return first;
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.hercules.playground.flowable.shard;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Question: How many instances change shard when a shard is added?
+ * <br>
+ * Answer: about the share the new shard takes over, 1/K, where hash modulo K would move nearly all of them
+ */
+public class ConsistentHashRingTests {
+
+	private static final int KEYS = 20_000;
+
+	/**
+	 * Every shard of four owns roughly a quarter of the keys, going to five moves about a fifth of them
+	 */
+	@Test
+	public void addingAShard() {
+		ConsistentHashRing four = new ConsistentHashRing(4, 128);
+		ConsistentHashRing five = new ConsistentHashRing(5, 128);
+		int[] owned = new int[4];
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String businessKey = "order-" + i;
+			int shard = four.shardOf(businessKey);
+			owned[shard]++;
+			if (five.shardOf(businessKey) != shard) {
+				moved++;
+			}
+		}
+
+		int movedKeys = moved;
+		assertAll(() -> assertTrue(movedKeys < KEYS * 0.3, movedKeys + " of " + KEYS + " keys moved"),
+				() -> assertTrue(movedKeys > KEYS * 0.1, movedKeys + " of " + KEYS + " keys moved"), () -> {
+					for (int count : owned) {
+						assertTrue(Math.abs(count - KEYS / 4) < KEYS / 4 * 0.25, "shard owns " + count + " keys");
+					}
+				});
+	}
+
+}
@@ -0,0 +1,133 @@
+package com.hercules.playground.flowable.shard;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.ProcessEngines;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.snapshot.EngineSnapshot;
+
+/**
+ * Question: Can the notes run on several databases at once, as if they were one engine?
+ * <br>
+ * Answer: as long as every call names the business key of its instance, the router finds the one shard that has it.
+ * Only a global signal has to go to every shard.
+ */
+public class ShardedProcessEnginesTests {
+
+	private static final String GATEWAY_RESOURCE = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml";
+	private static final String SIGNAL_RESOURCE = "com/hercules/playground/flowable/events/signal/Signal.signalGlobalScopeApi.bpmn20.xml";
+	private static final String MESSAGE_RESOURCE = "com/hercules/playground/flowable/events/message/MessageEvents.howToDoBasicSignalCoordination.bpmn20.xml";
+	private static final String GATEWAY_SIGNAL_RESOURCE = "com/hercules/playground/flowable/shard/ShardedProcessEngines.twoSubscriptionsOneExecution.bpmn20.xml";
+
+	private ShardedProcessEngines shards;
+
+	@BeforeEach
+	void setUp() {
+		this.shards = ShardedProcessEngines.inMemory(3, EngineSnapshot.of(Paths.get("target", "engine-snapshots"),
+				GATEWAY_RESOURCE, SIGNAL_RESOURCE, MESSAGE_RESOURCE, GATEWAY_SIGNAL_RESOURCE));
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.shards.close();
+	}
+
+	/**
+	 * Thirty gateway instances spread over three shards, each on the shard of its business key, and completed through the router
+	 */
+	@Test
+	public void instancesLiveOnTheShardOfTheirBusinessKey() {
+		int[] expected = new int[3];
+		for (int i = 0; i < 30; i++) {
+			String businessKey = "order-" + i;
+			this.shards.startProcessInstanceByKey("GatewayTests.ParralleGateProcessVariableMerge", businessKey);
+			expected[this.shards.shardIndexFor(businessKey)]++;
+			Task step1 = this.shards.tasks(businessKey).get(0);
+			this.shards.complete(businessKey, step1.getId());
+		}
+
+		for (int shard = 0; shard < 3; shard++) {
+			ProcessEngine engine = this.shards.getShards().get(shard);
+			assertEquals(expected[shard], engine.getRuntimeService().createProcessInstanceQuery().count());
+			assertEquals(expected[shard] * 3, engine.getTaskService().createTaskQuery().count());
+		}
+		assertEquals(3, this.shards.tasks("order-7").size());
+	}
+
+	/**
+	 * globaleScope signalled by business key reaches only that instance, broadcast it reaches the waiting instances of every shard.
+	 * processScope can not be signalled from outside the instance, by business key no more than through the api.
+	 */
+	@Test
+	public void globalSignalsAreBroadcast() {
+		List<String> businessKeys = List.of("a", "b", "c", "d", "e", "f");
+		for (String businessKey : businessKeys) {
+			this.shards.startProcessInstanceByKey("signalScope", businessKey);
+			this.shards.tasks(businessKey).forEach((task) -> this.shards.complete(businessKey, task.getId()));
+		}
+
+		int triggeredForA = this.shards.signalEventReceived("a", "globaleScope");
+		long resultsBeforeBroadcast = globalResults();
+		this.shards.broadcastSignal("globaleScope").join();
+
+		assertAll(() -> assertEquals(1, triggeredForA), () -> assertEquals(1, resultsBeforeBroadcast),
+				() -> assertEquals(6, globalResults()),
+				() -> assertEquals(0, this.shards.signalEventReceived("a", "processScope")));
+	}
+
+	/**
+	 * Both events after the event based gateway wait for wakeUp, the delivery to the first one cancels the second.
+	 * The instance is woken up once, and the second subscription is not counted as triggered.
+	 */
+	@Test
+	public void signalIsDeliveredOncePerExecution() {
+		this.shards.startProcessInstanceByKey("twoSubscriptionsOneExecution", "k");
+
+		assertAll(() -> assertEquals(1, this.shards.signalEventReceived("k", "wakeUp")),
+				() -> assertEquals(1, this.shards.tasks("k").size()));
+	}
+
+	/**
+	 * The engines of two routers are registered in ProcessEngines side by side, closing one router leaves the other's registered
+	 */
+	@Test
+	public void routersDoNotShareEngineNames() {
+		try (ShardedProcessEngines other = ShardedProcessEngines.inMemory(3)) {
+			for (int shard = 0; shard < 3; shard++) {
+				ProcessEngine engine = this.shards.getShards().get(shard);
+				assertAll(() -> assertSame(engine, ProcessEngines.getProcessEngine(engine.getName())),
+						() -> assertNotEquals(engine.getName(), other.getShards().get(0).getName()));
+			}
+		}
+		assertSame(this.shards.getShards().get(0), ProcessEngines.getProcessEngine(this.shards.getShards().get(0).getName()));
+	}
+
+	private long globalResults() {
+		return this.shards.getShards().stream().mapToLong((shard) -> shard.getTaskService().createTaskQuery()
+				.taskName("GLOBAL RESULT").count()).sum();
+	}
+
+	/**
+	 * The OrderedPizza message is delivered to the instance of the business key on its shard
+	 */
+	@Test
+	public void messagesGoToTheOwningShard() {
+		this.shards.startProcessInstanceByKey("messageEvents", "pizza-42");
+
+		this.shards.messageEventReceived("pizza-42", "OrderedPizza");
+
+		assertEquals(2, this.shards.tasks("pizza-42").size());
+	}
+
+}
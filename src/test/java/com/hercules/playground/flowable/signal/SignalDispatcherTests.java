@@ -0,0 +1,172 @@
+package com.hercules.playground.flowable.signal;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * The signal notes replayed through the SignalDispatcher instead of runtimeService.signalEventReceived
+ * <br>
+ * The chunk size is one so every process instance is delivered in its own transaction
+ */
+@FlowableTest
+public class SignalDispatcherTests {
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+	}
+
+	/**
+	 * Question: Does a global signal through the dispatcher behave like Signal.signalGlobalScopeApi?
+	 * <br>
+	 * Answer: Yes, both waiting processes move on to GLOBAL RESULT
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/signal/Signal.signalGlobalScopeApi.bpmn20.xml")
+	@Test
+	public void globalScopeSignal() throws Exception {
+		startTwoWaitingSignalScopes();
+
+		try (SignalDispatcher dispatcher = new SignalDispatcher(this.processEngine, 10, 1, 2)) {
+			assertEquals(2, dispatcher.signal("globaleScope").get());
+			assertAll(() -> assertEquals(2, this.taskService.createTaskQuery().active().list().size()),
+					() -> assertEquals(2, this.taskService.createTaskQuery().taskName("GLOBAL RESULT").count()),
+					() -> assertEquals(2, dispatcher.getDeliveredChunks()));
+		}
+	}
+
+	/**
+	 * Question: Does a process scoped signal through the dispatcher behave like Signal.signalProcessScopeApi?
+	 * <br>
+	 * Answer: Yes, the process scoped signal is ignored and the global one still gets through
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/signal/Signal.signalProcessScopeApi.bpmn20.xml")
+	@Test
+	public void processScopeSignal() throws Exception {
+		startTwoWaitingSignalScopes();
+
+		try (SignalDispatcher dispatcher = new SignalDispatcher(this.processEngine, 10, 1, 2)) {
+			assertEquals(0, dispatcher.signal("processScope").get());
+			assertEquals(0, this.taskService.createTaskQuery().active().list().size());
+
+			assertEquals(2, dispatcher.signal("globaleScope").get());
+			assertEquals(2, this.taskService.createTaskQuery().active().list().size());
+		}
+	}
+
+	/**
+	 * Question: What happens when the same signal is raised several times inside the window?
+	 * <br>
+	 * Answer: It is delivered once, every caller sees the same delivery
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/message/MessageEvents.asynchroniousTaskSignal.bpmn20.xml")
+	@Test
+	public void duplicateSignalsAreCoalesced() throws Exception {
+		this.runtimeService.startProcessInstanceByKey("asynchroniousTaskSignal");
+		this.runtimeService.startProcessInstanceByKey("asynchroniousTaskSignal");
+		assertEquals(2, this.taskService.createTaskQuery().active().list().size());
+
+		try (SignalDispatcher dispatcher = new SignalDispatcher(this.processEngine, 500, 1, 2)) {
+			CompletableFuture<Integer> first = dispatcher.signal("startASubTaskGlobal");
+			CompletableFuture<Integer> second = dispatcher.signal("startASubTaskGlobal");
+			CompletableFuture<Integer> third = dispatcher.signal("startASubTaskGlobal");
+
+			assertAll(() -> assertEquals(2, first.get()), () -> assertEquals(2, second.get()),
+					() -> assertEquals(2, third.get()), () -> assertEquals(2, dispatcher.getCoalescedSignals()),
+					() -> assertEquals(4, this.taskService.createTaskQuery().active().list().size()));
+		}
+	}
+
+	/**
+	 * Question: What does a signal raised while the dispatcher closes get?
+	 * <br>
+	 * Answer: A delivery, close delivers whatever is pending, or an IllegalStateException once it is closed,
+	 * never a RejectedExecutionException from the stopped scheduler
+	 */
+	@Test
+	public void signalRacingCloseIsRefused() throws Exception {
+		SignalDispatcher dispatcher = new SignalDispatcher(this.processEngine, 1, 100, 1);
+		ExecutorService signallers = Executors.newFixedThreadPool(4);
+		AtomicInteger names = new AtomicInteger();
+		List<Future<List<CompletableFuture<Integer>>>> raised = new ArrayList<>();
+		try {
+			for (int i = 0; i < 4; i++) {
+				raised.add(signallers.submit(() -> {
+					List<CompletableFuture<Integer>> signals = new ArrayList<>();
+					try {
+						while (true) {
+							signals.add(dispatcher.signal("nobody waits for " + names.incrementAndGet()));
+						}
+					} catch (IllegalStateException e) {
+						return signals;
+					}
+				}));
+			}
+			Thread.sleep(50);
+			dispatcher.close();
+
+			for (Future<List<CompletableFuture<Integer>>> signals : raised) {
+				for (CompletableFuture<Integer> signal : signals.get(1, TimeUnit.MINUTES)) {
+					assertEquals(0, signal.get(1, TimeUnit.MINUTES));
+				}
+			}
+		} finally {
+			signallers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Question: What happens to a signal with subscriptions whose delivery is under way while the dispatcher closes?
+	 * <br>
+	 * Answer: It is delivered, close lets a running flush finish before it delivers what is left and stops the workers.
+	 * Every round closes a little later after the window, so some close while the scheduler is looking up the chunks
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/message/MessageEvents.asynchroniousTaskSignal.bpmn20.xml")
+	@Test
+	public void deliveryRacingCloseCompletes() throws Exception {
+		this.runtimeService.startProcessInstanceByKey("asynchroniousTaskSignal");
+		this.runtimeService.startProcessInstanceByKey("asynchroniousTaskSignal");
+
+		for (int round = 0; round < 60; round++) {
+			SignalDispatcher dispatcher = new SignalDispatcher(this.processEngine, 5, 1, 2);
+			CompletableFuture<Integer> signal = dispatcher.signal("startASubTaskGlobal");
+			TimeUnit.MICROSECONDS.sleep(4000 + round * 50);
+			dispatcher.close();
+
+			assertEquals(2, signal.get(1, TimeUnit.MINUTES), "round " + round);
+		}
+	}
+
+	private void startTwoWaitingSignalScopes() {
+		this.runtimeService.startProcessInstanceByKey("signalScope");
+		this.runtimeService.startProcessInstanceByKey("signalScope");
+		this.taskService.createTaskQuery().active().list()
+				.forEach((task) -> this.taskService.complete(task.getId()));
+	}
+
+}
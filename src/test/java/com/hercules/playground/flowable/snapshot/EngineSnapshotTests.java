@@ -0,0 +1,95 @@
+package com.hercules.playground.flowable.snapshot;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.hercules.playground.flowable.App;
+
+/**
+ * Question: Does every new engine have to create its schema and deploy the notes again?
+ * <br>
+ * Answer: No, through an EngineSnapshot the first one does, the others are restored from its image
+ */
+public class EngineSnapshotTests {
+
+	private static final String GATEWAY_RESOURCE = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml";
+	private static final String GATEWAY_KEY = "GatewayTests.ParralleGateProcessVariableMerge";
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * The restored engine has the one deployment of the first and runs the gateway process past Step 1 into its three tasks
+	 */
+	@Test
+	public void restoredEngineHasTheDeployment() {
+		EngineSnapshot snapshot = EngineSnapshot.of(this.directory, GATEWAY_RESOURCE);
+		assertFalse(snapshot.exists());
+		ProcessEngine first = snapshot.buildProcessEngine(App.createConfiguration(jdbcUrl()));
+		first.close();
+
+		ProcessEngine restored = snapshot.buildProcessEngine(App.createConfiguration(jdbcUrl()));
+		try {
+			ProcessInstance processInstance = restored.getRuntimeService().startProcessInstanceByKey(GATEWAY_KEY);
+			TaskService taskService = restored.getTaskService();
+			taskService.complete(taskService.createTaskQuery().processInstanceId(processInstance.getId())
+					.taskName("Step 1").singleResult().getId());
+			assertAll(() -> assertTrue(snapshot.exists()),
+					() -> assertEquals(1, restored.getRepositoryService().createDeploymentQuery().count()),
+					() -> assertEquals(3,
+							taskService.createTaskQuery().processInstanceId(processInstance.getId()).count()));
+		} finally {
+			restored.close();
+		}
+	}
+
+	/**
+	 * A database with an engine in it is not restored over, what it holds is kept
+	 */
+	@Test
+	public void databaseWithAnEngineIsKept() {
+		EngineSnapshot snapshot = EngineSnapshot.of(this.directory, GATEWAY_RESOURCE);
+		snapshot.buildProcessEngine(App.createConfiguration(jdbcUrl())).close();
+		String jdbcUrl = jdbcUrl();
+		ProcessEngine existing = App.createConfiguration(jdbcUrl).buildProcessEngine();
+		existing.getRepositoryService().createDeployment().addClasspathResource(GATEWAY_RESOURCE).deploy();
+		existing.getRuntimeService().startProcessInstanceByKey(GATEWAY_KEY);
+		existing.close();
+
+		ProcessEngine restored = snapshot.buildProcessEngine(App.createConfiguration(jdbcUrl));
+		try {
+			assertAll(() -> assertEquals(1, restored.getRepositoryService().createDeploymentQuery().count()),
+					() -> assertEquals(1, restored.getRuntimeService().createProcessInstanceQuery().count()));
+		} finally {
+			restored.close();
+		}
+	}
+
+	/**
+	 * Other resources, or the same ones changed, make another image
+	 */
+	@Test
+	public void imageIsKeyedByTheResources() {
+		assertAll(
+				() -> assertEquals(EngineSnapshot.of(this.directory, GATEWAY_RESOURCE).getImage(),
+						EngineSnapshot.of(this.directory, GATEWAY_RESOURCE).getImage()),
+				() -> assertFalse(EngineSnapshot.of(this.directory, GATEWAY_RESOURCE).getImage()
+						.equals(EngineSnapshot.of(this.directory).getImage())));
+	}
+
+	private static String jdbcUrl() {
+		return "jdbc:h2:mem:snapshot-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+	}
+
+}
@@ -0,0 +1,173 @@
+package com.hercules.playground.flowable.subscription;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.flowable.common.engine.api.FlowableObjectNotFoundException;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.delegate.event.impl.FlowableEventBuilder;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.flowable.eventsubscription.api.EventSubscription;
+import org.flowable.eventsubscription.service.impl.persistence.entity.MessageEventSubscriptionEntity;
+import org.flowable.eventsubscription.service.impl.persistence.entity.MessageEventSubscriptionEntityImpl;
+import org.flowable.eventsubscription.service.impl.persistence.entity.SignalEventSubscriptionEntity;
+import org.flowable.eventsubscription.service.impl.persistence.entity.SignalEventSubscriptionEntityImpl;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * MessageEvents.howToDoBasicSignalCoordination without the execution query, the index resolves the subscription
+ */
+@FlowableTest
+public class EventSubscriptionIndexTests {
+
+	private ManagementService managementService;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+	private EventSubscriptionIndex index;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.managementService = processEngine.getManagementService();
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+		this.index = EventSubscriptionIndex.register(processEngine);
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.index.close();
+	}
+
+	/**
+	 * Question: Does the index see the boundary message subscription, and forget it once it is gone?
+	 * <br>
+	 * Answer: Yes, it resolves to the same execution the query finds.
+	 * The boundary event is non cancelling, so the subscription lives until Order Pizza is completed
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/message/MessageEvents.howToDoBasicSignalCoordination.bpmn20.xml")
+	@Test
+	public void messageSubscriptionFollowsTheProcess() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("messageEvents");
+		String queried = this.runtimeService.createExecutionQuery().processInstanceId(processInstance.getId())
+				.messageEventSubscriptionName("OrderedPizza").singleResult().getId();
+		assertEquals(queried, this.index.findMessageSubscription("OrderedPizza", processInstance.getId()));
+
+		this.index.messageEventReceived("OrderedPizza", processInstance.getId());
+
+		assertAll(() -> assertEquals(2, this.taskService.createTaskQuery().active().list().size()),
+				() -> assertEquals(queried, this.index.findMessageSubscription("OrderedPizza", processInstance.getId())));
+
+		Task orderPizza = this.taskService.createTaskQuery().taskName("Order Pizza").singleResult();
+		this.taskService.complete(orderPizza.getId());
+		assertAll(() -> assertNull(this.index.findMessageSubscription("OrderedPizza", processInstance.getId())),
+				() -> assertNotNull(this.index.findSignalSubscription("DeliverPizza", processInstance.getId())));
+	}
+
+	/**
+	 * Question: Are subscriptions dropped when the process instance is deleted?
+	 * <br>
+	 * Answer: Yes, the delete fires entity deleted events for every subscription of the instance
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/signal/Signal.signalGlobalScopeApi.bpmn20.xml")
+	@Test
+	public void subscriptionsAreDroppedWithTheInstance() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("signalScope");
+		this.taskService.createTaskQuery().processInstanceId(processInstance.getId()).list()
+				.forEach((task) -> this.taskService.complete(task.getId()));
+		assertNotNull(this.index.findSignalSubscription("globaleScope", processInstance.getId()));
+
+		this.index.signalEventReceived("globaleScope", processInstance.getId());
+		assertEquals(1, this.taskService.createTaskQuery().taskName("GLOBAL RESULT").count());
+
+		this.runtimeService.deleteProcessInstance(processInstance.getId(), "RESET DATA");
+		assertAll(() -> assertNull(this.index.findSignalSubscription("processScope", processInstance.getId())),
+				() -> assertEquals(0, this.index.size()));
+	}
+
+	/**
+	 * Question: What if an execution holds two subscriptions to the same signal and one of them goes?
+	 * <br>
+	 * Answer: The execution stays subscribed until the second one is deleted as well
+	 */
+	@Test
+	public void executionIsSubscribedUntilItsLastSubscriptionGoes() {
+		EventSubscriptionIndex index = new EventSubscriptionIndex(this.runtimeService);
+		SignalEventSubscriptionEntity first = subscription("first");
+		SignalEventSubscriptionEntity second = subscription("second");
+		index.onEvent(FlowableEventBuilder.createEntityEvent(FlowableEngineEventType.ENTITY_CREATED, first));
+		index.onEvent(FlowableEventBuilder.createEntityEvent(FlowableEngineEventType.ENTITY_CREATED, second));
+
+		index.onEvent(FlowableEventBuilder.createEntityEvent(FlowableEngineEventType.ENTITY_DELETED, first));
+		assertEquals("execution", index.findSignalSubscription("wakeUp", "instance"));
+
+		index.onEvent(FlowableEventBuilder.createEntityEvent(FlowableEngineEventType.ENTITY_DELETED, second));
+		assertAll(() -> assertNull(index.findSignalSubscription("wakeUp", "instance")), () -> assertEquals(0, index.size()));
+	}
+
+	/**
+	 * Question: What if nothing waits for the event, neither in the index nor in the database?
+	 * <br>
+	 * Answer: Both deliveries fail with FlowableObjectNotFoundException, the way ShardedProcessEngines.messageEventReceived does
+	 */
+	@Test
+	public void unsubscribedEventIsNotFound() {
+		assertAll(() -> assertThrows(FlowableObjectNotFoundException.class,
+				() -> this.index.messageEventReceived("OrderedPizza", "no-such-instance")),
+				() -> assertThrows(FlowableObjectNotFoundException.class,
+						() -> this.index.signalEventReceived("globaleScope", "no-such-instance")));
+	}
+
+	/**
+	 * Question: What if the index still holds an execution that no longer waits, its delete applied before a late create?
+	 * <br>
+	 * Answer: The delivery to it fails, the entry is dropped and the message goes to the execution the query finds
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/message/MessageEvents.howToDoBasicSignalCoordination.bpmn20.xml")
+	@Test
+	public void staleExecutionFallsBackToTheQuery() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("messageEvents");
+		EventSubscription waiting = this.runtimeService.createEventSubscriptionQuery()
+				.processInstanceId(processInstance.getId()).eventName("OrderedPizza").singleResult();
+		MessageEventSubscriptionEntity stale = this.managementService
+				.executeCommand((commandContext) -> new MessageEventSubscriptionEntityImpl());
+		stale.setEventName("OrderedPizza");
+		stale.setProcessInstanceId(processInstance.getId());
+		stale.setExecutionId("gone");
+		this.index.onEvent(FlowableEventBuilder.createEntityEvent(FlowableEngineEventType.ENTITY_DELETED, waiting));
+		this.index.onEvent(FlowableEventBuilder.createEntityEvent(FlowableEngineEventType.ENTITY_CREATED, stale));
+		assertEquals("gone", this.index.findMessageSubscription("OrderedPizza", processInstance.getId()));
+
+		this.index.messageEventReceived("OrderedPizza", processInstance.getId());
+
+		assertAll(() -> assertEquals(2, this.taskService.createTaskQuery().active().list().size()),
+				() -> assertNull(this.index.findMessageSubscription("OrderedPizza", processInstance.getId())));
+	}
+
+	// the entity takes its creation time from the engine clock, it is created in a command
+	private SignalEventSubscriptionEntity subscription(String activityId) {
+		SignalEventSubscriptionEntity subscription = this.managementService
+				.executeCommand((commandContext) -> new SignalEventSubscriptionEntityImpl());
+		subscription.setEventType(EventSubscriptionIndex.SIGNAL);
+		subscription.setEventName("wakeUp");
+		subscription.setProcessInstanceId("instance");
+		subscription.setExecutionId("execution");
+		subscription.setActivityId(activityId);
+		return subscription;
+	}
+
+}
@@ -0,0 +1,209 @@
+package com.hercules.playground.flowable.teardown;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.common.engine.impl.interceptor.Command;
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.ManagementService;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.history.DeleteReason;
+import org.flowable.engine.history.HistoricProcessInstance;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.execution.ExecutionTreeIndex;
+import com.hercules.playground.flowable.feed.TaskChangeFeed;
+import com.hercules.playground.flowable.feed.TaskInbox;
+import com.hercules.playground.flowable.gateway.JoinVariableBuffer;
+import com.hercules.playground.flowable.subscription.EventSubscriptionIndex;
+import com.hercules.playground.flowable.variable.VariableCache;
+
+/**
+ * Question: Can the runtime state of many process instances be removed without deleting them one at a time?
+ * <br>
+ * Answer: Yes, as long as the rows go in foreign key order, children before the executions they hang off
+ */
+@FlowableTest
+public class BulkProcessInstanceTeardownTests {
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+	private ManagementService managementService;
+	private HistoryService historyService;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		this.managementService = processEngine.getManagementService();
+		this.historyService = processEngine.getHistoryService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+	}
+
+	/**
+	 * Deleting by definition key leaves the other definitions running, batches of two make every batch its own transaction
+	 */
+	@Deployment(resources = {
+			"com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml",
+			"com/hercules/playground/flowable/events/message/MessageEvents.howToDoBasicSignalCoordination.bpmn20.xml" })
+	@Test
+	public void deleteByProcessDefinitionKey() {
+		for (int i = 0; i < 5; i++) {
+			forkedGatewayWithVariables();
+			this.runtimeService.startProcessInstanceByKey("messageEvents");
+		}
+
+		long rows = new BulkProcessInstanceTeardown(this.processEngine, 2, 2)
+				.deleteByProcessDefinitionKey("GatewayTests.ParralleGateProcessVariableMerge");
+
+		assertAll(() -> assertTrue(rows > 0),
+				() -> assertEquals(0, this.runtimeService.createProcessInstanceQuery()
+						.processDefinitionKey("GatewayTests.ParralleGateProcessVariableMerge").count()),
+				() -> assertEquals(5, this.runtimeService.createProcessInstanceQuery().processDefinitionKey("messageEvents")
+						.count()),
+				() -> assertEquals(5, this.taskService.createTaskQuery().active().count()),
+				() -> assertEquals(0, this.runtimeService.createNativeExecutionQuery()
+						.sql("select * from ACT_RU_VARIABLE").list().size()));
+	}
+
+	/**
+	 * Deleting everything leaves no runtime rows behind, serialized variables included.
+	 * History keeps its own copy of a serialized variable, that one stays
+	 */
+	@Deployment(resources = {
+			"com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml",
+			"com/hercules/playground/flowable/events/signal/Signal.signalGlobalScopeApi.bpmn20.xml" })
+	@Test
+	public void deleteAll() {
+		for (int i = 0; i < 3; i++) {
+			forkedGatewayWithVariables();
+			this.runtimeService.startProcessInstanceByKey("signalScope");
+		}
+		long byteArraysBefore = tableCount("ACT_GE_BYTEARRAY");
+
+		new BulkProcessInstanceTeardown(this.processEngine, 2, 2).deleteAll();
+
+		assertAll(() -> assertEquals(0, tableCount("ACT_RU_EXECUTION")), () -> assertEquals(0, tableCount("ACT_RU_TASK")),
+				() -> assertEquals(0, tableCount("ACT_RU_VARIABLE")),
+				() -> assertEquals(0, tableCount("ACT_RU_EVENT_SUBSCR")),
+				() -> assertEquals(0, tableCount("ACT_RU_ACTINST")),
+				() -> assertEquals(byteArraysBefore - 3, tableCount("ACT_GE_BYTEARRAY")));
+	}
+
+	/**
+	 * The history of a purged instance ends like the one of a deleted instance, its open activities and tasks with it
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml")
+	@Test
+	public void purgedInstancesEndInHistory() {
+		forkedGatewayWithVariables();
+		String processInstanceId = this.runtimeService.createProcessInstanceQuery().singleResult().getId();
+
+		new BulkProcessInstanceTeardown(this.processEngine).deleteAll();
+
+		HistoricProcessInstance ended = this.historyService.createHistoricProcessInstanceQuery()
+				.processInstanceId(processInstanceId).singleResult();
+		assertAll(() -> assertTrue(ended.getEndTime() != null), () -> assertTrue(ended.getDurationInMillis() >= 0),
+				() -> assertEquals(DeleteReason.PROCESS_INSTANCE_DELETED, ended.getDeleteReason()),
+				() -> assertEquals(0, this.historyService.createHistoricActivityInstanceQuery()
+						.processInstanceId(processInstanceId).unfinished().count()),
+				() -> assertEquals(3, this.historyService.createHistoricActivityInstanceQuery()
+						.processInstanceId(processInstanceId).deleteReason(DeleteReason.PROCESS_INSTANCE_DELETED).count()),
+				() -> assertEquals(0, this.historyService.createHistoricTaskInstanceQuery()
+						.processInstanceId(processInstanceId).unfinished().count()),
+				() -> assertEquals(3, this.historyService.createHistoricTaskInstanceQuery()
+						.processInstanceId(processInstanceId).taskDeleteReason(DeleteReason.PROCESS_INSTANCE_DELETED).count()));
+	}
+
+	/**
+	 * The listeners holding process instances in memory drop the purged ones, told by the ProcessInstancesPurgedEvent
+	 * of each batch
+	 */
+	@Deployment(resources = {
+			"com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml",
+			"com/hercules/playground/flowable/events/message/MessageEvents.howToDoBasicSignalCoordination.bpmn20.xml" })
+	@Test
+	public void listenersDropPurgedInstances() throws Exception {
+		try (EventSubscriptionIndex subscriptions = EventSubscriptionIndex.register(this.processEngine);
+				ExecutionTreeIndex trees = ExecutionTreeIndex.register(this.processEngine);
+				VariableCache variables = VariableCache.register(this.processEngine);
+				JoinVariableBuffer buffer = JoinVariableBuffer.register(this.processEngine);
+				TaskChangeFeed feed = TaskChangeFeed.register(this.processEngine);
+				TaskInbox inbox = TaskInbox.open(this.processEngine, feed)) {
+			forkedGatewayWithVariables();
+			String messages = this.runtimeService.startProcessInstanceByKey("messageEvents").getId();
+			String gateway = this.runtimeService.createProcessInstanceQuery()
+					.processDefinitionKey("GatewayTests.ParralleGateProcessVariableMerge").singleResult().getId();
+			variables.getVariables(gateway);
+			buffer.setVariable(this.taskService.createTaskQuery().processInstanceId(gateway).list().get(0), "HELD", true);
+			assertTrue(inbox.sync(5, TimeUnit.SECONDS));
+			assertAll(() -> assertTrue(subscriptions.size() > 0), () -> assertTrue(trees.contains(messages)),
+					() -> assertEquals(1, variables.size()), () -> assertEquals(4, inbox.size()));
+
+			new BulkProcessInstanceTeardown(this.processEngine, 1, 1).deleteAll();
+
+			assertTrue(inbox.sync(5, TimeUnit.SECONDS));
+			assertAll(() -> assertEquals(0, subscriptions.size()), () -> assertEquals(0, trees.executionCount()),
+					() -> assertEquals(0, variables.size()),
+					() -> assertTrue(buffer.getBufferedVariables(gateway).isEmpty()),
+					() -> assertEquals(0, inbox.size()));
+		}
+	}
+
+	/**
+	 * A batch whose transaction fails after the deletes leaves every row where it was
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml")
+	@Test
+	public void failedBatchDeletesNothing() {
+		for (int i = 0; i < 3; i++) {
+			forkedGatewayWithVariables();
+		}
+		List<String> processInstanceIds = this.runtimeService.createProcessInstanceQuery().list().stream()
+				.map(ProcessInstance::getId).collect(Collectors.toList());
+		Map<String, Long> before = this.managementService.getTableCount();
+
+		assertThrows(FlowableException.class, () -> this.managementService.executeCommand((Command<Void>) commandContext -> {
+			new DeleteProcessInstanceBatchCmd(this.processEngine.getProcessEngineConfiguration().getDatabaseTablePrefix(),
+					processInstanceIds).execute(commandContext);
+			throw new FlowableException("the batch fails after its deletes");
+		}));
+
+		assertAll(() -> assertEquals(before, this.managementService.getTableCount()),
+				() -> assertEquals(3, this.runtimeService.createProcessInstanceQuery().count()),
+				() -> assertEquals(9, this.taskService.createTaskQuery().count()));
+	}
+
+	private void forkedGatewayWithVariables() {
+		List<String> serialized = new ArrayList<>(List.of("stored", "as", "a", "byte", "array"));
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey(
+				"GatewayTests.ParralleGateProcessVariableMerge", Map.of("ORIGIONAL", "THIS IS THE ORIGIONAL", "SERIALIZED", serialized));
+		this.taskService.complete(this.taskService.createTaskQuery().processInstanceId(processInstance.getId()).singleResult()
+				.getId());
+		this.taskService.createTaskQuery().processInstanceId(processInstance.getId()).list()
+				.forEach((task) -> this.taskService.setVariableLocal(task.getId(), "LOCAL", task.getName()));
+	}
+
+	private long tableCount(String table) {
+		Map<String, Long> counts = this.managementService.getTableCount();
+		return counts.get(table);
+	}
+
+}
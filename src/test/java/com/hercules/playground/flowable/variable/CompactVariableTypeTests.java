@@ -0,0 +1,144 @@
+package com.hercules.playground.flowable.variable;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.flowable.common.engine.api.FlowableException;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.ProcessEngineConfiguration;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.App;
+import com.hercules.playground.flowable.snapshot.EngineSnapshot;
+
+/**
+ * Question: Do map and list variables have to be java serialized?
+ * <br>
+ * Answer: No, CompactVariableType.install registers the CompactVariableType ahead of the engine's own types
+ */
+public class CompactVariableTypeTests {
+
+	private static final String CONDITIONAL_RESOURCE = "com/hercules/playground/flowable/events/conditional/Conditional.boundaryEventTriggered.bpmn20.xml";
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+
+	@BeforeEach
+	void buildEngine() {
+		ProcessEngineConfiguration configuration = App
+				.createConfiguration("jdbc:h2:mem:compact-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+		CompactVariableType.install(configuration);
+		this.processEngine = EngineSnapshot.of(Paths.get("target", "engine-snapshots"), CONDITIONAL_RESOURCE)
+				.buildProcessEngine(configuration);
+		this.runtimeService = this.processEngine.getRuntimeService();
+	}
+
+	@AfterEach
+	void closeEngine() {
+		this.processEngine.close();
+	}
+
+	/**
+	 * A nested map reads back equal to what was set, anything java serialization would have to handle stays with it
+	 */
+	@Test
+	public void mapsAndListsAreStoredCompact() {
+		Map<String, Object> order = new LinkedHashMap<>();
+		order.put("id", 42);
+		order.put("total", 12.5d);
+		order.put("placed", new Date(1_600_000_000_000L));
+		order.put("customer", Map.of("name", "Ada", "vip", true, "since", 1_500_000_000_000L));
+		order.put("lines", List.of(Map.of("sku", "pizza", "qty", 2), Map.of("sku", "cola", "qty", -1)));
+		order.put("note", null);
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("conditional",
+				Map.of("condition", false, "order", order, "ids", List.of(UUID.randomUUID())));
+
+		Map<?, ?> stored = (Map<?, ?>) this.runtimeService.getVariable(processInstance.getId(), "order");
+
+		assertAll(() -> assertEquals(order, stored),
+				() -> assertEquals(new ArrayList<>(order.keySet()), new ArrayList<>(stored.keySet())),
+				() -> assertEquals(CompactVariableType.TYPE_NAME,
+						this.runtimeService.getVariableInstance(processInstance.getId(), "order").getTypeName()),
+				() -> assertEquals("serializable",
+						this.runtimeService.getVariableInstance(processInstance.getId(), "ids").getTypeName()),
+				() -> assertThrows(UnsupportedOperationException.class, () -> stored.remove("id")));
+	}
+
+	/**
+	 * A map holding a java.sql.Timestamp is left to java serialization, it reads back a Timestamp with its nanos
+	 */
+	@Test
+	public void dateSubclassesAreNotCompact() {
+		Timestamp placed = new Timestamp(1_600_000_000_000L);
+		placed.setNanos(123_456_789);
+		Map<String, Object> order = new HashMap<>(Map.of("placed", placed));
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("conditional",
+				Map.of("condition", false, "order", order));
+
+		Map<?, ?> stored = (Map<?, ?>) this.runtimeService.getVariable(processInstance.getId(), "order");
+
+		assertAll(() -> assertEquals(placed, stored.get("placed")),
+				() -> assertEquals(Timestamp.class, stored.get("placed").getClass()),
+				() -> assertEquals("serializable",
+						this.runtimeService.getVariableInstance(processInstance.getId(), "order").getTypeName()));
+	}
+
+	/**
+	 * Reading one field steps over the others without decoding them, a broken field only fails when it is read
+	 */
+	@Test
+	public void readingOneFieldDecodesOnlyThatField() {
+		Map<String, Object> order = new LinkedHashMap<>();
+		order.put("lines", List.of("pizza", "cola"));
+		order.put("id", 42);
+		byte[] encoded = CompactFormat.encode(order);
+		// the tag of cola, after the map header, the lines key, the list header and pizza, is replaced by an unknown tag
+		int linesValue = 1 + Integer.BYTES + 1 + 1 + "lines".length();
+		encoded[linesValue + 1 + Integer.BYTES + 1 + 1 + 1 + "pizza".length()] = 99;
+
+		Map<?, ?> decoded = (Map<?, ?>) CompactFormat.decode(encoded);
+		List<?> lines = (List<?>) decoded.get("lines");
+
+		assertAll(() -> assertEquals(42, decoded.get("id")), () -> assertEquals(2, lines.size()),
+				() -> assertEquals("pizza", lines.get(0)), () -> assertThrows(FlowableException.class, () -> lines.get(1)));
+	}
+
+	@Test
+	public void largeValuesAreCompressed() {
+		List<Object> lines = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			Map<String, Object> line = new HashMap<>();
+			line.put("sku", "pizza-" + (i % 10));
+			line.put("qty", i);
+			lines.add(line);
+		}
+		CompactVariableType compressing = new CompactVariableType(1024);
+		CompactVariableType raw = new CompactVariableType(-1);
+
+		byte[] compressed = compressing.serialize(lines);
+		byte[] uncompressed = raw.serialize(lines);
+
+		assertAll(() -> assertTrue(compressed.length * 3 < uncompressed.length),
+				() -> assertEquals(lines, compressing.deserialize(compressed)),
+				() -> assertEquals(lines, raw.deserialize(uncompressed)),
+				() -> assertEquals(Collections.emptyList(), compressing.deserialize(compressing.serialize(List.of()))));
+	}
+
+}
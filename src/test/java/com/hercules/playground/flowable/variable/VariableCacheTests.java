@@ -0,0 +1,119 @@
+package com.hercules.playground.flowable.variable;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+
+import org.flowable.common.engine.api.FlowableObjectNotFoundException;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.TaskService;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.engine.test.Deployment;
+import org.flowable.engine.test.FlowableTest;
+import org.flowable.task.api.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hercules.playground.flowable.teardown.BulkProcessInstanceTeardown;
+
+/**
+ * Question: Can the variables evaluateConditionalEvents is handed be read from memory?
+ * <br>
+ * Answer: Yes, as long as every write goes through the engine the cache listens to
+ */
+@FlowableTest
+public class VariableCacheTests {
+
+	private ProcessEngine processEngine;
+	private RuntimeService runtimeService;
+	private TaskService taskService;
+	private VariableCache cache;
+
+	@BeforeEach
+	void setUp(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+		this.runtimeService = processEngine.getRuntimeService();
+		this.taskService = processEngine.getTaskService();
+		new BulkProcessInstanceTeardown(processEngine).deleteAll();
+		this.cache = VariableCache.register(processEngine);
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.cache.close();
+	}
+
+	/**
+	 * Conditional.boundaryEventTriggered reading its variables twice goes to the database once,
+	 * setting a variable makes the next read go again and see the new value
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/conditional/Conditional.boundaryEventTriggered.bpmn20.xml")
+	@Test
+	public void writesInvalidate() {
+		ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("conditional",
+				Map.of("condition", false));
+
+		assertEquals(Map.of("condition", false), this.cache.getVariables(processInstance.getId()));
+		assertEquals(Map.of("condition", false), this.cache.getVariables(processInstance.getId()));
+		this.runtimeService.setVariable(processInstance.getId(), "condition", true);
+		Map<String, Object> afterWrite = this.cache.getVariables(processInstance.getId());
+		this.runtimeService.evaluateConditionalEvents(processInstance.getId(), afterWrite);
+
+		assertAll(() -> assertEquals(Map.of("condition", true), afterWrite),
+				() -> assertEquals(1, this.cache.getHits()), () -> assertEquals(2, this.cache.getMisses()),
+				() -> assertEquals(2, this.taskService.createTaskQuery().active().list().size()));
+	}
+
+	/**
+	 * A branch execution of the gateway note sees the process instance variables, a write to the process instance
+	 * drops the cached variables of its branches too, and an ended instance is not found, just like through the api
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/gateway/GatewayTests.whatHappensToProcessVariablesWhenTokensMerge.bpmn20.xml")
+	@Test
+	public void writesToTheProcessInstanceReachItsBranches() {
+		ProcessInstance processInstance = this.runtimeService
+				.startProcessInstanceByKey("GatewayTests.ParralleGateProcessVariableMerge");
+		this.taskService.complete(this.taskService.createTaskQuery().singleResult().getId());
+		String branchExecutionId = this.taskService.createTaskQuery().list().get(0).getExecutionId();
+
+		this.cache.getVariables(branchExecutionId);
+		this.runtimeService.setVariable(processInstance.getId(), "shared", "written");
+		assertEquals("written", this.cache.getVariable(branchExecutionId, "shared"));
+
+		List<Task> tasks = this.taskService.createTaskQuery().list();
+		while (!tasks.isEmpty()) {
+			tasks.forEach((task) -> this.taskService.complete(task.getId()));
+			tasks = this.taskService.createTaskQuery().list();
+		}
+		assertThrows(FlowableObjectNotFoundException.class, () -> this.cache.getVariables(processInstance.getId()));
+	}
+
+	/**
+	 * Past maxEntries the least recently read executions go first
+	 */
+	@Deployment(resources = "com/hercules/playground/flowable/events/conditional/Conditional.boundaryEventTriggered.bpmn20.xml")
+	@Test
+	public void leastRecentlyReadAreEvicted() {
+		this.cache.close();
+		this.cache = VariableCache.register(this.processEngine, 2);
+		String first = this.runtimeService.startProcessInstanceByKey("conditional", Map.of("condition", false)).getId();
+		String second = this.runtimeService.startProcessInstanceByKey("conditional", Map.of("condition", false)).getId();
+		String third = this.runtimeService.startProcessInstanceByKey("conditional", Map.of("condition", false)).getId();
+
+		this.cache.getVariables(first);
+		this.cache.getVariables(second);
+		this.cache.getVariables(first);
+		this.cache.getVariables(third);
+		this.cache.getVariables(first);
+		this.cache.getVariables(second);
+
+		assertAll(() -> assertEquals(2, this.cache.size()), () -> assertEquals(2, this.cache.getEvictions()),
+				() -> assertEquals(2, this.cache.getHits()), () -> assertEquals(4, this.cache.getMisses()));
+	}
+
+}